@@ -0,0 +1,183 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsReaderXMLv1;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Reads a single event file in parallel. The decompressed stream is split into chunks at {@code <event} boundaries,
+ * each chunk is parsed as a separate document and the results are concatenated in file order, which preserves the time order of the events.
+ * <p>
+ * Custom event types are decoded with the given mappers, as {@link org.matsim.core.events.MatsimEventsReader} would do.
+ * Ids are created by multiple threads and therefore in nondeterministic order.
+ */
+final class ChunkedEventsReader {
+
+	private static final Logger log = LogManager.getLogger(ChunkedEventsReader.class);
+
+	/**
+	 * Default number of events per chunk.
+	 */
+	private static final int CHUNK_SIZE = 50_000;
+
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n";
+	private static final String FOOTER = "</events>\n";
+
+	private final ExecutorService executor;
+	private final int parallelism;
+	private final Function<EventStore, BasicEventHandler> handler;
+	private final int chunkSize;
+	private final Map<String, MatsimEventsReader.CustomEventMapper> mappers;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor    executor used for parsing the chunks
+	 * @param parallelism number of threads of the executor, bounds the number of chunks held in memory
+	 * @param handler     creates the handler that adds events of one chunk to the given store
+	 * @param mappers     mappers for custom event types
+	 */
+	ChunkedEventsReader(ExecutorService executor, int parallelism, Function<EventStore, BasicEventHandler> handler,
+						Map<String, MatsimEventsReader.CustomEventMapper> mappers) {
+		this(executor, parallelism, handler, CHUNK_SIZE, mappers);
+	}
+
+	ChunkedEventsReader(ExecutorService executor, int parallelism, Function<EventStore, BasicEventHandler> handler, int chunkSize,
+						Map<String, MatsimEventsReader.CustomEventMapper> mappers) {
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.handler = handler;
+		this.chunkSize = chunkSize;
+		this.mappers = mappers;
+	}
+
+	/**
+	 * Read all events of a file.
+	 */
+	EventStore read(String path) {
+
+		EventStore result = new EventStore();
+		Deque<Future<EventStore>> pending = new ArrayDeque<>();
+
+		try (BufferedReader reader = IOUtils.getBufferedReader(path)) {
+
+			StringBuilder chunk = new StringBuilder();
+			boolean started = false;
+			int n = 0;
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+
+				String trimmed = line.strip();
+				if (trimmed.startsWith("<event ")) {
+					started = true;
+					if (n == chunkSize) {
+						submit(chunk.toString(), pending, result);
+						chunk.setLength(0);
+						n = 0;
+					}
+					n++;
+				} else if (!started)
+					// skip the document header
+					continue;
+				else if (trimmed.startsWith("</events"))
+					break;
+
+				chunk.append(line).append('\n');
+			}
+
+			if (n > 0)
+				submit(chunk.toString(), pending, result);
+
+			while (!pending.isEmpty())
+				result.addAll(get(pending.poll()));
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			pending.forEach(f -> f.cancel(true));
+		}
+
+		log.debug("Read {} events from {} in chunks", result.size(), path);
+
+		result.trimToSize();
+		return result;
+	}
+
+	/**
+	 * Submit a chunk for parsing. Finished chunks are merged when too many are pending.
+	 */
+	private void submit(String chunk, Deque<Future<EventStore>> pending, EventStore result) {
+		pending.add(executor.submit(() -> parse(chunk)));
+
+		while (pending.size() > 2 * parallelism)
+			result.addAll(get(pending.poll()));
+	}
+
+	private EventStore parse(String chunk) {
+
+		EventStore store = new EventStore(chunkSize);
+		EventsManager manager = EventsUtils.createEventsManager();
+		manager.addHandler(handler.apply(store));
+
+		EventsReaderXMLv1 reader = new EventsReaderXMLv1(manager);
+		reader.setValidating(false);
+		mappers.forEach(reader::addCustomEventMapper);
+		reader.parse(new ByteArrayInputStream((HEADER + chunk + FOOTER).getBytes(StandardCharsets.UTF_8)));
+
+		manager.finishProcessing();
+		return store;
+	}
+
+	private static EventStore get(Future<EventStore> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading events", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw new IllegalStateException("Could not read events", e.getCause());
+		}
+	}
+}
@@ -0,0 +1,326 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.ints.*;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Log of traceable contacts of all persons of a {@link PersonStore}.
+ * Contacts are appended without locking into buffers of the writing thread, which are partitioned by day.
+ * Repeated contacts of the same pair on one day and thread are stored once with their latest time, because only this time is queried.
+ * This costs one hash lookup per contact, but persons meeting in several containers a day would otherwise be stored many times.
+ * Whole days are dropped once they are not needed for tracing anymore.
+ * The index to look up the contacts of a person is only built for days that are actually queried.
+ */
+final class ContactLog {
+
+	private static final double DAY = 24. * 3600;
+
+	/**
+	 * Contacts partitioned by day.
+	 */
+	private final Int2ObjectSortedMap<Segment> segments = new Int2ObjectRBTreeMap<>();
+
+	/**
+	 * Buffers of the current thread by day.
+	 */
+	private final ThreadLocal<Int2ObjectMap<Buffer>> buffers = ThreadLocal.withInitial(Int2ObjectOpenHashMap::new);
+
+	/**
+	 * Time before which all contacts have been removed.
+	 */
+	private double clearedBefore = Double.NEGATIVE_INFINITY;
+
+	private static int day(double time) {
+		return (int) Math.floor(time / DAY);
+	}
+
+	/**
+	 * Record a contact of {@code person} with {@code contact}. Only the direction from person to contact is stored,
+	 * repeated contacts of the same day only update the time.
+	 * Can be called concurrently from multiple threads, but not while the log is queried or cleared.
+	 */
+	void add(EpisimPerson person, EpisimPerson contact, double time) {
+
+		int day = day(time);
+		Int2ObjectMap<Buffer> local = buffers.get();
+		Buffer buffer = local.get(day);
+
+		if (buffer == null || buffer.dropped) {
+			local.values().removeIf(b -> b.dropped);
+			buffer = newBuffer(day);
+			local.put(day, buffer);
+		}
+
+		buffer.add(person.getPersonId().index(), contact, time);
+	}
+
+	private synchronized Buffer newBuffer(int day) {
+
+		Segment segment = segments.get(day);
+		if (segment == null)
+			segments.put(day, segment = new Segment());
+
+		Buffer buffer = new Buffer();
+		segment.buffers.add(buffer);
+		return buffer;
+	}
+
+	/**
+	 * Latest time of each contact of a person at or after {@code after}.
+	 * Can be called concurrently by multiple threads, but not while contacts are added or cleared.
+	 */
+	Object2DoubleMap<EpisimPerson> getContactTimes(EpisimPerson person, double after) {
+
+		int idx = person.getPersonId().index();
+		Object2DoubleMap<EpisimPerson> result = new Object2DoubleOpenHashMap<>();
+
+		for (Segment segment : segments.tailMap(day(after)).values()) {
+
+			segment.index();
+			int i = Arrays.binarySearch(segment.persons, idx);
+			if (i < 0)
+				continue;
+
+			for (int j = segment.offsets[i]; j < segment.offsets[i + 1]; j++) {
+				double time = segment.times[j];
+				if (time >= after && (!result.containsKey(segment.contacts[j]) || result.getDouble(segment.contacts[j]) < time))
+					result.put(segment.contacts[j], time);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Distinct contacts of a person at or after {@code after}, sorted by id.
+	 */
+	List<EpisimPerson> getContacts(EpisimPerson person, double after) {
+		// needs to be sorted or results will be non deterministic with multithreading
+		List<EpisimPerson> result = new ArrayList<>(getContactTimes(person, after).keySet());
+		result.sort(Comparator.comparing(EpisimPerson::getPersonId));
+		return result;
+	}
+
+	/**
+	 * Remove all contacts before a certain time.
+	 */
+	synchronized void clear(double before) {
+
+		// nothing new to remove
+		if (before <= clearedBefore)
+			return;
+
+		int day = day(before);
+		while (!segments.isEmpty() && segments.firstIntKey() < day) {
+			segments.remove(segments.firstIntKey()).buffers.forEach(b -> b.dropped = true);
+		}
+
+		Segment segment = segments.get(day);
+		if (segment != null)
+			segment.removeBefore(before);
+
+		clearedBefore = before;
+	}
+
+	/**
+	 * Remove all contacts.
+	 */
+	synchronized void clear() {
+		segments.values().forEach(s -> s.buffers.forEach(b -> b.dropped = true));
+		segments.clear();
+		clearedBefore = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Contacts of one day, written by multiple threads.
+	 */
+	private static final class Segment {
+
+		private final List<Buffer> buffers = new ArrayList<>();
+
+		/**
+		 * Sum of the buffer versions the index was built for, negative if there is none.
+		 */
+		private long indexed = -1;
+
+		/**
+		 * Sorted indices of persons with contacts.
+		 */
+		private int[] persons;
+
+		/**
+		 * Start of the contacts of each person in {@link #contacts}, with one additional entry for the end.
+		 */
+		private int[] offsets;
+		private EpisimPerson[] contacts;
+		private double[] times;
+
+		private synchronized void index() {
+
+			int n = 0;
+			long version = 0;
+			for (Buffer b : buffers) {
+				n += b.size;
+				version += b.version;
+			}
+
+			if (version == indexed)
+				return;
+
+			int[] person = new int[n];
+			EpisimPerson[] contact = new EpisimPerson[n];
+			double[] time = new double[n];
+
+			int k = 0;
+			for (Buffer b : buffers) {
+				System.arraycopy(b.person, 0, person, k, b.size);
+				System.arraycopy(b.contact, 0, contact, k, b.size);
+				System.arraycopy(b.time, 0, time, k, b.size);
+				k += b.size;
+			}
+
+			int[] order = new int[n];
+			for (int i = 0; i < n; i++) {
+				order[i] = i;
+			}
+
+			IntArrays.quickSort(order, (a, b) -> Integer.compare(person[a], person[b]));
+
+			IntList distinct = new IntArrayList();
+			IntList starts = new IntArrayList();
+
+			contacts = new EpisimPerson[n];
+			times = new double[n];
+
+			for (int i = 0; i < n; i++) {
+				int p = person[order[i]];
+				if (distinct.isEmpty() || distinct.getInt(distinct.size() - 1) != p) {
+					distinct.add(p);
+					starts.add(i);
+				}
+
+				contacts[i] = contact[order[i]];
+				times[i] = time[order[i]];
+			}
+
+			starts.add(n);
+
+			persons = distinct.toIntArray();
+			offsets = starts.toIntArray();
+			indexed = version;
+		}
+
+		private void removeBefore(double before) {
+			buffers.forEach(b -> b.removeBefore(before));
+			indexed = -1;
+		}
+	}
+
+	/**
+	 * Append only contacts of one thread and day.
+	 */
+	private static final class Buffer {
+
+		private int size;
+		private int[] person = new int[16];
+		private EpisimPerson[] contact = new EpisimPerson[16];
+		private double[] time = new double[16];
+
+		/**
+		 * Position of each pair of person and contact in this buffer.
+		 */
+		private final Long2IntMap pairs = new Long2IntOpenHashMap();
+
+		/**
+		 * Incremented with every change, also when only a time is updated.
+		 */
+		private long version;
+
+		{
+			pairs.defaultReturnValue(-1);
+		}
+
+		private static long pair(int p, EpisimPerson c) {
+			return (((long) p) << 32) | (c.getPersonId().index() & 0xffffffffL);
+		}
+
+		/**
+		 * Set when the day of this buffer has been removed from the log.
+		 */
+		private volatile boolean dropped;
+
+		private void add(int p, EpisimPerson c, double t) {
+
+			version++;
+
+			long key = pair(p, c);
+			int i = pairs.get(key);
+			if (i >= 0) {
+				time[i] = Math.max(time[i], t);
+				return;
+			}
+
+			pairs.put(key, size);
+
+			if (size == person.length) {
+				int capacity = size * 2;
+				person = Arrays.copyOf(person, capacity);
+				contact = Arrays.copyOf(contact, capacity);
+				time = Arrays.copyOf(time, capacity);
+			}
+
+			person[size] = p;
+			contact[size] = c;
+			time[size] = t;
+			size++;
+		}
+
+		private void removeBefore(double before) {
+
+			pairs.clear();
+
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				if (time[i] >= before) {
+					person[n] = person[i];
+					contact[n] = contact[i];
+					time[n] = time[i];
+					pairs.put(pair(person[n], contact[n]), n);
+					n++;
+				}
+			}
+
+			Arrays.fill(contact, n, size, null);
+			size = n;
+			version++;
+		}
+	}
+}
@@ -83,12 +83,21 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	private static final String REPORT_TIME_USE = "reportTimeUse";
 	private static final String SINGLE_EVENT_FILE = "singleEventFile";
 	private static final String END_EARLY = "endEarly";
+	private static final String EVENT_CACHE = "eventCache";
+	private static final String PARALLEL_EVENT_READING = "parallelEventReading";
+	private static final String EXPOSURE_CONTAINER_THRESHOLD = "exposureContainerThreshold";
+	private static final String CONTAINER_CHUNK_SIZE = "containerChunkSize";
 
 	private static final Logger log = LogManager.getLogger(EpisimConfigGroup.class);
 	private static final String GROUPNAME = "episim";
 
 	private final Trie<String, InfectionParams> paramsTrie = Tries.forStrings();
 
+	/**
+	 * Index assigned to the next added {@link InfectionParams}.
+	 */
+	private int nextParamsIndex = 0;
+
 	/**
 	 * Number of initial infections per day.
 	 * Default is 1 infection per day for {@link VirusStrain#SARS_CoV_2}.
@@ -166,6 +175,10 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	private ContagiousOptimization contagiousContainerOptimization = ContagiousOptimization.no;
 	private ReportTimeUse reportTimeUse = ReportTimeUse.no;
 	private SingleEventFile singleEventFile = SingleEventFile.yes;
+	private EventCache eventCache = EventCache.no;
+	private ParallelEventReading parallelEventReading = ParallelEventReading.no;
+	private int exposureContainerThreshold = -1;
+	private int containerChunkSize = -1;
 	private boolean endEarly = false;
 	private int threads = 2;
 	/**
@@ -755,6 +768,65 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		this.singleEventFile = singleEventFile;
 	}
 
+	@StringGetter(EVENT_CACHE)
+	public EventCache getEventCache() {
+		return eventCache;
+	}
+
+	@StringSetter(EVENT_CACHE)
+	public void setEventCache(EventCache eventCache) {
+		this.eventCache = eventCache;
+	}
+
+	@StringGetter(PARALLEL_EVENT_READING)
+	public ParallelEventReading getParallelEventReading() {
+		return parallelEventReading;
+	}
+
+	/**
+	 * Read input event files concurrently and decode large files in chunks, using {@link #getThreads()} threads.
+	 * Ids are then created in nondeterministic order, which changes the iteration order of persons and facilities,
+	 * so that runs with the same seed are not reproducible anymore.
+	 */
+	@StringSetter(PARALLEL_EVENT_READING)
+	public void setParallelEventReading(ParallelEventReading parallelEventReading) {
+		this.parallelEventReading = parallelEventReading;
+	}
+
+	@StringGetter(EXPOSURE_CONTAINER_THRESHOLD)
+	public int getExposureContainerThreshold() {
+		return exposureContainerThreshold;
+	}
+
+	/**
+	 * Containers with a max group size of at least this many persons don't evaluate contacts pairwise, but integrate the exposure
+	 * of all contagious persons over time. This is only supported by the {@link org.matsim.episim.model.SymmetricContactModel}
+	 * and is not applied while tracing is active. Negative values disable the integration.
+	 * The infection model needs to support the exposure, see {@link org.matsim.episim.model.InfectionModel#supportsExposure()}.
+	 * Models that don't, e.g. {@link org.matsim.episim.model.InfectionModelWithViralLoad}, always evaluate contacts pairwise.
+	 */
+	@StringSetter(EXPOSURE_CONTAINER_THRESHOLD)
+	public void setExposureContainerThreshold(int exposureContainerThreshold) {
+		this.exposureContainerThreshold = exposureContainerThreshold;
+	}
+
+	@StringGetter(CONTAINER_CHUNK_SIZE)
+	public int getContainerChunkSize() {
+		return containerChunkSize;
+	}
+
+	/**
+	 * If a leaving person has more potential contacts than this, the contacts are evaluated in parallel chunks of this size.
+	 * This is only supported by the {@link org.matsim.episim.model.SymmetricContactModel} with {@link ContagiousOptimization#pairs},
+	 * while tracing is not active and contacts are not written as events. Infection probabilities are also calculated in parallel
+	 * if the infection model draws its random numbers per contact, see {@link org.matsim.episim.model.InfectionModel#usesContactRandom()}.
+	 * Negative values disable the parallel evaluation.
+	 */
+	@StringSetter(CONTAINER_CHUNK_SIZE)
+	public void setContainerChunkSize(int containerChunkSize) {
+		this.containerChunkSize = containerChunkSize;
+	}
+
 	@StringGetter(REPORT_TIME_USE)
 	public ReportTimeUse getReportTimeUse() {
 		return reportTimeUse;
@@ -824,6 +896,9 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 
 		params.mappedNames.forEach(name -> paramsTrie.put(name, params));
 
+		// replaced params keep the index of the previous ones, indices of removed params are not reused
+		params.index = previous != null ? previous.index : nextParamsIndex++;
+
 		if (previous != null) {
 			log.info("scoring parameters for activityType=" + previous.getContainerName() + " were just replaced.");
 
@@ -1031,7 +1106,13 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
      */
 	public enum ContagiousOptimization {
 		yes,
-		no
+		no,
+		/**
+		 * Like {@link #yes}, and additionally the {@link org.matsim.episim.model.SymmetricContactModel} only evaluates
+		 * pairs of contagious and susceptible persons as long as tracing is not active.
+		 * Random numbers are drawn per pair of persons, so that results don't depend on the order of evaluation.
+		 */
+		pairs
 	}
 
 	/**
@@ -1052,6 +1133,23 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		no
 	}
 
+	/**
+	 * Whether preprocessed input events are cached in binary files next to the event files.
+	 * If enabled, existing cache files are read instead of parsing the events again.
+	 */
+	public enum EventCache {
+		yes,
+		no
+	}
+
+	/**
+	 * Whether input events are read in parallel, see {@link #setParallelEventReading(ParallelEventReading)}.
+	 */
+	public enum ParallelEventReading {
+		yes,
+		no
+	}
+
 	/**
 	 * Parameter set for one activity type.
 	 */
@@ -1084,6 +1182,11 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		 */
 		private boolean seasonal = false;
 
+		/**
+		 * Dense index of this param within the config group.
+		 */
+		private int index = -1;
+
 		/**
 		 * See {@link #InfectionParams(String, String...)}. Name itself will also be used as prefix.
 		 */
@@ -1120,6 +1223,13 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 			this.mappedNames = Sets.newHashSet(mappedNames.split(","));
 		}
 
+		/**
+		 * Dense index of this param, which is assigned when it is added to the config. Can be used for array based lookups.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
 		@StringGetter(ACTIVITY_TYPE)
 		public String getContainerName() {
 			return containerName;
@@ -26,13 +26,11 @@ import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static org.matsim.episim.EpisimUtils.*;
 
@@ -42,26 +40,67 @@ import static org.matsim.episim.EpisimUtils.*;
  * @param <T> the type where the agents are located in, e.g {@link org.matsim.vehicles.Vehicle} or {@link org.matsim.facilities.Facility}.
  */
 public class EpisimContainer<T> {
+
+	private static final byte CONTAGIOUS = 0;
+	private static final byte SUSCEPTIBLE = 1;
+
 	private final Id<T> containerId;
 
 	private static final Logger log = LogManager.getLogger(EpisimContainer.class);
 
 	/**
-	 * Persons currently in this container. Stored only as Ids.
+	 * Persons currently in this container. Persons, their entering time and activity are stored in dense slots,
+	 * persons are removed by moving the last slot into the free one.
+	 */
+	private EpisimPerson[] persons = new EpisimPerson[4];
+
+	/**
+	 * Time when the person in the same slot entered the container.
+	 */
+	private double[] enterTimes = new double[4];
+
+	/**
+	 * Position of the performed activity in the trajectory of persons in the container, or -1 if unknown.
+	 */
+	private int[] activities = new int[4];
+
+	/**
+	 * Number of persons in this container.
+	 */
+	private int size = 0;
+
+	/**
+	 * Maps the index of person ids to their slot.
 	 */
-	private final IntSet persons = new IntOpenHashSet(4);
+	private final Int2IntMap slots = new Int2IntOpenHashMap(4);
 
 	/**
-	 * Person list needed to draw random persons within container.
+	 * List view of the persons, needed to draw random persons within container.
 	 */
-	private final List<EpisimPerson> personsAsList = new ArrayList<>();
+	private final List<EpisimPerson> personsAsList = new PersonList();
 
-	private final Int2DoubleMap containerEnterTimes = new Int2DoubleOpenHashMap(4);
+	/**
+	 * Slots of persons in the sub groups {@link #CONTAGIOUS} and {@link #SUSCEPTIBLE}.
+	 */
+	private final int[][] groups = {new int[4], new int[4]};
+
+	/**
+	 * Number of persons in each group.
+	 */
+	private final int[] groupSizes = new int[2];
+
+	/**
+	 * Group of the person in the same slot, or -1 if it is in no group.
+	 */
+	private byte[] groupOf = new byte[4];
 
 	/**
-	 * Activities of persons in the container.
+	 * Position of the person in its group.
 	 */
-	private final Int2ObjectMap<EpisimPerson.PerformedActivity> personActivities = new Int2ObjectArrayMap<>(4);
+	private int[] groupPos = new int[4];
+
+	private final List<EpisimPerson> contagiousAsList = new GroupList(CONTAGIOUS);
+	private final List<EpisimPerson> susceptibleAsList = new GroupList(SUSCEPTIBLE);
 
 	/**
 	 * The maximum number of persons simultaneously in this container. Negative if unknown.
@@ -97,6 +136,7 @@ public class EpisimContainer<T> {
 
 	EpisimContainer(Id<T> containerId) {
 		this.containerId = containerId;
+		this.slots.defaultReturnValue(-1);
 	}
 
 	/**
@@ -104,16 +144,12 @@ public class EpisimContainer<T> {
 	 */
 	void read(ObjectInput in, Map<Id<Person>, EpisimPerson> persons) throws IOException {
 
-		this.persons.clear();
-		this.personsAsList.clear();
-		this.containerEnterTimes.clear();
+		clearPersons();
 
 		int n = in.readInt();
 		for (int i = 0; i < n; i++) {
 			Id<Person> id = Id.create(readChars(in), Person.class);
-			this.persons.add(id.index());
-			personsAsList.add(persons.get(id));
-			containerEnterTimes.put(id.index(), in.readDouble());
+			add(persons.get(id), in.readDouble(), EpisimPerson.UNSPECIFIC_ACTIVITY);
 		}
 	}
 
@@ -122,28 +158,117 @@ public class EpisimContainer<T> {
 	 */
 	void write(ObjectOutput out) throws IOException {
 
-		out.writeInt(containerEnterTimes.size());
-		for (EpisimPerson p : personsAsList) {
-			writeChars(out, p.getPersonId().toString());
-			out.writeDouble(containerEnterTimes.get(p.getPersonId().index()));
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			writeChars(out, persons[i].getPersonId().toString());
+			out.writeDouble(enterTimes[i]);
 		}
 	}
 
 	boolean containsPerson(EpisimPerson person) {
 		final int index = person.getPersonId().index();
-		return persons.contains(index);
+		return slots.containsKey(index);
 	}
 
-	void addPerson(EpisimPerson person, double now, EpisimPerson.PerformedActivity act) {
+	/**
+	 * Add a person to this container.
+	 *
+	 * @param act position of the performed activity in the persons trajectory
+	 */
+	void addPerson(EpisimPerson person, double now, int act) {
 		final int index = person.getPersonId().index();
 
 		//assert !persons.contains(index) : "Person already contained in this container.";
-		assert !persons.contains(index) : String.format("Person %s was already in container %s", person.getPersonId(), containerId);
+		assert !slots.containsKey(index) : String.format("Person %s was already in container %s", person.getPersonId(), containerId);
 
-		persons.add(index);
-		personsAsList.add(person);
-		containerEnterTimes.put(index, now);
-		personActivities.put(index, act);
+		add(person, now, act);
+	}
+
+	private void add(EpisimPerson person, double now, int act) {
+		if (size == persons.length) {
+			int n = persons.length * 2;
+			persons = Arrays.copyOf(persons, n);
+			enterTimes = Arrays.copyOf(enterTimes, n);
+			activities = Arrays.copyOf(activities, n);
+			groupOf = Arrays.copyOf(groupOf, n);
+			groupPos = Arrays.copyOf(groupPos, n);
+		}
+
+		persons[size] = person;
+		enterTimes[size] = now;
+		activities[size] = act;
+		slots.put(person.getPersonId().index(), size);
+		join(size);
+		size++;
+	}
+
+	/**
+	 * Add person in slot {@code i} to the group of its current disease status.
+	 */
+	private void join(int i) {
+		byte group;
+		switch (persons[i].getDiseaseStatus()) {
+			case contagious:
+			case showingSymptoms:
+				group = CONTAGIOUS;
+				break;
+			case susceptible:
+				group = SUSCEPTIBLE;
+				break;
+			default:
+				groupOf[i] = -1;
+				return;
+		}
+
+		int pos = groupSizes[group]++;
+		if (pos == groups[group].length)
+			groups[group] = Arrays.copyOf(groups[group], pos * 2);
+
+		groups[group][pos] = i;
+		groupOf[i] = group;
+		groupPos[i] = pos;
+	}
+
+	/**
+	 * Remove person in slot {@code i} from its group, by moving the last group member into its position.
+	 */
+	private void leave(int i) {
+		byte group = groupOf[i];
+		if (group < 0)
+			return;
+
+		int[] members = groups[group];
+		int pos = groupPos[i];
+		int last = --groupSizes[group];
+		if (pos != last) {
+			members[pos] = members[last];
+			groupPos[members[pos]] = pos;
+		}
+
+		groupOf[i] = -1;
+	}
+
+	/**
+	 * Remove person at slot {@code i} by moving the last person into it.
+	 */
+	private void removeAt(int i) {
+		slots.remove(persons[i].getPersonId().index());
+		leave(i);
+
+		int last = --size;
+		if (i != last) {
+			persons[i] = persons[last];
+			enterTimes[i] = enterTimes[last];
+			activities[i] = activities[last];
+			groupOf[i] = groupOf[last];
+			groupPos[i] = groupPos[last];
+			if (groupOf[i] >= 0)
+				groups[groupOf[i]][groupPos[i]] = i;
+
+			slots.put(persons[i].getPersonId().index(), i);
+		}
+
+		persons[last] = null;
 	}
 
 	/**
@@ -152,13 +277,11 @@ public class EpisimContainer<T> {
 	 * @throws RuntimeException if the person was not in the container.
 	 */
 	void removePerson(EpisimPerson person) {
-		int index = person.getPersonId().index();
+		int slot = slots.get(person.getPersonId().index());
 
-		containerEnterTimes.remove(index);
-		personActivities.remove(index);
-		persons.remove(index);
-		boolean wasRemoved = personsAsList.remove(person);
-		if (!wasRemoved)
+		if (slot >= 0)
+			removeAt(slot);
+		else
 			log.warn( "Person {} was not in container {}", person.getPersonId(), containerId);
 
 		if (person.infectedButNotSerious())
@@ -170,14 +293,22 @@ public class EpisimContainer<T> {
 	 * This allows to remove persons while iterating through them.
 	 */
 	void removePerson(EpisimPerson person, Iterator<EpisimPerson> it) {
-		int index = person.getPersonId().index();
-
-		containerEnterTimes.remove(index);
-		personActivities.remove(index);
-		persons.remove(index);
+		assert slots.containsKey(person.getPersonId().index()) : String.format("Person %s is not in container %s", person.getPersonId(), containerId);
 		it.remove();
 	}
 
+	/**
+	 * Updates the contagious and susceptible groups after the disease status of a person in this container has changed.
+	 */
+	void updateGroup(EpisimPerson person) {
+		int slot = slots.get(person.getPersonId().index());
+		if (slot < 0)
+			return;
+
+		leave(slot);
+		join(slot);
+	}
+
 	public Id<T> getContainerId() {
 		return containerId;
 	}
@@ -240,30 +371,77 @@ public class EpisimContainer<T> {
 
 	
 	void clearPersons() {
-		this.persons.clear();
-		this.personsAsList.clear();
-		this.containerEnterTimes.clear();
+		Arrays.fill(persons, 0, size, null);
+		slots.clear();
+		size = 0;
+		groupSizes[CONTAGIOUS] = 0;
+		groupSizes[SUSCEPTIBLE] = 0;
 	}
 
 	/**
 	 * Returns the time the person entered the container, or {@link Double#NEGATIVE_INFINITY} if it never entered.
 	 */
 	public double getContainerEnteringTime(Id<Person> personId) {
-		return containerEnterTimes.getOrDefault(personId.index(), Double.NEGATIVE_INFINITY);
+		int slot = slots.get(personId.index());
+		return slot >= 0 ? enterTimes[slot] : Double.NEGATIVE_INFINITY;
 	}
 
 	/**
 	 * Return the activity that a person is performing in this container.
+	 * This creates a new object, use {@link #getActivityIndex(Id)} in frequently called code.
 	 */
+	@Nullable
 	public EpisimPerson.PerformedActivity getPerformedActivity(Id<Person> personId) {
-		return personActivities.get(personId.index());
+		int slot = slots.get(personId.index());
+		if (slot < 0 || activities[slot] < 0)
+			return null;
+
+		EpisimPerson person = persons[slot];
+		int act = activities[slot];
+		return new EpisimPerson.PerformedActivity(person.getActivityTime(act), person.getActivityParams(act), person.getActivityFacility(act));
 	}
 
+	/**
+	 * Position in the persons trajectory of the activity performed in this container,
+	 * or {@link EpisimPerson#UNSPECIFIC_ACTIVITY} if unknown.
+	 */
+	public int getActivityIndex(Id<Person> personId) {
+		int slot = slots.get(personId.index());
+		return slot >= 0 ? activities[slot] : EpisimPerson.UNSPECIFIC_ACTIVITY;
+	}
+
+	/**
+	 * Persons currently in this container. The order changes when persons are removed.
+	 * The list can not be modified, except for removing persons via {@link #removePerson(EpisimPerson, Iterator)}.
+	 */
 	public List<EpisimPerson> getPersons() {
 		// Using Collections.unmodifiableList(...) puts huge pressure on the GC if its called hundred thousand times per second
 		return personsAsList;
 	}
 
+	/**
+	 * Position of a person in {@link #getPersons()}, or -1 if the person is not in this container.
+	 */
+	public int getSlot(EpisimPerson person) {
+		return slots.get(person.getPersonId().index());
+	}
+
+	/**
+	 * Persons in this container that were contagious or showing symptoms when they entered or at the start of the day.
+	 * The disease status of these persons still needs to be checked.
+	 */
+	public List<EpisimPerson> getContagiousPersons() {
+		return contagiousAsList;
+	}
+
+	/**
+	 * Persons in this container that were susceptible when they entered or at the start of the day.
+	 * The disease status of these persons still needs to be checked.
+	 */
+	public List<EpisimPerson> getSusceptiblePersons() {
+		return susceptibleAsList;
+	}
+
 
 	public void countContagious(int add) {
 		contagiousCounter += add;
@@ -277,4 +455,87 @@ public class EpisimContainer<T> {
 	public boolean containsContagious() {
 		return contagiousCounter > 0;
 	}
+
+	/**
+	 * Read-only list view on the person slots.
+	 */
+	private final class PersonList extends AbstractList<EpisimPerson> implements RandomAccess {
+
+		@Override
+		public EpisimPerson get(int index) {
+			Objects.checkIndex(index, size);
+			return persons[index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof EpisimPerson && containsPerson((EpisimPerson) o);
+		}
+
+		@Override
+		public Iterator<EpisimPerson> iterator() {
+			return new PersonIterator();
+		}
+	}
+
+	/**
+	 * Read-only list view on one group of persons.
+	 */
+	private final class GroupList extends AbstractList<EpisimPerson> implements RandomAccess {
+
+		private final byte group;
+
+		private GroupList(byte group) {
+			this.group = group;
+		}
+
+		@Override
+		public EpisimPerson get(int index) {
+			Objects.checkIndex(index, groupSizes[group]);
+			return persons[groups[group][index]];
+		}
+
+		@Override
+		public int size() {
+			return groupSizes[group];
+		}
+	}
+
+	/**
+	 * Iterates the person slots, removing a person moves the last person into the current slot, which is visited next.
+	 */
+	private final class PersonIterator implements Iterator<EpisimPerson> {
+
+		private int cursor = 0;
+		private int last = -1;
+
+		@Override
+		public boolean hasNext() {
+			return cursor < size;
+		}
+
+		@Override
+		public EpisimPerson next() {
+			if (cursor >= size)
+				throw new NoSuchElementException();
+
+			last = cursor++;
+			return persons[last];
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0)
+				throw new IllegalStateException();
+
+			removeAt(last);
+			cursor = last;
+			last = -1;
+		}
+	}
 }
@@ -23,6 +23,7 @@ package org.matsim.episim;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.multibindings.MapBinder;
 import com.google.inject.multibindings.Multibinder;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.api.experimental.events.EventsManager;
@@ -30,6 +31,7 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.config.groups.VspExperimentalConfigGroup;
 import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.episim.model.*;
 import org.matsim.episim.model.activity.ActivityParticipationModel;
@@ -71,6 +73,8 @@ public class EpisimModule extends AbstractModule {
 		bind(VaccinationModel.class).to(RandomVaccination.class).in(Singleton.class);
 		bind(TestingModel.class).to(DefaultTestingModel.class).in(Singleton.class);
 		bind(ActivityParticipationModel.class).to(AllParticipationModel.class).in(Singleton.class);
+		bind(ImmunityCache.class).in(Singleton.class);
+		bind(FaceMaskAssignment.class).in(Singleton.class);
 
 		// Internal classes, should rarely be needed to be reconfigured
 		bind(EpisimRunner.class).in(Singleton.class);
@@ -79,6 +83,9 @@ public class EpisimModule extends AbstractModule {
 		bind(EpisimReporting.class).in(Singleton.class);
 
 		Multibinder.newSetBinder(binder(), SimulationListener.class);
+
+		// mappers for custom event types in the input events
+		MapBinder.newMapBinder(binder(), String.class, MatsimEventsReader.CustomEventMapper.class);
 	}
 
 	@Provides
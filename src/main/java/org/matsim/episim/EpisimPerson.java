@@ -21,7 +21,6 @@
 package org.matsim.episim;
 
 import com.google.common.annotations.Beta;
-import it.unimi.dsi.fastutil.objects.Object2DoubleLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
 import org.matsim.api.core.v01.Id;
@@ -30,6 +29,7 @@ import org.matsim.episim.events.EpisimInfectionEvent;
 import org.matsim.episim.events.EpisimInitialInfectionEvent;
 import org.matsim.episim.events.EpisimPersonStatusEvent;
 import org.matsim.episim.events.EpisimPotentialInfectionEvent;
+import org.matsim.episim.model.FaceMask;
 import org.matsim.episim.model.VaccinationType;
 import org.matsim.episim.model.VirusStrain;
 import org.matsim.facilities.ActivityFacility;
@@ -43,7 +43,6 @@ import java.io.ObjectOutput;
 import java.time.DayOfWeek;
 import java.util.*;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
 
 import static org.matsim.episim.EpisimUtils.readChars;
 import static org.matsim.episim.EpisimUtils.writeChars;
@@ -59,10 +58,23 @@ public final class EpisimPerson implements Attributable {
 	private final Attributes attributes;
 
 	/**
-	 * Whole trajectory over all days of the week.
-	 * Entries contain the starting time of activities and the performed activity.
+	 * Whole trajectory over all days of the week, stored in parallel arrays.
+	 * Entries contain the starting time of activities, the performed activity and the {@link Id#index()} of the facility.
+	 * Within each day the entries are ordered by time.
 	 */
-	private final List<PerformedActivity> trajectory = new ArrayList<>();
+	private double[] activityTimes = EMPTY_TIMES;
+	private EpisimConfigGroup.InfectionParams[] activityParams = EMPTY_PARAMS;
+	private int[] activityFacilities = EMPTY_FACILITIES;
+
+	/**
+	 * Number of entries in the trajectory.
+	 */
+	private int trajectorySize = 0;
+
+	/**
+	 * List view of the trajectory.
+	 */
+	private final List<PerformedActivity> trajectory = new TrajectoryList();
 
 	/**
 	 * The position in the trajectory at the start for each day of the week.
@@ -92,26 +104,22 @@ public final class EpisimPerson implements Attributable {
 	 */
 	private final boolean[] staysInContainer = new boolean[7];
 
-	/**
-	 * Traced contacts with other persons.
-	 */
-	private final Object2DoubleMap<EpisimPerson> traceableContactPersons = new Object2DoubleLinkedOpenHashMap<>(4);
-
-	/**
-	 * Stores first time of status changes to specific type.
-	 */
-	private final EnumMap<DiseaseStatus, Double> statusChanges = new EnumMap<>(DiseaseStatus.class);
-
 	/**
 	 * Total spent time during activities.
 	 */
 	private final Object2DoubleMap<String> spentTime = new Object2DoubleOpenHashMap<>(4);
 
 	/**
-	 * Activity participation of the current day. Same length as {@link #trajectory}
+	 * Activity participation of the current day. Same length as the trajectory.
 	 */
 	private BitSet activityParticipation;
 
+	/**
+	 * Face masks worn during the current day as {@link FaceMask#ordinal()}, or {@link #NO_MASK} if not assigned.
+	 * Contains one entry per trajectory element and one additional entry for all trips of the day.
+	 */
+	private byte[] faceMasks;
+
 	/**
 	 * In the parallel version of the {@link ReplayHandler}, the infections
 	 * are not happen in a chronically order. The earliestInfections
@@ -136,78 +144,21 @@ public final class EpisimPerson implements Attributable {
 	private String infectionType = null;
 
 	/**
-	 * Current {@link DiseaseStatus}.
-	 */
-	private DiseaseStatus status = DiseaseStatus.susceptible;
-	/**
-	 * Current {@link QuarantineStatus}.
-	 */
-	private QuarantineStatus quarantineStatus = QuarantineStatus.no;
-
-	/**
-	 * Strain of the virus the person was infected with.
-	 */
-	private VirusStrain virusStrain = VirusStrain.SARS_CoV_2;
-
-	/**
-	 * Current {@link VaccinationStatus}.
-	 */
-	private VaccinationStatus vaccinationStatus = VaccinationStatus.no;
-
-	/**
-	 * Current status for re-vaccination.
-	 */
-	private VaccinationStatus reVaccinationStatus = VaccinationStatus.no;
-
-	/**
-	 * Current {@link TestStatus}.
-	 */
-	private TestStatus testStatus = TestStatus.untested;
-
-	/**
-	 * Iteration when this person was vaccinated. Negative if person was never vaccinated.
-	 */
-	private int vaccinationDate = -1;
-
-	/**
-	 * Iteration when this person got into quarantine. Negative if person was never quarantined.
-	 */
-	private int quarantineDate = -1;
-
-	/**
-	 * Iteration when this person was tested. Negative if person was never tested.
-	 */
-	private int testDate = -1;
-
-	/**
-	 * How many times a person did go through the infected -> recovered cycle.
-	 */
-	private int numInfections = 0;
-
-	/**
-	 * Age of the person in years.
-	 */
-	private final int age;
-
-	/**
-	 * Whether this person can be traced.
-	 */
-	private boolean traceable;
-
-	/**
-	 * Whether this person can be vaccinated.
+	 * Store holding the scalar state of this person, e.g. disease, quarantine, vaccination and test status.
 	 */
-	private boolean vaccinable = true;
+	private final PersonStore store;
 
 	/**
-	 * Received vaccination type.
+	 * Slot of this person in the {@link #store}.
 	 */
-	private VaccinationType vaccinationType = VaccinationType.generic;
+	private final int slot;
 
-	/**
-	 * Individual susceptibility of a person.
-	 */
-	private double susceptibility = 1;
+	private static final DiseaseStatus[] DISEASE_STATUS = DiseaseStatus.values();
+	private static final double[] EMPTY_TIMES = new double[0];
+	private static final EpisimConfigGroup.InfectionParams[] EMPTY_PARAMS = new EpisimConfigGroup.InfectionParams[0];
+	private static final int[] EMPTY_FACILITIES = new int[0];
+	private static final FaceMask[] FACE_MASKS = FaceMask.values();
+	private static final byte NO_MASK = -1;
 
 	/**
 	 * Lookup age from attributes.
@@ -225,6 +176,9 @@ public final class EpisimPerson implements Attributable {
 		return age;
 	}
 
+	/**
+	 * Whole trajectory over all days of the week. The returned list creates the activities on access.
+	 */
 	public List<PerformedActivity> getTrajectory() {
 		return trajectory;
 	}
@@ -234,11 +188,21 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	EpisimPerson(Id<Person> personId, Attributes attrs, boolean traceable, EpisimReporting reporting) {
+		this(personId, attrs, traceable, reporting, null);
+	}
+
+	/**
+	 * Constructor with shared person store.
+	 *
+	 * @param store store for the state of all persons, or null to allocate one for this person only.
+	 */
+	EpisimPerson(Id<Person> personId, Attributes attrs, boolean traceable, EpisimReporting reporting, @Nullable PersonStore store) {
 		this.personId = personId;
 		this.attributes = attrs;
-		this.traceable = traceable;
-		this.age = getAge(attrs);
 		this.reporting = reporting;
+		this.store = store != null ? store : new PersonStore(1);
+		this.slot = store != null ? personId.index() : 0;
+		this.store.init(slot, getAge(attrs), traceable);
 	}
 
 	/**
@@ -249,17 +213,21 @@ public final class EpisimPerson implements Attributable {
 	void read(ObjectInput in, Map<Id<Person>, EpisimPerson> persons) throws IOException {
 
 		int n = in.readInt();
-		traceableContactPersons.clear();
 		for (int i = 0; i < n; i++) {
 			Id<Person> id = Id.create(readChars(in), Person.class);
-			traceableContactPersons.put(persons.get(id), in.readDouble());
+			EpisimPerson contact = persons.get(id);
+			double time = in.readDouble();
+			if (contact != null)
+				store.getContactLog().add(this, contact, time);
 		}
 
 		n = in.readInt();
-		statusChanges.clear();
+		for (DiseaseStatus status : DISEASE_STATUS) {
+			store.setStatusChange(slot, status, Double.NaN);
+		}
 		for (int i = 0; i < n; i++) {
 			int status = in.readInt();
-			statusChanges.put(DiseaseStatus.values()[status], in.readDouble());
+			store.setStatusChange(slot, DISEASE_STATUS[status], in.readDouble());
 		}
 
 		if (in.readBoolean()) {
@@ -277,23 +245,25 @@ public final class EpisimPerson implements Attributable {
 			spentTime.put(act, in.readDouble());
 		}
 
-		status = DiseaseStatus.values()[in.readInt()];
-		virusStrain = VirusStrain.values()[in.readInt()];
-		quarantineStatus = QuarantineStatus.values()[in.readInt()];
-		quarantineDate = in.readInt();
-		vaccinationStatus = VaccinationStatus.values()[in.readInt()];
-		reVaccinationStatus = VaccinationStatus.values()[in.readInt()];
-		vaccinationDate = in.readInt();
-		testStatus = TestStatus.values()[in.readInt()];
-		testDate = in.readInt();
-		traceable = in.readBoolean();
-		numInfections = in.readInt();
+		store.setDiseaseStatus(slot, DISEASE_STATUS[in.readInt()]);
+		store.setVirusStrain(slot, VirusStrain.values()[in.readInt()]);
+		store.setQuarantineStatus(slot, QuarantineStatus.values()[in.readInt()]);
+		store.setQuarantineDate(slot, in.readInt());
+		store.setVaccinationStatus(slot, VaccinationStatus.values()[in.readInt()]);
+		store.setReVaccinationStatus(slot, VaccinationStatus.values()[in.readInt()]);
+		store.setVaccinationDate(slot, in.readInt());
+		store.setTestStatus(slot, TestStatus.values()[in.readInt()]);
+		store.setTestDate(slot, in.readInt());
+		store.setTraceable(slot, in.readBoolean());
+		store.setNumInfections(slot, in.readInt());
 
 		// vaccinable, which is not restored from snapshot
 		in.readBoolean();
 
-		vaccinationType = VaccinationType.values()[in.readInt()];
-		susceptibility = in.readDouble();
+		store.setVaccinationType(slot, VaccinationType.values()[in.readInt()]);
+		store.setSusceptibility(slot, in.readDouble());
+		store.setImmunityChanged(slot);
+		store.markChanged(slot);
 	}
 
 	/**
@@ -301,16 +271,24 @@ public final class EpisimPerson implements Attributable {
 	 */
 	void write(ObjectOutput out) throws IOException {
 
-		out.writeInt(traceableContactPersons.size());
-		for (Map.Entry<EpisimPerson, Double> kv : traceableContactPersons.entrySet()) {
+		Object2DoubleMap<EpisimPerson> contacts = store.getContactLog().getContactTimes(this, Double.NEGATIVE_INFINITY);
+		out.writeInt(contacts.size());
+		for (Object2DoubleMap.Entry<EpisimPerson> kv : contacts.object2DoubleEntrySet()) {
 			writeChars(out, kv.getKey().getPersonId().toString());
-			out.writeDouble(kv.getValue());
+			out.writeDouble(kv.getDoubleValue());
 		}
 
-		out.writeInt(statusChanges.size());
-		for (Map.Entry<DiseaseStatus, Double> e : statusChanges.entrySet()) {
-			out.writeInt(e.getKey().ordinal());
-			out.writeDouble(e.getValue());
+		int n = 0;
+		for (DiseaseStatus status : DISEASE_STATUS) {
+			if (hadDiseaseStatus(status)) n++;
+		}
+
+		out.writeInt(n);
+		for (DiseaseStatus status : DISEASE_STATUS) {
+			if (hadDiseaseStatus(status)) {
+				out.writeInt(status.ordinal());
+				out.writeDouble(store.getStatusChange(slot, status));
+			}
 		}
 
 		out.writeBoolean(infectionContainer != null);
@@ -330,20 +308,20 @@ public final class EpisimPerson implements Attributable {
 			out.writeDouble(kv.getDoubleValue());
 		}
 
-		out.writeInt(status.ordinal());
-		out.writeInt(virusStrain.ordinal());
-		out.writeInt(quarantineStatus.ordinal());
-		out.writeInt(quarantineDate);
-		out.writeInt(vaccinationStatus.ordinal());
-		out.writeInt(reVaccinationStatus.ordinal());
-		out.writeInt(vaccinationDate);
-		out.writeInt(testStatus.ordinal());
-		out.writeInt(testDate);
-		out.writeBoolean(traceable);
-		out.writeInt(numInfections);
-		out.writeBoolean(vaccinable);
-		out.writeInt(vaccinationType.ordinal());
-		out.writeDouble(susceptibility);
+		out.writeInt(store.getDiseaseStatus(slot).ordinal());
+		out.writeInt(store.getVirusStrain(slot).ordinal());
+		out.writeInt(store.getQuarantineStatus(slot).ordinal());
+		out.writeInt(store.getQuarantineDate(slot));
+		out.writeInt(store.getVaccinationStatus(slot).ordinal());
+		out.writeInt(store.getReVaccinationStatus(slot).ordinal());
+		out.writeInt(store.getVaccinationDate(slot));
+		out.writeInt(store.getTestStatus(slot).ordinal());
+		out.writeInt(store.getTestDate(slot));
+		out.writeBoolean(store.isTraceable(slot));
+		out.writeInt(store.getNumInfections(slot));
+		out.writeBoolean(store.isVaccinable(slot));
+		out.writeInt(store.getVaccinationType(slot).ordinal());
+		out.writeDouble(store.getSusceptibility(slot));
 	}
 
 	public Id<Person> getPersonId() {
@@ -351,19 +329,26 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public DiseaseStatus getDiseaseStatus() {
-		return status;
+		return store.getDiseaseStatus(slot);
 	}
 
 	public void setDiseaseStatus(double now, DiseaseStatus status) {
-		this.status = status;
+		store.setDiseaseStatus(slot, status);
+		store.markChanged(slot);
+
+		if (status == DiseaseStatus.infectedButNotContagious || status == DiseaseStatus.recovered || status == DiseaseStatus.susceptible)
+			store.setImmunityChanged(slot);
 
 		// when person goes back to susceptible, old states are removed
 		if (status == DiseaseStatus.susceptible) {
-			statusChanges.keySet().removeIf(p -> p != DiseaseStatus.recovered);
+			for (DiseaseStatus s : DISEASE_STATUS) {
+				if (s != DiseaseStatus.recovered)
+					store.setStatusChange(slot, s, Double.NaN);
+			}
 		}
 
-		if (!statusChanges.containsKey(status))
-			statusChanges.put(status, now);
+		if (!hadDiseaseStatus(status))
+			store.setStatusChange(slot, status, now);
 
 		reporting.reportPersonStatus(this, new EpisimPersonStatusEvent(now, personId, status));
 	}
@@ -409,7 +394,8 @@ public final class EpisimPerson implements Attributable {
 			setVirusStrain(event.getVirusStrain());
 			infectionContainer = (Id<ActivityFacility>) event.getContainerId();
 			setInfectionType(event.getInfectionType());
-			numInfections++;
+			store.setNumInfections(slot, store.getNumInfections(slot) + 1);
+			store.setImmunityChanged(slot);
 
 			this.earliestInfection = null;
 			return event;
@@ -426,12 +412,13 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public QuarantineStatus getQuarantineStatus() {
-		return quarantineStatus;
+		return store.getQuarantineStatus(slot);
 	}
 
 	public void setQuarantineStatus(QuarantineStatus quarantineStatus, int iteration) {
-		this.quarantineStatus = quarantineStatus;
-		this.quarantineDate = iteration;
+		store.setQuarantineStatus(slot, quarantineStatus);
+		store.setQuarantineDate(slot, iteration);
+		store.markChanged(slot);
 
 		// this function should receive now instead of iteration
 		// only for testing currently
@@ -439,60 +426,70 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public void setVirusStrain(VirusStrain virusStrain) {
-		this.virusStrain = virusStrain;
+		store.setVirusStrain(slot, virusStrain);
 	}
 
 	public VirusStrain getVirusStrain() {
-		return virusStrain;
+		return store.getVirusStrain(slot);
 	}
 
 	public VaccinationStatus getVaccinationStatus() {
-		return vaccinationStatus;
+		return store.getVaccinationStatus(slot);
 	}
 
 	public VaccinationType getVaccinationType() {
-		return vaccinationType;
+		return store.getVaccinationType(slot);
 	}
 
 	public VaccinationStatus getReVaccinationStatus() {
-		return reVaccinationStatus;
+		return store.getReVaccinationStatus(slot);
 	}
 
 	public void setVaccinationStatus(VaccinationStatus vaccinationStatus, VaccinationType type, int iteration) {
 		if (vaccinationStatus != VaccinationStatus.yes) throw new IllegalArgumentException("Vaccination can only be set to yes.");
 
-		this.vaccinationType = type;
-		this.vaccinationStatus = vaccinationStatus;
-		this.vaccinationDate = iteration;
+		store.setVaccinationType(slot, type);
+		store.setVaccinationStatus(slot, vaccinationStatus);
+		store.setVaccinationDate(slot, iteration);
+		store.setImmunityChanged(slot);
 
 		reporting.reportVaccination(personId, iteration, type, false);
 	}
 
 	public void setReVaccinationStatus(VaccinationStatus vaccinationStatus, int iteration) {
-		if (this.vaccinationStatus != VaccinationStatus.yes) throw new IllegalArgumentException("First vaccination must already be present.");
+		if (getVaccinationStatus() != VaccinationStatus.yes) throw new IllegalArgumentException("First vaccination must already be present.");
 		if (vaccinationStatus != VaccinationStatus.yes) throw new IllegalArgumentException("Re-vaccination can only be set to yes.");
 
-		this.reVaccinationStatus = vaccinationStatus;
-		this.vaccinationDate = iteration;
+		store.setReVaccinationStatus(slot, vaccinationStatus);
+		store.setVaccinationDate(slot, iteration);
+		store.setImmunityChanged(slot);
 
-		reporting.reportVaccination(personId, iteration, vaccinationType,true);
+		reporting.reportVaccination(personId, iteration, getVaccinationType(),true);
 	}
 
 	public TestStatus getTestStatus() {
-		return testStatus;
+		return store.getTestStatus(slot);
 	}
 
 	public void setTestStatus(TestStatus testStatus, int iteration) {
-		this.testStatus = testStatus;
-		this.testDate = iteration;
+		store.setTestStatus(slot, testStatus);
+		store.setTestDate(slot, iteration);
+		store.markChanged(slot);
+	}
+
+	/**
+	 * Whether vaccination or infection state changed since values derived from it have been cached.
+	 */
+	public boolean isImmunityChanged() {
+		return store.isImmunityChanged(slot);
 	}
 
 	public void setSusceptibility(double susceptibility) {
-		this.susceptibility = susceptibility;
+		store.setSusceptibility(slot, susceptibility);
 	}
 
 	public double getSusceptibility() {
-		return susceptibility;
+		return store.getSusceptibility(slot);
 	}
 
 	/**
@@ -504,9 +501,10 @@ public final class EpisimPerson implements Attributable {
 	 * @throws IllegalStateException when the requested status was never set
 	 */
 	public int daysSince(DiseaseStatus status, int currentDay) {
-		if (!statusChanges.containsKey(status)) throw new IllegalStateException("Person was never " + status);
+		double time = store.getStatusChange(slot, status);
+		if (Double.isNaN(time)) throw new IllegalStateException("Person was never " + status);
 
-		double day = Math.floor(statusChanges.get(status) / EpisimUtils.DAY);
+		double day = Math.floor(time / EpisimUtils.DAY);
 
 		return currentDay - (int) day;
 	}
@@ -515,7 +513,7 @@ public final class EpisimPerson implements Attributable {
 	 * Return whether a person had (or currently has) a certain disease status.
 	 */
 	public boolean hadDiseaseStatus(DiseaseStatus status) {
-		return statusChanges.containsKey(status);
+		return !Double.isNaN(store.getStatusChange(slot, status));
 	}
 
 	/**
@@ -529,6 +527,7 @@ public final class EpisimPerson implements Attributable {
 
 		// yyyy since this API is so unstable, I would prefer to have the class non-public.  kai, apr'20
 		// -> api now marked as unstable and containing an api note, because it is used by the models it has to be public. chr, apr'20
+		int quarantineDate = store.getQuarantineDate(slot);
 		if (quarantineDate < 0) throw new IllegalStateException("Person was never quarantined");
 
 		return currentDay - quarantineDate;
@@ -541,6 +540,7 @@ public final class EpisimPerson implements Attributable {
 	 */
 	public int daysSince(VaccinationStatus status, int currentDay) {
 		if (status != VaccinationStatus.yes) throw new IllegalArgumentException("Only supports querying when person was vaccinated");
+		int vaccinationDate = store.getVaccinationDate(slot);
 		if (vaccinationDate < 0) throw new IllegalStateException("Person was never vaccinated");
 
 		return currentDay - vaccinationDate;
@@ -552,6 +552,7 @@ public final class EpisimPerson implements Attributable {
 	 * @param currentDay current day (iteration)
 	 */
 	public int daysSinceTest(int currentDay) {
+		int testDate = store.getTestDate(slot);
 		if (testDate < 0)
 			return Integer.MAX_VALUE;
 
@@ -562,21 +563,21 @@ public final class EpisimPerson implements Attributable {
 	 * Number of times person was infected.
 	 */
 	public int getNumInfections() {
-		return numInfections;
+		return store.getNumInfections(slot);
 	}
 
 	/**
 	 * Whether this person is handled as a recovered person.
 	 */
 	public boolean isRecentlyRecovered(int currentDay) {
-		return status == DiseaseStatus.recovered || (status == DiseaseStatus.susceptible && numInfections >= 1 && daysSince(DiseaseStatus.recovered, currentDay) <= 180);
+		DiseaseStatus status = getDiseaseStatus();
+		return status == DiseaseStatus.recovered || (status == DiseaseStatus.susceptible && getNumInfections() >= 1 && daysSince(DiseaseStatus.recovered, currentDay) <= 180);
 	}
 
-	public synchronized void addTraceableContactPerson(EpisimPerson personWrapper, double now) {
+	public void addTraceableContactPerson(EpisimPerson personWrapper, double now) {
 		// check if both persons have tracing capability
 		if (isTraceable() && personWrapper.isTraceable()) {
-			// Always use the latest tracking date
-			traceableContactPersons.put(personWrapper, now);
+			store.getContactLog().add(this, personWrapper, now);
 			reporting.reportTracing(now, this, personWrapper);
 		}
 	}
@@ -584,73 +585,118 @@ public final class EpisimPerson implements Attributable {
 	/**
 	 * Get all traced contacts that happened after certain time.
 	 */
-	public synchronized List<EpisimPerson> getTraceableContactPersons(double after) {
-		// needs to be sorted or results will be non deterministic with multithreading
-		return traceableContactPersons.object2DoubleEntrySet()
-				.stream().filter(p -> p.getDoubleValue() >= after)
-				.map(Map.Entry::getKey)
-				.sorted(Comparator.comparing(EpisimPerson::getPersonId))
-				.collect(Collectors.toList());
+	public List<EpisimPerson> getTraceableContactPersons(double after) {
+		return store.getContactLog().getContacts(this, after);
+	}
 
-		// yyyy if the computationally intensive operation is to search by time, we should sort traceableContactPersons by time.  To simplify this, I
-		// would argue that it is not a problem to have a person in there multiple times.  kai, may'20
+	/**
+	 * Returns whether the person can be traced.
+	 */
+	public boolean isTraceable() {
+		return store.isTraceable(slot);
+	}
+
+	void setTraceable(boolean traceable) {
+		store.setTraceable(slot, traceable);
+	}
+
+	public boolean isVaccinable() {
+		return store.isVaccinable(slot);
+	}
 
+	/**
+	 * Set vaccinable status.
+	 */
+	public void setVaccinable(boolean vaccinable) {
+		store.setVaccinable(slot, vaccinable);
 	}
 
 	/**
-	 * Remove old contact tracing data before a certain date.
+	 * Append an activity to the trajectory.
+	 *
+	 * @return position of the new activity in the trajectory
 	 */
-	public void clearTraceableContractPersons(double before) {
+	public int addToTrajectory(double time, EpisimConfigGroup.InfectionParams trajectoryElement, Id<ActivityFacility> facilityId) {
 
-		int oldSize = traceableContactPersons.size();
+		if (trajectorySize == activityTimes.length) {
+			int n = Math.max(4, activityTimes.length * 2);
+			activityTimes = Arrays.copyOf(activityTimes, n);
+			activityParams = Arrays.copyOf(activityParams, n);
+			activityFacilities = Arrays.copyOf(activityFacilities, n);
+		}
 
-		if (oldSize == 0) return;
+		activityTimes[trajectorySize] = time;
+		activityParams[trajectorySize] = trajectoryElement;
+		activityFacilities[trajectorySize] = facilityId == null ? -1 : facilityId.index();
 
-		traceableContactPersons.keySet().removeIf(k -> traceableContactPersons.getDouble(k) < before);
+		return trajectorySize++;
 	}
 
 	/**
-	 * Returns whether the person can be traced.
+	 * Release unused capacity of the trajectory, after it has been fully initialized.
 	 */
-	public boolean isTraceable() {
-		return traceable;
+	void trimTrajectory() {
+		if (trajectorySize < activityTimes.length) {
+			activityTimes = Arrays.copyOf(activityTimes, trajectorySize);
+			activityParams = Arrays.copyOf(activityParams, trajectorySize);
+			activityFacilities = Arrays.copyOf(activityFacilities, trajectorySize);
+		}
 	}
 
-	void setTraceable(boolean traceable) {
-		this.traceable = traceable;
+	/**
+	 * Create the activity at position {@code i} of the trajectory.
+	 * Prefer the index based accessors, which don't allocate, in frequently called code.
+	 */
+	private PerformedActivity getTrajectoryElement(int i) {
+		return new PerformedActivity(getActivityTime(i), getActivityParams(i), getActivityFacility(i));
 	}
 
-	public boolean isVaccinable() {
-		return vaccinable;
+	/**
+	 * Starting time of the activity at position {@code i} of the trajectory.
+	 */
+	public double getActivityTime(int i) {
+		Objects.checkIndex(i, trajectorySize);
+		return activityTimes[i];
 	}
 
 	/**
-	 * Set vaccinable status.
+	 * Params of the activity at position {@code i} of the trajectory.
 	 */
-	public void setVaccinable(boolean vaccinable) {
-		this.vaccinable = vaccinable;
+	public EpisimConfigGroup.InfectionParams getActivityParams(int i) {
+		Objects.checkIndex(i, trajectorySize);
+		return activityParams[i];
 	}
 
-	public PerformedActivity addToTrajectory(double time, EpisimConfigGroup.InfectionParams trajectoryElement, Id<ActivityFacility> facilityId) {
-		PerformedActivity act = new PerformedActivity(time, trajectoryElement, facilityId);
-		trajectory.add(act);
-		return act;
+	/**
+	 * Facility of the activity at position {@code i} of the trajectory, null if there is none.
+	 */
+	@Nullable
+	public Id<ActivityFacility> getActivityFacility(int i) {
+		Objects.checkIndex(i, trajectorySize);
+		int facility = activityFacilities[i];
+		return facility < 0 ? null : Id.get(facility, ActivityFacility.class);
 	}
 
 
 	void setStartOfDay(DayOfWeek day) {
-		startOfDay[day.getValue() - 1] = trajectory.size();
+		startOfDay[day.getValue() - 1] = trajectorySize;
 	}
 
-	int getStartOfDay(DayOfWeek day) {
+	/**
+	 * Position in the trajectory of the first activity of a day.
+	 */
+	public int getStartOfDay(DayOfWeek day) {
 		return startOfDay[day.getValue() - 1];
 	}
 
 	void setEndOfDay(DayOfWeek day) {
-		endOfDay[day.getValue() - 1] = trajectory.size();
+		endOfDay[day.getValue() - 1] = trajectorySize;
 	}
 
-	int getEndOfDay(DayOfWeek day) {
+	/**
+	 * Position in the trajectory after the last activity of a day.
+	 */
+	public int getEndOfDay(DayOfWeek day) {
 		return endOfDay[day.getValue() - 1];
 	}
 
@@ -665,7 +711,7 @@ public final class EpisimPerson implements Attributable {
 
 		T result = defaultValue;
 		for (int i = getStartOfDay(day); i < getEndOfDay(day); i++) {
-			String act = trajectory.get(i).params.getContainerName();
+			String act = activityParams[i].getContainerName();
 			if (activityParticipation.get(i) && activities.contains(act))
 				result = reduce.apply(act, result);
 		}
@@ -679,21 +725,77 @@ public final class EpisimPerson implements Attributable {
 	 * Used during initialization. After that it should always return true.
 	 */
 	boolean hasActivity(DayOfWeek day) {
-		return getStartOfDay(day) < trajectory.size();
+		return getStartOfDay(day) < trajectorySize;
 	}
 
 	/**
 	 * Init participation bit set.
 	 */
 	void initParticipation() {
-		activityParticipation = new BitSet(trajectory.size());
-		activityParticipation.set(0, trajectory.size(), true);
+		activityParticipation = new BitSet(trajectorySize);
+		activityParticipation.set(0, trajectorySize, true);
 	}
 
 	public BitSet getActivityParticipation() {
 		return activityParticipation;
 	}
 
+	/**
+	 * Assign the face mask worn during the {@code i}-th activity of a day.
+	 *
+	 * @param mask worn mask, or null to remove the assignment
+	 */
+	public void setFaceMask(DayOfWeek day, int i, @Nullable FaceMask mask) {
+		int idx = getStartOfDay(day) + i;
+		Objects.checkIndex(idx, getEndOfDay(day));
+		setFaceMaskInternal(idx, mask);
+	}
+
+	/**
+	 * Assign the face mask worn during all trips of the current day.
+	 *
+	 * @param mask worn mask, or null to remove the assignment
+	 */
+	public void setTripFaceMask(@Nullable FaceMask mask) {
+		setFaceMaskInternal(trajectorySize, mask);
+	}
+
+	private void setFaceMaskInternal(int idx, @Nullable FaceMask mask) {
+		if (faceMasks == null || faceMasks.length != trajectorySize + 1) {
+			faceMasks = new byte[trajectorySize + 1];
+			Arrays.fill(faceMasks, NO_MASK);
+		}
+
+		faceMasks[idx] = mask == null ? NO_MASK : (byte) mask.ordinal();
+	}
+
+	/**
+	 * Face mask assigned to an activity.
+	 *
+	 * @param activity position in the trajectory, see {@link #getActivityIndex(DayOfWeek, double)}
+	 * @return assigned mask, or null if there is no assignment
+	 */
+	@Nullable
+	public FaceMask getFaceMask(int activity) {
+		if (faceMasks == null || faceMasks.length != trajectorySize + 1 || activity < 0 || activity >= trajectorySize)
+			return null;
+
+		return faceMasks[activity] == NO_MASK ? null : FACE_MASKS[faceMasks[activity]];
+	}
+
+	/**
+	 * Face mask assigned to the trips of the current day.
+	 *
+	 * @return assigned mask, or null if there is no assignment
+	 */
+	@Nullable
+	public FaceMask getTripFaceMask() {
+		if (faceMasks == null || faceMasks.length != trajectorySize + 1 || faceMasks[trajectorySize] == NO_MASK)
+			return null;
+
+		return FACE_MASKS[faceMasks[trajectorySize]];
+	}
+
 	/**
 	 * Defines that day {@code target} has the same trajectory as {@code source}.
 	 */
@@ -709,7 +811,11 @@ public final class EpisimPerson implements Attributable {
 	 * Reset all trajectory information
 	 */
 	void resetTrajectory() {
-		trajectory.clear();
+		activityTimes = EMPTY_TIMES;
+		activityParams = EMPTY_PARAMS;
+		activityFacilities = EMPTY_FACILITIES;
+		faceMasks = null;
+		trajectorySize = 0;
 		Arrays.fill(startOfDay, 0);
 		Arrays.fill(endOfDay, 0);
 		Arrays.fill(firstFacilityId, null);
@@ -722,7 +828,70 @@ public final class EpisimPerson implements Attributable {
 		return attributes;
 	}
 
+	/**
+	 * Index of the district attribute of this person, or -1 if not present.
+	 * The attribute is resolved on first access.
+	 */
+	public int getDistrictIndex() {
+		int idx = store.getDistrict(slot);
+		if (idx == PersonStore.UNRESOLVED) {
+			Object district = attributes.getAttribute("district");
+			idx = district == null ? -1 : store.getDistricts().index(district.toString());
+			store.setDistrict(slot, idx);
+		}
+		return idx;
+	}
+
+	/**
+	 * District of this person, or null if not present.
+	 */
+	@Nullable
+	public String getDistrict() {
+		int idx = getDistrictIndex();
+		return idx < 0 ? null : store.getDistricts().get(idx);
+	}
+
+	/**
+	 * Resolves the encoded household index on first access.
+	 */
+	private int resolveHousehold() {
+		int value = store.getHousehold(slot);
+		if (value == PersonStore.UNRESOLVED) {
+			Object home = attributes.getAttribute("homeId");
+			// persons without home get an index of their own
+			int idx = home != null ? store.getHouseholds().index(home.toString()) : store.getHouseholds().reserve();
+			value = (idx << 1) | (home != null ? 1 : 0);
+			store.setHousehold(slot, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Dense index of the household of this person, which is defined by the home id attribute.
+	 * Persons without home id form their own household. Indices are only comparable between persons of the same simulation.
+	 */
+	public int getHouseholdIndex() {
+		return resolveHousehold() >>> 1;
+	}
+
+	/**
+	 * Home id attribute of this person, or null if not present.
+	 */
+	@Nullable
+	public String getHomeId() {
+		int value = resolveHousehold();
+		return (value & 1) != 0 ? store.getHouseholds().get(value >>> 1) : null;
+	}
+
+	/**
+	 * Whether this person has a home id attribute.
+	 */
+	public boolean hasHomeId() {
+		return (resolveHousehold() & 1) != 0;
+	}
+
 	public int getAge() {
+		int age = store.getAge(slot);
 		assert age != -1 : "Person=" + getPersonId().toString() + " has no age.";
 		assert age >= 0 && age <= 120 : "Age of person=" + getPersonId().toString() + " is not plausible. Age is=" + age;
 
@@ -733,6 +902,7 @@ public final class EpisimPerson implements Attributable {
 	 * Return the age of a person or the default age if no age is specified.
 	 */
 	public int getAgeOrDefault(int defaultAge) {
+		int age = store.getAge(slot);
 		return age != -1 ? age : defaultAge;
 	}
 
@@ -794,23 +964,38 @@ public final class EpisimPerson implements Attributable {
 				'}';
 	}
 
+	/**
+	 * Find the last activity of the day that started at or before {@code time}.
+	 * The first activity is returned if none started before.
+	 */
 	private int findActivity(DayOfWeek day, double time) {
-		// do a linear search for matching activity
-		int last = getEndOfDay(day) - 1;
-		for (int i = getStartOfDay(day); i < last; i++) {
-			if (trajectory.get(i + 1).time > time)
-				return i;
+		// binary search for the first following activity starting after time
+		int lo = getStartOfDay(day) + 1;
+		int hi = getEndOfDay(day);
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (activityTimes[mid] > time)
+				hi = mid;
+			else
+				lo = mid + 1;
 		}
-		return last;
+		return lo - 1;
 	}
 
+	/**
+	 * Find the activity that is followed by the first activity starting at or after {@code time}.
+	 */
 	private int findFirstActivity(DayOfWeek day, double time) {
-		int last = getEndOfDay(day) - 1;
-		for (int i = getStartOfDay(day); i < last; i++) {
-			if (trajectory.get(i + 1).time >= time)
-				return i;
+		int lo = getStartOfDay(day) + 1;
+		int hi = getEndOfDay(day);
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (activityTimes[mid] >= time)
+				hi = mid;
+			else
+				lo = mid + 1;
 		}
-		return last;
+		return lo - 1;
 	}
 
 	/**
@@ -836,6 +1021,9 @@ public final class EpisimPerson implements Attributable {
 		return true;
 	}
 
+	/**
+	 * Activities of a day. The returned list creates the activities on access.
+	 */
 	public List<PerformedActivity> getActivities(DayOfWeek day) {
 		int offset = getStartOfDay(day);
 		return trajectory.subList(offset, getEndOfDay(day));
@@ -846,22 +1034,18 @@ public final class EpisimPerson implements Attributable {
 	 * Return the first activity of a person for specific day.
 	 */
 	PerformedActivity getFirstActivity(DayOfWeek day) {
-		return trajectory.get(getStartOfDay(day));
+		return getTrajectoryElement(getStartOfDay(day));
 	}
 
 	PerformedActivity getLastActivity(DayOfWeek day) {
-		return trajectory.get(getEndOfDay(day) - 1);
+		return getTrajectoryElement(getEndOfDay(day) - 1);
 	}
 
 	/**
 	 * Get the activity normally performed by a person on a specific day and time.
 	 */
 	public PerformedActivity getActivity(DayOfWeek day, double time) {
-
-		assert getStartOfDay(day) >= 0;
-		assert getEndOfDay(day) <= trajectory.size();
-
-		return trajectory.get(findActivity(day, time));
+		return getTrajectoryElement(getActivityIndex(day, time));
 	}
 
 	/**
@@ -871,12 +1055,51 @@ public final class EpisimPerson implements Attributable {
 	 */
 	@Nullable
 	public PerformedActivity getNextActivity(DayOfWeek day, double time) {
+		int idx = getNextActivityIndex(day, time);
+		return idx >= 0 ? getTrajectoryElement(idx) : null;
+	}
+
+	/**
+	 * Position in the trajectory of the activity normally performed on a specific day and time.
+	 *
+	 * @see #getActivity(DayOfWeek, double)
+	 */
+	public int getActivityIndex(DayOfWeek day, double time) {
+
+		assert getStartOfDay(day) >= 0;
+		assert getEndOfDay(day) <= trajectorySize;
+
+		return findActivity(day, time);
+	}
+
+	/**
+	 * Position in the trajectory of the next activity, or -1 if there is none.
+	 *
+	 * @see #getNextActivity(DayOfWeek, double)
+	 */
+	public int getNextActivityIndex(DayOfWeek day, double time) {
 		int idx = findActivity(day, time);
 
 		if (idx < getEndOfDay(day) - 1)
-			return trajectory.get(idx + 1);
+			return idx + 1;
 
-		return null;
+		return -1;
+	}
+
+	/**
+	 * Read-only list view of the trajectory.
+	 */
+	private final class TrajectoryList extends AbstractList<PerformedActivity> implements RandomAccess {
+
+		@Override
+		public PerformedActivity get(int index) {
+			return getTrajectoryElement(index);
+		}
+
+		@Override
+		public int size() {
+			return trajectorySize;
+		}
 	}
 
 	/**
@@ -951,9 +1174,9 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	/**
-	 * Not further specified activity that is used during initialization.
+	 * Trajectory position used for containers where no activity is performed, e.g. vehicles.
 	 */
-	static final PerformedActivity UNSPECIFIC_ACTIVITY = new PerformedActivity(Double.NaN, null, null);
+	static final int UNSPECIFIC_ACTIVITY = -1;
 
     /**
 	 * If the ContagiousOptimization is enabled, containers count how many
@@ -963,6 +1186,7 @@ public final class EpisimPerson implements Attributable {
 	 * inform other persons later thanks to tracking).
 	 */
 	public boolean infectedButNotSerious() {
+		DiseaseStatus status = getDiseaseStatus();
 		return (status == DiseaseStatus.infectedButNotContagious ||
 				status == DiseaseStatus.contagious ||
 				status == DiseaseStatus.showingSymptoms);
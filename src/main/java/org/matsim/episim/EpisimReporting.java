@@ -294,14 +294,24 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		InfectionReport report = new InfectionReport("total", time, date, iteration);
 		reports.put("total", report);
 
+		// reports by district index, shifted by one for the unknown district
+		InfectionReport[] districts = new InfectionReport[16];
+
 		for (EpisimPerson person : persons) {
-			String districtName = (String) person.getAttributes().getAttribute("district");
+			int districtIdx = person.getDistrictIndex() + 1;
 
 			boolean isVaccinated = isVaccinated(person);
 
+			if (districtIdx >= districts.length)
+				districts = Arrays.copyOf(districts, Math.max(districtIdx + 1, districts.length * 2));
+
 			// Also aggregate by district
-			InfectionReport district = reports.computeIfAbsent(districtName == null ? "unknown"
-					: districtName, name -> new InfectionReport(name, report.time, report.date, report.day));
+			InfectionReport district = districts[districtIdx];
+			if (district == null) {
+				String districtName = districtIdx == 0 ? "unknown" : person.getDistrict();
+				district = reports.computeIfAbsent(districtName, name -> new InfectionReport(name, report.time, report.date, report.day));
+				districts[districtIdx] = district;
+			}
 			switch (person.getDiseaseStatus()) {
 				case susceptible:
 					report.nSusceptible++;
@@ -607,11 +617,11 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 * @see EpisimContactEvent
 	 */
 	public synchronized void reportContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
-	                                       StringBuilder actType, double duration) {
+	                                       String actType, double duration) {
 
 		if (writeEvents == EpisimConfigGroup.WriteEvents.tracing || writeEvents == EpisimConfigGroup.WriteEvents.all) {
 			manager.processEvent(new EpisimContactEvent(now, person.getPersonId(), contactPerson.getPersonId(), container.getContainerId(),
-					actType.toString(), duration, container.getPersons().size()));
+					actType, duration, container.getPersons().size()));
 		}
 
 	}
@@ -674,7 +684,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		if (newStatus == EpisimPerson.DiseaseStatus.infectedButNotContagious || newStatus == EpisimPerson.DiseaseStatus.seriouslySick ||
 				newStatus == EpisimPerson.DiseaseStatus.contagious || newStatus == EpisimPerson.DiseaseStatus.showingSymptoms ||
 				newStatus == EpisimPerson.DiseaseStatus.critical || newStatus == EpisimPerson.DiseaseStatus.recovered) {
-			String districtName = (String) person.getAttributes().getAttribute("district");
+			String districtName = person.getDistrict();
 			cumulativeCases.get(newStatus).mergeInt(districtName == null ? "unknown" : districtName, 1, Integer::sum);
 
 			if (isVaccinated(person))
@@ -94,7 +94,7 @@ public final class EpisimRunner {
 
 		ControlerUtils.checkConfigConsistencyAndWriteToLog(config, "Just before starting iterations");
 
-		handler.init(replay.getEvents());
+		handler.init(replay.getEventStores());
 
 		Path output = Path.of(config.controler().getOutputDirectory());
 
@@ -137,13 +137,7 @@ public final class EpisimRunner {
 	 * @param events
 	 */
 	public void updateEvents(Map<DayOfWeek, List<Event>> events) {
-
-		ReplayHandler replay = replayProvider.get();
-
-		replay.setEvents(events);
-
-		InfectionEventHandler handler = handlerProvider.get();
-		handler.updateEvents(events);
+		updateEventStores(EventStore.of(events));
 	}
 
 	/**
@@ -151,8 +145,17 @@ public final class EpisimRunner {
 	 */
 	public void updateEvents(EpisimConfigGroup config) {
 		ReplayHandler replay = replayProvider.get();
-		Map<DayOfWeek, List<Event>> events = replay.readEvents(config);
-		updateEvents(events);
+		updateEventStores(replay.readEvents(config));
+	}
+
+	private void updateEventStores(Map<DayOfWeek, EventStore> events) {
+
+		ReplayHandler replay = replayProvider.get();
+
+		replay.setEvents(events);
+
+		InfectionEventHandler handler = handlerProvider.get();
+		handler.updateEvents(events);
 	}
 
 	/**
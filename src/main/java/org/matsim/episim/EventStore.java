@@ -0,0 +1,472 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * Compact storage of the events of one day. All event attributes are held in parallel primitive buffers,
+ * ids are stored by their {@link Id#index()} and activity types as index into a table of interned strings.
+ * Buffers are heap backed while events are added, stores read from the {@link EventStoreCache} use memory mapped buffers.
+ * <p>
+ * Only the event types used by episim are supported, i.e. activity start and end, as well as persons entering and leaving vehicles.
+ * Events have to be added in time order.
+ */
+public final class EventStore {
+
+	/**
+	 * Event kinds.
+	 */
+	public static final byte ACTIVITY_START = 0;
+	public static final byte ACTIVITY_END = 1;
+	public static final byte ENTERS_VEHICLE = 2;
+	public static final byte LEAVES_VEHICLE = 3;
+
+	/**
+	 * Marker for missing ids.
+	 */
+	private static final int NONE = -1;
+
+	private ByteBuffer kind;
+	private DoubleBuffer time;
+	private IntBuffer person;
+
+	/**
+	 * Index of the facility or vehicle id, depending on the event kind.
+	 */
+	private IntBuffer container;
+	private IntBuffer actType;
+	private IntBuffer link;
+
+	/**
+	 * Coordinates are only allocated if present in any of the events. Missing values are NaN.
+	 */
+	private DoubleBuffer x;
+	private DoubleBuffer y;
+
+	private int size = 0;
+
+	/**
+	 * Activity types and their index.
+	 */
+	private final List<String> actTypes = new ArrayList<>();
+	private final Object2IntMap<String> actTypeIndex = new Object2IntOpenHashMap<>();
+
+	/**
+	 * Create an empty store.
+	 */
+	public EventStore() {
+		this(1024);
+	}
+
+	/**
+	 * Create an empty store with initial capacity.
+	 */
+	public EventStore(int capacity) {
+		capacity = Math.max(capacity, 16);
+		kind = ByteBuffer.allocate(capacity);
+		time = DoubleBuffer.allocate(capacity);
+		person = IntBuffer.allocate(capacity);
+		container = IntBuffer.allocate(capacity);
+		actType = IntBuffer.allocate(capacity);
+		link = IntBuffer.allocate(capacity);
+		actTypeIndex.defaultReturnValue(NONE);
+	}
+
+	/**
+	 * Create a store from existing columns, which are used without copying. Columns are accessed by absolute index.
+	 */
+	EventStore(int size, ByteBuffer kind, DoubleBuffer time, IntBuffer person, IntBuffer container, IntBuffer actType, IntBuffer link,
+			   @Nullable DoubleBuffer x, @Nullable DoubleBuffer y, List<String> actTypes) {
+		this.size = size;
+		this.kind = kind;
+		this.time = time;
+		this.person = person;
+		this.container = container;
+		this.actType = actType;
+		this.link = link;
+		this.x = x;
+		this.y = y;
+		this.actTypeIndex.defaultReturnValue(NONE);
+		for (String type : actTypes) {
+			actTypeIndex(type);
+		}
+	}
+
+	/**
+	 * Create a store from a list of events.
+	 */
+	public static EventStore of(List<Event> events) {
+		EventStore store = new EventStore(events.size());
+		events.forEach(store::add);
+		return store;
+	}
+
+	/**
+	 * Converts events of all days. Days sharing the same event list will also share the same store.
+	 */
+	public static Map<DayOfWeek, EventStore> of(Map<DayOfWeek, List<Event>> events) {
+		Map<DayOfWeek, EventStore> result = new EnumMap<>(DayOfWeek.class);
+		Map<List<Event>, EventStore> sameDay = new IdentityHashMap<>(7);
+
+		for (Map.Entry<DayOfWeek, List<Event>> e : events.entrySet()) {
+			result.put(e.getKey(), sameDay.computeIfAbsent(e.getValue(), EventStore::of));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Materialize all days as event lists. Days sharing the same store will also share the same list.
+	 *
+	 * @see #asList()
+	 */
+	public static Map<DayOfWeek, List<Event>> asLists(Map<DayOfWeek, EventStore> events) {
+		Map<DayOfWeek, List<Event>> result = new EnumMap<>(DayOfWeek.class);
+		Map<EventStore, List<Event>> sameDay = new IdentityHashMap<>(7);
+
+		for (Map.Entry<DayOfWeek, EventStore> e : events.entrySet()) {
+			result.put(e.getKey(), sameDay.computeIfAbsent(e.getValue(), EventStore::asList));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Append an event to this store.
+	 *
+	 * @throws IllegalArgumentException if the event type is not supported.
+	 */
+	void add(Event event) {
+
+		ensureCapacity(size + 1);
+
+		int i = size;
+		time.put(i, event.getTime());
+		actType.put(i, NONE);
+		link.put(i, NONE);
+
+		if (event instanceof ActivityStartEvent) {
+			ActivityStartEvent e = (ActivityStartEvent) event;
+			kind.put(i, ACTIVITY_START);
+			person.put(i, e.getPersonId().index());
+			container.put(i, index(e.getFacilityId()));
+			actType.put(i, actTypeIndex(e.getActType()));
+			link.put(i, index(e.getLinkId()));
+			setCoord(i, e.getCoord());
+		} else if (event instanceof ActivityEndEvent) {
+			ActivityEndEvent e = (ActivityEndEvent) event;
+			kind.put(i, ACTIVITY_END);
+			person.put(i, e.getPersonId().index());
+			container.put(i, index(e.getFacilityId()));
+			actType.put(i, actTypeIndex(e.getActType()));
+			link.put(i, index(e.getLinkId()));
+		} else if (event instanceof PersonEntersVehicleEvent) {
+			PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) event;
+			kind.put(i, ENTERS_VEHICLE);
+			person.put(i, e.getPersonId().index());
+			container.put(i, e.getVehicleId().index());
+		} else if (event instanceof PersonLeavesVehicleEvent) {
+			PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) event;
+			kind.put(i, LEAVES_VEHICLE);
+			person.put(i, e.getPersonId().index());
+			container.put(i, e.getVehicleId().index());
+		} else
+			throw new IllegalArgumentException("Unsupported event type: " + event.getEventType());
+
+		size++;
+	}
+
+	private static int index(Id<?> id) {
+		return id == null ? NONE : id.index();
+	}
+
+	private int actTypeIndex(String type) {
+		int idx = actTypeIndex.getInt(type);
+		if (idx == NONE) {
+			idx = actTypes.size();
+			actTypes.add(type.intern());
+			actTypeIndex.put(type, idx);
+		}
+		return idx;
+	}
+
+	private void setCoord(int i, Coord coord) {
+		if (coord == null) {
+			if (x != null) {
+				x.put(i, Double.NaN);
+				y.put(i, Double.NaN);
+			}
+			return;
+		}
+
+		allocateCoords();
+
+		x.put(i, coord.getX());
+		y.put(i, coord.getY());
+	}
+
+	private void allocateCoords() {
+		if (x == null) {
+			x = DoubleBuffer.allocate(kind.capacity());
+			y = DoubleBuffer.allocate(kind.capacity());
+			fill(x, 0, x.capacity(), Double.NaN);
+			fill(y, 0, y.capacity(), Double.NaN);
+		}
+	}
+
+	/**
+	 * Append all events of another store, which must not be earlier than the events already present.
+	 */
+	void addAll(EventStore other) {
+
+		int n = other.size;
+		ensureCapacity(size + n);
+
+		kind.duplicate().position(size).put(other.kind.duplicate().position(0).limit(n));
+		time.duplicate().position(size).put(other.time.duplicate().position(0).limit(n));
+		person.duplicate().position(size).put(other.person.duplicate().position(0).limit(n));
+		container.duplicate().position(size).put(other.container.duplicate().position(0).limit(n));
+		link.duplicate().position(size).put(other.link.duplicate().position(0).limit(n));
+
+		// activity types need to be re-indexed
+		for (int i = 0; i < n; i++) {
+			int type = other.actType.get(i);
+			actType.put(size + i, type == NONE ? NONE : actTypeIndex(other.actTypes.get(type)));
+		}
+
+		if (other.x != null) {
+			allocateCoords();
+			x.duplicate().position(size).put(other.x.duplicate().position(0).limit(n));
+			y.duplicate().position(size).put(other.y.duplicate().position(0).limit(n));
+		} else if (x != null) {
+			fill(x, size, size + n, Double.NaN);
+			fill(y, size, size + n, Double.NaN);
+		}
+
+		size += n;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= kind.capacity())
+			return;
+
+		resize(Math.max(capacity, kind.capacity() + (kind.capacity() >> 1)));
+	}
+
+	/**
+	 * Copy the columns into new heap buffers. Entries after {@link #size} are not retained.
+	 */
+	private void resize(int capacity) {
+		int n = Math.min(size, capacity);
+
+		kind = ByteBuffer.allocate(capacity).put(kind.duplicate().position(0).limit(n)).clear();
+		time = DoubleBuffer.allocate(capacity).put(time.duplicate().position(0).limit(n)).clear();
+		person = IntBuffer.allocate(capacity).put(person.duplicate().position(0).limit(n)).clear();
+		container = IntBuffer.allocate(capacity).put(container.duplicate().position(0).limit(n)).clear();
+		actType = IntBuffer.allocate(capacity).put(actType.duplicate().position(0).limit(n)).clear();
+		link = IntBuffer.allocate(capacity).put(link.duplicate().position(0).limit(n)).clear();
+
+		if (x != null) {
+			x = DoubleBuffer.allocate(capacity).put(x.duplicate().position(0).limit(n)).clear();
+			y = DoubleBuffer.allocate(capacity).put(y.duplicate().position(0).limit(n)).clear();
+			fill(x, n, capacity, Double.NaN);
+			fill(y, n, capacity, Double.NaN);
+		}
+	}
+
+	private static void fill(DoubleBuffer buffer, int from, int to, double value) {
+		for (int i = from; i < to; i++) {
+			buffer.put(i, value);
+		}
+	}
+
+	/**
+	 * Release unused capacity.
+	 */
+	void trimToSize() {
+		if (size < kind.capacity())
+			resize(size);
+	}
+
+	/**
+	 * Number of events.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Kind of the event, one of the constants defined in this class.
+	 */
+	public byte getKind(int i) {
+		return kind.get(i);
+	}
+
+	public double getTime(int i) {
+		return time.get(i);
+	}
+
+	/**
+	 * {@link Id#index()} of the person.
+	 */
+	public int getPersonIndex(int i) {
+		return person.get(i);
+	}
+
+	public Id<Person> getPersonId(int i) {
+		return Id.get(person.get(i), Person.class);
+	}
+
+	/**
+	 * Index of the facility or vehicle id, depending on {@link #getKind(int)}.
+	 */
+	public int getContainerIndex(int i) {
+		return container.get(i);
+	}
+
+	/**
+	 * Facility of an activity event.
+	 */
+	public Id<ActivityFacility> getFacilityId(int i) {
+		assert kind.get(i) == ACTIVITY_START || kind.get(i) == ACTIVITY_END : "Event is not an activity event";
+		int idx = container.get(i);
+		return idx == NONE ? null : Id.get(idx, ActivityFacility.class);
+	}
+
+	/**
+	 * Vehicle of a vehicle event.
+	 */
+	public Id<Vehicle> getVehicleId(int i) {
+		assert kind.get(i) == ENTERS_VEHICLE || kind.get(i) == LEAVES_VEHICLE : "Event is not a vehicle event";
+		return Id.get(container.get(i), Vehicle.class);
+	}
+
+	/**
+	 * {@link Id#index()} of the link, negative if not present.
+	 */
+	int getLinkIndex(int i) {
+		return link.get(i);
+	}
+
+	/**
+	 * Whether coordinates are stored.
+	 */
+	boolean hasCoords() {
+		return x != null;
+	}
+
+	/**
+	 * X coordinate, NaN if not present.
+	 */
+	double getX(int i) {
+		return x == null ? Double.NaN : x.get(i);
+	}
+
+	/**
+	 * Y coordinate, NaN if not present.
+	 */
+	double getY(int i) {
+		return y == null ? Double.NaN : y.get(i);
+	}
+
+	/**
+	 * Index of the activity type, see {@link #getActTypes()}. Negative for non activity events.
+	 */
+	public int getActTypeIndex(int i) {
+		return actType.get(i);
+	}
+
+	/**
+	 * Activity type of an activity event, or null.
+	 */
+	public String getActType(int i) {
+		int idx = actType.get(i);
+		return idx == NONE ? null : actTypes.get(idx);
+	}
+
+	/**
+	 * All (interned) activity types occurring in this store.
+	 */
+	public List<String> getActTypes() {
+		return Collections.unmodifiableList(actTypes);
+	}
+
+	/**
+	 * Creates a new event object for the event at index {@code i}.
+	 * This should only be used when event objects are really needed, e.g. for writing.
+	 */
+	public Event getEvent(int i) {
+
+		Id<Person> personId = getPersonId(i);
+		double time = getTime(i);
+		int link = getLinkIndex(i);
+
+		switch (getKind(i)) {
+			case ACTIVITY_START:
+				Coord coord = !Double.isNaN(getX(i)) ? new Coord(getX(i), getY(i)) : null;
+				return new ActivityStartEvent(time, personId, link == NONE ? null : Id.get(link, Link.class),
+						getFacilityId(i), getActType(i), coord);
+			case ACTIVITY_END:
+				return new ActivityEndEvent(time, personId, link == NONE ? null : Id.get(link, Link.class),
+						getFacilityId(i), getActType(i));
+			case ENTERS_VEHICLE:
+				return new PersonEntersVehicleEvent(time, personId, getVehicleId(i));
+			case LEAVES_VEHICLE:
+				return new PersonLeavesVehicleEvent(time, personId, getVehicleId(i));
+			default:
+				throw new IllegalStateException("Unknown event kind: " + getKind(i));
+		}
+	}
+
+	/**
+	 * Read-only view of this store as list of events. Each access creates a new event object.
+	 */
+	public List<Event> asList() {
+		return new AbstractList<>() {
+			@Override
+			public Event get(int index) {
+				Objects.checkIndex(index, size);
+				return getEvent(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+}
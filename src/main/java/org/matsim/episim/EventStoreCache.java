@@ -0,0 +1,342 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary cache of preprocessed {@link EventStore}s. The cache files are written next to the input event files,
+ * and are read via memory mapping, which is much faster than parsing the xml events again.
+ * <p>
+ * Cache files are identified by a hash of the content of their inputs, so they are invalidated when an input changes,
+ * regardless of its path or modification time.
+ * <p>
+ * Columns are mapped without copying and used directly by the {@link EventStore}.
+ * Because {@link Id#index()} is not stable between JVM runs, ids are written as string tables and the id columns are re-mapped on reading.
+ * These columns are mapped privately, so that only their pages are copied when they are re-mapped.
+ */
+final class EventStoreCache {
+
+	private static final Logger log = LogManager.getLogger(EventStoreCache.class);
+
+	/**
+	 * Needs to be increased whenever the file format or the preprocessing of events changes.
+	 */
+	private static final int VERSION = 2;
+	private static final int MAGIC = 0x45504943;
+
+	/**
+	 * Size of the header, which is padded so that all columns are aligned.
+	 */
+	private static final int HEADER = 16;
+
+	private EventStoreCache() {
+	}
+
+	/**
+	 * Determine the location of the cache file for an event file.
+	 *
+	 * @param events      path to the event file
+	 * @param config      config that influences preprocessing
+	 * @param usesNetwork whether coordinates are looked up from a network
+	 * @param network     file the network was read from, null if it is not known
+	 * @return path of the cache file, or null if the input can not be cached.
+	 */
+	@Nullable
+	static Path getCachePath(String events, EpisimConfigGroup config, boolean usesNetwork, @Nullable Path network) {
+
+		Path path;
+		try {
+			path = Path.of(events);
+		} catch (InvalidPathException e) {
+			return null;
+		}
+
+		if (!Files.isRegularFile(path))
+			return null;
+
+		// coordinates depend on the network, which therefore needs to be part of the key
+		if (usesNetwork && (network == null || !Files.isRegularFile(network)))
+			return null;
+
+		Hasher hasher = Hashing.sha256().newHasher()
+				.putInt(VERSION)
+				.putUnencodedChars(config.getFacilitiesHandling().toString())
+				.putBoolean(usesNetwork);
+
+		try {
+			hasher.putBytes(hashContent(path));
+
+			if (usesNetwork)
+				hasher.putBytes(hashContent(network));
+
+		} catch (IOException e) {
+			log.warn("Could not read {}", path, e);
+			return null;
+		}
+
+		String key = Long.toHexString(hasher.hash().asLong());
+
+		return path.resolveSibling(path.getFileName().toString() + "." + key + ".cache");
+	}
+
+	/**
+	 * Hash of the file content, reading the file is still much cheaper than parsing it.
+	 */
+	private static byte[] hashContent(Path path) throws IOException {
+		return MoreFiles.asByteSource(path).hash(Hashing.sha256()).asBytes();
+	}
+
+	/**
+	 * Write event store to the cache. The file is first written to a temporary location and then moved,
+	 * so concurrent runs never see a partially written cache file.
+	 */
+	static void write(EventStore store, Path path) throws IOException {
+
+		Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+		try {
+			writeInternal(store, tmp);
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static void writeInternal(EventStore store, Path path) throws IOException {
+
+		int n = store.size();
+
+		// local string tables for all ids
+		IdTable persons = new IdTable();
+		IdTable facilities = new IdTable();
+		IdTable vehicles = new IdTable();
+		IdTable links = new IdTable();
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeBoolean(store.hasCoords());
+			out.write(new byte[HEADER - 13]);
+
+			// columns are ordered by the size of their entries, so all of them are aligned
+
+			for (int i = 0; i < n; i++)
+				out.writeDouble(store.getTime(i));
+
+			if (store.hasCoords()) {
+				for (int i = 0; i < n; i++)
+					out.writeDouble(store.getX(i));
+				for (int i = 0; i < n; i++)
+					out.writeDouble(store.getY(i));
+			}
+
+			for (int i = 0; i < n; i++)
+				out.writeInt(persons.local(store.getPersonIndex(i)));
+
+			for (int i = 0; i < n; i++) {
+				byte kind = store.getKind(i);
+				if (kind == EventStore.ACTIVITY_START || kind == EventStore.ACTIVITY_END)
+					out.writeInt(facilities.local(store.getContainerIndex(i)));
+				else
+					out.writeInt(vehicles.local(store.getContainerIndex(i)));
+			}
+
+			for (int i = 0; i < n; i++)
+				out.writeInt(store.getActTypeIndex(i));
+
+			for (int i = 0; i < n; i++)
+				out.writeInt(links.local(store.getLinkIndex(i)));
+
+			for (int i = 0; i < n; i++)
+				out.writeByte(store.getKind(i));
+
+			List<String> actTypes = store.getActTypes();
+			out.writeInt(actTypes.size());
+			for (String type : actTypes) {
+				out.writeUTF(type);
+			}
+
+			persons.write(out, Person.class);
+			facilities.write(out, ActivityFacility.class);
+			vehicles.write(out, Vehicle.class);
+			links.write(out, Link.class);
+		}
+	}
+
+	/**
+	 * Read event store from cache file. The returned store uses the mapped columns of the file.
+	 *
+	 * @throws IOException if the file could not be read or is not a valid cache.
+	 */
+	static EventStore read(Path path) throws IOException {
+
+		// private mappings need a writable channel, but changes are never written to the file
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+
+			if (header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new IOException("Not a valid event cache: " + path);
+
+			int n = header.getInt();
+			boolean hasCoords = header.get() != 0;
+
+			// a single mapping is limited to 2GB
+			if ((long) n * Double.BYTES > Integer.MAX_VALUE)
+				throw new IOException("Too many events to map: " + n);
+
+			long pos = HEADER;
+
+			DoubleBuffer time = channel.map(FileChannel.MapMode.READ_ONLY, pos, (long) n * Double.BYTES).asDoubleBuffer();
+			pos += (long) n * Double.BYTES;
+
+			DoubleBuffer x = null;
+			DoubleBuffer y = null;
+			if (hasCoords) {
+				x = channel.map(FileChannel.MapMode.READ_ONLY, pos, (long) n * Double.BYTES).asDoubleBuffer();
+				pos += (long) n * Double.BYTES;
+				y = channel.map(FileChannel.MapMode.READ_ONLY, pos, (long) n * Double.BYTES).asDoubleBuffer();
+				pos += (long) n * Double.BYTES;
+			}
+
+			// id columns are written to when they are re-mapped
+			IntBuffer person = channel.map(FileChannel.MapMode.PRIVATE, pos, (long) n * Integer.BYTES).asIntBuffer();
+			pos += (long) n * Integer.BYTES;
+
+			IntBuffer container = channel.map(FileChannel.MapMode.PRIVATE, pos, (long) n * Integer.BYTES).asIntBuffer();
+			pos += (long) n * Integer.BYTES;
+
+			IntBuffer actType = channel.map(FileChannel.MapMode.READ_ONLY, pos, (long) n * Integer.BYTES).asIntBuffer();
+			pos += (long) n * Integer.BYTES;
+
+			IntBuffer link = channel.map(FileChannel.MapMode.PRIVATE, pos, (long) n * Integer.BYTES).asIntBuffer();
+			pos += (long) n * Integer.BYTES;
+
+			ByteBuffer kind = channel.map(FileChannel.MapMode.READ_ONLY, pos, n);
+			pos += n;
+
+			// read string tables at the end of the file
+			channel.position(pos);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+
+			int types = in.readInt();
+			List<String> actTypes = new ArrayList<>(types);
+			for (int i = 0; i < types; i++) {
+				actTypes.add(in.readUTF());
+			}
+
+			int[] persons = IdTable.read(in, Person.class);
+			int[] facilities = IdTable.read(in, ActivityFacility.class);
+			int[] vehicles = IdTable.read(in, Vehicle.class);
+			int[] links = IdTable.read(in, Link.class);
+
+			// re-map to the id indices of this jvm
+			for (int i = 0; i < n; i++) {
+				person.put(i, persons[person.get(i)]);
+
+				int c = container.get(i);
+				byte k = kind.get(i);
+				if (k == EventStore.ACTIVITY_START || k == EventStore.ACTIVITY_END)
+					container.put(i, c < 0 ? -1 : facilities[c]);
+				else
+					container.put(i, vehicles[c]);
+
+				int l = link.get(i);
+				link.put(i, l < 0 ? -1 : links[l]);
+			}
+
+			// mapping stays valid after the channel is closed
+			return new EventStore(n, kind, time, person, container, actType, link, x, y, actTypes);
+		}
+	}
+
+	/**
+	 * Maps {@link Id#index()} to a dense local index, which is used in the cache file.
+	 */
+	private static final class IdTable {
+
+		private final Int2IntMap local = new Int2IntOpenHashMap();
+		private final IntList global = new IntArrayList();
+
+		private IdTable() {
+			local.defaultReturnValue(-1);
+		}
+
+		private int local(int index) {
+			if (index < 0)
+				return -1;
+
+			int idx = local.get(index);
+			if (idx == -1) {
+				idx = global.size();
+				global.add(index);
+				local.put(index, idx);
+			}
+			return idx;
+		}
+
+		private void write(DataOutput out, Class<?> type) throws IOException {
+			out.writeInt(global.size());
+			for (int i = 0; i < global.size(); i++) {
+				out.writeUTF(Id.get(global.getInt(i), type).toString());
+			}
+		}
+
+		/**
+		 * Reads table and returns the {@link Id#index()} for each local index.
+		 */
+		private static int[] read(DataInput in, Class<?> type) throws IOException {
+			int n = in.readInt();
+			int[] result = new int[n];
+			for (int i = 0; i < n; i++) {
+				result[i] = Id.create(in.readUTF(), type).index();
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assigns dense int indices to names, similar to {@link org.matsim.api.core.v01.Id#index()}.
+ * Instances are owned by a {@link PersonStore}, indices are only comparable between persons of the same store.
+ */
+final class IndexedNames {
+
+	private final List<String> names = new ArrayList<>();
+	private final Object2IntMap<String> index = new Object2IntOpenHashMap<>();
+
+	IndexedNames() {
+		index.defaultReturnValue(-1);
+	}
+
+	/**
+	 * Return index of a name, which is created if not present yet.
+	 */
+	synchronized int index(String name) {
+		int idx = index.getInt(name);
+		if (idx == -1) {
+			idx = names.size();
+			names.add(name);
+			index.put(name, idx);
+		}
+		return idx;
+	}
+
+	/**
+	 * Reserve a new index without a name.
+	 */
+	synchronized int reserve() {
+		names.add(null);
+		return names.size() - 1;
+	}
+
+	/**
+	 * Name for an index, null if the index was reserved without a name.
+	 */
+	synchronized String get(int idx) {
+		return names.get(idx);
+	}
+
+	/**
+	 * Number of known names.
+	 */
+	synchronized int size() {
+		return names.size();
+	}
+}
@@ -25,6 +25,7 @@ import com.google.inject.*;
 import com.google.inject.name.Names;
 import com.google.inject.util.Types;
 import com.typesafe.config.ConfigFactory;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.objects.AbstractObject2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
@@ -35,7 +36,6 @@ import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.*;
 import org.matsim.api.core.v01.population.Person;
-import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.utils.collections.Tuple;
@@ -61,6 +61,8 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static org.matsim.episim.EpisimUtils.readChars;
 import static org.matsim.episim.EpisimUtils.writeChars;
@@ -103,11 +105,27 @@ public final class InfectionEventHandler implements Externalizable {
 	private final List<TrajectoryHandler> handlers = new ArrayList<>();
 
 	private final Map<Id<Person>, EpisimPerson> personMap = new IdMap<>(Person.class);
+
+	/**
+	 * Dense state of all persons in {@link #personMap}, indexed by their id.
+	 */
+	private final PersonStore personStore = new PersonStore(Id.getNumberOfIds(Person.class));
 	private final Map<Id<Vehicle>, EpisimVehicle> vehicleMap = new IdMap<>(Vehicle.class);
 	private final Map<Id<ActivityFacility>, EpisimFacility> pseudoFacilityMap = new IdMap<>(ActivityFacility.class,
 			// the number of facility ids is not known beforehand, so we use this as initial estimate
 			(int) (Id.getNumberOfIds(Vehicle.class) * 1.3));
 
+	/**
+	 * Lookup of persons and containers by their id index, used while replaying events.
+	 */
+	private final ReplayRegistry registry = new ReplayRegistry();
+
+	/**
+	 * Indices of the events of each day partitioned by the task id of their container, see {@link #balanceContainersByLoad(List)}.
+	 * Days with identical events share the same partitions.
+	 */
+	private final Map<DayOfWeek, int[][]> eventsPerTask = new EnumMap<>(DayOfWeek.class);
+
 	/**
 	 * Maps activity type to its parameter.
 	 * This can be an identity map because the strings are canonicalized by the {@link ReplayHandler}.
@@ -146,6 +164,16 @@ public final class InfectionEventHandler implements Externalizable {
 
 	private final TestingModel testingModel;
 
+	/**
+	 * Daily values of susceptibility and infectivity.
+	 */
+	private final ImmunityCache immunityCache;
+
+	/**
+	 * Face masks worn by each person during the day.
+	 */
+	private final FaceMaskAssignment faceMaskAssignment;
+
 	/**
 	 * Scenario with population information.
 	 */
@@ -201,6 +229,8 @@ public final class InfectionEventHandler implements Externalizable {
 		this.vaccinationModel = injector.getInstance(VaccinationModel.class);
 		this.activityParticipationModel = injector.getInstance(ActivityParticipationModel.class);
 		this.testingModel = injector.getInstance(TestingModel.class);
+		this.immunityCache = injector.getInstance(ImmunityCache.class);
+		this.faceMaskAssignment = injector.getInstance(FaceMaskAssignment.class);
 		this.executor = injector.getInstance(ExecutorService.class);
 	}
 
@@ -228,7 +258,7 @@ public final class InfectionEventHandler implements Externalizable {
 	 *
 	 * @param events All events in the simulation
 	 */
-	void init(Map<DayOfWeek, List<Event>> events) {
+	void init(Map<DayOfWeek, EventStore> events) {
 
 		iteration = 0;
 
@@ -269,7 +299,7 @@ public final class InfectionEventHandler implements Externalizable {
 	 * Update events data and internal person data structure.
 	 * @param events
 	 */
-	void updateEvents(Map<DayOfWeek, List<Event>> events) {
+	void updateEvents(Map<DayOfWeek, EventStore> events) {
 		Object2IntMap<EpisimContainer<?>> groupSize = new Object2IntOpenHashMap<>();
 		Object2IntMap<EpisimContainer<?>> totalUsers = new Object2IntOpenHashMap<>();
 		Object2IntMap<EpisimContainer<?>> maxGroupSize = new Object2IntOpenHashMap<>();
@@ -279,14 +309,14 @@ public final class InfectionEventHandler implements Externalizable {
 
 		Map<EpisimContainer<?>, Object2IntMap<String>> activityUsage = new HashMap<>();
 
-		Map<List<Event>, DayOfWeek> sameDay = new IdentityHashMap<>(7);
+		Map<EventStore, DayOfWeek> sameDay = new IdentityHashMap<>(7);
 
 		this.personMap.values().forEach(EpisimPerson::resetTrajectory);
 
-		for (Map.Entry<DayOfWeek, List<Event>> entry : events.entrySet()) {
+		for (Map.Entry<DayOfWeek, EventStore> entry : events.entrySet()) {
 
 			DayOfWeek day = entry.getKey();
-			List<Event> eventsForDay = entry.getValue();
+			EventStore eventsForDay = entry.getValue();
 
 			if (sameDay.containsKey(eventsForDay)) {
 				DayOfWeek same = sameDay.get(eventsForDay);
@@ -299,77 +329,72 @@ public final class InfectionEventHandler implements Externalizable {
 
 			this.personMap.values().forEach(p -> p.setStartOfDay(day));
 
-			for (Event event : eventsForDay) {
+			for (int i = 0; i < eventsForDay.size(); i++) {
 
-				EpisimPerson person = null;
+				final byte kind = eventsForDay.getKind(i);
 				EpisimFacility facility = null;
 
 				// Add all person and facilities
-				if (event instanceof HasPersonId) {
-					person = this.personMap.computeIfAbsent(((HasPersonId) event).getPersonId(), this::createPerson);
-
-					// If a person was added late, previous days are initialized at home
-					for (int i = 1; i < day.getValue(); i++) {
-						DayOfWeek it = DayOfWeek.of(i);
-						if (!person.hasActivity(it)) {
-							person.setStartOfDay(it);
-							Id<ActivityFacility> homeId = createHomeFacility(person).getContainerId();
-
-							person.setFirstFacilityId(homeId, it);
-							person.setLastFacilityId(homeId, it, true);
-
-							EpisimConfigGroup.InfectionParams home = paramsMap.computeIfAbsent("home", this::createActivityType);
-							person.addToTrajectory(0, home, homeId);
-							person.setEndOfDay(it);
-							person.setStartOfDay(it.plus(1));
-						}
+				EpisimPerson person = this.personMap.computeIfAbsent(eventsForDay.getPersonId(i), this::createPerson);
+
+				// If a person was added late, previous days are initialized at home
+				for (int d = 1; d < day.getValue(); d++) {
+					DayOfWeek it = DayOfWeek.of(d);
+					if (!person.hasActivity(it)) {
+						person.setStartOfDay(it);
+						Id<ActivityFacility> homeId = createHomeFacility(person).getContainerId();
+
+						person.setFirstFacilityId(homeId, it);
+						person.setLastFacilityId(homeId, it, true);
+
+						EpisimConfigGroup.InfectionParams home = paramsMap.computeIfAbsent("home", this::createActivityType);
+						person.addToTrajectory(0, home, homeId);
+						person.setEndOfDay(it);
+						person.setStartOfDay(it.plus(1));
 					}
 				}
 
-				if (event instanceof HasFacilityId) {
-					Id<ActivityFacility> episimFacilityId = ((HasFacilityId) event).getFacilityId();
+				if (kind == EventStore.ACTIVITY_START || kind == EventStore.ACTIVITY_END) {
+					Id<ActivityFacility> episimFacilityId = eventsForDay.getFacilityId(i);
 					facility = this.pseudoFacilityMap.computeIfAbsent(episimFacilityId, EpisimFacility::new);
 				}
 
-				if (event instanceof ActivityStartEvent) {
+				if (kind == EventStore.ACTIVITY_START) {
 
-					String actType = ((ActivityStartEvent) event).getActType();
+					String actType = eventsForDay.getActType(i);
 
 					EpisimConfigGroup.InfectionParams act = paramsMap.computeIfAbsent(actType, this::createActivityType);
 					totalUsers.mergeInt(facility, 1, Integer::sum);
 
-					Id<ActivityFacility> facilityId = ((ActivityStartEvent) event).getFacilityId();
-					person.addToTrajectory(event.getTime(), act, facilityId);
+					person.addToTrajectory(eventsForDay.getTime(i), act, facility.getContainerId());
 
 					person.setLastFacilityId(facility.getContainerId(), day, true);
 
-				} else if (event instanceof ActivityEndEvent) {
-					String actType = ((ActivityEndEvent) event).getActType();
+				} else if (kind == EventStore.ACTIVITY_END) {
+					String actType = eventsForDay.getActType(i);
 
 					EpisimConfigGroup.InfectionParams act = paramsMap.computeIfAbsent(actType, this::createActivityType);
 					activityUsage.computeIfAbsent(facility, k -> new Object2IntOpenHashMap<>()).mergeInt(actType, 1, Integer::sum);
 
 					// if this is the first event, container is saved and trajectory element created
 					if (!person.hasActivity(day)) {
-						Id<ActivityFacility> facilityId = ((ActivityEndEvent) event).getFacilityId();
-						person.addToTrajectory(0, act, facilityId);
+						person.addToTrajectory(0, act, facility.getContainerId());
 						person.setFirstFacilityId(facility.getContainerId(), day);
 					}
 
 					// person is not in this container anymore
 					person.setLastFacilityId(facility.getContainerId(), day, false);
-				}
 
-				if (event instanceof PersonEntersVehicleEvent) {
-					EpisimVehicle vehicle = this.vehicleMap.computeIfAbsent(((PersonEntersVehicleEvent) event).getVehicleId(), EpisimVehicle::new);
+				} else if (kind == EventStore.ENTERS_VEHICLE) {
+					EpisimVehicle vehicle = this.vehicleMap.computeIfAbsent(eventsForDay.getVehicleId(i), EpisimVehicle::new);
 
 					maxGroupSize.mergeInt(vehicle, groupSize.mergeInt(vehicle, 1, Integer::sum), Integer::max);
 					totalUsers.mergeInt(vehicle, 1, Integer::sum);
 
 					person.setStaysInContainer(day, false);
 
-				} else if (event instanceof PersonLeavesVehicleEvent) {
-					EpisimVehicle vehicle = this.vehicleMap.computeIfAbsent(((PersonLeavesVehicleEvent) event).getVehicleId(), EpisimVehicle::new);
+				} else if (kind == EventStore.LEAVES_VEHICLE) {
+					EpisimVehicle vehicle = this.vehicleMap.computeIfAbsent(eventsForDay.getVehicleId(i), EpisimVehicle::new);
 					groupSize.mergeInt(vehicle, -1, Integer::sum);
 					activityUsage.computeIfAbsent(vehicle, k -> new Object2IntOpenHashMap<>()).mergeInt("tr", 1, Integer::sum);
 
@@ -402,6 +427,9 @@ public final class InfectionEventHandler implements Externalizable {
 
 		insertStationaryAgents();
 
+		// trajectories are complete and will not change anymore
+		this.personMap.values().forEach(EpisimPerson::trimTrajectory);
+
 		// Add missing facilities, with only stationary agents
 		for (EpisimFacility facility : pseudoFacilityMap.values()) {
 			if (!activityUsage.containsKey(facility)) {
@@ -415,10 +443,10 @@ public final class InfectionEventHandler implements Externalizable {
 
 		// Go through each day again to compute max group sizes
 		sameDay.clear();
-		for (Map.Entry<DayOfWeek, List<Event>> entry : events.entrySet()) {
+		for (Map.Entry<DayOfWeek, EventStore> entry : events.entrySet()) {
 
 			DayOfWeek day = entry.getKey();
-			List<Event> eventsForDay = entry.getValue();
+			EventStore eventsForDay = entry.getValue();
 
 			if (sameDay.containsKey(eventsForDay)) {
 				continue;
@@ -435,32 +463,32 @@ public final class InfectionEventHandler implements Externalizable {
 						pseudoFacilityMap.get(last).removePerson(person);
 
 					if (!pseudoFacilityMap.get(first).containsPerson(person))
-						pseudoFacilityMap.get(first).addPerson(person, now, person.getFirstActivity(day));
+						pseudoFacilityMap.get(first).addPerson(person, now, person.getStartOfDay(day));
 
 				} else {
 					if (!pseudoFacilityMap.get(first).containsPerson(person))
-						pseudoFacilityMap.get(first).addPerson(person, now, person.getFirstActivity(day));
+						pseudoFacilityMap.get(first).addPerson(person, now, person.getStartOfDay(day));
 				}
 			}
 
 			pseudoFacilityMap.forEach((k, v) -> maxGroupSize.mergeInt(v, v.getPersons().size(), Integer::max));
 
-			for (Event event : eventsForDay) {
-				if (event instanceof HasFacilityId && event instanceof HasPersonId) {
-					Id<ActivityFacility> episimFacilityId = ((HasFacilityId) event).getFacilityId();
-					EpisimFacility facility = pseudoFacilityMap.get(episimFacilityId);
-					EpisimPerson person = this.personMap.get(((HasPersonId) event).getPersonId());
+			for (int i = 0; i < eventsForDay.size(); i++) {
+				final byte kind = eventsForDay.getKind(i);
+				if (kind == EventStore.ACTIVITY_START || kind == EventStore.ACTIVITY_END) {
+					EpisimFacility facility = pseudoFacilityMap.get(eventsForDay.getFacilityId(i));
+					EpisimPerson person = this.personMap.get(eventsForDay.getPersonId(i));
 
 					// happens on filtered events that are not relevant
 					if (facility == null)
 						continue;
 
-					if (event instanceof ActivityStartEvent) {
+					if (kind == EventStore.ACTIVITY_START) {
 						if (!facility.containsPerson(person))
-							facility.addPerson(person, now, person.getActivity(day, event.getTime()));
+							facility.addPerson(person, now, person.getActivityIndex(day, eventsForDay.getTime(i)));
 
 						maxGroupSize.mergeInt(facility, facility.getPersons().size(), Integer::max);
-					} else if (event instanceof ActivityEndEvent) {
+					} else {
 						if (facility.containsPerson(person))
 							facility.removePerson(person);
 					}
@@ -477,7 +505,7 @@ public final class InfectionEventHandler implements Externalizable {
 		for (EpisimPerson person : personMap.values()) {
 			if (person.getStaysInContainer(startDay)) {
 				EpisimFacility facility = pseudoFacilityMap.get(person.getLastFacilityId(startDay));
-				facility.addPerson(person, now, person.getLastActivity(startDay));
+				facility.addPerson(person, now, person.getEndOfDay(startDay) - 1);
 			}
 		}
 
@@ -538,6 +566,66 @@ public final class InfectionEventHandler implements Externalizable {
 
 		balanceContainersByLoad(estimatedLoad);
 
+		registry.update(personMap, pseudoFacilityMap, vehicleMap);
+
+		partitionEvents(events);
+	}
+
+	/**
+	 * Split the events of each day into one index array per task, so that each {@link ReplayEventsTask} only iterates its own events.
+	 * Needs to be called after the task ids of the containers have been assigned.
+	 */
+	private void partitionEvents(Map<DayOfWeek, EventStore> events) {
+
+		eventsPerTask.clear();
+		Map<EventStore, int[][]> sameDay = new IdentityHashMap<>(7);
+
+		for (Map.Entry<DayOfWeek, EventStore> entry : events.entrySet()) {
+			int[][] partitions = sameDay.computeIfAbsent(entry.getValue(), this::partitionByTask);
+			eventsPerTask.put(entry.getKey(), partitions);
+		}
+
+		log.info("Partitioned events for {} tasks", episimConfig.getThreads());
+	}
+
+	/**
+	 * Partition event indices by the task id of their container. Order of the events is preserved.
+	 */
+	private int[][] partitionByTask(EventStore events) {
+
+		final int numThreads = episimConfig.getThreads();
+
+		int[] taskIds = new int[events.size()];
+		int[] counts = new int[numThreads];
+
+		for (int i = 0; i < events.size(); i++) {
+			EpisimContainer<?> container;
+			byte kind = events.getKind(i);
+			if (kind == EventStore.ACTIVITY_START || kind == EventStore.ACTIVITY_END) {
+				container = pseudoFacilityMap.get(events.getFacilityId(i));
+			} else {
+				container = vehicleMap.get(events.getVehicleId(i));
+			}
+
+			if (container == null)
+				throw new IllegalStateException("No container found for event: " + events.getEvent(i));
+
+			taskIds[i] = container.getTaskId();
+			counts[taskIds[i]]++;
+		}
+
+		int[][] partitions = new int[numThreads][];
+		for (int t = 0; t < numThreads; t++) {
+			partitions[t] = new int[counts[t]];
+		}
+
+		Arrays.fill(counts, 0);
+		for (int i = 0; i < taskIds.length; i++) {
+			int t = taskIds[i];
+			partitions[t][counts[t]++] = i;
+		}
+
+		return partitions;
 	}
 
 	/**
@@ -615,6 +703,7 @@ public final class InfectionEventHandler implements Externalizable {
 					bind(pMap).annotatedWith(Names.named("personMap")).toInstance(personMap);
 					bind(vMap).annotatedWith(Names.named("vehicleMap")).toInstance(vehicleMap);
 					bind(fMap).annotatedWith(Names.named("pseudoFacilityMap")).toInstance(pseudoFacilityMap);
+					bind(ReplayRegistry.class).toInstance(registry);
 				}
 			};
 
@@ -643,14 +732,14 @@ public final class InfectionEventHandler implements Externalizable {
 
 		boolean traceable = localRnd.nextDouble() < tracingConfig.getEquipmentRate();
 
-		return new EpisimPerson(id, attrs, traceable, reporting);
+		return new EpisimPerson(id, attrs, traceable, reporting, personStore);
 	}
 
 	/**
 	 * Creates the home facility of a person.
 	 */
 	private EpisimFacility createHomeFacility(EpisimPerson person) {
-		String homeId = (String) person.getAttributes().getAttribute("homeId");
+		String homeId = person.getHomeId();
 		if (homeId == null)
 			homeId = "home_of_" + person.getPersonId().toString();
 
@@ -689,7 +778,7 @@ public final class InfectionEventHandler implements Externalizable {
 						episimPerson.setStartOfDay(day);
 					}
 
-					EpisimPerson.PerformedActivity home = episimPerson.addToTrajectory(0, paramsMap.get("home"), facilityId);
+					int home = episimPerson.addToTrajectory(0, paramsMap.get("home"), facilityId);
 					facility.addPerson(episimPerson, 0, home);
 
 					// set end index
@@ -723,14 +812,20 @@ public final class InfectionEventHandler implements Externalizable {
 		LocalDate date = episimConfig.getStartDate().plusDays(iteration - 1);
 
 		reporting.reportCpuTime(iteration, "ProgressionModel", "start", -1);
+		IntSet changed = personStore.drainChanged();
 		progressionModel.setIteration(iteration);
+		progressionModel.onPersonsChanged(personMap, changed, iteration);
 		progressionModel.beforeStateUpdates(personMap, iteration, this.report);
 
-		for (EpisimPerson person : personMap.values()) {
+		// persons may also have been changed by tracing
+		changed.addAll(personStore.drainChanged());
+
+		for (EpisimPerson person : progressionModel.getPersonsToUpdate(personMap, changed, iteration)) {
 			progressionModel.updateState(person, iteration);
 		}
 		reporting.reportCpuTime(iteration, "ProgressionModelParallel", "start", -2);
 		progressionModel.afterStateUpdates(personMap, iteration);
+		personStore.clearContacts(progressionModel.getContactsNeededAfter(iteration));
 		reporting.reportCpuTime(iteration, "ProgressionModelParallel", "finished", -2);
 		reporting.reportCpuTime(iteration, "ProgressionModel", "finished", -1);
 
@@ -748,6 +843,12 @@ public final class InfectionEventHandler implements Externalizable {
 		int infected = this.initialInfections.handleInfections(personMap, iteration);
 		reporting.reportCpuTime(iteration, "HandleInfections", "finished", -1);
 
+		// all vaccination and infection state changes of this day happened already
+		reporting.reportCpuTime(iteration, "ImmunityCache", "start", -1);
+		immunityCache.update(personMap.values(), iteration);
+		personStore.clearImmunityChanged();
+		reporting.reportCpuTime(iteration, "ImmunityCache", "finished", -1);
+
 		reporting.reportCpuTime(iteration, "Reporting", "start", -1);
 		Map<String, EpisimReporting.InfectionReport> reports = reporting.createReports(personMap.values(), iteration);
 		this.report = reports.get("total");
@@ -768,18 +869,28 @@ public final class InfectionEventHandler implements Externalizable {
 
 		activityParticipationModel.setRestrictionsForIteration(iteration, im);
 
-		for (EpisimPerson person : personMap.values()) {
-			// update person activity participation for the day
-			activityParticipationModel.updateParticipation(person, person.getActivityParticipation(),
-					person.getStartOfDay(day), person.getActivities(day));
+		List<EpisimPerson> persons = new ArrayList<>(personMap.values());
+
+		// update person activity participation for the day
+		forEachPersonParallel(persons, person -> activityParticipationModel.updateParticipation(person, person.getActivityParticipation(),
+				person.getStartOfDay(day), person.getActivities(day)));
 
+		// candidates are selected in parallel, testing capacity is then used up in order of persons
+		for (EpisimPerson person : filterPersonsParallel(persons, person -> testingModel.isTestCandidate(person, iteration))) {
 			testingModel.performTesting(person, iteration);
+		}
 
-			activityParticipationModel.applyQuarantine(person, person.getActivityParticipation(), person.getStartOfDay(day), person.getActivities(day));
+		forEachPersonParallel(persons, person -> activityParticipationModel.applyQuarantine(person, person.getActivityParticipation(),
+				person.getStartOfDay(day), person.getActivities(day)));
 
-		}
 		reporting.reportCpuTime(iteration, "TestingModel", "finished", -1);
 
+		if (faceMaskAssignment.isEnabled()) {
+			reporting.reportCpuTime(iteration, "FaceMaskAssignment", "start", -1);
+			faceMaskAssignment.update(personMap.values(), iteration, im);
+			reporting.reportCpuTime(iteration, "FaceMaskAssignment", "finished", -1);
+		}
+
 		handlers.forEach(h -> {
 			h.setRestrictionsForIteration(iteration, im);
 			EpisimUtils.setSeed(h.getRnd(), rnd.nextLong());
@@ -793,6 +904,73 @@ public final class InfectionEventHandler implements Externalizable {
 		}
 	}
 
+	/**
+	 * Apply an action to all persons, partitioned over as many tasks as there are trajectory handlers.
+	 * The action must only modify the state of the given person.
+	 */
+	private void forEachPersonParallel(List<EpisimPerson> persons, Consumer<EpisimPerson> action) {
+
+		int n = handlers.size();
+		if (n <= 1) {
+			persons.forEach(action);
+			return;
+		}
+
+		var futures = new CompletableFuture[n];
+		for (int i = 0; i < n; i++) {
+			List<EpisimPerson> partition = persons.subList((int) ((long) persons.size() * i / n), (int) ((long) persons.size() * (i + 1) / n));
+			futures[i] = CompletableFuture.runAsync(() -> partition.forEach(action), executor);
+		}
+
+		try {
+			CompletableFuture.allOf(futures).join();
+		} catch (CompletionException e) {
+			log.error("A person update caused the exception: ", e.getCause());
+			executor.shutdown();
+			throw e;
+		}
+	}
+
+	/**
+	 * Select all persons matching a predicate, partitioned over as many tasks as there are trajectory handlers.
+	 * The predicate must not modify any state.
+	 *
+	 * @return matching persons in the same order as {@code persons}
+	 */
+	private List<EpisimPerson> filterPersonsParallel(List<EpisimPerson> persons, Predicate<EpisimPerson> filter) {
+
+		int n = handlers.size();
+		if (n <= 1) {
+			List<EpisimPerson> matching = new ArrayList<>();
+			persons.stream().filter(filter).forEach(matching::add);
+			return matching;
+		}
+
+		List<List<EpisimPerson>> result = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			result.add(new ArrayList<>());
+		}
+
+		var futures = new CompletableFuture[n];
+		for (int i = 0; i < n; i++) {
+			List<EpisimPerson> partition = persons.subList((int) ((long) persons.size() * i / n), (int) ((long) persons.size() * (i + 1) / n));
+			List<EpisimPerson> matching = result.get(i);
+			futures[i] = CompletableFuture.runAsync(() -> partition.stream().filter(filter).forEach(matching::add), executor);
+		}
+
+		try {
+			CompletableFuture.allOf(futures).join();
+		} catch (CompletionException e) {
+			log.error("A person filter caused the exception: ", e.getCause());
+			executor.shutdown();
+			throw e;
+		}
+
+		List<EpisimPerson> all = new ArrayList<>();
+		result.forEach(all::addAll);
+		return all;
+	}
+
 	public Collection<EpisimPerson> getPersons() {
 		return Collections.unmodifiableCollection(personMap.values());
 	}
@@ -849,6 +1027,9 @@ public final class InfectionEventHandler implements Externalizable {
 			restrictions.put(act, Restriction.fromConfig(ConfigFactory.parseString(readChars(in))));
 		}
 
+		// contacts are restored together with the persons
+		personStore.getContactLog().clear();
+
 		int persons = in.readInt();
 		for (int i = 0; i < persons; i++) {
 			Id<Person> id = Id.create(readChars(in), Person.class);
@@ -880,12 +1061,20 @@ public final class InfectionEventHandler implements Externalizable {
 	 * @param day    current day
 	 * @param events events to execute
 	 */
-	void handleEvents(DayOfWeek day, List<Event> events) {
+	void handleEvents(DayOfWeek day, EventStore events) {
+
+		int[][] partitions = eventsPerTask.get(day);
+
+		// events were not seen during initialization and need to be partitioned now
+		if (partitions == null) {
+			log.warn("Events for day {} were not partitioned beforehand", day);
+			partitions = partitionByTask(events);
+		}
 
 		if (handlers.size() > 1) {
 			var futures = new CompletableFuture[handlers.size()];
 			for (int i = 0; i < handlers.size(); i++) {
-				ReplayEventsTask task = new ReplayEventsTask(handlers.get(i), events, i, handlers.size());
+				ReplayEventsTask task = new ReplayEventsTask(handlers.get(i), events, partitions[i], i, handlers.size());
 				futures[i] = CompletableFuture.runAsync(task, executor);
 			}
 
@@ -899,7 +1088,7 @@ public final class InfectionEventHandler implements Externalizable {
 		} else {
 
 			// single threaded task is run directly
-			ReplayEventsTask task = new ReplayEventsTask(handlers.get(0), events, 0, 1);
+			ReplayEventsTask task = new ReplayEventsTask(handlers.get(0), events, partitions[0], 0, 1);
 			task.run();
 
 		}
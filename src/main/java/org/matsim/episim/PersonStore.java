@@ -0,0 +1,445 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.matsim.api.core.v01.Id;
+import org.matsim.episim.EpisimPerson.DiseaseStatus;
+import org.matsim.episim.EpisimPerson.QuarantineStatus;
+import org.matsim.episim.EpisimPerson.TestStatus;
+import org.matsim.episim.EpisimPerson.VaccinationStatus;
+import org.matsim.episim.model.VaccinationType;
+import org.matsim.episim.model.VirusStrain;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dense storage of the scalar state of all persons. Attributes are held in primitive arrays,
+ * which are indexed by {@link Id#index()} of the person. {@link EpisimPerson} acts as view on one slot of this store.
+ * <p>
+ * Enums are stored by their ordinal. Different slots may be written concurrently, but the store can only grow during initialization.
+ */
+public final class PersonStore {
+
+	private static final DiseaseStatus[] DISEASE_STATUS = DiseaseStatus.values();
+	private static final QuarantineStatus[] QUARANTINE_STATUS = QuarantineStatus.values();
+	private static final VaccinationStatus[] VACCINATION_STATUS = VaccinationStatus.values();
+	private static final TestStatus[] TEST_STATUS = TestStatus.values();
+	private static final VirusStrain[] VIRUS_STRAIN = VirusStrain.values();
+	private static final VaccinationType[] VACCINATION_TYPE = VaccinationType.values();
+
+	private static final byte TRACEABLE = 1;
+	private static final byte VACCINABLE = 1 << 1;
+	private static final byte IMMUNITY_CHANGED = 1 << 2;
+
+	/**
+	 * Marker for lazily resolved indices.
+	 */
+	static final int UNRESOLVED = Integer.MIN_VALUE;
+
+	private byte[] status;
+	private byte[] quarantineStatus;
+	private byte[] vaccinationStatus;
+	private byte[] reVaccinationStatus;
+	private byte[] testStatus;
+	private byte[] virusStrain;
+	private byte[] vaccinationType;
+	private byte[] flags;
+
+	/**
+	 * Iterations of the last change, negative if never set.
+	 */
+	private int[] quarantineDate;
+	private int[] vaccinationDate;
+	private int[] testDate;
+
+	private int[] numInfections;
+	private short[] age;
+	private double[] susceptibility;
+
+	/**
+	 * First time of status changes for each person and {@link DiseaseStatus} ordinal, NaN if the status was never set.
+	 */
+	private double[] statusChanges;
+
+	/**
+	 * Index of the district in {@link #districts}, negative if not present or not resolved yet.
+	 */
+	private int[] district;
+
+	/**
+	 * Household index in {@link #households}, shifted by one bit which is set if the person has a home id.
+	 * Negative if not resolved yet.
+	 */
+	private int[] household;
+
+	/**
+	 * Bit set of slots of persons whose disease, quarantine or test state changed since the last call of {@link #drainChanged()}.
+	 * Persons are changed concurrently by the handler threads, which is why single bits are set atomically instead of locking.
+	 */
+	private AtomicLongArray changed;
+
+	/**
+	 * Traceable contacts of all persons.
+	 */
+	private final ContactLog contacts = new ContactLog();
+
+	/**
+	 * Names of districts, see {@link EpisimPerson#getDistrict()}.
+	 */
+	private final IndexedNames districts = new IndexedNames();
+
+	/**
+	 * Names of households, see {@link EpisimPerson#getHouseholdIndex()}.
+	 */
+	private final IndexedNames households = new IndexedNames();
+
+	/**
+	 * Create a store with initial capacity, e.g. {@link Id#getNumberOfIds(Class)}.
+	 */
+	PersonStore(int capacity) {
+		capacity = Math.max(capacity, 1);
+		status = new byte[capacity];
+		quarantineStatus = new byte[capacity];
+		vaccinationStatus = new byte[capacity];
+		reVaccinationStatus = new byte[capacity];
+		testStatus = new byte[capacity];
+		virusStrain = new byte[capacity];
+		vaccinationType = new byte[capacity];
+		flags = new byte[capacity];
+		quarantineDate = new int[capacity];
+		vaccinationDate = new int[capacity];
+		testDate = new int[capacity];
+		numInfections = new int[capacity];
+		age = new short[capacity];
+		susceptibility = new double[capacity];
+		statusChanges = new double[capacity * DISEASE_STATUS.length];
+		district = new int[capacity];
+		household = new int[capacity];
+		changed = new AtomicLongArray(words(capacity));
+	}
+
+	/**
+	 * Number of words needed for a bit set of given size.
+	 */
+	private static int words(int bits) {
+		return (bits + Long.SIZE - 1) >>> 6;
+	}
+
+	/**
+	 * Allocate a slot and initialize it with the default state.
+	 */
+	void init(int slot, int age, boolean traceable) {
+
+		ensureCapacity(slot + 1);
+
+		status[slot] = (byte) DiseaseStatus.susceptible.ordinal();
+		quarantineStatus[slot] = (byte) QuarantineStatus.no.ordinal();
+		vaccinationStatus[slot] = (byte) VaccinationStatus.no.ordinal();
+		reVaccinationStatus[slot] = (byte) VaccinationStatus.no.ordinal();
+		testStatus[slot] = (byte) TestStatus.untested.ordinal();
+		virusStrain[slot] = (byte) VirusStrain.SARS_CoV_2.ordinal();
+		vaccinationType[slot] = (byte) VaccinationType.generic.ordinal();
+		flags[slot] = (byte) (VACCINABLE | IMMUNITY_CHANGED | (traceable ? TRACEABLE : 0));
+		quarantineDate[slot] = -1;
+		vaccinationDate[slot] = -1;
+		testDate[slot] = -1;
+		numInfections[slot] = 0;
+		this.age[slot] = (short) age;
+		susceptibility[slot] = 1;
+		Arrays.fill(statusChanges, slot * DISEASE_STATUS.length, (slot + 1) * DISEASE_STATUS.length, Double.NaN);
+		district[slot] = UNRESOLVED;
+		household[slot] = UNRESOLVED;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= status.length)
+			return;
+
+		int n = Math.max(capacity, status.length + (status.length >> 1));
+		status = Arrays.copyOf(status, n);
+		quarantineStatus = Arrays.copyOf(quarantineStatus, n);
+		vaccinationStatus = Arrays.copyOf(vaccinationStatus, n);
+		reVaccinationStatus = Arrays.copyOf(reVaccinationStatus, n);
+		testStatus = Arrays.copyOf(testStatus, n);
+		virusStrain = Arrays.copyOf(virusStrain, n);
+		vaccinationType = Arrays.copyOf(vaccinationType, n);
+		flags = Arrays.copyOf(flags, n);
+		quarantineDate = Arrays.copyOf(quarantineDate, n);
+		vaccinationDate = Arrays.copyOf(vaccinationDate, n);
+		testDate = Arrays.copyOf(testDate, n);
+		numInfections = Arrays.copyOf(numInfections, n);
+		age = Arrays.copyOf(age, n);
+		susceptibility = Arrays.copyOf(susceptibility, n);
+		statusChanges = Arrays.copyOf(statusChanges, n * DISEASE_STATUS.length);
+		district = Arrays.copyOf(district, n);
+		household = Arrays.copyOf(household, n);
+
+		AtomicLongArray copy = new AtomicLongArray(words(n));
+		for (int i = 0; i < changed.length(); i++) {
+			copy.set(i, changed.get(i));
+		}
+		changed = copy;
+	}
+
+	/**
+	 * Number of allocated slots.
+	 */
+	public int capacity() {
+		return status.length;
+	}
+
+	public DiseaseStatus getDiseaseStatus(int slot) {
+		return DISEASE_STATUS[status[slot]];
+	}
+
+	void setDiseaseStatus(int slot, DiseaseStatus value) {
+		status[slot] = (byte) value.ordinal();
+	}
+
+	public QuarantineStatus getQuarantineStatus(int slot) {
+		return QUARANTINE_STATUS[quarantineStatus[slot]];
+	}
+
+	void setQuarantineStatus(int slot, QuarantineStatus value) {
+		quarantineStatus[slot] = (byte) value.ordinal();
+	}
+
+	public VaccinationStatus getVaccinationStatus(int slot) {
+		return VACCINATION_STATUS[vaccinationStatus[slot]];
+	}
+
+	void setVaccinationStatus(int slot, VaccinationStatus value) {
+		vaccinationStatus[slot] = (byte) value.ordinal();
+	}
+
+	public VaccinationStatus getReVaccinationStatus(int slot) {
+		return VACCINATION_STATUS[reVaccinationStatus[slot]];
+	}
+
+	void setReVaccinationStatus(int slot, VaccinationStatus value) {
+		reVaccinationStatus[slot] = (byte) value.ordinal();
+	}
+
+	public TestStatus getTestStatus(int slot) {
+		return TEST_STATUS[testStatus[slot]];
+	}
+
+	void setTestStatus(int slot, TestStatus value) {
+		testStatus[slot] = (byte) value.ordinal();
+	}
+
+	public VirusStrain getVirusStrain(int slot) {
+		return VIRUS_STRAIN[virusStrain[slot]];
+	}
+
+	void setVirusStrain(int slot, VirusStrain value) {
+		virusStrain[slot] = (byte) value.ordinal();
+	}
+
+	public VaccinationType getVaccinationType(int slot) {
+		return VACCINATION_TYPE[vaccinationType[slot]];
+	}
+
+	void setVaccinationType(int slot, VaccinationType value) {
+		vaccinationType[slot] = (byte) value.ordinal();
+	}
+
+	public boolean isTraceable(int slot) {
+		return (flags[slot] & TRACEABLE) != 0;
+	}
+
+	void setTraceable(int slot, boolean value) {
+		setFlag(slot, TRACEABLE, value);
+	}
+
+	public boolean isVaccinable(int slot) {
+		return (flags[slot] & VACCINABLE) != 0;
+	}
+
+	void setVaccinable(int slot, boolean value) {
+		setFlag(slot, VACCINABLE, value);
+	}
+
+	/**
+	 * Whether vaccination or infection state changed since the last call of {@link #clearImmunityChanged()}.
+	 */
+	public boolean isImmunityChanged(int slot) {
+		return (flags[slot] & IMMUNITY_CHANGED) != 0;
+	}
+
+	void setImmunityChanged(int slot) {
+		setFlag(slot, IMMUNITY_CHANGED, true);
+	}
+
+	/**
+	 * Reset the changed flag of all persons, after derived values have been updated.
+	 */
+	void clearImmunityChanged() {
+		for (int i = 0; i < flags.length; i++) {
+			flags[i] &= ~IMMUNITY_CHANGED;
+		}
+	}
+
+	ContactLog getContactLog() {
+		return contacts;
+	}
+
+	/**
+	 * Remove traced contacts of all persons before a certain time. Repeated calls with the same time return immediately.
+	 */
+	void clearContacts(double before) {
+		contacts.clear(before);
+	}
+
+	/**
+	 * Record a state change of a person, which may affect its disease progression.
+	 */
+	void markChanged(int slot) {
+		int word = slot >>> 6;
+		long bit = 1L << slot;
+
+		// most changes affect persons that are already marked
+		if ((changed.get(word) & bit) == 0)
+			changed.getAndAccumulate(word, bit, (a, b) -> a | b);
+	}
+
+	/**
+	 * Return the slots of all persons changed since the last call and start recording anew.
+	 * Must not be called while persons are changed concurrently.
+	 */
+	public IntSet drainChanged() {
+		IntSet result = new IntOpenHashSet();
+		for (int i = 0; i < changed.length(); i++) {
+			long word = changed.get(i);
+			if (word == 0)
+				continue;
+
+			changed.set(i, 0);
+			while (word != 0) {
+				result.add((i << 6) + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+
+		return result;
+	}
+
+	private void setFlag(int slot, byte flag, boolean value) {
+		if (value)
+			flags[slot] |= flag;
+		else
+			flags[slot] &= ~flag;
+	}
+
+	public int getQuarantineDate(int slot) {
+		return quarantineDate[slot];
+	}
+
+	void setQuarantineDate(int slot, int value) {
+		quarantineDate[slot] = value;
+	}
+
+	public int getVaccinationDate(int slot) {
+		return vaccinationDate[slot];
+	}
+
+	void setVaccinationDate(int slot, int value) {
+		vaccinationDate[slot] = value;
+	}
+
+	public int getTestDate(int slot) {
+		return testDate[slot];
+	}
+
+	void setTestDate(int slot, int value) {
+		testDate[slot] = value;
+	}
+
+	public int getNumInfections(int slot) {
+		return numInfections[slot];
+	}
+
+	void setNumInfections(int slot, int value) {
+		numInfections[slot] = value;
+	}
+
+	/**
+	 * Age in years, -1 if unknown.
+	 */
+	public int getAge(int slot) {
+		return age[slot];
+	}
+
+	public double getSusceptibility(int slot) {
+		return susceptibility[slot];
+	}
+
+	void setSusceptibility(int slot, double value) {
+		susceptibility[slot] = value;
+	}
+
+	/**
+	 * First time a person changed to a certain status, NaN if never.
+	 */
+	public double getStatusChange(int slot, DiseaseStatus status) {
+		return statusChanges[slot * DISEASE_STATUS.length + status.ordinal()];
+	}
+
+	/**
+	 * Set time of status change, use NaN to remove it.
+	 */
+	void setStatusChange(int slot, DiseaseStatus status, double time) {
+		statusChanges[slot * DISEASE_STATUS.length + status.ordinal()] = time;
+	}
+
+	/**
+	 * Raw district index, see {@link #UNRESOLVED}.
+	 */
+	int getDistrict(int slot) {
+		return district[slot];
+	}
+
+	void setDistrict(int slot, int value) {
+		district[slot] = value;
+	}
+
+	/**
+	 * Raw encoded household index, see {@link #UNRESOLVED}.
+	 */
+	int getHousehold(int slot) {
+		return household[slot];
+	}
+
+	void setHousehold(int slot, int value) {
+		household[slot] = value;
+	}
+
+	IndexedNames getDistricts() {
+		return districts;
+	}
+
+	IndexedNames getHouseholds() {
+		return households;
+	}
+}
@@ -21,20 +21,22 @@
 package org.matsim.episim;
 
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.events.*;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.vehicles.Vehicle;
 
-import java.lang.invoke.VarHandle;
-import java.util.Collection;
-import java.util.List;
-
 /**
- * Replays all events for a single day to one {@link TrajectoryHandler}.
+ * Replays the events of a single day to one {@link TrajectoryHandler}.
+ * Only the given subset of events is replayed, which must contain all events of containers this task is responsible for,
+ * see {@link InfectionEventHandler#updateEvents(java.util.Map)}.
  */
 final public class ReplayEventsTask implements Runnable {
 
-	private final List<Event> events;
+	private final EventStore events;
+
+	/**
+	 * Indices of the events to replay.
+	 */
+	private final int[] indices;
 	private final TrajectoryHandler trajectoryHandler;
 
 	/**
@@ -45,12 +47,20 @@ final public class ReplayEventsTask implements Runnable {
 	private final int numThreads;
 
 
+	/**
+	 * Constructor.
+	 *
+	 * @param events  all events of the day
+	 * @param indices ordered indices of the events of all containers with this {@code taskId}
+	 */
 	public ReplayEventsTask(TrajectoryHandler trajectoryHandler,
-							List<Event> events,
+							EventStore events,
+							int[] indices,
 							int taskId,
 							int numThreads) {
 		this.trajectoryHandler = trajectoryHandler;
 		this.events = events;
+		this.indices = indices;
 		this.taskId = taskId;
 		this.numThreads = numThreads;
 	}
@@ -59,38 +69,39 @@ final public class ReplayEventsTask implements Runnable {
 	 * Check whether the handler is responsible for the facility with this id.
 	 */
 	boolean handlesFacility(Id<ActivityFacility> id) {
-		return trajectoryHandler.getEpisimFacility(id).getTaskId() == taskId;
+		InfectionEventHandler.EpisimFacility facility = trajectoryHandler.getEpisimFacility(id);
+		return facility != null && facility.getTaskId() == taskId;
 	}
 
 	/**
 	 * Check whether the handler is responsible for the vehicle with this id.
 	 */
 	boolean handlesVehicle(Id<Vehicle> id) {
-		return trajectoryHandler.getEpisimVehicle(id).getTaskId() == taskId;
+		InfectionEventHandler.EpisimVehicle vehicle = trajectoryHandler.getEpisimVehicle(id);
+		return vehicle != null && vehicle.getTaskId() == taskId;
 	}
 
 	public void run() {
 		trajectoryHandler.reportCpuTime("start", taskId);
 		trajectoryHandler.onStartDay(this::handlesFacility, this::handlesVehicle);
 
-		for (final Event e : events) {
-			if (e instanceof ActivityStartEvent) {
-				ActivityStartEvent ase = (ActivityStartEvent) e;
-				if (handlesFacility(ase.getFacilityId()))
-					trajectoryHandler.handleEvent(ase);
-			} else if (e instanceof ActivityEndEvent) {
-				ActivityEndEvent aee = (ActivityEndEvent) e;
-				if (handlesFacility(aee.getFacilityId())) {
-					trajectoryHandler.handleEvent(aee);
-				}
-			} else if (e instanceof PersonEntersVehicleEvent) {
-				PersonEntersVehicleEvent peve = (PersonEntersVehicleEvent) e;
-				if (handlesVehicle(peve.getVehicleId()))
-					trajectoryHandler.handleEvent(peve);
-			} else {
-				PersonLeavesVehicleEvent plve = (PersonLeavesVehicleEvent) e;
-				if (handlesVehicle(plve.getVehicleId()))
-					trajectoryHandler.handleEvent(plve);
+		// events are already partitioned, no need to check responsibility of this task
+		for (final int i : indices) {
+			switch (events.getKind(i)) {
+				case EventStore.ACTIVITY_START:
+					trajectoryHandler.handleActivityStart(events, i);
+					break;
+				case EventStore.ACTIVITY_END:
+					trajectoryHandler.handleActivityEnd(events, i);
+					break;
+				case EventStore.ENTERS_VEHICLE:
+					trajectoryHandler.handleEntersVehicle(events, i);
+					break;
+				case EventStore.LEAVES_VEHICLE:
+					trajectoryHandler.handleLeavesVehicle(events, i);
+					break;
+				default:
+					throw new IllegalStateException("Unknown event kind: " + events.getKind(i));
 			}
 		}
 
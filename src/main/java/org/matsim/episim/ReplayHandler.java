@@ -31,15 +31,26 @@ import org.matsim.api.core.v01.events.*;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.facilities.ActivityFacility;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.DayOfWeek;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Handler that replays events from {@link EpisimConfigGroup#getInputEventsFile()} with corrected time and attributes.
@@ -54,15 +65,28 @@ public final class ReplayHandler {
 	private final EpisimConfigGroup episimConfig;
 
 	private final Scenario scenario;
-	private final Map<DayOfWeek, List<Event>> events = new EnumMap<>(DayOfWeek.class);
+	private final Map<DayOfWeek, EventStore> events = new EnumMap<>(DayOfWeek.class);
+
+	/**
+	 * Mappers for custom event types, by event type.
+	 */
+	private final Map<String, MatsimEventsReader.CustomEventMapper> mappers;
 
 	/**
 	 * Constructor with optional scenario. Events will be read from given {@link EpisimConfigGroup#getInputEventsFiles()}.
 	 */
-	@Inject
 	public ReplayHandler(EpisimConfigGroup config, @Nullable Scenario scenario) {
+		this(config, scenario, Map.of());
+	}
+
+	/**
+	 * Constructor with optional scenario and mappers for custom event types, which are used by all readers.
+	 */
+	@Inject
+	public ReplayHandler(EpisimConfigGroup config, @Nullable Scenario scenario, Map<String, MatsimEventsReader.CustomEventMapper> mappers) {
 		this.scenario = scenario;
 		this.episimConfig = config;
+		this.mappers = mappers;
 
 		this.events.putAll(readEvents(episimConfig));
 
@@ -79,42 +103,89 @@ public final class ReplayHandler {
 	 * @param events ordered events for all weekdays
 	 */
 	public ReplayHandler(Map<DayOfWeek, List<Event>> events) {
-		this.events.putAll(events);
+		this.events.putAll(EventStore.of(events));
 		this.scenario = null;
 		this.episimConfig = null;
+		this.mappers = Map.of();
 	}
 
 	/**
-	 * Replays event add modifies attributes based on current iteration.
+	 * Replays events of a day to the {@link InfectionEventHandler}.
 	 */
 	public void replayEvents(final InfectionEventHandler infectionHandler, DayOfWeek day) {
 		infectionHandler.handleEvents(day, events.get(day));
 	}
 
 	/**
-	 * All available events.
+	 * All available events. The returned lists create event objects on access,
+	 * use {@link #getEventStores()} for efficient access.
 	 */
 	public Map<DayOfWeek, List<Event>> getEvents() {
+		return EventStore.asLists(events);
+	}
+
+	/**
+	 * All available events in their compact representation.
+	 */
+	public Map<DayOfWeek, EventStore> getEventStores() {
 		return new EnumMap<>(events);
 	}
 
 	/**
 	 * Read events as defined in config.
 	 */
-	public Map<DayOfWeek, List<Event>> readEvents(EpisimConfigGroup config) {
+	public Map<DayOfWeek, EventStore> readEvents(EpisimConfigGroup config) {
 
-		EnumMap<DayOfWeek, List<Event>> map = new EnumMap<>(DayOfWeek.class);
+		EnumMap<DayOfWeek, EventStore> map = new EnumMap<>(DayOfWeek.class);
 
-		for (EpisimConfigGroup.EventFileParams input : config.getInputEventsFiles()) {
+		List<EpisimConfigGroup.EventFileParams> inputs = new ArrayList<>(config.getInputEventsFiles());
+		List<EventStore> stores = new ArrayList<>(inputs.size());
 
-			List<Event> eventsForDay = new ArrayList<>();
-			EventsManager manager = EventsUtils.createEventsManager();
-			manager.addHandler(new EventReader(eventsForDay));
-			EventsUtils.readEvents(manager, input.getPath());
-			manager.finishProcessing();
+		// parallel reading creates ids in nondeterministic order, therefore it needs to be enabled explicitly
+		int threads = config.getThreads();
+		if (config.getParallelEventReading() == EpisimConfigGroup.ParallelEventReading.yes && threads > 1 && !inputs.isEmpty()) {
+
+			// distinct files are read concurrently, the chunks of each file are decoded by a separate pool
+			ExecutorService fileExecutor = Executors.newFixedThreadPool(Math.min(inputs.size(), threads));
+			ExecutorService chunkExecutor = Executors.newFixedThreadPool(threads);
+			ChunkedEventsReader reader = new ChunkedEventsReader(chunkExecutor, threads, EventReader::new, mappers);
+
+			try {
+				var futures = new CompletableFuture[inputs.size()];
+				for (int i = 0; i < inputs.size(); i++) {
+					EpisimConfigGroup.EventFileParams input = inputs.get(i);
+					futures[i] = CompletableFuture.supplyAsync(() -> readEvents(config, input, reader), fileExecutor);
+				}
+
+				CompletableFuture.allOf(futures).join();
+
+				for (CompletableFuture<?> f : futures) {
+					stores.add((EventStore) f.join());
+				}
+
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+
+				throw e;
+			} finally {
+				fileExecutor.shutdownNow();
+				chunkExecutor.shutdownNow();
+			}
+
+		} else {
+			for (EpisimConfigGroup.EventFileParams input : inputs) {
+				stores.add(readEvents(config, input, null));
+			}
+		}
+
+		for (int i = 0; i < inputs.size(); i++) {
+
+			EpisimConfigGroup.EventFileParams input = inputs.get(i);
+			EventStore eventsForDay = stores.get(i);
 
-			log.info("Read in {} events for {}, with time range {} - {}", eventsForDay.size(), input.getDays(), eventsForDay.get(0).getTime(),
-					eventsForDay.get(eventsForDay.size() - 1).getTime());
+			log.info("Read in {} events for {}, with time range {} - {}", eventsForDay.size(), input.getDays(), eventsForDay.getTime(0),
+					eventsForDay.getTime(eventsForDay.size() - 1));
 
 			for (DayOfWeek day : input.getDays()) {
 				if (map.containsKey(day))
@@ -127,12 +198,81 @@ public final class ReplayHandler {
 		return map;
 	}
 
+	/**
+	 * Local file the network of the scenario was read from.
+	 */
+	@Nullable
+	private Path getNetworkFile() {
+		String file = scenario.getConfig().network().getInputFile();
+		if (file == null)
+			return null;
+
+		try {
+			URL url = ConfigGroup.getInputFileURL(scenario.getConfig().getContext(), file);
+			return "file".equals(url.getProtocol()) ? Path.of(url.toURI()) : null;
+		} catch (URISyntaxException | RuntimeException e) {
+			log.warn("Could not resolve network file {}", file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Read and preprocess the events of one input file, using the binary cache if enabled.
+	 *
+	 * @param reader reader for parallel decoding of the file, or null to read it sequentially
+	 */
+	private EventStore readEvents(EpisimConfigGroup config, EpisimConfigGroup.EventFileParams input, @Nullable ChunkedEventsReader reader) {
+
+		Path cache = null;
+		if (config.getEventCache() == EpisimConfigGroup.EventCache.yes) {
+			boolean usesNetwork = scenario != null && !scenario.getNetwork().getLinks().isEmpty();
+			cache = EventStoreCache.getCachePath(input.getPath(), config, usesNetwork, usesNetwork ? getNetworkFile() : null);
+			if (cache == null)
+				log.warn("Events {} can not be cached", input.getPath());
+		}
+
+		if (cache != null && Files.exists(cache)) {
+			try {
+				EventStore store = EventStoreCache.read(cache);
+				log.info("Read events from cache {}", cache);
+				return store;
+			} catch (IOException e) {
+				log.warn("Could not read event cache {}, events will be parsed again", cache, e);
+			}
+		}
+
+		EventStore eventsForDay;
+		if (reader != null) {
+			eventsForDay = reader.read(input.getPath());
+		} else {
+			eventsForDay = new EventStore();
+			EventsManager manager = EventsUtils.createEventsManager();
+			manager.addHandler(new EventReader(eventsForDay));
+			MatsimEventsReader eventsReader = new MatsimEventsReader(manager);
+			mappers.forEach(eventsReader::addCustomEventMapper);
+			eventsReader.readFile(input.getPath());
+			manager.finishProcessing();
+			eventsForDay.trimToSize();
+		}
+
+		if (cache != null) {
+			try {
+				EventStoreCache.write(eventsForDay, cache);
+				log.info("Wrote event cache {}", cache);
+			} catch (IOException e) {
+				log.warn("Could not write event cache {}", cache, e);
+			}
+		}
+
+		return eventsForDay;
+	}
+
 	/**
 	 * Replaces all stored events
 	 *
 	 * @param events new events to store
 	 */
-	void setEvents(Map<DayOfWeek, List<Event>> events) {
+	void setEvents(Map<DayOfWeek, EventStore> events) {
 		this.events.clear();
 		this.events.putAll(events);
 	}
@@ -142,9 +282,9 @@ public final class ReplayHandler {
 	 */
 	private final class EventReader implements BasicEventHandler {
 
-		private final List<Event> events;
+		private final EventStore events;
 
-		private EventReader(List<Event> events) {
+		private EventReader(EventStore events) {
 			this.events = events;
 		}
 
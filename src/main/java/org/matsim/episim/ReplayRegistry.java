@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Dense lookup of persons, facilities and vehicles by the {@link Id#index()} stored in an {@link EventStore}.
+ * This avoids resolving ids for every replayed event. Needs to be updated whenever new persons or containers are created.
+ */
+final class ReplayRegistry {
+
+	private EpisimPerson[] persons = new EpisimPerson[0];
+	private InfectionEventHandler.EpisimFacility[] facilities = new InfectionEventHandler.EpisimFacility[0];
+	private InfectionEventHandler.EpisimVehicle[] vehicles = new InfectionEventHandler.EpisimVehicle[0];
+
+	/**
+	 * Rebuild the lookup tables from the given maps.
+	 */
+	void update(Map<Id<Person>, EpisimPerson> personMap,
+				Map<Id<ActivityFacility>, InfectionEventHandler.EpisimFacility> facilityMap,
+				Map<Id<Vehicle>, InfectionEventHandler.EpisimVehicle> vehicleMap) {
+
+		EpisimPerson[] persons = new EpisimPerson[Id.getNumberOfIds(Person.class)];
+		personMap.forEach((k, v) -> persons[k.index()] = v);
+
+		InfectionEventHandler.EpisimFacility[] facilities = new InfectionEventHandler.EpisimFacility[Id.getNumberOfIds(ActivityFacility.class)];
+		facilityMap.forEach((k, v) -> facilities[k.index()] = v);
+
+		InfectionEventHandler.EpisimVehicle[] vehicles = new InfectionEventHandler.EpisimVehicle[Id.getNumberOfIds(Vehicle.class)];
+		vehicleMap.forEach((k, v) -> vehicles[k.index()] = v);
+
+		this.persons = persons;
+		this.facilities = facilities;
+		this.vehicles = vehicles;
+	}
+
+	/**
+	 * Person by {@link Id#index()}, null if it is unknown.
+	 */
+	@Nullable
+	EpisimPerson getPerson(int index) {
+		return index >= 0 && index < persons.length ? persons[index] : null;
+	}
+
+	/**
+	 * Facility by {@link Id#index()}, null if it is unknown.
+	 * Ids created after the last {@link #update(Map, Map, Map)}, e.g. by newly set events, are not known.
+	 */
+	@Nullable
+	InfectionEventHandler.EpisimFacility getFacility(int index) {
+		return index >= 0 && index < facilities.length ? facilities[index] : null;
+	}
+
+	/**
+	 * Vehicle by {@link Id#index()}, null if it is unknown.
+	 */
+	@Nullable
+	InfectionEventHandler.EpisimVehicle getVehicle(int index) {
+		return index >= 0 && index < vehicles.length ? vehicles[index] : null;
+	}
+}
@@ -31,6 +31,7 @@ public class TracingConfigGroup extends ReflectiveConfigGroup {
 	private static final String CAPACITY_TYPE = "capacityType";
 	private static final String STRATEGY = "strategy";
 	private static final String LOCATION_THRESHOLD = "locationThreshold";
+	private static final String TRACING_DEPTH = "tracingDepth";
 	private static final String GROUPNAME = "episimTracing";
 
 	/**
@@ -99,6 +100,11 @@ public class TracingConfigGroup extends ReflectiveConfigGroup {
 	 */
 	private int locationThreshold = 4;
 
+	/**
+	 * Number of hops contacts are traced on the same day. Contacts of quarantined contact persons are traced as well if greater one.
+	 */
+	private int tracingDepth = 1;
+
 	/**
 	 * Default constructor.
 	 */
@@ -316,6 +322,19 @@ public class TracingConfigGroup extends ReflectiveConfigGroup {
 		this.locationThreshold = locationThreshold;
 	}
 
+	@StringGetter(TRACING_DEPTH)
+	public int getTracingDepth() {
+		return tracingDepth;
+	}
+
+	@StringSetter(TRACING_DEPTH)
+	public void setTracingDepth(int tracingDepth) {
+		if (tracingDepth < 1)
+			throw new IllegalArgumentException("Tracing depth must be at least 1");
+
+		this.tracingDepth = tracingDepth;
+	}
+
 	public enum CapacityType {PER_PERSON, PER_CONTACT_PERSON}
 
 	public enum Strategy {
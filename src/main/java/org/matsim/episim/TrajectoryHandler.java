@@ -5,16 +5,13 @@ import com.google.inject.Inject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.events.ActivityEndEvent;
-import org.matsim.api.core.v01.events.ActivityStartEvent;
-import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
-import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.model.ContactModel;
 import org.matsim.episim.policy.Restriction;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.vehicles.Vehicle;
 
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import java.time.DayOfWeek;
 import java.util.Iterator;
@@ -36,6 +33,11 @@ final class TrajectoryHandler {
 	private final Map<Id<Vehicle>, InfectionEventHandler.EpisimVehicle> vehicleMap;
 	private final Map<Id<ActivityFacility>, InfectionEventHandler.EpisimFacility> pseudoFacilityMap;
 
+	/**
+	 * Lookup of persons and containers for replayed events.
+	 */
+	private final ReplayRegistry registry;
+
 	/**
 	 * The "local" random instance, used for all submodels.
 	 */
@@ -48,7 +50,8 @@ final class TrajectoryHandler {
 	public TrajectoryHandler(EpisimConfigGroup episimConfig, EpisimReporting reporting, ContactModel model, SplittableRandom rnd,
 							 @Named("personMap") Map<Id<Person>, EpisimPerson> personMap,
 							 @Named("vehicleMap") Map<Id<Vehicle>, InfectionEventHandler.EpisimVehicle> vehicleMap,
-							 @Named("pseudoFacilityMap") Map<Id<ActivityFacility>, InfectionEventHandler.EpisimFacility> pseudoFacilityMap) {
+							 @Named("pseudoFacilityMap") Map<Id<ActivityFacility>, InfectionEventHandler.EpisimFacility> pseudoFacilityMap,
+							 ReplayRegistry registry) {
 		this.rnd = rnd;
 		this.episimConfig = episimConfig;
 		this.reporting = reporting;
@@ -56,6 +59,7 @@ final class TrajectoryHandler {
 		this.personMap = personMap;
 		this.vehicleMap = vehicleMap;
 		this.pseudoFacilityMap = pseudoFacilityMap;
+		this.registry = registry;
 	}
 
 	SplittableRandom getRnd() {
@@ -93,7 +97,7 @@ final class TrajectoryHandler {
 			InfectionEventHandler.EpisimFacility lastFacility = this.pseudoFacilityMap.get(lastFacilityId);
 
 			// index of last activity at previous day
-			String actType = person.getActivity(day.minus(1), 24 * 3600.).actType();
+			String actType = person.getActivityParams(person.getActivityIndex(day.minus(1), 24 * 3600.)).getContainerName();
 			double timeSpent = now - lastFacility.getContainerEnteringTime(person.getPersonId());
 			person.addSpentTime(actType, timeSpent);
 
@@ -109,7 +113,7 @@ final class TrajectoryHandler {
 
 			if (responsible.test(firstFacilityId)) {
 				InfectionEventHandler.EpisimFacility firstFacility = this.pseudoFacilityMap.get(firstFacilityId);
-				firstFacility.addPerson(person, now, person.getFirstActivity(day));
+				firstFacility.addPerson(person, now, person.getStartOfDay(day));
 
 				contactModel.notifyEnterFacility(person, firstFacility, now);
 			}
@@ -120,14 +124,14 @@ final class TrajectoryHandler {
 			InfectionEventHandler.EpisimFacility firstFacility = this.pseudoFacilityMap.get(firstFacilityId);
 
 			if (responsible.test(firstFacility.getContainerId())) {
-				firstFacility.addPerson(person, now, person.getFirstActivity(day));
+				firstFacility.addPerson(person, now, person.getStartOfDay(day));
 				contactModel.notifyEnterFacility(person, firstFacility, now);
 			}
 		}
 	}
 
 	/**
-	 * Called of start of day before any handleEvent method.
+	 * Called of start of day before any event is handled.
 	 *
 	 * @param responsible predicate for checking if the handler is responsible for a certain facility
 	 */
@@ -159,15 +163,20 @@ final class TrajectoryHandler {
 				// person needs to be at a different container and is removed here
 				if (person.getStaysInContainer(prevDay) && !person.getLastFacilityId(prevDay).equals(person.getFirstFacilityId(day))) {
 
-					EpisimPerson.PerformedActivity lastActivity = facility.getPerformedActivity(person.getPersonId());
+					int lastActivity = facility.getActivityIndex(person.getPersonId());
 
 					double timeSpent = now - facility.getContainerEnteringTime(person.getPersonId());
-					person.addSpentTime(lastActivity.actType(), timeSpent);
+					person.addSpentTime(person.getActivityParams(lastActivity).getContainerName(), timeSpent);
 
 					contactModel.infectionDynamicsFacility(person, facility, now);
 					facility.removePerson(person, it);
-				} else if (person.infectedButNotSerious())
-					facility.countContagious(1);
+				} else {
+					// disease status may have changed over night
+					facility.updateGroup(person);
+
+					if (person.infectedButNotSerious())
+						facility.countContagious(1);
+				}
 			}
 		}
 
@@ -197,7 +206,7 @@ final class TrajectoryHandler {
 				continue;
 
 			if (!person.getStaysInContainer(prevDay) || !person.getLastFacilityId(prevDay).equals(firstFacilityId)) {
-				firstFacility.addPerson(person, now, person.getFirstActivity(day));
+				firstFacility.addPerson(person, now, person.getStartOfDay(day));
 				contactModel.notifyEnterFacility(person, firstFacility, now);
 			}
 		}
@@ -220,47 +229,56 @@ final class TrajectoryHandler {
 		return person.checkActivity(day, time) && person.checkNextActivity(day, time);
 	}
 
-	public void handleEvent(ActivityStartEvent activityStartEvent) {
-//		double now = activityStartEvent.getTime();
-		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), activityStartEvent.getTime(), iteration);
+	/**
+	 * Whether replayed input events need to be passed to the reporting.
+	 */
+	private boolean writeInputEvents() {
+		return episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.input ||
+				episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.all;
+	}
+
+	/**
+	 * Handle activity start event at index {@code i} of {@code events}.
+	 */
+	public void handleActivityStart(EventStore events, int i) {
+		final double time = events.getTime(i);
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), time, iteration);
 
 		// find the person:
-		EpisimPerson episimPerson = this.personMap.get(activityStartEvent.getPersonId());
+		EpisimPerson episimPerson = registry.getPerson(events.getPersonIndex(i));
 
-		if (!checkParticipation(episimPerson, activityStartEvent.getTime()))
+		if (!checkParticipation(episimPerson, time))
 			return;
 
-		reporting.handleEvent(activityStartEvent);
-
-		// create pseudo facility id that includes the activity type:
-		Id<ActivityFacility> episimFacilityId = activityStartEvent.getFacilityId();
+		if (writeInputEvents())
+			reporting.handleEvent(events.getEvent(i));
 
 		// find the facility
-		InfectionEventHandler.EpisimFacility episimFacility = this.pseudoFacilityMap.get(episimFacilityId);
+		InfectionEventHandler.EpisimFacility episimFacility = registry.getFacility(events.getContainerIndex(i));
 
 		// add person to facility
-		episimFacility.addPerson(episimPerson, now, episimPerson.getActivity(day, activityStartEvent.getTime()));
+		episimFacility.addPerson(episimPerson, now, episimPerson.getActivityIndex(day, time));
 
 		contactModel.notifyEnterFacility(episimPerson, episimFacility, now);
 	}
 
-	public void handleEvent(ActivityEndEvent activityEndEvent) {
-//		double now = activityEndEvent.getTime();
-		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), activityEndEvent.getTime(), iteration);
-
-		EpisimPerson episimPerson = this.personMap.get(activityEndEvent.getPersonId());
+	/**
+	 * Handle activity end event at index {@code i} of {@code events}.
+	 */
+	public void handleActivityEnd(EventStore events, int i) {
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), events.getTime(i), iteration);
 
-		// create pseudo facility id that includes the activity type:
-		Id<ActivityFacility> episimFacilityId = activityEndEvent.getFacilityId();
+		EpisimPerson episimPerson = registry.getPerson(events.getPersonIndex(i));
 
 		// find the facility
-		InfectionEventHandler.EpisimFacility episimFacility = this.pseudoFacilityMap.get(episimFacilityId);
+		InfectionEventHandler.EpisimFacility episimFacility = registry.getFacility(events.getContainerIndex(i));
 
 		// person did not perform this activity
 		if (episimConfig.getActivityHandling() == EpisimConfigGroup.ActivityHandling.startOfDay && !episimFacility.containsPerson(episimPerson))
 			return;
 
-		reporting.handleEvent(activityEndEvent);
+		if (writeInputEvents())
+			reporting.handleEvent(events.getEvent(i));
 
 		if (episimConfig.getContagiousOptimization() == EpisimConfigGroup.ContagiousOptimization.no ||
 		    episimFacility.containsContagious()) {
@@ -269,26 +287,30 @@ final class TrajectoryHandler {
 
 		if (episimConfig.getReportTimeUse() == EpisimConfigGroup.ReportTimeUse.yes) {
 			double timeSpent = now - episimFacility.getContainerEnteringTime(episimPerson.getPersonId());
-			episimPerson.addSpentTime(activityEndEvent.getActType(), timeSpent);
+			episimPerson.addSpentTime(events.getActType(i), timeSpent);
 		}
 
 		episimFacility.removePerson(episimPerson);
 	}
 
-	public void handleEvent(PersonEntersVehicleEvent entersVehicleEvent) {
-//		double now = entersVehicleEvent.getTime();
-		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), entersVehicleEvent.getTime(), iteration);
+	/**
+	 * Handle person enters vehicle event at index {@code i} of {@code events}.
+	 */
+	public void handleEntersVehicle(EventStore events, int i) {
+		final double time = events.getTime(i);
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), time, iteration);
 
 		// find the person:
-		EpisimPerson episimPerson = this.personMap.get(entersVehicleEvent.getPersonId());
+		EpisimPerson episimPerson = registry.getPerson(events.getPersonIndex(i));
 
-		if (!checkVehicleUsage(episimPerson, entersVehicleEvent.getTime()))
+		if (!checkVehicleUsage(episimPerson, time))
 			return;
 
-		reporting.handleEvent(entersVehicleEvent);
+		if (writeInputEvents())
+			reporting.handleEvent(events.getEvent(i));
 
 		// find the vehicle:
-		InfectionEventHandler.EpisimVehicle episimVehicle = this.vehicleMap.get(entersVehicleEvent.getVehicleId());
+		InfectionEventHandler.EpisimVehicle episimVehicle = registry.getVehicle(events.getContainerIndex(i));
 
 		// add person to vehicle and memorize entering time:
 		episimVehicle.addPerson(episimPerson, now, EpisimPerson.UNSPECIFIC_ACTIVITY);
@@ -296,20 +318,23 @@ final class TrajectoryHandler {
 		contactModel.notifyEnterVehicle(episimPerson, episimVehicle, now);
 	}
 
-	public void handleEvent(PersonLeavesVehicleEvent leavesVehicleEvent) {
-//		double now = leavesVehicleEvent.getTime();
-		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), leavesVehicleEvent.getTime(), iteration);
+	/**
+	 * Handle person leaves vehicle event at index {@code i} of {@code events}.
+	 */
+	public void handleLeavesVehicle(EventStore events, int i) {
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), events.getTime(i), iteration);
 
 		// find vehicle:
-		InfectionEventHandler.EpisimVehicle episimVehicle = this.vehicleMap.get(leavesVehicleEvent.getVehicleId());
+		InfectionEventHandler.EpisimVehicle episimVehicle = registry.getVehicle(events.getContainerIndex(i));
 
-		EpisimPerson episimPerson = this.personMap.get(leavesVehicleEvent.getPersonId());
+		EpisimPerson episimPerson = registry.getPerson(events.getPersonIndex(i));
 
 		// person did not enter the vehicle
 		if (episimConfig.getActivityHandling() == EpisimConfigGroup.ActivityHandling.startOfDay && !episimVehicle.containsPerson(episimPerson))
 			return;
 
-		reporting.handleEvent(leavesVehicleEvent);
+		if (writeInputEvents())
+			reporting.handleEvent(events.getEvent(i));
 
 		if (episimConfig.getContagiousOptimization() == EpisimConfigGroup.ContagiousOptimization.no || 
 			episimVehicle.containsContagious()) {
@@ -331,12 +356,20 @@ final class TrajectoryHandler {
 		reporting.reportCpuTime(iteration, "TrajectoryHandler", what, taskId);
 	}
 
+	/**
+	 * Facility with this id, or null if it is not known to the simulation.
+	 */
+	@Nullable
 	public InfectionEventHandler.EpisimFacility getEpisimFacility(Id<ActivityFacility> id) {
-		return this.pseudoFacilityMap.get(id);
+		return registry.getFacility(id.index());
 	}
 
+	/**
+	 * Vehicle with this id, or null if it is not known to the simulation.
+	 */
+	@Nullable
 	public InfectionEventHandler.EpisimVehicle getEpisimVehicle(Id<Vehicle> id) {
-		return this.vehicleMap.get(id);
+		return registry.getVehicle(id.index());
 	}
 }
 
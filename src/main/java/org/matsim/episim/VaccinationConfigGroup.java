@@ -308,6 +308,18 @@ public class VaccinationConfigGroup extends ReflectiveConfigGroup {
 		private static final String FACTOR_SHOWINGS_SYMPTOMS = "factorShowingSymptoms";
 		private static final String FACTOR_SERIOUSLY_SICK = "factorSeriouslySick";
 
+		private static final VirusStrain[] STRAINS = VirusStrain.values();
+
+		/**
+		 * Indices into {@link #lookup}.
+		 */
+		private static final int LOOKUP_EFFECTIVENESS = 0;
+		private static final int LOOKUP_INFECTIVITY = 1;
+		private static final int LOOKUP_BOOST_EFFECTIVENESS = 2;
+		private static final int LOOKUP_BOOST_INFECTIVITY = 3;
+		private static final int LOOKUP_FACTOR_SHOWING_SYMPTOMS = 4;
+		private static final int LOOKUP_FACTOR_SERIOUSLY_SICK = 5;
+
 		private VaccinationType type;
 
 		/**
@@ -369,6 +381,11 @@ public class VaccinationConfigGroup extends ReflectiveConfigGroup {
 						.atDay(5, 0.5)
 		));
 
+		/**
+		 * Resolved parameter for each lookup and strain ordinal, created on first access.
+		 */
+		private volatile Parameter[][] lookup;
+
 		VaccinationParams() {
 			super(SET_TYPE);
 		}
@@ -411,20 +428,45 @@ public class VaccinationConfigGroup extends ReflectiveConfigGroup {
 					map.put(s, p);
 				}
 			}
+			lookup = null;
 			return this;
 		}
 
 		/**
 		 * Interpolate parameter for day after vaccination.
 		 *
-		 * @param map    map for lookup
+		 * @param index  index of the lookup
 		 * @param strain virus strain
 		 * @param day    days since vaccination
 		 * @return interpolated factor
 		 */
-		private double getParamsInternal(Map<VirusStrain, Parameter> map, VirusStrain strain, int day) {
-			Parameter p = map.getOrDefault(strain, map.get(VirusStrain.SARS_CoV_2));
-			return p.get(day);
+		private double getParamsInternal(int index, VirusStrain strain, int day) {
+			Parameter[][] l = lookup;
+			if (l == null) {
+				l = createLookup();
+				lookup = l;
+			}
+
+			return l[index][strain.ordinal()].get(day);
+		}
+
+		/**
+		 * Resolve the parameter of each strain, strains without own parameter use the one of {@link VirusStrain#SARS_CoV_2}.
+		 */
+		private Parameter[][] createLookup() {
+
+			Parameter[][] l = new Parameter[6][STRAINS.length];
+			for (VirusStrain s : STRAINS) {
+				int i = s.ordinal();
+				l[LOOKUP_EFFECTIVENESS][i] = effectiveness.getOrDefault(s, effectiveness.get(VirusStrain.SARS_CoV_2));
+				l[LOOKUP_INFECTIVITY][i] = infectivity.getOrDefault(s, infectivity.get(VirusStrain.SARS_CoV_2));
+				l[LOOKUP_BOOST_EFFECTIVENESS][i] = boostEffectiveness.containsKey(s) ? boostEffectiveness.get(s) : l[LOOKUP_EFFECTIVENESS][i];
+				l[LOOKUP_BOOST_INFECTIVITY][i] = boostInfectivity.getOrDefault(s, boostInfectivity.get(VirusStrain.SARS_CoV_2));
+				l[LOOKUP_FACTOR_SHOWING_SYMPTOMS][i] = factorShowingSymptoms.getOrDefault(s, factorShowingSymptoms.get(VirusStrain.SARS_CoV_2));
+				l[LOOKUP_FACTOR_SERIOUSLY_SICK][i] = factorSeriouslySick.getOrDefault(s, factorSeriouslySick.get(VirusStrain.SARS_CoV_2));
+			}
+
+			return l;
 		}
 
 		public VaccinationParams setEffectiveness(Parameter... parameters) {
@@ -452,33 +494,34 @@ public class VaccinationConfigGroup extends ReflectiveConfigGroup {
 		}
 
 		public double getEffectiveness(VirusStrain strain, int day) {
-			return getParamsInternal(effectiveness, strain, day);
+			return getParamsInternal(LOOKUP_EFFECTIVENESS, strain, day);
 		}
 
 		public double getInfectivity(VirusStrain strain, int day) {
-			return getParamsInternal(infectivity, strain, day);
+			return getParamsInternal(LOOKUP_INFECTIVITY, strain, day);
 		}
 
 		public double getBoostInfectivity(VirusStrain strain, int day) {
-			return getParamsInternal(boostInfectivity, strain, day);
+			return getParamsInternal(LOOKUP_BOOST_INFECTIVITY, strain, day);
 		}
 
 		public double getBoostEffectiveness(VirusStrain strain, int day) {
-			return getParamsInternal(boostEffectiveness.containsKey(strain) ? boostEffectiveness : effectiveness, strain, day);
+			return getParamsInternal(LOOKUP_BOOST_EFFECTIVENESS, strain, day);
 		}
 
 		public double getFactorShowingSymptoms(VirusStrain strain, int day) {
-			return getParamsInternal(factorShowingSymptoms, strain, day);
+			return getParamsInternal(LOOKUP_FACTOR_SHOWING_SYMPTOMS, strain, day);
 		}
 
 		public double getFactorSeriouslySick(VirusStrain strain, int day) {
-			return getParamsInternal(factorSeriouslySick, strain, day);
+			return getParamsInternal(LOOKUP_FACTOR_SERIOUSLY_SICK, strain, day);
 		}
 		/**
 		 * Load serialized parameters
 		 */
 		private void setParamsInternal(Map<VirusStrain, Parameter> map, String value) {
 			map.clear();
+			lookup = null;
 			if (value.isBlank()) return;
 
 			map.clear();
@@ -604,9 +647,21 @@ public class VaccinationConfigGroup extends ReflectiveConfigGroup {
 		private static final Splitter.MapSplitter SPLITTER = Splitter.on("|").withKeyValueSeparator(">");
 		private static final Joiner.MapJoiner JOINER = Joiner.on("|").withKeyValueSeparator(">");
 
+		/**
+		 * Maximum number of days held in {@link #table}, later days are interpolated from the map.
+		 */
+		private static final int MAX_TABLE_DAYS = 1 << 14;
+
 		private final VirusStrain[] strain;
 		private final NavigableMap<Integer, Double> map = new TreeMap<>();
 
+		/**
+		 * Interpolated value for each day, created on first access.
+		 * The last entry is valid for all later days if {@link #saturated} is true.
+		 */
+		private volatile double[] table;
+		private volatile boolean saturated;
+
 		private Parameter(VirusStrain[] strain) {
 			this.strain = strain;
 		}
@@ -624,6 +679,7 @@ public class VaccinationConfigGroup extends ReflectiveConfigGroup {
 		 */
 		public Parameter atDay(int day, double value) {
 			map.put(day, value);
+			table = null;
 			return this;
 		}
 
@@ -634,14 +690,56 @@ public class VaccinationConfigGroup extends ReflectiveConfigGroup {
 		 */
 		public Parameter atFullEffect(double value) {
 			map.put(Integer.MAX_VALUE, value);
+			table = null;
 			return this;
 		}
 
+		/**
+		 * Value for given day, read from the table if possible.
+		 */
+		private double get(int day) {
+
+			double[] t = table;
+			if (t == null)
+				t = createTable();
+
+			if (day >= 0) {
+				if (day < t.length)
+					return t[day];
+				if (saturated && t.length > 0)
+					return t[t.length - 1];
+			}
+
+			return interpolate(day);
+		}
+
+		/**
+		 * Tabulate all days up to the last finite entry. After that entry the value stays constant,
+		 * unless the full effect has not been resolved by {@link #setDaysBeforeFullEffect(int)}.
+		 */
+		private synchronized double[] createTable() {
+
+			if (table != null)
+				return table;
+
+			Integer last = map.lowerKey(Integer.MAX_VALUE);
+
+			int n = last == null || last < 0 ? 0 : Math.min(last + 1, MAX_TABLE_DAYS);
+
+			double[] t = new double[n];
+			for (int i = 0; i < n; i++) {
+				t[i] = interpolate(i);
+			}
+
+			saturated = n > 0 && n == last + 1 && !map.containsKey(Integer.MAX_VALUE);
+			table = t;
+			return t;
+		}
 
 		/**
 		 * Interpolate for given day.
 		 */
-		private double get(int day) {
+		private double interpolate(int day) {
 
 			Map.Entry<Integer, Double> floor = map.floorEntry(day);
 
@@ -663,8 +761,10 @@ public class VaccinationConfigGroup extends ReflectiveConfigGroup {
 		}
 
 		private void setDaysBeforeFullEffect(int daysBeforeFullEffect) {
-			if (map.containsKey(Integer.MAX_VALUE))
+			if (map.containsKey(Integer.MAX_VALUE)) {
 				map.put(daysBeforeFullEffect, map.remove(Integer.MAX_VALUE));
+				table = null;
+			}
 		}
 
 		@Override
@@ -4,6 +4,8 @@ import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ReflectiveConfigGroup;
 import org.matsim.episim.model.VirusStrain;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.Map;
 
@@ -39,6 +41,13 @@ public class VirusStrainConfigGroup extends ReflectiveConfigGroup {
 		return strains.get(strain);
 	}
 
+	/**
+	 * All configured strains.
+	 */
+	public Collection<StrainParams> getStrains() {
+		return Collections.unmodifiableCollection(strains.values());
+	}
+
 	/**
 	 * Get an existing or add new parameter set.
 	 */
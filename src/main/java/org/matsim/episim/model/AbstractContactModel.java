@@ -27,6 +27,7 @@ import org.matsim.episim.*;
 import org.matsim.episim.events.EpisimInfectionEvent;
 import org.matsim.episim.events.EpisimPotentialInfectionEvent;
 import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.RestrictionTable;
 import org.matsim.facilities.ActivityFacility;
 
 import java.util.HashMap;
@@ -67,10 +68,20 @@ public abstract class AbstractContactModel implements ContactModel {
 	 */
 	protected final InfectionModel infectionModel;
 
+	/**
+	 * Precompiled interaction rules between activities, read concurrently when contacts are evaluated in parallel.
+	 */
+	private volatile ActivityInteractions interactions;
+
 	protected int iteration;
 	protected DayOfWeek day;
 	private Map<String, Restriction> restrictions;
 
+	/**
+	 * Restrictions of the current iteration, resolved by activity index.
+	 */
+	private RestrictionTable restrictionTable;
+
 	/**
 	 * Curfew compliance valid for the day.
 	 */
@@ -91,6 +102,7 @@ public abstract class AbstractContactModel implements ContactModel {
 		this.qhParams = episimConfig.selectInfectionParams(QUARANTINE_HOME);
 		this.trackingMinDuration = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class).getMinDuration();
 		this.scenario = scenario;
+		this.interactions = new ActivityInteractions(episimConfig, qhParams);
 
 		subdistrictFacilities = new HashMap<>();
 		if (episimConfig.getDistrictLevelRestrictions().equals(EpisimConfigGroup.DistrictLevelRestrictions.yes)
@@ -144,31 +156,57 @@ public abstract class AbstractContactModel implements ContactModel {
 	}
 
 	/**
-	 * Attention: In order to re-use the underlying object, this function returns a buffer.
-	 * Be aware that the old result will be overwritten, when the function is called multiple times.
+	 * Dense index of the activity with given params, which is used for all interaction lookups.
+	 */
+	protected final int getActivityIndex(EpisimConfigGroup.InfectionParams params) {
+		int idx = params.getIndex();
+		if (idx < 0)
+			throw new IllegalArgumentException("Infection params " + params.getContainerName() + " are not part of the config, they need to be added via addContainerParams.");
+
+		// params may have been added after this model was created
+		if (idx >= interactions.size())
+			updateInteractions(idx);
+
+		return idx;
+	}
+
+	/**
+	 * Rebuild the interactions if they don't contain the activity with index {@code idx}.
+	 * Contacts may be evaluated concurrently, so the new instance is only published once it is complete.
 	 */
-	protected static StringBuilder getInfectionType(StringBuilder buffer, EpisimContainer<?> container, String leavingPersonsActivity,
-													String otherPersonsActivity) {
-		buffer.setLength(0);
+	private synchronized void updateInteractions(int idx) {
+		if (idx >= interactions.size())
+			interactions = new ActivityInteractions(episimConfig, qhParams);
+	}
+
+	/**
+	 * Infection type of a contact between two activities. The returned strings are precomputed and don't need to be built.
+	 */
+	protected final String getInfectionType(EpisimContainer<?> container, int leavingPersonsActivity, int otherPersonsActivity) {
 		if (container instanceof EpisimFacility) {
-			buffer.append(leavingPersonsActivity).append("_").append(otherPersonsActivity);
-			return buffer;
+			return interactions.getLabel(leavingPersonsActivity, otherPersonsActivity);
 		} else if (container instanceof EpisimVehicle) {
-			buffer.append("pt");
-			return buffer;
+			return ActivityInteractions.PT;
 		} else {
 			throw new RuntimeException("Infection situation is unknown");
 		}
 	}
 
+	/**
+	 * Whether persons performing these activities can interact in a facility. Certain cross-activity interactions are forbidden.
+	 */
+	protected final boolean canInteract(int leavingPersonsActivity, int otherPersonsActivity) {
+		return interactions.canInteract(leavingPersonsActivity, otherPersonsActivity);
+	}
+
 	/**
 	 * Get the relevant infection parameter based on container and activity and person.
 	 */
-	protected EpisimConfigGroup.InfectionParams getInfectionParams(EpisimContainer<?> container, EpisimPerson person, EpisimPerson.PerformedActivity activity) {
+	protected EpisimConfigGroup.InfectionParams getInfectionParams(EpisimContainer<?> container, EpisimPerson person) {
 		if (container instanceof EpisimVehicle) {
 			return trParams;
 		} else if (container instanceof EpisimFacility) {
-			EpisimConfigGroup.InfectionParams params = activity.params;
+			EpisimConfigGroup.InfectionParams params = person.getActivityParams(container.getActivityIndex(person.getPersonId()));
 
 			// Select different infection params for home quarantined persons
 			if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome && params.getContainerName().equals("home")) {
@@ -182,10 +220,10 @@ public abstract class AbstractContactModel implements ContactModel {
 	}
 
 	protected void trackContactPerson(EpisimPerson personLeavingContainer, EpisimPerson otherPerson, double now, double jointTimeInContainer,
-									  StringBuilder infectionType) {
+									  int leavingPersonsActivity, int otherPersonsActivity) {
 
 		// Don't track certain activities
-		if (infectionType.indexOf("pt") >= 0 || infectionType.indexOf("shop") >= 0) {
+		if (!interactions.isTrackable(leavingPersonsActivity, otherPersonsActivity)) {
 			return;
 		}
 
@@ -201,21 +239,22 @@ public abstract class AbstractContactModel implements ContactModel {
 	private boolean activityRelevantForInfectionDynamics(EpisimPerson person, EpisimContainer<?> container, Map<String,
 			Restriction> restrictions, SplittableRandom rnd) {
 
-		EpisimPerson.PerformedActivity act = container.getPerformedActivity(person.getPersonId());
+		EpisimConfigGroup.InfectionParams params = person.getActivityParams(container.getActivityIndex(person.getPersonId()));
 
 		// Check if person is home quarantined
-		if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome && !act.actType().startsWith("home"))
+		if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome && !params.getContainerName().startsWith("home"))
 			return false;
 
+		RestrictionTable table = tableFor(restrictions);
+
 		// enforce max group sizes
-		Restriction r = restrictions.get(act.params.getContainerName());
-		if (r.getMaxGroupSize() != null && r.getMaxGroupSize() > -1 && container.getMaxGroupSize() > 0 &&
-				container.getMaxGroupSize() > r.getMaxGroupSize())
+		int maxGroupSize = table.getMaxGroupSize(params);
+		if (maxGroupSize > -1 && container.getMaxGroupSize() > 0 && container.getMaxGroupSize() > maxGroupSize)
 			return false;
 
 		// reduce group size probabilistically
-		Integer reducedGroupSize = r.getReducedGroupSize();
-		if (reducedGroupSize != null && reducedGroupSize > -1 && reducedGroupSize != Integer.MAX_VALUE) {
+		int reducedGroupSize = table.getReducedGroupSize(params);
+		if (reducedGroupSize > -1) {
 			double current = (container.getPersons().size() * episimConfig.getSampleSize()) / container.getNumSpaces();
 
 			// always false if current < reduced size
@@ -225,22 +264,22 @@ public abstract class AbstractContactModel implements ContactModel {
 			if (out) return false;
 		}
 
-		if (r.isClosed(container.getContainerId()))
+		if (table.get(params).isClosed(container.getContainerId()))
 			return false;
 
-		return actIsRelevant(act.params, restrictions, rnd, container);
+		return actIsRelevant(params, table, rnd, container);
 	}
 
-	private boolean actIsRelevant(EpisimConfigGroup.InfectionParams params, Map<String, Restriction> restrictions, SplittableRandom rnd,EpisimContainer container) {
+	private boolean actIsRelevant(EpisimConfigGroup.InfectionParams params, RestrictionTable table, SplittableRandom rnd, EpisimContainer container) {
 
-		Restriction r = restrictions.get(params.getContainerName());
-		Double remainingFraction = r.getRemainingFraction();
+		double remainingFraction = table.getRemainingFraction(params);
 
 		// Applies location based restriction, if applicable
 		// So far, they are only applied for EpisimFacilities, not EpisimVehicles
 		if (episimConfig.getDistrictLevelRestrictions().equals(EpisimConfigGroup.DistrictLevelRestrictions.yes) && container != null) {
 			if (subdistrictFacilities.containsKey(container.getContainerId().toString())) {
 				String subdistrict = subdistrictFacilities.get(container.getContainerId().toString());
+				Restriction r = table.get(params);
 				if (r.getLocationBasedRf().containsKey(subdistrict)) {
 					remainingFraction = r.getLocationBasedRf().get(subdistrict);
 				}
@@ -262,14 +301,16 @@ public abstract class AbstractContactModel implements ContactModel {
 		if (person.getQuarantineStatus() != EpisimPerson.QuarantineStatus.no)
 			return false;
 
-		EpisimPerson.PerformedActivity lastAct = person.getActivity(day, time % 86400);
+		int lastAct = person.getActivityIndex(day, time % 86400);
 
-		EpisimPerson.PerformedActivity nextAct = person.getNextActivity(day, time % 86400);
+		int nextAct = person.getNextActivityIndex(day, time % 86400);
+
+		RestrictionTable table = tableFor(restrictions);
 
 		// next activity is only considered if present
-		return actIsRelevant(trParams, restrictions, rnd, null) &&
-				(nextAct == null || actIsRelevant(nextAct.params, restrictions, rnd, null)) &&
-				(actIsRelevant(lastAct.params, restrictions, rnd, null));
+		return actIsRelevant(trParams, table, rnd, null) &&
+				(nextAct < 0 || actIsRelevant(person.getActivityParams(nextAct), table, rnd, null)) &&
+				(actIsRelevant(person.getActivityParams(lastAct), table, rnd, null));
 
 	}
 
@@ -314,18 +355,24 @@ public abstract class AbstractContactModel implements ContactModel {
 	 * This takes possible closing hours into account.
 	 */
 	protected double calculateJointTimeInContainer(double now, EpisimConfigGroup.InfectionParams act, double containerEnterTimeOfPersonLeaving, double containerEnterTimeOfOtherPerson) {
-		Restriction r = getRestrictions().get(act.getContainerName());
+		return calculateJointTimeInContainer(now, act, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson, rnd);
+	}
 
+	/**
+	 * Calculate the joint time persons have been in a container, using a specific random generator for the curfew compliance.
+	 */
+	protected double calculateJointTimeInContainer(double now, EpisimConfigGroup.InfectionParams act, double containerEnterTimeOfPersonLeaving,
+												   double containerEnterTimeOfOtherPerson, SplittableRandom rnd) {
 		double max = Math.max(containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
 
 		// no closing hour set, or no compliance
-		if (!r.hasClosingHours() || curfewCompliance == 0) {
+		if (!restrictionTable.hasClosingHours(act) || curfewCompliance == 0) {
 			return now - max;
 		} else if (episimConfig.getCalibrationParameter() != 1 && rnd.nextDouble() >= curfewCompliance) {
 			return now - max;
 		}
 
-		double overlap = r.overlapWithClosingHour(max, now);
+		double overlap = restrictionTable.get(act).overlapWithClosingHour(max, now);
 		if (overlap > 0) {
 			double jointTime = now - max - overlap;
 			// joint time can now be negative and will be set to 0
@@ -344,15 +391,24 @@ public abstract class AbstractContactModel implements ContactModel {
 		this.iteration = iteration;
 		this.day = EpisimUtils.getDayOfWeek(episimConfig, iteration);
 		this.restrictions = restrictions;
+		this.restrictionTable = RestrictionTable.of(episimConfig, restrictions);
 		this.infectionModel.setIteration(iteration);
+		this.infectionModel.setRestrictions(restrictionTable);
 		this.curfewCompliance = EpisimUtils.findValidEntry(episimConfig.getCurfewCompliance(), 1.0,
 				episimConfig.getStartDate().plusDays(iteration - 1));
+
+		// params added to the config are known before any contacts of this iteration are evaluated
+		int maxIndex = -1;
+		for (EpisimConfigGroup.InfectionParams params : episimConfig.getInfectionParams()) {
+			maxIndex = Math.max(maxIndex, params.getIndex());
+		}
+		updateInteractions(maxIndex);
 	}
 
 	/**
 	 * Sets the infection status of a person and reports the event.
 	 */
-	protected void infectPerson(EpisimPerson personWrapper, EpisimPerson infector, double now, StringBuilder infectionType,
+	protected void infectPerson(EpisimPerson personWrapper, EpisimPerson infector, double now, String infectionType,
 								double prob, EpisimContainer<?> container) {
 
 		if (personWrapper.getDiseaseStatus() != EpisimPerson.DiseaseStatus.susceptible) {
@@ -380,7 +436,7 @@ public abstract class AbstractContactModel implements ContactModel {
 
 		personWrapper.possibleInfection(
 				new EpisimInfectionEvent(now, personWrapper.getPersonId(), infector.getPersonId(),
-				container.getContainerId(), infectionType.toString(), container.getPersons().size(), infector.getVirusStrain(), prob)
+				container.getContainerId(), infectionType, container.getPersons().size(), infector.getVirusStrain(), prob)
 		);
 
 		// check infection immediately if there is only one thread
@@ -389,7 +445,7 @@ public abstract class AbstractContactModel implements ContactModel {
 
 	}
 
-	protected void potentialInfection(EpisimPerson personWrapper, EpisimPerson infector, double now, StringBuilder infectionType,
+	protected void potentialInfection(EpisimPerson personWrapper, EpisimPerson infector, double now, String infectionType,
 	                                  double prob, EpisimContainer<?> container, double probUnVac, double rnd) {
 
 		// for now, only filter vaccinated persons
@@ -398,7 +454,7 @@ public abstract class AbstractContactModel implements ContactModel {
 
 		personWrapper.potentialInfection(
 				new EpisimPotentialInfectionEvent(now, personWrapper.getPersonId(), infector.getPersonId(),
-						container.getContainerId(), infectionType.toString(), container.getPersons().size(), infector.getVirusStrain(), prob, probUnVac, rnd)
+						container.getContainerId(), infectionType, container.getPersons().size(), infector.getVirusStrain(), prob, probUnVac, rnd)
 		);
 
 	}
@@ -408,6 +464,23 @@ public abstract class AbstractContactModel implements ContactModel {
 		return restrictions;
 	}
 
+	/**
+	 * Restrictions of the current iteration, resolved by activity index.
+	 */
+	public RestrictionTable getRestrictionTable() {
+		return restrictionTable;
+	}
+
+	/**
+	 * Use the table of this iteration if it was created from the given map, otherwise resolve the map.
+	 */
+	private RestrictionTable tableFor(Map<String, Restriction> restrictions) {
+		if (restrictionTable != null && restrictionTable.isCreatedFrom(restrictions))
+			return restrictionTable;
+
+		return RestrictionTable.of(episimConfig, restrictions);
+	}
+
 	@Override
 	public void notifyEnterVehicle(EpisimPerson personEnteringVehicle, EpisimVehicle vehicle, double now) {
 	}
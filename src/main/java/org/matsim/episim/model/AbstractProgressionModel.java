@@ -1,5 +1,6 @@
 package org.matsim.episim.model;
 
+import it.unimi.dsi.fastutil.ints.*;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import org.matsim.api.core.v01.Id;
@@ -15,6 +16,10 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.SplittableRandom;
 
 /**
@@ -32,6 +37,22 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 	private final Object2LongMap<Id<Person>> nextStateAndDay = new Object2LongOpenHashMap<>();
 	private final DiseaseStatusTransitionModel statusTransitionModel;
 
+	/**
+	 * Timing wheel of person indices, bucketed by the day their next update is due.
+	 * Buckets may contain outdated entries, which only result in an unnecessary update.
+	 */
+	private final Int2ObjectSortedMap<IntList> wheel = new Int2ObjectRBTreeMap<>();
+
+	/**
+	 * Persons updated on the last day, which need to be scheduled again.
+	 */
+	private IntCollection updated = new IntArrayList();
+
+	/**
+	 * Whether all persons need to be updated, i.e. when the wheel has not been populated yet.
+	 */
+	private boolean fullScan = true;
+
 	@Inject
 	AbstractProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, DiseaseStatusTransitionModel statusTransitionModel) {
 		this.rnd = rnd;
@@ -46,6 +67,104 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 		return (((long) x) << 32) | (y & 0xffffffffL);
 	}
 
+	@Override
+	public Collection<EpisimPerson> getPersonsToUpdate(Map<Id<Person>, EpisimPerson> persons, IntCollection changed, int day) {
+
+		if (fullScan) {
+			fullScan = false;
+			wheel.clear();
+			updated = new IntArrayList();
+
+			// all persons are updated once, but only those due today need to be scheduled again after their update
+			for (EpisimPerson person : persons.values()) {
+				int slot = person.getPersonId().index();
+				int dueDay = decideUpdateDay(person, day);
+				if (dueDay <= day)
+					updated.add(slot);
+				else
+					schedule(slot, dueDay);
+			}
+
+			return persons.values();
+		}
+
+		IntSet schedule = new IntOpenHashSet(updated);
+		schedule.addAll(changed);
+
+		IntSet due = new IntOpenHashSet();
+		IntIterator it = schedule.iterator();
+		while (it.hasNext()) {
+			int slot = it.nextInt();
+			EpisimPerson person = persons.get(Id.get(slot, Person.class));
+			if (person == null)
+				continue;
+
+			int dueDay = decideUpdateDay(person, day);
+			if (dueDay <= day)
+				due.add(slot);
+			else
+				schedule(slot, dueDay);
+		}
+
+		while (!wheel.isEmpty() && wheel.firstIntKey() <= day) {
+			due.addAll(wheel.remove(wheel.firstIntKey()));
+		}
+
+		// same order as the person map, so that random draws are the same as when updating all persons
+		int[] slots = due.toIntArray();
+		IntArrays.quickSort(slots);
+
+		List<EpisimPerson> result = new ArrayList<>(slots.length);
+		for (int slot : slots) {
+			EpisimPerson person = persons.get(Id.get(slot, Person.class));
+			if (person != null)
+				result.add(person);
+		}
+
+		updated = new IntArrayList(slots);
+		return result;
+	}
+
+	/**
+	 * Put a person into the bucket of the day it needs to be updated. Persons without pending transition are not scheduled.
+	 */
+	private void schedule(int slot, int dueDay) {
+		if (dueDay == Integer.MAX_VALUE)
+			return;
+
+		IntList bucket = wheel.get(dueDay);
+		if (bucket == null)
+			wheel.put(dueDay, bucket = new IntArrayList());
+
+		bucket.add(slot);
+	}
+
+	/**
+	 * Day on which a person needs to be updated next, {@link Integer#MAX_VALUE} if there is no transition pending.
+	 */
+	private int decideUpdateDay(EpisimPerson person, int day) {
+
+		if (needsDailyUpdate(person, day))
+			return day;
+
+		EpisimPerson.DiseaseStatus status = person.getDiseaseStatus();
+		if (status == EpisimPerson.DiseaseStatus.susceptible)
+			return Integer.MAX_VALUE;
+
+		long value = nextStateAndDay.getOrDefault(person.getPersonId(), 0);
+		if (value == 0 || !person.hadDiseaseStatus(status))
+			return day;
+
+		return day + (int) value - person.daysSince(status, day);
+	}
+
+	/**
+	 * Whether a person has to be updated every day, regardless of its next disease transition.
+	 */
+	protected boolean needsDailyUpdate(EpisimPerson person, int day) {
+		return person.getQuarantineStatus() != EpisimPerson.QuarantineStatus.no;
+	}
+
 	@Override
 	public void updateState(EpisimPerson person, int day) {
 
@@ -161,5 +280,8 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 			Id<Person> key = Id.createPersonId(EpisimUtils.readChars(in));
 			nextStateAndDay.put(key, in.readLong());
 		}
+
+		// wheel is not part of the snapshot and will be rebuilt
+		fullScan = true;
 	}
 }
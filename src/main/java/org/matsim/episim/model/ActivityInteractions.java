@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import org.matsim.episim.EpisimConfigGroup;
+
+/**
+ * Precompiled interaction rules between all pairs of activity types, indexed by {@link EpisimConfigGroup.InfectionParams#getIndex()}.
+ * The string conventions on infection types are evaluated once here, so that the contact loop does not need to handle strings.
+ */
+final class ActivityInteractions {
+
+	/**
+	 * Infection type of all contacts in vehicles.
+	 */
+	static final String PT = "pt";
+
+	private final int n;
+
+	/**
+	 * Whether persons performing activity i and j can have contact in a facility.
+	 */
+	private final boolean[] interact;
+
+	/**
+	 * Whether contacts between activity i and j are traceable.
+	 */
+	private final boolean[] trackable;
+
+	/**
+	 * Infection type label for each pair.
+	 */
+	private final String[] labels;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param config   config containing all infection params
+	 * @param qhParams home quarantine params, which are treated as home activity
+	 */
+	ActivityInteractions(EpisimConfigGroup config, EpisimConfigGroup.InfectionParams qhParams) {
+
+		int size = 0;
+		for (EpisimConfigGroup.InfectionParams params : config.getInfectionParams()) {
+			if (params.getIndex() < 0)
+				throw new IllegalStateException("Infection params " + params.getContainerName() + " have no index, they need to be added via addContainerParams.");
+
+			size = Math.max(size, params.getIndex() + 1);
+		}
+
+		String[] names = new String[size];
+		for (EpisimConfigGroup.InfectionParams params : config.getInfectionParams()) {
+			names[params.getIndex()] = params == qhParams ? "home" : params.getContainerName();
+		}
+
+		this.n = size;
+		this.interact = new boolean[n * n];
+		this.trackable = new boolean[n * n];
+		this.labels = new String[n * n];
+
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				if (names[i] == null || names[j] == null)
+					continue;
+
+				String type = (names[i] + "_" + names[j]).intern();
+
+				labels[i * n + j] = type;
+				interact[i * n + j] = canInteract(type, names[i], names[j]);
+				trackable[i * n + j] = !type.contains("pt") && !type.contains("shop");
+			}
+		}
+	}
+
+	/**
+	 * Rules on which activities are allowed to interact.
+	 */
+	private static boolean canInteract(String type, String leaving, String other) {
+		//home can only interact with home, leisure or work
+		if (type.contains("home") && !type.contains("leis") && !type.contains("work")
+				&& !(leaving.startsWith("home") && other.startsWith("home"))) {
+			return false;
+		//edu can only interact with work or edu
+		} else if (type.contains("edu") && !type.contains("work") && !(leaving.startsWith("edu") && other.startsWith("edu"))) {
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Number of activity types.
+	 */
+	int size() {
+		return n;
+	}
+
+	/**
+	 * Whether two persons can interact in a facility.
+	 */
+	boolean canInteract(int leaving, int other) {
+		return interact[leaving * n + other];
+	}
+
+	/**
+	 * Whether the contact in a facility can be traced.
+	 */
+	boolean isTrackable(int leaving, int other) {
+		return trackable[leaving * n + other];
+	}
+
+	/**
+	 * Infection type of contact in a facility.
+	 */
+	String getLabel(int leaving, int other) {
+		return labels[leaving * n + other];
+	}
+}
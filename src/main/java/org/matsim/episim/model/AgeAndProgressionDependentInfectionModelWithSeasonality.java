@@ -7,12 +7,12 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
 import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.RestrictionTable;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.SplittableRandom;
 
-import static org.matsim.episim.model.DefaultInfectionModel.*;
-
 /**
  * Extension of the {@link DefaultInfectionModel}, with age, time and seasonality-dependen additions.
  */
@@ -23,7 +23,7 @@ public final class AgeAndProgressionDependentInfectionModelWithSeasonality imple
 	private final EpisimConfigGroup episimConfig;
 	private final EpisimReporting reporting;
 	private final SplittableRandom rnd;
-	private final VaccinationConfigGroup vaccinationConfig;
+	private final ImmunityCache immunityCache;
 	private final VirusStrainConfigGroup virusStrainConfig;
 
 	private final double[] susceptibility = new double[128];
@@ -37,17 +37,18 @@ public final class AgeAndProgressionDependentInfectionModelWithSeasonality imple
 
 	private double outdoorFactor;
 	private int iteration;
+	private RestrictionTable restrictionTable;
 
 	@Inject
 	AgeAndProgressionDependentInfectionModelWithSeasonality(FaceMaskModel faceMaskModel, ProgressionModel progression,
-															Config config, EpisimReporting reporting, SplittableRandom rnd) {
+															Config config, EpisimReporting reporting, SplittableRandom rnd, ImmunityCache immunityCache) {
 		this.maskModel = faceMaskModel;
 		this.progression = progression;
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
-		this.vaccinationConfig = ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class);
 		this.virusStrainConfig = ConfigUtils.addOrGetModule(config, VirusStrainConfigGroup.class);
 		this.reporting = reporting;
 		this.rnd = rnd;
+		this.immunityCache = immunityCache;
 
 		// pre-compute interpolated age dependent entries
 		for (int i = 0; i < susceptibility.length; i++) {
@@ -59,6 +60,11 @@ public final class AgeAndProgressionDependentInfectionModelWithSeasonality imple
 		scale = 1 / distribution.density(distribution.getNumericalMean());
 	}
 
+	AgeAndProgressionDependentInfectionModelWithSeasonality(FaceMaskModel faceMaskModel, ProgressionModel progression,
+															Config config, EpisimReporting reporting, SplittableRandom rnd) {
+		this(faceMaskModel, progression, config, reporting, rnd, new ImmunityCache(config));
+	}
+
 	@Override
 	public void setIteration(int iteration) {
 		this.outdoorFactor = InfectionModelWithSeasonality.interpolateOutdoorFraction(episimConfig, iteration);
@@ -67,38 +73,57 @@ public final class AgeAndProgressionDependentInfectionModelWithSeasonality imple
 
 	}
 
+	@Override
+	public void setRestrictions(RestrictionTable restrictions) {
+		this.restrictionTable = restrictions;
+	}
+
+	/**
+	 * Use the table of this iteration if it was created from the given map, otherwise resolve the map.
+	 */
+	private RestrictionTable tableFor(Map<String, Restriction> restrictions) {
+		if (restrictionTable != null && restrictionTable.isCreatedFrom(restrictions))
+			return restrictionTable;
+
+		return RestrictionTable.of(episimConfig, restrictions);
+	}
+
 	@Override
 	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions,
 										   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
 										   double contactIntensity, double jointTimeInContainer) {
 
-		//noinspection ConstantConditions 		// ci corr can not be null, because sim is initialized with non null value
-		double ciCorrection = Math.min(restrictions.get(act1.getContainerName()).getCiCorrection(), restrictions.get(act2.getContainerName()).getCiCorrection());
+		RestrictionTable table = tableFor(restrictions);
+
+		// ci corr can not be null, because sim is initialized with non null value
+		double ciCorrection = Math.min(table.getCiCorrection(act1), table.getCiCorrection(act2));
 
 		double susceptibility = this.susceptibility[target.getAge()];
 		double infectivity = this.infectivity[infector.getAge()];
 
 		// apply reduced susceptibility of vaccinated persons
 		VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(infector.getVirusStrain());
-		susceptibility *= Math.min(getVaccinationEffectiveness(strain, target, vaccinationConfig, iteration), getImmunityEffectiveness(strain, target, vaccinationConfig, iteration));
+		susceptibility *= immunityCache.getSusceptibility(target, strain, iteration);
 
 		double indoorOutdoorFactor = InfectionModelWithSeasonality.getIndoorOutdoorFactor(outdoorFactor, rnd, act1, act2);
 
 		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * susceptibility * infectivity * contactIntensity * jointTimeInContainer * ciCorrection
-				* DefaultInfectionModel.getInfectivity(infector, strain, vaccinationConfig, iteration)
+				* immunityCache.getInfectivity(infector, strain, iteration)
 				* target.getSusceptibility()
 				* getInfectivity(infector)
 				* strain.getInfectiousness()
-				* maskModel.getWornMask(infector, act2, restrictions.get(act2.getContainerName())).shedding
-				* maskModel.getWornMask(target, act1, restrictions.get(act1.getContainerName())).intake
+				* maskModel.getWornMask(infector, act2, table.get(act2)).shedding
+				* maskModel.getWornMask(target, act1, table.get(act1)).intake
 				* indoorOutdoorFactor
 		);
 	}
 
 	@Override
 	public double calcUnVacInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions, EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2, double contactIntensity, double jointTimeInContainer) {
-		//noinspection ConstantConditions 		// ci corr can not be null, because sim is initialized with non null value
-		double ciCorrection = Math.min(restrictions.get(act1.getContainerName()).getCiCorrection(), restrictions.get(act2.getContainerName()).getCiCorrection());
+		RestrictionTable table = tableFor(restrictions);
+
+		// ci corr can not be null, because sim is initialized with non null value
+		double ciCorrection = Math.min(table.getCiCorrection(act1), table.getCiCorrection(act2));
 
 		double susceptibility = this.susceptibility[target.getAge()];
 		double infectivity = this.infectivity[infector.getAge()];
@@ -106,21 +131,165 @@ public final class AgeAndProgressionDependentInfectionModelWithSeasonality imple
 		// apply reduced susceptibility of vaccinated persons
 		VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(infector.getVirusStrain());
 		// vac is reduced from this term
-		susceptibility *= getImmunityEffectiveness(strain, target, vaccinationConfig, iteration);
+		susceptibility *= immunityCache.getImmunity(target, strain, iteration);
 
 		double indoorOutdoorFactor = InfectionModelWithSeasonality.getIndoorOutdoorFactor(outdoorFactor, rnd, act1, act2);
 
 		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * susceptibility * infectivity * contactIntensity * jointTimeInContainer * ciCorrection
-				* getVaccinationInfectivity(infector, strain, vaccinationConfig, iteration)
+				* immunityCache.getVaccinationInfectivity(infector, strain, iteration)
 				* target.getSusceptibility()
 				* getInfectivity(infector)
 				* strain.getInfectiousness()
-				* maskModel.getWornMask(infector, act2, restrictions.get(act2.getContainerName())).shedding
-				* maskModel.getWornMask(target, act1, restrictions.get(act1.getContainerName())).intake
+				* maskModel.getWornMask(infector, act2, table.get(act2)).shedding
+				* maskModel.getWornMask(target, act1, table.get(act1)).intake
 				* indoorOutdoorFactor
 		);
 	}
 
+	@Override
+	public void calcInfectionProbabilities(ContactBatch batch, Map<String, Restriction> restrictions) {
+
+		EpisimPerson person = batch.getPerson();
+		EpisimConfigGroup.InfectionParams act = batch.getParams();
+		int activity = batch.getActivity();
+		RestrictionTable table = tableFor(restrictions);
+		Restriction r = table.get(act);
+		double ci = table.getCiCorrection(act);
+		double calibration = episimConfig.getCalibrationParameter();
+
+		if (batch.isTarget()) {
+
+			double targetFactor = calibration * this.susceptibility[person.getAge()] * person.getSusceptibility();
+
+			VirusStrainConfigGroup.StrainParams lastStrain = null;
+			double immunity = 1;
+			double susceptibility = 1;
+
+			for (int i = 0; i < batch.size(); i++) {
+				EpisimPerson infector = batch.getPartner(i);
+				EpisimConfigGroup.InfectionParams act2 = batch.getPartnerParams(i);
+				Restriction r2 = table.get(act2);
+
+				VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(infector.getVirusStrain());
+				if (strain != lastStrain) {
+					immunity = immunityCache.getImmunity(person, strain, iteration);
+					susceptibility = immunityCache.getSusceptibility(person, strain, iteration);
+					lastStrain = strain;
+				}
+
+				double common = targetFactor * batch.getContactIntensity(i) * batch.getJointTime(i)
+						* Math.min(ci, table.getCiCorrection(act2))
+						* this.infectivity[infector.getAge()]
+						* getInfectivity(infector)
+						* strain.getInfectiousness();
+
+				double prob = calcProbability(common * susceptibility * immunityCache.getInfectivity(infector, strain, iteration),
+						person, infector, act, act2, activity, batch.getPartnerActivity(i), r, r2, batch.getRandom(i));
+
+				double probUnVac = !batch.needsUnVacProbability() ? prob :
+						calcProbability(common * immunity * immunityCache.getVaccinationInfectivity(infector, strain, iteration),
+								person, infector, act, act2, activity, batch.getPartnerActivity(i), r, r2, batch.getRandom(i));
+
+				batch.setProbability(i, prob, probUnVac);
+			}
+
+		} else {
+
+			VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(person.getVirusStrain());
+
+			double infectorFactor = calibration * this.infectivity[person.getAge()]
+					* getInfectivity(person)
+					* strain.getInfectiousness();
+
+			double infectivity = immunityCache.getInfectivity(person, strain, iteration);
+			double vaccinationInfectivity = immunityCache.getVaccinationInfectivity(person, strain, iteration);
+
+			for (int i = 0; i < batch.size(); i++) {
+				EpisimPerson target = batch.getPartner(i);
+				EpisimConfigGroup.InfectionParams act1 = batch.getPartnerParams(i);
+				Restriction r1 = table.get(act1);
+
+				double common = infectorFactor * batch.getContactIntensity(i) * batch.getJointTime(i)
+						* Math.min(table.getCiCorrection(act1), ci)
+						* this.susceptibility[target.getAge()]
+						* target.getSusceptibility();
+
+				double prob = calcProbability(common * immunityCache.getSusceptibility(target, strain, iteration) * infectivity,
+						target, person, act1, act, batch.getPartnerActivity(i), activity, r1, r, batch.getRandom(i));
+
+				double probUnVac = !batch.needsUnVacProbability() ? prob :
+						calcProbability(common * immunityCache.getImmunity(target, strain, iteration) * vaccinationInfectivity,
+								target, person, act1, act, batch.getPartnerActivity(i), activity, r1, r, batch.getRandom(i));
+
+				batch.setProbability(i, prob, probUnVac);
+			}
+		}
+	}
+
+	/**
+	 * Infection probability of one contact, seasonality and masks are drawn in the same order as in {@link #calcInfectionProbability}.
+	 *
+	 * @param factor deterministic part of the exponent
+	 * @param random random number generator of the contact, or null to use the generator of this model
+	 */
+	private double calcProbability(double factor, EpisimPerson target, EpisimPerson infector,
+								   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
+								   int activity1, int activity2, Restriction r1, Restriction r2, @Nullable SplittableRandom random) {
+
+		double indoorOutdoorFactor = InfectionModelWithSeasonality.getIndoorOutdoorFactor(outdoorFactor, random != null ? random : rnd, act1, act2);
+
+		return 1 - Math.exp(-factor
+				* maskModel.getWornMask(infector, act2, activity2, r2, random).shedding
+				* maskModel.getWornMask(target, act1, activity1, r1, random).intake
+				* indoorOutdoorFactor
+		);
+	}
+
+	@Override
+	public boolean usesContactRandom() {
+		return maskModel.usesContactRandom();
+	}
+
+	@Override
+	public boolean supportsExposure() {
+		return true;
+	}
+
+	@Override
+	public double getInfectorFactor(EpisimPerson infector, EpisimConfigGroup.InfectionParams act, int activity, Map<String, Restriction> restrictions, @Nullable SplittableRandom random) {
+		VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(infector.getVirusStrain());
+
+		return this.infectivity[infector.getAge()]
+				* getInfectivity(infector)
+				* immunityCache.getInfectivity(infector, strain, iteration)
+				* strain.getInfectiousness()
+				* maskModel.getWornMask(infector, act, activity, tableFor(restrictions).get(act), random).shedding;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The indoor/outdoor factor is drawn once for the accumulated exposure, instead of once per contact.
+	 */
+	@Override
+	public double calcExposureProbability(EpisimPerson target, VirusStrain virusStrain, Map<String, Restriction> restrictions,
+										  EpisimConfigGroup.InfectionParams act1, int activity, EpisimConfigGroup.InfectionParams act2, double exposure,
+										  @Nullable SplittableRandom random) {
+
+		RestrictionTable table = tableFor(restrictions);
+		Restriction r1 = table.get(act1);
+		double ciCorrection = Math.min(table.getCiCorrection(act1), table.getCiCorrection(act2));
+
+		VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(virusStrain);
+
+		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * exposure * ciCorrection
+				* this.susceptibility[target.getAge()]
+				* immunityCache.getSusceptibility(target, strain, iteration)
+				* target.getSusceptibility()
+				* maskModel.getWornMask(target, act1, activity, r1, random).intake
+				* InfectionModelWithSeasonality.getIndoorOutdoorFactor(outdoorFactor, random != null ? random : rnd, act1, act2)
+		);
+	}
+
 	/**
 	 * Calculates infectivity of infector depending on disease progression.
 	 *
@@ -5,12 +5,12 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
 import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.RestrictionTable;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.SplittableRandom;
 
-import static org.matsim.episim.model.DefaultInfectionModel.*;
-
 /**
  * Extension of the {@link DefaultInfectionModel}, with age-dependent additions.
  */
@@ -20,7 +20,7 @@ public final class AgeDependentInfectionModelWithSeasonality implements Infectio
 	private final EpisimConfigGroup episimConfig;
 	private final EpisimReporting reporting;
 	private final SplittableRandom rnd;
-	private final VaccinationConfigGroup vaccinationConfig;
+	private final ImmunityCache immunityCache;
 	private final VirusStrainConfigGroup virusStrainConfig;
 
 	private final double[] susceptibility = new double[128];
@@ -28,15 +28,16 @@ public final class AgeDependentInfectionModelWithSeasonality implements Infectio
 
 	private double outdoorFactor;
 	private int iteration;
+	private RestrictionTable restrictionTable;
 
 	@Inject
-	AgeDependentInfectionModelWithSeasonality(FaceMaskModel faceMaskModel, Config config, EpisimReporting reporting, SplittableRandom rnd) {
+	AgeDependentInfectionModelWithSeasonality(FaceMaskModel faceMaskModel, Config config, EpisimReporting reporting, SplittableRandom rnd, ImmunityCache immunityCache) {
 		this.maskModel = faceMaskModel;
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
-		this.vaccinationConfig = ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class);
 		this.virusStrainConfig = ConfigUtils.addOrGetModule(config, VirusStrainConfigGroup.class);
 		this.reporting = reporting;
 		this.rnd = rnd;
+		this.immunityCache = immunityCache;
 
 		// pre-compute interpolated age dependent entries
 		for (int i = 0; i < susceptibility.length; i++) {
@@ -53,30 +54,86 @@ public final class AgeDependentInfectionModelWithSeasonality implements Infectio
 
 	}
 
+	@Override
+	public void setRestrictions(RestrictionTable restrictions) {
+		this.restrictionTable = restrictions;
+	}
+
+	/**
+	 * Use the table of this iteration if it was created from the given map, otherwise resolve the map.
+	 */
+	private RestrictionTable tableFor(Map<String, Restriction> restrictions) {
+		if (restrictionTable != null && restrictionTable.isCreatedFrom(restrictions))
+			return restrictionTable;
+
+		return RestrictionTable.of(episimConfig, restrictions);
+	}
+
 	@Override
 	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions,
 										   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
 										   double contactIntensity, double jointTimeInContainer) {
 
-		//noinspection ConstantConditions 		// ci corr can not be null, because sim is initialized with non null value
-		double ciCorrection = Math.min(restrictions.get(act1.getContainerName()).getCiCorrection(), restrictions.get(act2.getContainerName()).getCiCorrection());
+		RestrictionTable table = tableFor(restrictions);
+
+		// ci corr can not be null, because sim is initialized with non null value
+		double ciCorrection = Math.min(table.getCiCorrection(act1), table.getCiCorrection(act2));
 
 		double susceptibility = this.susceptibility[target.getAge()];
 		double infectivity = this.infectivity[infector.getAge()];
 
 		// apply reduced susceptibility of vaccinated persons
 		VirusStrainConfigGroup.StrainParams params = virusStrainConfig.getParams(infector.getVirusStrain());
-		susceptibility *= Math.min(getVaccinationEffectiveness(params, target, vaccinationConfig, iteration), getImmunityEffectiveness(params, target, vaccinationConfig, iteration));
+		susceptibility *= immunityCache.getSusceptibility(target, params, iteration);
 
 		double indoorOutdoorFactor = InfectionModelWithSeasonality.getIndoorOutdoorFactor(outdoorFactor, rnd, act1, act2);
 
 		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * susceptibility * infectivity * contactIntensity * jointTimeInContainer * ciCorrection
-				* getVaccinationInfectivity(infector, params, vaccinationConfig, iteration)
+				* immunityCache.getVaccinationInfectivity(infector, params, iteration)
 				* target.getSusceptibility()
 				* params.getInfectiousness()
-				* maskModel.getWornMask(infector, act2, restrictions.get(act2.getContainerName())).shedding
-				* maskModel.getWornMask(target, act1, restrictions.get(act1.getContainerName())).intake
+				* maskModel.getWornMask(infector, act2, table.get(act2)).shedding
+				* maskModel.getWornMask(target, act1, table.get(act1)).intake
 				* indoorOutdoorFactor
 		);
 	}
+
+	@Override
+	public boolean supportsExposure() {
+		return true;
+	}
+
+	@Override
+	public double getInfectorFactor(EpisimPerson infector, EpisimConfigGroup.InfectionParams act, int activity, Map<String, Restriction> restrictions, @Nullable SplittableRandom random) {
+		VirusStrainConfigGroup.StrainParams params = virusStrainConfig.getParams(infector.getVirusStrain());
+
+		return this.infectivity[infector.getAge()]
+				* immunityCache.getVaccinationInfectivity(infector, params, iteration)
+				* params.getInfectiousness()
+				* maskModel.getWornMask(infector, act, activity, tableFor(restrictions).get(act), random).shedding;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The indoor/outdoor factor is drawn once for the accumulated exposure, instead of once per contact.
+	 */
+	@Override
+	public double calcExposureProbability(EpisimPerson target, VirusStrain strain, Map<String, Restriction> restrictions,
+										  EpisimConfigGroup.InfectionParams act1, int activity, EpisimConfigGroup.InfectionParams act2, double exposure,
+										  @Nullable SplittableRandom random) {
+
+		RestrictionTable table = tableFor(restrictions);
+		Restriction r1 = table.get(act1);
+		double ciCorrection = Math.min(table.getCiCorrection(act1), table.getCiCorrection(act2));
+
+		VirusStrainConfigGroup.StrainParams params = virusStrainConfig.getParams(strain);
+
+		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * exposure * ciCorrection
+				* this.susceptibility[target.getAge()]
+				* immunityCache.getSusceptibility(target, params, iteration)
+				* target.getSusceptibility()
+				* maskModel.getWornMask(target, act1, activity, r1, random).intake
+				* InfectionModelWithSeasonality.getIndoorOutdoorFactor(outdoorFactor, random != null ? random : rnd, act1, act2)
+		);
+	}
 }
@@ -2,6 +2,8 @@ package org.matsim.episim.model;
 
 import com.google.inject.Inject;
 import com.typesafe.config.Config;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
@@ -20,6 +22,8 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static org.matsim.episim.EpisimUtils.readChars;
 import static org.matsim.episim.EpisimUtils.writeChars;
@@ -88,6 +92,17 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 	 */
 	private final Object2IntMap<Id<ActivityFacility>> locations = new Object2IntOpenHashMap<>();
 
+	/**
+	 * Persons by the facility they have been infected at, only used for location based tracing.
+	 * Persons that were infected again at another facility are removed lazily.
+	 */
+	private final Map<Id<ActivityFacility>, List<EpisimPerson>> infectedAt = new HashMap<>();
+
+	/**
+	 * Whether {@link #infectedAt} contains all persons, it needs to be built again after reading a snapshot.
+	 */
+	private boolean indexed = false;
+
 	/**
 	 * Person ids already traced.
 	 */
@@ -98,6 +113,11 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 	 */
 	private final Set<Id<Person>> tracingQueue = new LinkedHashSet<>();
 
+	/**
+	 * Persons whose contacts are traced after all state updates of the day, because they started showing symptoms.
+	 */
+	private final List<EpisimPerson> indexCases = new ArrayList<>();
+
 	/**
 	 * Tracing capacity left for the day.
 	 */
@@ -113,6 +133,11 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 	 */
 	private int tracingDelay = 0;
 
+	/**
+	 * Largest tracing delay of all configured days.
+	 */
+	private int maxTracingDelay = 0;
+
 	/**
 	 * Used to track how many new people started showing symptoms.
 	 */
@@ -150,6 +175,17 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 
 		tracingProb = EpisimUtils.findValidEntry(tracingConfig.getTracingProbability(), 1.0, date);
 		tracingDelay = EpisimUtils.findValidEntry(tracingConfig.getTracingDelay(), 0, date);
+		maxTracingDelay = tracingConfig.getTracingDelay().values().stream().mapToInt(Integer::intValue).max().orElse(0);
+	}
+
+	@Override
+	protected boolean needsDailyUpdate(EpisimPerson person, int day) {
+		if (super.needsDailyUpdate(person, day))
+			return true;
+
+		// tracing is performed with a delay after showing symptoms
+		return maxTracingDelay > 0 && person.hadDiseaseStatus(DiseaseStatus.showingSymptoms) &&
+				person.daysSince(DiseaseStatus.showingSymptoms, day) <= maxTracingDelay;
 	}
 
 	@Override
@@ -175,18 +211,30 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 		if (person.hadDiseaseStatus(DiseaseStatus.showingSymptoms) && tracingDelay > 0 &&
 				person.daysSince(DiseaseStatus.showingSymptoms, day) == tracingDelay) {
 
-			performTracing(person, now - tracingDelay * DAY, day);
+			indexCases.add(person);
 		}
 
 	}
 
 	@Override
 	public final void afterStateUpdates(Map<Id<Person>, EpisimPerson> persons, int day) {
+
+		if (indexCases.isEmpty())
+			return;
+
+		// contacts of the symptom onset are traced, which was tracingDelay days ago
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), 0, day) - tracingDelay * DAY;
+
+		performTracing(indexCases, now, day, tracingConfig.getTracingDepth());
+		indexCases.clear();
+	}
+
+	@Override
+	public final double getContactsNeededAfter(int day) {
 		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), 0, day);
 		int tracingDistance = tracingConfig.getTracingDayDistance();
-		// clear tracing if not relevant anymore
-		persons.values().parallelStream().forEach(person ->
-		    person.clearTraceableContractPersons(now - (tracingDelay + tracingDistance + 1) * DAY));
+		// tracing is not relevant anymore for older contacts
+		return now - (tracingDelay + tracingDistance + 1) * DAY;
 	}
 
 
@@ -218,9 +266,9 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 		if (to == DiseaseStatus.showingSymptoms) {
 
 			person.setQuarantineStatus(EpisimPerson.QuarantineStatus.full, day);
-			// Perform tracing immediately if there is no delay, otherwise needs to be done when person shows symptoms
+			// Perform tracing at the same day if there is no delay, otherwise needs to be done when person shows symptoms
 			if (tracingDelay == 0) {
-				performTracing(person, now, day);
+				indexCases.add(person);
 			}
 
 			// count infections at locations
@@ -238,6 +286,36 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 		}
 	}
 
+	@Override
+	public final void onPersonsChanged(Map<Id<Person>, EpisimPerson> persons, IntCollection changed, int day) {
+
+		if (tracingConfig.getStrategy() != TracingConfigGroup.Strategy.LOCATION &&
+				tracingConfig.getStrategy() != TracingConfigGroup.Strategy.LOCATION_WITH_TESTING)
+			return;
+
+		if (!indexed) {
+			infectedAt.clear();
+			persons.values().forEach(this::addInfectionLocation);
+			indexed = true;
+			return;
+		}
+
+		IntIterator it = changed.iterator();
+		while (it.hasNext()) {
+			EpisimPerson person = persons.get(Id.get(it.nextInt(), Person.class));
+
+			// only persons infected on the last day need to be added
+			if (person != null && person.hadDiseaseStatus(DiseaseStatus.infectedButNotContagious) &&
+					person.daysSince(DiseaseStatus.infectedButNotContagious, day) <= 1)
+				addInfectionLocation(person);
+		}
+	}
+
+	private void addInfectionLocation(EpisimPerson person) {
+		if (person.getInfectionContainer() != null)
+			infectedAt.computeIfAbsent(person.getInfectionContainer(), k -> new ArrayList<>()).add(person);
+	}
+
 	@Override
 	public final void beforeStateUpdates(Map<Id<Person>, EpisimPerson> persons, int day, EpisimReporting.InfectionReport report) {
 
@@ -258,22 +336,35 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 				if (tracingCapacity <= 0)
 					break;
 
-				for (EpisimPerson p : persons.values()) {
+				List<EpisimPerson> infected = infectedAt.getOrDefault(e.getKey(), Collections.emptyList());
+
+				// persons are processed in the same order as the person map
+				infected.removeIf(p -> p.getInfectionContainer() != e.getKey());
+				infected.sort(Comparator.comparingInt(p -> p.getPersonId().index()));
+
+				List<EpisimPerson> tested = new ArrayList<>();
+
+				EpisimPerson prev = null;
+				for (EpisimPerson p : infected) {
 
-					if (p.getInfectionContainer() == e.getKey()) {
+					// persons infected twice at the same location
+					if (p == prev)
+						continue;
 
-						quarantinePerson(p, day);
+					prev = p;
+					quarantinePerson(p, day);
 
-						if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.LOCATION) {
-							tracingCapacity--;
-						} else if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.LOCATION_WITH_TESTING) {
-							// assumes that all contact persons get tested
-							// then quarantines all of their contacts
-							performTracing(p, now, day);
-						}
+					if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.LOCATION) {
+						tracingCapacity--;
+					} else if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.LOCATION_WITH_TESTING) {
+						tested.add(p);
 					}
 				}
 
+				// assumes that all contact persons get tested
+				// then quarantines all of their contacts
+				performTracing(tested, now, day, tracingConfig.getTracingDepth());
+
 				it.remove();
 			}
 		}
@@ -281,21 +372,29 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 		if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.IDENTIFY_SOURCE) {
 
 			// Persons that will be traced for the day
-			Queue<Id<Person>> queue = new ArrayDeque<>(tracingQueue);
+			List<EpisimPerson> queue = new ArrayList<>(tracingQueue.size());
+			for (Id<Person> id : tracingQueue) {
+				queue.add(persons.get(id));
+			}
 
-			while (tracingCapacity > 0 && !queue.isEmpty()) {
+			// Assume that each contact got tested
+			// if the test is positive contacts will be quarantined as well and also tested at the next day
+			List<List<EpisimPerson>> contacts = isTracingActive(day) ?
+					lookupContacts(queue, p -> p.hadDiseaseStatus(DiseaseStatus.infectedButNotContagious), now) : null;
 
-				Id<Person> id = queue.poll();
-				EpisimPerson person = persons.get(id);
-				tracingQueue.remove(id);
+			List<EpisimPerson> quarantined = new ArrayList<>();
+			for (int i = 0; tracingCapacity > 0 && i < queue.size(); i++) {
 
-				// Assume that each contact got tested
-				// if the test is positive contacts will be quarantined as well and also tested at the next day
-				if (person.hadDiseaseStatus(DiseaseStatus.infectedButNotContagious)) {
-					performTracing(person, now, day);
+				EpisimPerson person = queue.get(i);
+				tracingQueue.remove(person.getPersonId());
+
+				if (contacts != null && person.hadDiseaseStatus(DiseaseStatus.infectedButNotContagious)) {
+					traceContacts(person, contacts.get(i), day, quarantined);
 				}
 			}
 
+			performTracing(quarantined, now, day, tracingConfig.getTracingDepth() - 1);
+
 		} else if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.RANDOM) {
 
 			double newCases = report.nShowingSymptomsCumulative - prevShowingSymptoms;
@@ -326,32 +425,76 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 
 
 	/**
-	 * Perform the tracing procedure for a person. Also ensures if enabled for current day.
+	 * Whether tracing puts persons into quarantine on this day.
 	 */
-	private void performTracing(EpisimPerson person, double now, int day) {
+	private boolean isTracingActive(int day) {
+		return day >= tracingConfig.getPutTraceablePersonsInQuarantineAfterDay()
+				&& tracingConfig.getStrategy() != TracingConfigGroup.Strategy.RANDOM
+				&& tracingConfig.getStrategy() != TracingConfigGroup.Strategy.NONE;
+	}
 
-		if (day < tracingConfig.getPutTraceablePersonsInQuarantineAfterDay()
-				|| tracingConfig.getStrategy() == TracingConfigGroup.Strategy.RANDOM
-				|| tracingConfig.getStrategy() == TracingConfigGroup.Strategy.NONE) {
-			return;
-		}
+	/**
+	 * Perform the tracing procedure for a batch of persons, in the order of the list. Also ensures if enabled for current day.
+	 * Contact persons are looked up in parallel, while capacity and tracing probability are applied sequentially to keep results deterministic.
+	 *
+	 * @param hops number of hops, newly quarantined contact persons are traced as well if greater one
+	 */
+	private void performTracing(List<EpisimPerson> persons, double now, int day, int hops) {
 
-		if (tracingCapacity <= 0) {
+		if (!isTracingActive(day))
 			return;
+
+		List<EpisimPerson> frontier = persons;
+		for (int hop = 0; hop < hops && !frontier.isEmpty() && tracingCapacity > 0; hop++) {
+
+			List<List<EpisimPerson>> contacts = lookupContacts(frontier, p -> true, now);
+			List<EpisimPerson> quarantined = new ArrayList<>();
+
+			for (int i = 0; tracingCapacity > 0 && i < frontier.size(); i++) {
+				EpisimPerson person = frontier.get(i);
+
+				// persons traced here do not need to be traced again from the queue
+				tracingQueue.remove(person.getPersonId());
+				traceContacts(person, contacts.get(i), day, quarantined);
+			}
+
+			frontier = quarantined;
 		}
+	}
+
+	/**
+	 * Look up the traceable contacts of persons in parallel.
+	 *
+	 * @param filter persons not matching will have no contacts
+	 * @return contacts in the same order as {@code persons}
+	 */
+	private List<List<EpisimPerson>> lookupContacts(List<EpisimPerson> persons, Predicate<EpisimPerson> filter, double now) {
+		double after = now - tracingConfig.getTracingDayDistance() * DAY;
+		return persons.parallelStream()
+				.map(p -> filter.test(p) ? p.getTraceableContactPersons(after) : Collections.<EpisimPerson>emptyList())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Quarantine the contact persons of one person, as far as tracing capacity is left.
+	 *
+	 * @param quarantined newly quarantined contact persons will be added to this list
+	 */
+	private void traceContacts(EpisimPerson person, List<EpisimPerson> contacts, int day, List<EpisimPerson> quarantined) {
 
 		// check if already traced
 		//if (traced.contains(person.getPersonId()))
 		//	return;
 		// traced.add(person.getPersonId());
 
-		String homeId = null;
+		// household index, negative if households are not considered
+		int homeId = -1;
 
 		// quarantine household flag controls direct household and 2nd order household
-		if (tracingConfig.getQuarantineHousehold())
-			homeId = (String) person.getAttributes().getAttribute("homeId");
+		if (tracingConfig.getQuarantineHousehold() && person.hasHomeId())
+			homeId = person.getHouseholdIndex();
 
-		for (EpisimPerson pw : person.getTraceableContactPersons(now - tracingConfig.getTracingDayDistance() * DAY)) {
+		for (EpisimPerson pw : contacts) {
 
 			if (tracingConfig.getCapacityType() == TracingConfigGroup.CapacityType.PER_CONTACT_PERSON) {
 				tracingCapacity--;
@@ -360,13 +503,15 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 			}
 
 			// don't draw random number when tracing is practically off
-			if (tracingProb == 0 && homeId == null)
+			if (tracingProb == 0 && homeId < 0)
 				continue;
 
 			// Persons of the same household are always traced successfully
-			if ((homeId != null && homeId.equals(pw.getAttributes().getAttribute("homeId")))
+			if ((homeId >= 0 && pw.hasHomeId() && homeId == pw.getHouseholdIndex())
 					|| tracingProb == 1d || rnd.nextDouble() < tracingProb) {
-				quarantinePerson(pw, day);
+				if (quarantinePerson(pw, day))
+					quarantined.add(pw);
+
 				log.debug("sending person={} into quarantine because of contact to person={}", pw.getPersonId(), person.getPersonId());
 			}
 
@@ -376,18 +521,27 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 			tracingCapacity--;
 
 		if (tracingCapacity == 0) {
-			log.debug("tracing capacity exhausted for day={}", now);
+			log.debug("tracing capacity exhausted for day={}", day);
 		}
 	}
 
-	private void quarantinePerson(EpisimPerson p, int day) {
+	/**
+	 * Put a person into quarantine at home.
+	 *
+	 * @return whether the person was not in quarantine before
+	 */
+	private boolean quarantinePerson(EpisimPerson p, int day) {
 
 		if (p.getQuarantineStatus() == EpisimPerson.QuarantineStatus.no && p.getDiseaseStatus() != DiseaseStatus.recovered) {
 			p.setQuarantineStatus(EpisimPerson.QuarantineStatus.atHome, day);
 
 			if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.IDENTIFY_SOURCE)
 				tracingQueue.add(p.getPersonId());
+
+			return true;
 		}
+
+		return false;
 	}
 
 	@Override
@@ -395,6 +549,7 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 		super.readExternal(in);
 
 		prevShowingSymptoms = in.readLong();
+		indexed = false;
 
 		int n = in.readInt();
 		for (int i = 0; i < n; i++) {
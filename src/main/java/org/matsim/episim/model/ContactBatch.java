@@ -0,0 +1,257 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.EpisimPerson;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Contacts of one person with several partners, whose infection probabilities are calculated at once.
+ * The person is either the potentially infected target of all partners, or the infector of all of them.
+ * <p>
+ * Instances are re-used, the content is overwritten with each {@link #reset(EpisimPerson, EpisimConfigGroup.InfectionParams, int, boolean)}.
+ */
+public final class ContactBatch {
+
+	private final boolean unVac;
+
+	private EpisimPerson person;
+	private EpisimConfigGroup.InfectionParams params;
+	private int activity;
+	private boolean target;
+
+	private EpisimPerson[] partners = new EpisimPerson[8];
+	private EpisimConfigGroup.InfectionParams[] partnerParams = new EpisimConfigGroup.InfectionParams[8];
+	private int[] partnerActivities = new int[8];
+	private SplittableRandom[] randoms = new SplittableRandom[8];
+	private String[] infectionTypes = new String[8];
+	private double[] contactIntensities = new double[8];
+	private double[] jointTimes = new double[8];
+	private double[] probs = new double[8];
+	private double[] probsUnVac = new double[8];
+	private int size = 0;
+
+	/**
+	 * Batch that needs the probabilities ignoring vaccination, see {@link #needsUnVacProbability()}.
+	 */
+	public ContactBatch() {
+		this(true);
+	}
+
+	/**
+	 * @param unVac whether the probabilities ignoring the vaccination status of the target are needed
+	 */
+	public ContactBatch(boolean unVac) {
+		this.unVac = unVac;
+	}
+
+	/**
+	 * Clear the batch and set the person all contacts belong to.
+	 *
+	 * @param person the person having contacts with all partners
+	 * @param params   activity of the person
+	 * @param activity position of the activity in the trajectory of the person, or {@link EpisimPerson#UNSPECIFIC_ACTIVITY}
+	 * @param target   whether the person is the target of all partners, otherwise it is the infector
+	 */
+	void reset(EpisimPerson person, EpisimConfigGroup.InfectionParams params, int activity, boolean target) {
+		Arrays.fill(partners, 0, size, null);
+		Arrays.fill(randoms, 0, size, null);
+		this.person = person;
+		this.params = params;
+		this.activity = activity;
+		this.target = target;
+		this.size = 0;
+	}
+
+	/**
+	 * Add a contact to the batch.
+	 *
+	 * @return index of the contact
+	 */
+	int add(EpisimPerson partner, EpisimConfigGroup.InfectionParams partnerParams, int partnerActivity,
+			String infectionType, double contactIntensity, double jointTime) {
+		if (size == partners.length) {
+			int n = size * 2;
+			partners = Arrays.copyOf(partners, n);
+			this.partnerParams = Arrays.copyOf(this.partnerParams, n);
+			partnerActivities = Arrays.copyOf(partnerActivities, n);
+			randoms = Arrays.copyOf(randoms, n);
+			infectionTypes = Arrays.copyOf(infectionTypes, n);
+			contactIntensities = Arrays.copyOf(contactIntensities, n);
+			jointTimes = Arrays.copyOf(jointTimes, n);
+			probs = Arrays.copyOf(probs, n);
+			probsUnVac = Arrays.copyOf(probsUnVac, n);
+		}
+
+		partners[size] = partner;
+		this.partnerParams[size] = partnerParams;
+		partnerActivities[size] = partnerActivity;
+		infectionTypes[size] = infectionType;
+		contactIntensities[size] = contactIntensity;
+		jointTimes[size] = jointTime;
+		probs[size] = Double.NaN;
+		probsUnVac[size] = Double.NaN;
+		return size++;
+	}
+
+	/**
+	 * Add contact {@code i} of another batch.
+	 *
+	 * @return index of the contact in this batch
+	 */
+	int add(ContactBatch other, int i) {
+		int idx = add(other.partners[i], other.partnerParams[i], other.partnerActivities[i], other.infectionTypes[i], other.contactIntensities[i], other.jointTimes[i]);
+		randoms[idx] = other.randoms[i];
+		return idx;
+	}
+
+	/**
+	 * Set the random number generator of a contact, see {@link #getRandom(int)}.
+	 */
+	void setRandom(int i, SplittableRandom rnd) {
+		randoms[i] = rnd;
+	}
+
+	public EpisimPerson getPerson() {
+		return person;
+	}
+
+	public EpisimConfigGroup.InfectionParams getParams() {
+		return params;
+	}
+
+	/**
+	 * Position of the activity in the trajectory of {@link #getPerson()}.
+	 */
+	public int getActivity() {
+		return activity;
+	}
+
+	/**
+	 * Whether {@link #getPerson()} is the target of all contacts. Otherwise it is the infector.
+	 */
+	public boolean isTarget() {
+		return target;
+	}
+
+	/**
+	 * Whether {@link #getUnVacProbability(int)} has to be calculated for every contact. Otherwise it is set to the infection probability.
+	 */
+	public boolean needsUnVacProbability() {
+		return unVac;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public EpisimPerson getPartner(int i) {
+		return partners[i];
+	}
+
+	public EpisimConfigGroup.InfectionParams getPartnerParams(int i) {
+		return partnerParams[i];
+	}
+
+	/**
+	 * Position of the activity in the trajectory of the partner.
+	 */
+	public int getPartnerActivity(int i) {
+		return partnerActivities[i];
+	}
+
+	public String getInfectionType(int i) {
+		return infectionTypes[i];
+	}
+
+	public double getContactIntensity(int i) {
+		return contactIntensities[i];
+	}
+
+	public double getJointTime(int i) {
+		return jointTimes[i];
+	}
+
+	/**
+	 * Random number generator of a contact, which models draw from instead of their own, if set.
+	 * This keeps the result independent of the order in which contacts are evaluated.
+	 *
+	 * @see InfectionModel#usesContactRandom()
+	 */
+	@Nullable
+	public SplittableRandom getRandom(int i) {
+		return randoms[i];
+	}
+
+	/**
+	 * The potentially infected person of a contact.
+	 */
+	public EpisimPerson getTarget(int i) {
+		return target ? person : partners[i];
+	}
+
+	/**
+	 * The infectious person of a contact.
+	 */
+	public EpisimPerson getInfector(int i) {
+		return target ? partners[i] : person;
+	}
+
+	/**
+	 * Activity of the target of a contact.
+	 */
+	public EpisimConfigGroup.InfectionParams getTargetParams(int i) {
+		return target ? params : partnerParams[i];
+	}
+
+	/**
+	 * Activity of the infector of a contact.
+	 */
+	public EpisimConfigGroup.InfectionParams getInfectorParams(int i) {
+		return target ? partnerParams[i] : params;
+	}
+
+	/**
+	 * Infection probability of a contact.
+	 */
+	public double getProbability(int i) {
+		return probs[i];
+	}
+
+	/**
+	 * Infection probability of a contact, ignoring the vaccination status of the target.
+	 */
+	public double getUnVacProbability(int i) {
+		return probsUnVac[i];
+	}
+
+	/**
+	 * Set the calculated probabilities of a contact.
+	 */
+	public void setProbability(int i, double prob, double probUnVac) {
+		probs[i] = prob;
+		probsUnVac[i] = probUnVac;
+	}
+}
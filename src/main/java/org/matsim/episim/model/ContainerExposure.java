@@ -0,0 +1,293 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.EpisimPerson;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+
+/**
+ * Time integral of the contagious occupancy of one container. Infectors are grouped into buckets of the same activity and virus strain,
+ * for each bucket the sum of {@link InfectionModel#getInfectorFactor infector factors} is integrated over time.
+ * A person leaving the container receives its exposure as difference between the current integral and the integral when it entered.
+ * <p>
+ * All contributions of infectors are recorded, so that an infector can be sampled proportional to its share of the exposure.
+ */
+final class ContainerExposure {
+
+	private int iteration = -1;
+	private double lastTime = Double.NaN;
+
+	/**
+	 * Params and strain of each bucket, buckets are only appended.
+	 */
+	private EpisimConfigGroup.InfectionParams[] bucketParams = new EpisimConfigGroup.InfectionParams[2];
+	private VirusStrain[] bucketStrains = new VirusStrain[2];
+	private double[] rates = new double[2];
+	private double[] integrals = new double[2];
+	private int buckets = 0;
+
+	/**
+	 * Contributions of infectors, an open contribution has {@code NaN} as end time.
+	 */
+	private EpisimPerson[] infectors = new EpisimPerson[4];
+	private int[] recordBuckets = new int[4];
+	private double[] factors = new double[4];
+	private double[] from = new double[4];
+	private double[] to = new double[4];
+	private int records = 0;
+
+	/**
+	 * Open record for each infector by person index.
+	 */
+	private final Int2IntMap open = new Int2IntOpenHashMap();
+
+	/**
+	 * Integrals of all buckets at the time a susceptible person entered.
+	 */
+	private final Int2ObjectMap<double[]> snapshots = new Int2ObjectOpenHashMap<>();
+
+	ContainerExposure() {
+		open.defaultReturnValue(-1);
+	}
+
+	int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * Integrate all buckets up to {@code now}.
+	 */
+	void advance(double now) {
+		if (!Double.isNaN(lastTime) && now > lastTime) {
+			double dt = now - lastTime;
+			for (int i = 0; i < buckets; i++)
+				integrals[i] += rates[i] * dt;
+		}
+
+		lastTime = now;
+	}
+
+	/**
+	 * Start a new iteration. All open contributions are closed, because the factors of the infectors may have changed.
+	 * Closed records that ended before {@code minTime} are removed.
+	 */
+	void startIteration(int iteration, double now, double minTime) {
+		advance(now);
+
+		this.iteration = iteration;
+
+		for (int i = 0; i < records; i++) {
+			if (Double.isNaN(to[i]))
+				to[i] = now;
+		}
+
+		open.clear();
+		Arrays.fill(rates, 0, buckets, 0);
+
+		int n = 0;
+		for (int i = 0; i < records; i++) {
+			if (to[i] < minTime)
+				continue;
+
+			infectors[n] = infectors[i];
+			recordBuckets[n] = recordBuckets[i];
+			factors[n] = factors[i];
+			from[n] = from[i];
+			to[n] = to[i];
+			n++;
+		}
+
+		Arrays.fill(infectors, n, records, null);
+		records = n;
+	}
+
+	/**
+	 * Remove the snapshots of all persons that are not present anymore.
+	 */
+	void retainTargets(Collection<EpisimPerson> present) {
+		IntSet indices = new IntOpenHashSet(present.size());
+		for (EpisimPerson person : present) {
+			indices.add(person.getPersonId().index());
+		}
+
+		snapshots.keySet().retainAll(indices);
+	}
+
+	/**
+	 * Add the contribution of an infector, starting at {@code now}.
+	 */
+	void addInfector(EpisimPerson infector, EpisimConfigGroup.InfectionParams params, double factor, double now) {
+
+		int index = infector.getPersonId().index();
+		if (open.containsKey(index))
+			return;
+
+		int bucket = getBucket(params, infector.getVirusStrain());
+
+		if (records == infectors.length) {
+			int n = records * 2;
+			infectors = Arrays.copyOf(infectors, n);
+			recordBuckets = Arrays.copyOf(recordBuckets, n);
+			factors = Arrays.copyOf(factors, n);
+			from = Arrays.copyOf(from, n);
+			to = Arrays.copyOf(to, n);
+		}
+
+		infectors[records] = infector;
+		recordBuckets[records] = bucket;
+		factors[records] = factor;
+		from[records] = now;
+		to[records] = Double.NaN;
+		open.put(index, records);
+		records++;
+
+		rates[bucket] += factor;
+	}
+
+	/**
+	 * End the contribution of an infector, if there is one.
+	 */
+	void removeInfector(EpisimPerson infector, double now) {
+		int record = open.remove(infector.getPersonId().index());
+		if (record < 0)
+			return;
+
+		to[record] = now;
+
+		int bucket = recordBuckets[record];
+		rates[bucket] -= factors[record];
+
+		// avoid drift from floating point errors
+		if (rates[bucket] < 1e-12)
+			rates[bucket] = 0;
+	}
+
+	/**
+	 * Remember the current integrals for a susceptible person. Existing snapshots are kept.
+	 */
+	void addTarget(EpisimPerson target) {
+		int index = target.getPersonId().index();
+		if (!snapshots.containsKey(index))
+			snapshots.put(index, Arrays.copyOf(integrals, buckets));
+	}
+
+	/**
+	 * Removes and returns the snapshot of a target.
+	 */
+	@Nullable
+	double[] removeTarget(EpisimPerson target) {
+		return snapshots.remove(target.getPersonId().index());
+	}
+
+	int getBuckets() {
+		return buckets;
+	}
+
+	EpisimConfigGroup.InfectionParams getParams(int bucket) {
+		return bucketParams[bucket];
+	}
+
+	VirusStrain getStrain(int bucket) {
+		return bucketStrains[bucket];
+	}
+
+	/**
+	 * Integrated infector factors of one bucket since the snapshot was taken.
+	 */
+	double getExposure(int bucket, double[] snapshot) {
+		// buckets created after the snapshot started with zero
+		return bucket < snapshot.length ? integrals[bucket] - snapshot[bucket] : integrals[bucket];
+	}
+
+	/**
+	 * Sample an infector of a bucket proportional to its contribution between {@code start} and {@code now}.
+	 *
+	 * @param canInfect only infectors fulfilling this predicate are considered
+	 * @return sampled infector or null if no infector is eligible
+	 */
+	@Nullable
+	EpisimPerson sampleInfector(int bucket, double start, double now, SplittableRandom rnd, Predicate<EpisimPerson> canInfect) {
+
+		double total = 0;
+		for (int i = 0; i < records; i++) {
+			total += weight(i, bucket, start, now, canInfect);
+		}
+
+		if (total <= 0)
+			return null;
+
+		double r = rnd.nextDouble() * total;
+		EpisimPerson last = null;
+		for (int i = 0; i < records; i++) {
+			double w = weight(i, bucket, start, now, canInfect);
+			if (w <= 0)
+				continue;
+
+			last = infectors[i];
+			r -= w;
+			if (r < 0)
+				return last;
+		}
+
+		return last;
+	}
+
+	private double weight(int record, int bucket, double start, double now, Predicate<EpisimPerson> canInfect) {
+		if (recordBuckets[record] != bucket || !canInfect.test(infectors[record]))
+			return 0;
+
+		double end = Double.isNaN(to[record]) ? now : Math.min(to[record], now);
+		double overlap = end - Math.max(from[record], start);
+
+		return overlap > 0 ? overlap * factors[record] : 0;
+	}
+
+	private int getBucket(EpisimConfigGroup.InfectionParams params, VirusStrain strain) {
+		for (int i = 0; i < buckets; i++) {
+			if (bucketParams[i] == params && bucketStrains[i] == strain)
+				return i;
+		}
+
+		if (buckets == bucketParams.length) {
+			int n = buckets * 2;
+			bucketParams = Arrays.copyOf(bucketParams, n);
+			bucketStrains = Arrays.copyOf(bucketStrains, n);
+			rates = Arrays.copyOf(rates, n);
+			integrals = Arrays.copyOf(integrals, n);
+		}
+
+		bucketParams[buckets] = params;
+		bucketStrains[buckets] = strain;
+		return buckets++;
+	}
+}
@@ -0,0 +1,71 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import com.google.inject.Inject;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.policy.Restriction;
+
+import javax.annotation.Nullable;
+import java.util.SplittableRandom;
+
+/**
+ * Face mask model where persons wear the same mask during an activity for the whole day.
+ * Masks are assigned at the start of each day by {@link FaceMaskAssignment}.
+ * Activities without an assignment, e.g. home quarantine, draw a mask for each contact as in {@link DefaultFaceMaskModel}.
+ * Assigned masks are looked up by the position of the activity in the trajectory, callers that do not know it only
+ * get the mask of trips.
+ */
+public class DailyFaceMaskModel implements FaceMaskModel {
+
+	private final SplittableRandom rnd;
+	private final FaceMaskAssignment assignment;
+
+	@Inject
+	public DailyFaceMaskModel(SplittableRandom rnd, FaceMaskAssignment assignment) {
+		this.rnd = rnd;
+		this.assignment = assignment;
+		assignment.enable();
+	}
+
+	@Override
+	public FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, Restriction restriction) {
+		return getWornMask(person, act, EpisimPerson.UNSPECIFIC_ACTIVITY, restriction);
+	}
+
+	@Override
+	public FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, int activity, Restriction restriction) {
+		return getWornMask(person, act, activity, restriction, null);
+	}
+
+	@Override
+	public boolean usesContactRandom() {
+		return true;
+	}
+
+	@Override
+	public FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, int activity, Restriction restriction,
+								@Nullable SplittableRandom rnd) {
+		FaceMask mask = assignment.getFaceMask(person, act, activity);
+		return mask != null ? mask : restriction.determineMask(rnd != null ? rnd : this.rnd);
+	}
+}
@@ -21,6 +21,8 @@
 package org.matsim.episim.model;
 
 import com.google.inject.Inject;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
@@ -28,7 +30,6 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.SplittableRandom;
 
@@ -48,14 +49,15 @@ public final class DefaultContactModel extends AbstractContactModel {
 	private final int trackingAfterDay;
 
 	/**
-	 * In order to avoid recreating a the list of other persons in the container every time it is stored as instance variable.
+	 * Positions that have been swapped during the partial Fisher-Yates shuffle of the persons in a container.
+	 * Only the drawn positions are stored, all others map to themselves.
 	 */
-	List<EpisimPerson> otherPersonsInContainer = new ArrayList<>();
+	private final Int2IntMap swapped = new Int2IntOpenHashMap();
 
 	/**
-	 * This buffer is used to store the infection type.
+	 * Contacts of the leaving person, which are evaluated at once. Probabilities ignoring vaccination are not used by this model.
 	 */
-	private final StringBuilder buffer = new StringBuilder();
+	private final ContactBatch batch = new ContactBatch(false);
 
 	@Inject
 	/* package */
@@ -95,23 +97,37 @@ public final class DefaultContactModel extends AbstractContactModel {
 		// start tracking late as possible because of computational costs
 		boolean trackingEnabled = iteration >= trackingAfterDay;
 
-		otherPersonsInContainer.addAll(container.getPersons());
-		otherPersonsInContainer.remove(personLeavingContainer);
+		batch.reset(personLeavingContainer, getInfectionParams(container, personLeavingContainer),
+				container.getActivityIndex(personLeavingContainer.getPersonId()), personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible);
+
+		List<EpisimPerson> persons = container.getPersons();
+
+		// The other persons are drawn with a partial Fisher-Yates shuffle over the positions in the container.
+		// The leaving person is excluded up front, by swapping it with the last position.
+		swapped.clear();
+		int candidates = persons.size();
+		int leavingSlot = container.getSlot(personLeavingContainer);
+		if (leavingSlot >= 0) {
+			candidates--;
+			swap(leavingSlot, candidates);
+		}
 
 		// For the time being, will just assume that the first 10 persons are the ones we interact with.  Note that because of
 		// shuffle, those are 10 different persons every day.
 
 		// persons are scaled to number of agents with sample size, but at least 3 for the small development scenarios
 //		int contactWith = Math.min(otherPersonsInContainer.size(), Math.max((int) (episimConfig.getSampleSize() * 10), 3));
-		int contactWith = Math.min(otherPersonsInContainer.size(), (int)episimConfig.getMaxContacts());
+		int contactWith = Math.min(candidates, (int)episimConfig.getMaxContacts());
 		for (int ii = 0; ii < contactWith; ii++) {
 
 			// we are essentially looking at the situation when the person leaves the container.  Interactions with other persons who have
 			// already left the container were treated then.  In consequence, we have some "circle of persons around us" (yyyy which should
 			//  depend on the density), and then a probability of infection in either direction.
 
-			// Draw the contact person and remove it -> we don't want to draw it multiple times
-			EpisimPerson contactPerson = otherPersonsInContainer.remove(rnd.nextInt(otherPersonsInContainer.size()));
+			// Draw the contact person and move it behind the remaining candidates -> we don't want to draw it multiple times
+			int drawn = rnd.nextInt(candidates);
+			candidates--;
+			EpisimPerson contactPerson = persons.get(swap(drawn, candidates));
 
 
 			if (!personRelevantForTrackingOrInfectionDynamics(now, contactPerson, container, getRestrictions(), rnd)) {
@@ -132,13 +148,13 @@ public final class DefaultContactModel extends AbstractContactModel {
 			}
 
 			// activity params of the contact person and leaving person
-			EpisimConfigGroup.InfectionParams leavingParams = getInfectionParams(container, personLeavingContainer,  container.getPerformedActivity(personLeavingContainer.getPersonId()));
-			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson,  container.getPerformedActivity(contactPerson.getPersonId()));
+			EpisimConfigGroup.InfectionParams leavingParams = getInfectionParams(container, personLeavingContainer);
+			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson);
 
-			String leavingPersonsActivity = leavingParams == qhParams ? "home" : leavingParams.getContainerName();
-			String otherPersonsActivity = contactParams == qhParams ? "home" : contactParams.getContainerName();
+			int leavingPersonsActivity = getActivityIndex(leavingParams);
+			int otherPersonsActivity = getActivityIndex(contactParams);
 
-			StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
+			String infectionType = getInfectionType(container, leavingPersonsActivity, otherPersonsActivity);
 
 			double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
 			double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
@@ -146,16 +162,12 @@ public final class DefaultContactModel extends AbstractContactModel {
 
 			//forbid certain cross-activity interactions, keep track of contacts
 			if (container instanceof InfectionEventHandler.EpisimFacility) {
-				//home can only interact with home, leisure or work
-				if (infectionType.indexOf("home") >= 0 && infectionType.indexOf("leis") == -1 && infectionType.indexOf("work") == -1
-						&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home"))) {
-					continue;
-				} else if (infectionType.indexOf("edu") >= 0 && infectionType.indexOf("work") == -1 && !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu"))) {
-					//edu can only interact with work or edu
+				// home can only interact with home, leisure or work; edu only with work or edu
+				if (!canInteract(leavingPersonsActivity, otherPersonsActivity)) {
 					continue;
 				}
 				if (trackingEnabled) {
-					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, infectionType);
+					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, leavingPersonsActivity, otherPersonsActivity);
 				}
 
 				// Only a subset of contacts are reported at the moment
@@ -192,25 +204,34 @@ public final class DefaultContactModel extends AbstractContactModel {
 
 			double contactIntensity = Math.min(leavingParams.getContactIntensity(), contactParams.getContactIntensity());
 
-			// need to differentiate which person might be the infector
-			if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
+			batch.add(contactPerson, contactParams, container.getActivityIndex(contactPerson.getPersonId()), infectionType, contactIntensity, jointTimeInContainer);
+		}
 
-				double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
-						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
-				if (rnd.nextDouble() < prob)
-					infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
+		if (batch.size() > 0) {
+			infectionModel.calcInfectionProbabilities(batch, getRestrictions());
 
-			} else {
-				double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
-						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
+			for (int i = 0; i < batch.size(); i++) {
+				EpisimPerson target = batch.getTarget(i);
+				double prob = batch.getProbability(i);
 
-				if (rnd.nextDouble() < prob)
-					infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
+				// target may have been infected by an earlier contact of this batch
+				if (target.getDiseaseStatus() == DiseaseStatus.susceptible && rnd.nextDouble() < prob)
+					infectPerson(target, batch.getInfector(i), now, batch.getInfectionType(i), prob, container);
 			}
 		}
+	}
 
-		// Clear cached container
-		otherPersonsInContainer.clear();
+	/**
+	 * Swap two positions of the shuffled persons.
+	 *
+	 * @return the position in the container that has been moved to {@code j}
+	 */
+	private int swap(int i, int j) {
+		int atI = swapped.getOrDefault(i, i);
+		int atJ = swapped.getOrDefault(j, j);
+		swapped.put(i, atJ);
+		swapped.put(j, atI);
+		return atI;
 	}
 
 }
@@ -5,6 +5,7 @@ import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.policy.Restriction;
 
+import javax.annotation.Nullable;
 import java.util.SplittableRandom;
 
 /**
@@ -24,4 +25,15 @@ public class DefaultFaceMaskModel implements FaceMaskModel {
 	public FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, Restriction restriction) {
 		return restriction.determineMask(rnd);
 	}
+
+	@Override
+	public boolean usesContactRandom() {
+		return true;
+	}
+
+	@Override
+	public FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, int activity, Restriction restriction,
+								@Nullable SplittableRandom rnd) {
+		return restriction.determineMask(rnd != null ? rnd : this.rnd);
+	}
 }
@@ -0,0 +1,186 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import com.google.inject.Inject;
+import it.unimi.dsi.fastutil.HashCommon;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimUtils;
+import org.matsim.episim.policy.Restriction;
+
+import javax.annotation.Nullable;
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * Assigns each person one face mask per activity and day, instead of drawing a mask for every contact.
+ * Masks are drawn once at the start of the day from a cumulative table of the mask usage of each restriction and are stored
+ * in the persons, see {@link EpisimPerson#getFaceMask(int)}.
+ * <p>
+ * Assignment is only performed if a {@link DailyFaceMaskModel} is in use.
+ */
+public final class FaceMaskAssignment {
+
+	/**
+	 * Separates the mask draws from other streams that are seeded by person index, e.g. activity participation.
+	 */
+	private static final long STREAM = 0x6d61736bL;
+
+	private final EpisimConfigGroup episimConfig;
+	private final EpisimConfigGroup.InfectionParams trParams;
+	private final long seed;
+
+	private volatile boolean enabled;
+
+	/**
+	 * Iteration of the current assignment.
+	 */
+	private int iteration = -1;
+
+	@Inject
+	public FaceMaskAssignment(Config config) {
+		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		this.trParams = episimConfig.selectInfectionParams("tr");
+		this.seed = config.global().getRandomSeed();
+	}
+
+	/**
+	 * Called by the models that use the assignment.
+	 */
+	void enable() {
+		enabled = true;
+	}
+
+	/**
+	 * Whether any model uses the assigned masks.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Assign masks of all persons for a new day. Needs to be called after restrictions for this day have been updated.
+	 */
+	public void update(Collection<EpisimPerson> persons, int iteration, Map<String, Restriction> restrictions) {
+
+		if (!enabled)
+			return;
+
+		DayOfWeek day = EpisimUtils.getDayOfWeek(episimConfig, iteration);
+
+		// one table per restriction, looked up by activity index
+		Map<Restriction, MaskTable> tables = new IdentityHashMap<>();
+		int size = 0;
+		for (EpisimConfigGroup.InfectionParams params : episimConfig.getInfectionParams()) {
+			size = Math.max(size, params.getIndex() + 1);
+		}
+
+		MaskTable[] byIndex = new MaskTable[size];
+		for (EpisimConfigGroup.InfectionParams params : episimConfig.getInfectionParams()) {
+			Restriction r = restrictions.get(params.getContainerName());
+			if (r != null && params.getIndex() >= 0)
+				byIndex[params.getIndex()] = tables.computeIfAbsent(r, MaskTable::new);
+		}
+
+		MaskTable trips = table(byIndex, trParams);
+		long key = HashCommon.mix(HashCommon.mix(seed + iteration) + STREAM);
+
+		persons.parallelStream().forEach(p -> {
+
+			// random numbers depend only on the person and day, not on the order of evaluation
+			SplittableRandom rnd = new SplittableRandom(HashCommon.mix(key + p.getPersonId().index()));
+
+			int offset = p.getStartOfDay(day);
+			for (int i = 0; i < p.getEndOfDay(day) - offset; i++) {
+				MaskTable t = table(byIndex, p.getActivityParams(offset + i));
+				p.setFaceMask(day, i, t != null ? t.sample(rnd) : null);
+			}
+
+			p.setTripFaceMask(trips != null ? trips.sample(rnd) : null);
+		});
+
+		this.iteration = iteration;
+	}
+
+	@Nullable
+	private static MaskTable table(MaskTable[] byIndex, EpisimConfigGroup.InfectionParams params) {
+		int i = params.getIndex();
+		return i >= 0 && i < byIndex.length ? byIndex[i] : null;
+	}
+
+	/**
+	 * Mask assigned to a person for an activity of the current day.
+	 *
+	 * @param act      params the activity is evaluated with
+	 * @param activity position of the activity in the trajectory, or {@link EpisimPerson#UNSPECIFIC_ACTIVITY}
+	 * @return assigned mask, or null if there is no assignment for this activity.
+	 */
+	@Nullable
+	public FaceMask getFaceMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, int activity) {
+		if (iteration < 0)
+			return null;
+
+		if (act == trParams)
+			return person.getTripFaceMask();
+
+		// activities evaluated with other params, e.g. home quarantine, have no assignment
+		if (activity < 0 || person.getActivityParams(activity) != act)
+			return null;
+
+		return person.getFaceMask(activity);
+	}
+
+	/**
+	 * Cumulative mask usage of one restriction, in the same order as {@link Restriction#determineMask(SplittableRandom)}.
+	 */
+	private static final class MaskTable {
+
+		private final FaceMask[] masks;
+		private final double[] cumulative;
+
+		private MaskTable(Restriction r) {
+			Map<FaceMask, Double> usage = r.getMaskUsage();
+			masks = usage.keySet().toArray(new FaceMask[0]);
+			cumulative = usage.values().stream().mapToDouble(Double::doubleValue).toArray();
+		}
+
+		private FaceMask sample(SplittableRandom rnd) {
+
+			if (masks.length == 0)
+				return FaceMask.NONE;
+
+			// avoid use of rnd if outcome is known beforehand
+			if (cumulative[0] == 1d)
+				return masks[0];
+
+			double p = rnd.nextDouble();
+			for (int i = 0; i < masks.length; i++) {
+				if (cumulative[i] == 1d || p < cumulative[i])
+					return masks[i];
+			}
+
+			throw new IllegalStateException("Could not determine mask. Probabilities are likely wrong.");
+		}
+	}
+}
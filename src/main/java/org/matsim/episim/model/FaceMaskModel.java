@@ -4,6 +4,9 @@ import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.policy.Restriction;
 
+import javax.annotation.Nullable;
+import java.util.SplittableRandom;
+
 /**
  * Model which decides which mask a person is wearing during activity.
  */
@@ -14,4 +17,33 @@ public interface FaceMaskModel {
 	 */
 	FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, Restriction restriction);
 
+	/**
+	 * Return the mask a person is wearing for an activity at a known position in its trajectory.
+	 *
+	 * @param activity position in the trajectory, or {@link EpisimPerson#UNSPECIFIC_ACTIVITY}
+	 */
+	default FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, int activity, Restriction restriction) {
+		return getWornMask(person, act, restriction);
+	}
+
+	/**
+	 * Return the mask a person is wearing for an activity, drawing random numbers from {@code rnd} if given and supported,
+	 * see {@link #usesContactRandom()}. By default the generator of this model is used.
+	 *
+	 * @param activity position in the trajectory, or {@link EpisimPerson#UNSPECIFIC_ACTIVITY}
+	 * @param rnd      random number generator of the contact, or null to use the generator of this model
+	 */
+	default FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, int activity, Restriction restriction,
+								 @Nullable SplittableRandom rnd) {
+		return getWornMask(person, act, activity, restriction);
+	}
+
+	/**
+	 * Whether {@link #getWornMask(EpisimPerson, EpisimConfigGroup.InfectionParams, int, Restriction, SplittableRandom)} draws only from
+	 * the given generator and does not change any state, so that it can be called concurrently.
+	 */
+	default boolean usesContactRandom() {
+		return false;
+	}
+
 }
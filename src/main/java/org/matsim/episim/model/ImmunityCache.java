@@ -0,0 +1,199 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import com.google.inject.Inject;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.VaccinationConfigGroup;
+import org.matsim.episim.VirusStrainConfigGroup;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+import static org.matsim.episim.model.DefaultInfectionModel.*;
+
+/**
+ * Per day cache of the strain dependent susceptibility and infectivity of all persons,
+ * which only depend on vaccination and previous infections and would otherwise be interpolated for every contact.
+ * <p>
+ * Values are stored in one flat array for persons that are vaccinated or recovered, all other persons have a factor of 1.
+ * Persons whose state changed after the last {@link #update(Collection, int)} are calculated directly,
+ * see {@link EpisimPerson#isImmunityChanged()}.
+ */
+public final class ImmunityCache {
+
+	private static final int SUSCEPTIBILITY = 0;
+	private static final int IMMUNITY = 1;
+	private static final int INFECTIVITY = 2;
+	private static final int VACCINATION_INFECTIVITY = 3;
+	private static final int COLUMNS = 4;
+
+	/**
+	 * Offset of persons without any entry.
+	 */
+	private static final int NONE = -1;
+
+	private final VaccinationConfigGroup vaccinationConfig;
+	private final VirusStrainConfigGroup strainConfig;
+
+	/**
+	 * Dense index of each {@link VirusStrain} ordinal, -1 if the strain is not configured.
+	 */
+	private final int[] strainIndex = new int[VirusStrain.values().length];
+	private VirusStrainConfigGroup.StrainParams[] strains = new VirusStrainConfigGroup.StrainParams[0];
+
+	/**
+	 * Offset into {@link #values} for each person id index.
+	 */
+	private int[] offsets = new int[0];
+	private double[] values = new double[0];
+
+	/**
+	 * Iteration the cache is valid for.
+	 */
+	private int iteration = -1;
+
+	@Inject
+	public ImmunityCache(Config config) {
+		this.vaccinationConfig = ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class);
+		this.strainConfig = ConfigUtils.addOrGetModule(config, VirusStrainConfigGroup.class);
+		Arrays.fill(strainIndex, -1);
+	}
+
+	/**
+	 * Recompute all values for a new day. Needs to be called after all state transitions of this day.
+	 */
+	public void update(Collection<EpisimPerson> persons, int iteration) {
+
+		strains = strainConfig.getStrains().toArray(new VirusStrainConfigGroup.StrainParams[0]);
+		Arrays.fill(strainIndex, -1);
+		for (int i = 0; i < strains.length; i++) {
+			strainIndex[strains[i].getStrain().ordinal()] = i;
+		}
+
+		EpisimPerson[] relevant = persons.stream()
+				.filter(ImmunityCache::hasEntry)
+				.toArray(EpisimPerson[]::new);
+
+		int maxIndex = persons.stream().mapToInt(p -> p.getPersonId().index()).max().orElse(-1);
+		if (offsets.length <= maxIndex)
+			offsets = new int[maxIndex + 1];
+
+		Arrays.fill(offsets, NONE);
+
+		int stride = strains.length * COLUMNS;
+		if (values.length < relevant.length * stride)
+			values = new double[relevant.length * stride];
+
+		for (int i = 0; i < relevant.length; i++) {
+			offsets[relevant[i].getPersonId().index()] = i * stride;
+		}
+
+		IntStream.range(0, relevant.length).parallel().forEach(i -> {
+			EpisimPerson p = relevant[i];
+			int offset = i * stride;
+			for (VirusStrainConfigGroup.StrainParams strain : strains) {
+				values[offset + SUSCEPTIBILITY] = Math.min(getVaccinationEffectiveness(strain, p, vaccinationConfig, iteration),
+						getImmunityEffectiveness(strain, p, vaccinationConfig, iteration));
+				values[offset + IMMUNITY] = getImmunityEffectiveness(strain, p, vaccinationConfig, iteration);
+				values[offset + INFECTIVITY] = DefaultInfectionModel.getInfectivity(p, strain, vaccinationConfig, iteration);
+				values[offset + VACCINATION_INFECTIVITY] = DefaultInfectionModel.getVaccinationInfectivity(p, strain, vaccinationConfig, iteration);
+				offset += COLUMNS;
+			}
+		});
+
+		this.iteration = iteration;
+	}
+
+	/**
+	 * Persons that were never vaccinated or recovered have no entry, all their factors are 1.
+	 */
+	private static boolean hasEntry(EpisimPerson p) {
+		return p.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes || p.hadDiseaseStatus(EpisimPerson.DiseaseStatus.recovered);
+	}
+
+	/**
+	 * Position of the cached value, {@link #NONE} if all factors are 1, or {@link Integer#MIN_VALUE} if the value needs to be calculated.
+	 */
+	private int lookup(EpisimPerson p, VirusStrainConfigGroup.StrainParams strain, int iteration, int column) {
+
+		if (iteration != this.iteration || p.isImmunityChanged())
+			return Integer.MIN_VALUE;
+
+		int index = p.getPersonId().index();
+		int s = strainIndex[strain.getStrain().ordinal()];
+		if (index >= offsets.length || s < 0)
+			return Integer.MIN_VALUE;
+
+		int offset = offsets[index];
+		return offset == NONE ? NONE : offset + s * COLUMNS + column;
+	}
+
+	/**
+	 * Combined susceptibility from vaccination and previous infections.
+	 *
+	 * @see DefaultInfectionModel#getVaccinationEffectiveness(VirusStrainConfigGroup.StrainParams, EpisimPerson, VaccinationConfigGroup, int)
+	 * @see DefaultInfectionModel#getImmunityEffectiveness(VirusStrainConfigGroup.StrainParams, EpisimPerson, VaccinationConfigGroup, int)
+	 */
+	public double getSusceptibility(EpisimPerson target, VirusStrainConfigGroup.StrainParams strain, int iteration) {
+		int i = lookup(target, strain, iteration, SUSCEPTIBILITY);
+		if (i == Integer.MIN_VALUE)
+			return Math.min(getVaccinationEffectiveness(strain, target, vaccinationConfig, iteration), getImmunityEffectiveness(strain, target, vaccinationConfig, iteration));
+
+		return i == NONE ? 1 : values[i];
+	}
+
+	/**
+	 * Susceptibility only from previous infections.
+	 */
+	public double getImmunity(EpisimPerson target, VirusStrainConfigGroup.StrainParams strain, int iteration) {
+		int i = lookup(target, strain, iteration, IMMUNITY);
+		if (i == Integer.MIN_VALUE)
+			return getImmunityEffectiveness(strain, target, vaccinationConfig, iteration);
+
+		return i == NONE ? 1 : values[i];
+	}
+
+	/**
+	 * Combined infectivity from vaccination and previous infections.
+	 */
+	public double getInfectivity(EpisimPerson infector, VirusStrainConfigGroup.StrainParams strain, int iteration) {
+		int i = lookup(infector, strain, iteration, INFECTIVITY);
+		if (i == Integer.MIN_VALUE)
+			return DefaultInfectionModel.getInfectivity(infector, strain, vaccinationConfig, iteration);
+
+		return i == NONE ? 1 : values[i];
+	}
+
+	/**
+	 * Infectivity only from vaccination.
+	 */
+	public double getVaccinationInfectivity(EpisimPerson infector, VirusStrainConfigGroup.StrainParams strain, int iteration) {
+		int i = lookup(infector, strain, iteration, VACCINATION_INFECTIVITY);
+		if (i == Integer.MIN_VALUE)
+			return DefaultInfectionModel.getVaccinationInfectivity(infector, strain, vaccinationConfig, iteration);
+
+		return i == NONE ? 1 : values[i];
+	}
+}
@@ -3,8 +3,11 @@ package org.matsim.episim.model;
 import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.RestrictionTable;
 
+import javax.annotation.Nullable;
 import java.util.Map;
+import java.util.SplittableRandom;
 
 public interface InfectionModel {
 
@@ -17,6 +20,15 @@ public interface InfectionModel {
 	default void setIteration(int iteration) {
 	}
 
+	/**
+	 * Called at the start of an iteration with the restrictions resolved by activity index.
+	 * Models may use the table instead of looking up restrictions by name for each contact.
+	 *
+	 * @param restrictions restrictions of the current iteration
+	 */
+	default void setRestrictions(RestrictionTable restrictions) {
+	}
+
 	/**
 	 * Calculates the probability that person {@code infector} infects {@code target}.
 	 *
@@ -42,4 +54,78 @@ public interface InfectionModel {
 		return calcInfectionProbability(target, infector, restrictions, act1, act2, contactIntensity, jointTimeInContainer);
 	}
 
+	/**
+	 * Calculates the infection probabilities of all contacts in a batch and stores them in the batch.
+	 * Implementations should compute the deterministic factors of {@link ContactBatch#getPerson()} only once, but draw
+	 * random numbers per contact in the same order as this default implementation.
+	 *
+	 * @param batch        contacts of one person
+	 * @param restrictions Restrictions currently in place
+	 */
+	default void calcInfectionProbabilities(ContactBatch batch, Map<String, Restriction> restrictions) {
+		for (int i = 0; i < batch.size(); i++) {
+			EpisimPerson target = batch.getTarget(i);
+			EpisimPerson infector = batch.getInfector(i);
+
+			double prob = calcInfectionProbability(target, infector, restrictions, batch.getTargetParams(i), batch.getInfectorParams(i),
+					batch.getContactIntensity(i), batch.getJointTime(i));
+
+			double probUnVac = !batch.needsUnVacProbability() ? prob :
+					calcUnVacInfectionProbability(target, infector, restrictions, batch.getTargetParams(i), batch.getInfectorParams(i),
+							batch.getContactIntensity(i), batch.getJointTime(i));
+
+			batch.setProbability(i, prob, probUnVac);
+		}
+	}
+
+	/**
+	 * Whether {@link #calcInfectionProbabilities(ContactBatch, Map)} draws all random numbers from {@link ContactBatch#getRandom(int)}
+	 * when it is set, and does not change any state of the model. Batches of such models can be evaluated concurrently.
+	 * Models drawing masks need to check {@link FaceMaskModel#usesContactRandom()} of their mask model.
+	 */
+	default boolean usesContactRandom() {
+		return false;
+	}
+
+	/**
+	 * Whether this model can separate the factors of infector and target, which is needed to aggregate the exposure
+	 * in large containers. See {@link #getInfectorFactor(EpisimPerson, EpisimConfigGroup.InfectionParams, int, Map, SplittableRandom)}.
+	 */
+	default boolean supportsExposure() {
+		return false;
+	}
+
+	/**
+	 * Factor of the infection probability that only depends on the infector.
+	 *
+	 * @param infector     The infectious person
+	 * @param act          Activity of infector
+	 * @param activity     Position of the activity in the trajectory of the infector
+	 * @param restrictions Restrictions currently in place
+	 * @param random       random number generator of the infector, or null to use the generator of the model
+	 */
+	default double getInfectorFactor(EpisimPerson infector, EpisimConfigGroup.InfectionParams act, int activity, Map<String, Restriction> restrictions,
+									 @Nullable SplittableRandom random) {
+		throw new UnsupportedOperationException("Exposure is not supported by " + getClass());
+	}
+
+	/**
+	 * Calculates the probability that {@code target} gets infected by an accumulated exposure to one virus strain.
+	 *
+	 * @param target       The potentially infected person
+	 * @param strain       Virus strain of the infectors
+	 * @param restrictions Restrictions currently in place
+	 * @param act1         Activity of target
+	 * @param activity     Position of the activity in the trajectory of the target
+	 * @param act2         Activity of infectors
+	 * @param exposure     sum over all infectors of their {@link #getInfectorFactor infector factor} times contact intensity and joint time
+	 * @param random       random number generator of the target, or null to use the generator of the model
+	 * @return probability between 0 and 1
+	 */
+	default double calcExposureProbability(EpisimPerson target, VirusStrain strain, Map<String, Restriction> restrictions,
+										   EpisimConfigGroup.InfectionParams act1, int activity, EpisimConfigGroup.InfectionParams act2, double exposure,
+										   @Nullable SplittableRandom random) {
+		throw new UnsupportedOperationException("Exposure is not supported by " + getClass());
+	}
+
 }
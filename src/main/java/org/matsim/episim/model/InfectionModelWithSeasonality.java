@@ -5,14 +5,14 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
 import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.RestrictionTable;
 
+import javax.annotation.Nullable;
 import java.time.LocalDate;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SplittableRandom;
 
-import static org.matsim.episim.model.DefaultInfectionModel.*;
-
 /**
  * Extension of the {@link DefaultInfectionModel} with a seasonality component.
  */
@@ -22,20 +22,25 @@ public final class InfectionModelWithSeasonality implements InfectionModel {
 	private final SplittableRandom rnd;
 	private final EpisimConfigGroup episimConfig;
 	private final EpisimReporting reporting;
-	private final VaccinationConfigGroup vaccinationConfig;
+	private final ImmunityCache immunityCache;
 	private final VirusStrainConfigGroup virusStrainConfig;
 
 	private double outdoorFactor;
 	private int iteration;
+	private RestrictionTable restrictionTable;
 
 	@Inject
-	public InfectionModelWithSeasonality(FaceMaskModel faceMaskModel, SplittableRandom rnd, Config config, EpisimReporting reporting) {
+	public InfectionModelWithSeasonality(FaceMaskModel faceMaskModel, SplittableRandom rnd, Config config, EpisimReporting reporting, ImmunityCache immunityCache) {
 		this.maskModel = faceMaskModel;
 		this.rnd = rnd;
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
-		this.vaccinationConfig = ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class);
 		this.virusStrainConfig = ConfigUtils.addOrGetModule(config, VirusStrainConfigGroup.class);
 		this.reporting = reporting;
+		this.immunityCache = immunityCache;
+	}
+
+	public InfectionModelWithSeasonality(FaceMaskModel faceMaskModel, SplittableRandom rnd, Config config, EpisimReporting reporting) {
+		this(faceMaskModel, rnd, config, reporting, new ImmunityCache(config));
 	}
 
 	@Override
@@ -45,32 +50,171 @@ public final class InfectionModelWithSeasonality implements InfectionModel {
 		reporting.reportOutdoorFraction(this.outdoorFactor, iteration);
 	}
 
+	@Override
+	public void setRestrictions(RestrictionTable restrictions) {
+		this.restrictionTable = restrictions;
+	}
+
+	/**
+	 * Use the table of this iteration if it was created from the given map, otherwise resolve the map.
+	 */
+	private RestrictionTable tableFor(Map<String, Restriction> restrictions) {
+		if (restrictionTable != null && restrictionTable.isCreatedFrom(restrictions))
+			return restrictionTable;
+
+		return RestrictionTable.of(episimConfig, restrictions);
+	}
+
 	@Override
 	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions,
 										   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
 										   double contactIntensity, double jointTimeInContainer) {
 
+		RestrictionTable table = tableFor(restrictions);
+
 		// ci corr can not be null, because sim is initialized with non null value
-		double ciCorrection = Math.min(restrictions.get(act1.getContainerName()).getCiCorrection(), restrictions.get(act2.getContainerName()).getCiCorrection());
+		double ciCorrection = Math.min(table.getCiCorrection(act1), table.getCiCorrection(act2));
 
 		// note that for 1pct runs, calibParam is of the order of one, which means that for typical times of 100sec or more,
 		// exp( - 1 * 1 * 100 ) \approx 0, and thus the infection proba becomes 1.  Which also means that changes in contactIntensity has
 		// no effect.  kai, mar'20
 		VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(infector.getVirusStrain());
-		double susceptibility = Math.min(getVaccinationEffectiveness(strain, target, vaccinationConfig, iteration), getImmunityEffectiveness(strain, target, vaccinationConfig, iteration));
+		double susceptibility = immunityCache.getSusceptibility(target, strain, iteration);
 
 		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * contactIntensity * jointTimeInContainer * ciCorrection
-				* getVaccinationInfectivity(infector, strain, vaccinationConfig, iteration)
+				* immunityCache.getVaccinationInfectivity(infector, strain, iteration)
 				* target.getSusceptibility()
 				* susceptibility
 				* strain.getInfectiousness()
-				* maskModel.getWornMask(infector, act2, restrictions.get(act2.getContainerName())).shedding
-				* maskModel.getWornMask(target, act1, restrictions.get(act1.getContainerName())).intake
+				* maskModel.getWornMask(infector, act2, table.get(act2)).shedding
+				* maskModel.getWornMask(target, act1, table.get(act1)).intake
 				* getIndoorOutdoorFactor(outdoorFactor, rnd, act1, act2)
 		);
 
 	}
 
+	@Override
+	public void calcInfectionProbabilities(ContactBatch batch, Map<String, Restriction> restrictions) {
+
+		EpisimPerson person = batch.getPerson();
+		EpisimConfigGroup.InfectionParams act = batch.getParams();
+		int activity = batch.getActivity();
+		RestrictionTable table = tableFor(restrictions);
+		Restriction r = table.get(act);
+		double ci = table.getCiCorrection(act);
+		double calibration = episimConfig.getCalibrationParameter();
+
+		if (batch.isTarget()) {
+
+			double targetFactor = calibration * person.getSusceptibility();
+			VirusStrainConfigGroup.StrainParams lastStrain = null;
+			double susceptibility = 1;
+
+			for (int i = 0; i < batch.size(); i++) {
+				EpisimPerson infector = batch.getPartner(i);
+				EpisimConfigGroup.InfectionParams act2 = batch.getPartnerParams(i);
+				Restriction r2 = table.get(act2);
+
+				VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(infector.getVirusStrain());
+				if (strain != lastStrain) {
+					susceptibility = immunityCache.getSusceptibility(person, strain, iteration);
+					lastStrain = strain;
+				}
+
+				double factor = targetFactor * susceptibility * batch.getContactIntensity(i) * batch.getJointTime(i)
+						* Math.min(ci, table.getCiCorrection(act2))
+						* immunityCache.getVaccinationInfectivity(infector, strain, iteration)
+						* strain.getInfectiousness();
+
+				double prob = calcProbability(factor, person, infector, act, act2, activity, batch.getPartnerActivity(i), r, r2, batch.getRandom(i));
+				double probUnVac = !batch.needsUnVacProbability() ? prob :
+						calcProbability(factor, person, infector, act, act2, activity, batch.getPartnerActivity(i), r, r2, batch.getRandom(i));
+				batch.setProbability(i, prob, probUnVac);
+			}
+
+		} else {
+
+			VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(person.getVirusStrain());
+			double infectorFactor = calibration * immunityCache.getVaccinationInfectivity(person, strain, iteration)
+					* strain.getInfectiousness();
+
+			for (int i = 0; i < batch.size(); i++) {
+				EpisimPerson target = batch.getPartner(i);
+				EpisimConfigGroup.InfectionParams act1 = batch.getPartnerParams(i);
+				Restriction r1 = table.get(act1);
+
+				double factor = infectorFactor * batch.getContactIntensity(i) * batch.getJointTime(i)
+						* Math.min(table.getCiCorrection(act1), ci)
+						* target.getSusceptibility()
+						* immunityCache.getSusceptibility(target, strain, iteration);
+
+				double prob = calcProbability(factor, target, person, act1, act, batch.getPartnerActivity(i), activity, r1, r, batch.getRandom(i));
+				double probUnVac = !batch.needsUnVacProbability() ? prob :
+						calcProbability(factor, target, person, act1, act, batch.getPartnerActivity(i), activity, r1, r, batch.getRandom(i));
+				batch.setProbability(i, prob, probUnVac);
+			}
+		}
+	}
+
+	/**
+	 * Infection probability of one contact, masks and seasonality are drawn in the same order as in {@link #calcInfectionProbability}.
+	 *
+	 * @param factor deterministic part of the exponent
+	 * @param random random number generator of the contact, or null to use the generator of this model
+	 */
+	private double calcProbability(double factor, EpisimPerson target, EpisimPerson infector,
+								   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
+								   int activity1, int activity2, Restriction r1, Restriction r2, @Nullable SplittableRandom random) {
+		return 1 - Math.exp(-factor
+				* maskModel.getWornMask(infector, act2, activity2, r2, random).shedding
+				* maskModel.getWornMask(target, act1, activity1, r1, random).intake
+				* getIndoorOutdoorFactor(outdoorFactor, random != null ? random : rnd, act1, act2)
+		);
+	}
+
+	@Override
+	public boolean usesContactRandom() {
+		return maskModel.usesContactRandom();
+	}
+
+	@Override
+	public boolean supportsExposure() {
+		return true;
+	}
+
+	@Override
+	public double getInfectorFactor(EpisimPerson infector, EpisimConfigGroup.InfectionParams act, int activity, Map<String, Restriction> restrictions, @Nullable SplittableRandom random) {
+		VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(infector.getVirusStrain());
+
+		return immunityCache.getVaccinationInfectivity(infector, strain, iteration)
+				* strain.getInfectiousness()
+				* maskModel.getWornMask(infector, act, activity, tableFor(restrictions).get(act), random).shedding;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The indoor/outdoor factor is drawn once for the accumulated exposure, instead of once per contact.
+	 */
+	@Override
+	public double calcExposureProbability(EpisimPerson target, VirusStrain virusStrain, Map<String, Restriction> restrictions,
+										  EpisimConfigGroup.InfectionParams act1, int activity, EpisimConfigGroup.InfectionParams act2, double exposure,
+										  @Nullable SplittableRandom random) {
+
+		RestrictionTable table = tableFor(restrictions);
+		Restriction r1 = table.get(act1);
+		double ciCorrection = Math.min(table.getCiCorrection(act1), table.getCiCorrection(act2));
+
+		VirusStrainConfigGroup.StrainParams strain = virusStrainConfig.getParams(virusStrain);
+		double susceptibility = immunityCache.getSusceptibility(target, strain, iteration);
+
+		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * exposure * ciCorrection
+				* target.getSusceptibility()
+				* susceptibility
+				* maskModel.getWornMask(target, act1, activity, r1, random).intake
+				* getIndoorOutdoorFactor(outdoorFactor, random != null ? random : rnd, act1, act2)
+		);
+	}
+
 	/**
 	 * Interpolate outdoor fraction for current day.
 	 */
@@ -20,11 +20,13 @@
  */
 package org.matsim.episim.model;
 
+import it.unimi.dsi.fastutil.ints.IntCollection;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.EpisimReporting;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -39,11 +41,29 @@ public interface ProgressionModel {
 	default void setIteration(int day) {
 	}
 
+	/**
+	 * Select the persons for which {@link #updateState(EpisimPerson, int)} has to be called on this day, in the order of the person map.
+	 * Persons not returned must not have any pending transition. By default all persons are updated.
+	 *
+	 * @param changed {@link Id#index()} of persons whose state changed outside of this model since the last call
+	 */
+	default Collection<EpisimPerson> getPersonsToUpdate(Map<Id<Person>, EpisimPerson> persons, IntCollection changed, int day) {
+		return persons.values();
+	}
+
 	/**
 	 * Called at the start of the day to update the state of a person.
 	 */
 	void updateState(EpisimPerson person, int day);
 
+	/**
+	 * Called at the start of the day, before {@link #beforeStateUpdates(Map, int, EpisimReporting.InfectionReport)}, with the persons whose
+	 * state changed outside of this model since the last day, e.g. because they got infected.
+	 *
+	 * @param changed {@link Id#index()} of the changed persons
+	 */
+	default void onPersonsChanged(Map<Id<Person>, EpisimPerson> persons, IntCollection changed, int day) {}
+
 	/**
 	 * Called before all state updates for all persons have been done.
 	 */
@@ -54,6 +74,13 @@ public interface ProgressionModel {
 	 */
 	default void afterStateUpdates(Map<Id<Person>, EpisimPerson> persons, int day) {}
 
+	/**
+	 * Traced contacts before this time are not needed anymore and are removed for all persons after the state updates of this day.
+	 */
+	default double getContactsNeededAfter(int day) {
+		return Double.NEGATIVE_INFINITY;
+	}
+
 	
 	/**
 	 * Checks whether any state transitions are possible. Otherwise the simulation will end.
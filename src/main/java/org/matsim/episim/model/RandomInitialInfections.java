@@ -58,7 +58,7 @@ public class RandomInitialInfections implements InitialInfectionHandler {
 			int numInfections = EpisimUtils.findValidEntry(e.getValue(), 1, date);
 
 			List<EpisimPerson> candidates = persons.values().stream()
-					.filter(p -> district == null || district.equals(p.getAttributes().getAttribute("district")))
+					.filter(p -> district == null || district.equals(p.getDistrict()))
 					.filter(p -> lowerAgeBoundaryForInitInfections == -1 || (int) p.getAttributes().getAttribute("microm:modeled:age") >= lowerAgeBoundaryForInitInfections)
 					.filter(p -> upperAgeBoundaryForInitInfections == -1 || (int) p.getAttributes().getAttribute("microm:modeled:age") <= upperAgeBoundaryForInitInfections)
 					.filter(p -> p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
@@ -21,13 +21,21 @@
 package org.matsim.episim.model;
 
 import com.google.inject.Inject;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.config.Config;
 import org.matsim.episim.*;
+import org.matsim.episim.policy.Restriction;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 import static org.matsim.episim.EpisimPerson.DiseaseStatus;
 
@@ -38,6 +46,11 @@ public final class SymmetricContactModel extends AbstractContactModel {
 
 	private static final Logger log = LogManager.getLogger(SymmetricContactModel.class);
 
+	/**
+	 * Probabilities are capped to keep the infection rate finite.
+	 */
+	private static final double MAX_PROB = 1 - 1e-12;
+
 	/**
 	 * Flag to enable tracking, which is considerably slower.
 	 */
@@ -49,9 +62,39 @@ public final class SymmetricContactModel extends AbstractContactModel {
 	private final boolean traceSusceptible;
 
 	/**
-	 * This buffer is used to store the infection type.
+	 * Seed for the random numbers drawn per pair of persons.
+	 */
+	private final long seed;
+
+	/**
+	 * Exposure integrals of the large containers handled by this model.
+	 */
+	private final Map<EpisimContainer<?>, ContainerExposure> exposures = new IdentityHashMap<>();
+
+	/**
+	 * Buffer for the infection rates of each exposure bucket.
+	 */
+	private double[] bucketRates = new double[4];
+
+	/**
+	 * Contacts of the leaving person, which are evaluated at once.
+	 */
+	private final ContactBatch batch = new ContactBatch();
+
+	/**
+	 * Single contact, which is evaluated directly when contacts don't draw from a generator per pair.
 	 */
-	private final StringBuilder buffer = new StringBuilder();
+	private final ContactBatch single = new ContactBatch();
+
+	/**
+	 * Random numbers drawn for each contact in the batch.
+	 */
+	private double[] draws = new double[8];
+
+	/**
+	 * Contacts of the chunks that are evaluated in parallel.
+	 */
+	private Chunk[] chunks = new Chunk[0];
 
 	@Inject
 		/* package */
@@ -61,6 +104,28 @@ public final class SymmetricContactModel extends AbstractContactModel {
 		super(rnd, config, infectionModel, reporting, scenario);
 		this.trackingAfterDay = tracingConfig.getPutTraceablePersonsInQuarantineAfterDay();
 		this.traceSusceptible = tracingConfig.getTraceSusceptible();
+		this.seed = config.global().getRandomSeed();
+	}
+
+	@Override
+	public void setRestrictionsForIteration(int iteration, Map<String, Restriction> restrictions) {
+		super.setRestrictionsForIteration(iteration, restrictions);
+
+		// exposure is not integrated while tracing
+		if (iteration >= trackingAfterDay)
+			exposures.clear();
+	}
+
+	@Override
+	public void notifyEnterVehicle(EpisimPerson personEnteringVehicle, InfectionEventHandler.EpisimVehicle vehicle, double now) {
+		if (useExposure(vehicle))
+			enterExposure(getExposure(vehicle, now), vehicle, personEnteringVehicle, now);
+	}
+
+	@Override
+	public void notifyEnterFacility(EpisimPerson personEnteringFacility, InfectionEventHandler.EpisimFacility facility, double now) {
+		if (useExposure(facility))
+			enterExposure(getExposure(facility, now), facility, personEnteringFacility, now);
 	}
 
 	@Override
@@ -75,18 +140,65 @@ public final class SymmetricContactModel extends AbstractContactModel {
 
 	private void infectionDynamicsGeneralized(EpisimPerson personLeavingContainer, EpisimContainer<?> container, double now) {
 
+		// large containers are handled without pairwise contacts
+		if (useExposure(container)) {
+			leaveExposure(personLeavingContainer, container, now);
+			return;
+		}
+
 		// no infection possible if there is only one person
 		if (iteration == 0 || container.getPersons().size() == 1) {
 			return;
 		}
 
-		if (!personRelevantForTrackingOrInfectionDynamics(now, personLeavingContainer, container, getRestrictions(), rnd)) {
+		boolean pairs = episimConfig.getContagiousOptimization() == EpisimConfigGroup.ContagiousOptimization.pairs;
+
+		if (!personRelevantForTrackingOrInfectionDynamics(now, personLeavingContainer, container, getRestrictions(),
+				pairs ? pairRandom(personLeavingContainer, personLeavingContainer, now) : rnd)) {
 			return;
 		}
 
 		// start tracking late as possible because of computational costs
 		boolean trackingEnabled = iteration >= trackingAfterDay;
 
+		batch.reset(personLeavingContainer, getInfectionParams(container, personLeavingContainer),
+				container.getActivityIndex(personLeavingContainer.getPersonId()), personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible);
+
+		// without tracking only contacts between contagious and susceptible persons are relevant
+		if (pairs && !trackingEnabled) {
+
+			List<EpisimPerson> partners;
+			switch (personLeavingContainer.getDiseaseStatus()) {
+				case susceptible:
+					partners = container.getContagiousPersons();
+					break;
+				case contagious:
+				case showingSymptoms:
+					partners = container.getSusceptiblePersons();
+					break;
+				default:
+					return;
+			}
+
+			int chunkSize = episimConfig.getContainerChunkSize();
+			if (chunkSize > 0 && partners.size() > chunkSize && !writesContacts()) {
+				interactParallel(personLeavingContainer, partners, container, now, chunkSize);
+			} else {
+				for (int i = 0; i < partners.size(); i++) {
+					EpisimPerson contactPerson = partners.get(i);
+					if (personLeavingContainer == contactPerson)
+						continue;
+
+					SplittableRandom pairRnd = pairRandom(personLeavingContainer, contactPerson, now);
+					if (interact(personLeavingContainer, contactPerson, container, now, false, pairRnd, batch))
+						addDraw(pairRnd);
+				}
+			}
+
+			evaluateBatch(container, now);
+			return;
+		}
+
 		for (EpisimPerson contactPerson : container.getPersons()) {
 
 			// no contact with self, especially no tracing
@@ -94,156 +206,478 @@ public final class SymmetricContactModel extends AbstractContactModel {
 				continue;
 			}
 
-			int maxPersonsInContainer = (int) (container.getMaxGroupSize() * episimConfig.getSampleSize());
-			// typical size is undefined if no vehicle file is used
-			if (container instanceof InfectionEventHandler.EpisimVehicle && container.getTypicalCapacity() > -1) {
-				maxPersonsInContainer = (int) (container.getTypicalCapacity() * episimConfig.getSampleSize());
-//				if ( container.getMaxGroupSize() > container.getTypicalCapacity() ) {
-//					log.warn("yyyyyy: vehicleId={}: maxGroupSize={} is larger than typicalCapacity={}; need to find organized answer to this.",
-//							container.getContainerId(), container.getMaxGroupSize(), container.getTypicalCapacity() );
-//				}
-//				log.warn("containerId={}; typical capacity={}; maxPersonsInContainer={}" , container.getContainerId(), container.getTypicalCapacity(), maxPersonsInContainer );
+			if (pairs) {
+				SplittableRandom pairRnd = pairRandom(personLeavingContainer, contactPerson, now);
+				if (interact(personLeavingContainer, contactPerson, container, now, trackingEnabled, pairRnd, batch))
+					addDraw(pairRnd);
+			} else {
+				// without generator per pair the masks are drawn before the infection draw of each contact, as in the pairwise calculation
+				single.reset(batch.getPerson(), batch.getParams(), batch.getActivity(),
+						personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible);
+				if (interact(personLeavingContainer, contactPerson, container, now, trackingEnabled, rnd, single)) {
+					infectionModel.calcInfectionProbabilities(single, getRestrictions());
+					infect(single, 0, rnd.nextDouble(), container, now);
+				}
 			}
+		}
 
-			// it may happen that persons enter and leave an container at the same time
-			// effectively they have a joint time of 0 and will not count towards maximum group size
-			// still the size of the list of persons in the container may be larger than max group size
-			if (maxPersonsInContainer <= 1) {
-				log.debug("maxPersonsInContainer is={} even though there are {} persons in container={}", maxPersonsInContainer, container.getPersons().size(), container.getContainerId());
-				// maxPersonsInContainer = container.getPersons().size();
-			}
+		evaluateBatch(container, now);
+	}
 
-			/*
-			if (ReplayEventsTask.getThreadRnd(rnd).nextDouble() >= episimConfig.getMaxContacts()/(maxPersonsInContainer-1) ) {
-				continue;
-			}
-			// since every pair of persons interacts only once, there is now a constant interaction probability per pair
-			// if we want superspreading events, then maxInteractions needs to be much larger than 3 or 10.
+	/**
+	 * Store the random number of the contact that was last added to the batch.
+	 * Probabilities are calculated for the whole batch, the random number is drawn directly after the contact to keep it independent of the evaluation order.
+	 */
+	private void addDraw(double draw) {
+		int idx = batch.size() - 1;
+		if (idx == draws.length)
+			draws = Arrays.copyOf(draws, idx * 2);
 
-			*/
+		draws[idx] = draw;
+	}
 
-			double nSpacesPerFacility = container.getNumSpaces();
-			if (rnd.nextDouble() > 1. / nSpacesPerFacility) { // i.e. other person is in other space
-				continue;
-			}
+	/**
+	 * Draw the random number of the contact that was last added to the batch from its pair generator,
+	 * which the infection model also uses for the remaining draws of this contact.
+	 */
+	private void addDraw(SplittableRandom pairRnd) {
+		addDraw(pairRnd.nextDouble());
+		batch.setRandom(batch.size() - 1, pairRnd);
+	}
 
-			if (!personRelevantForTrackingOrInfectionDynamics(now, contactPerson, container, getRestrictions(), rnd)) {
-				continue;
+	/**
+	 * Whether contacts are written as events, which need to be in the order of evaluation.
+	 */
+	private boolean writesContacts() {
+		return episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.tracing || episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.all;
+	}
+
+	/**
+	 * Evaluate the contacts with all partners in parallel chunks. If the infection model draws its random numbers per contact, see
+	 * {@link InfectionModel#usesContactRandom()}, each chunk also calculates its probabilities and random numbers in parallel and
+	 * only the candidate infections are applied in the order of the partners. Otherwise all contacts are merged into the batch.
+	 * Because random numbers are drawn per pair of persons, the result is the same as the sequential evaluation.
+	 */
+	private void interactParallel(EpisimPerson personLeavingContainer, List<EpisimPerson> partners, EpisimContainer<?> container, double now, int chunkSize) {
+
+		int n = (partners.size() + chunkSize - 1) / chunkSize;
+		if (chunks.length < n) {
+			int old = chunks.length;
+			chunks = Arrays.copyOf(chunks, n);
+			for (int i = old; i < n; i++) {
+				chunks[i] = new Chunk();
 			}
+		}
+
+		boolean evaluate = infectionModel.usesContactRandom();
+		Map<String, Restriction> restrictions = getRestrictions();
 
-			// we have thrown the random numbers, so we can bail out in some cases if we are not tracking:
-			if (!trackingEnabled) {
-				if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
+		IntStream.range(0, n).parallel().forEach(c -> {
+			Chunk chunk = chunks[c];
+			chunk.batch.reset(batch.getPerson(), batch.getParams(), batch.getActivity(), batch.isTarget());
+			chunk.candidates.clear();
+
+			int end = Math.min(partners.size(), (c + 1) * chunkSize);
+			for (int i = c * chunkSize; i < end; i++) {
+				EpisimPerson contactPerson = partners.get(i);
+				if (personLeavingContainer == contactPerson)
 					continue;
+
+				SplittableRandom pairRnd = pairRandom(personLeavingContainer, contactPerson, now);
+				if (interact(personLeavingContainer, contactPerson, container, now, false, pairRnd, chunk.batch))
+					chunk.addDraw(pairRnd);
+			}
+
+			if (evaluate && chunk.batch.size() > 0) {
+				infectionModel.calcInfectionProbabilities(chunk.batch, restrictions);
+
+				for (int i = 0; i < chunk.batch.size(); i++) {
+					if (isCandidate(chunk.batch, i, chunk.draws[i]))
+						chunk.candidates.add(i);
 				}
-				if (contactPerson.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
-					continue;
+			}
+		});
+
+		for (int c = 0; c < n; c++) {
+			Chunk chunk = chunks[c];
+			if (evaluate) {
+				for (int k = 0; k < chunk.candidates.size(); k++) {
+					int i = chunk.candidates.getInt(k);
+					infect(chunk.batch, i, chunk.draws[i], container, now);
 				}
-				if (personLeavingContainer.getDiseaseStatus() == contactPerson.getDiseaseStatus()) {
-					continue;
+			} else {
+				for (int i = 0; i < chunk.batch.size(); i++) {
+					batch.add(chunk.batch, i);
+					addDraw(chunk.draws[i]);
 				}
-			} else if (!traceSusceptible && personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible
-					&& contactPerson.getDiseaseStatus() == DiseaseStatus.susceptible)
-				continue;
+			}
+		}
+	}
 
-			// activity params of the contact person and leaving person
-			EpisimConfigGroup.InfectionParams leavingParams = getInfectionParams(container, personLeavingContainer,  container.getPerformedActivity(personLeavingContainer.getPersonId()));
-			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson,  container.getPerformedActivity(contactPerson.getPersonId()));
+	/**
+	 * Whether a contact with calculated probability can lead to an infection or needs to be reported as potential infection.
+	 */
+	private static boolean isCandidate(ContactBatch batch, int i, double draw) {
+		return draw < batch.getProbability(i) || batch.getTarget(i).getVaccinationStatus() != EpisimPerson.VaccinationStatus.no;
+	}
 
-			String leavingPersonsActivity = leavingParams == qhParams ? "home" : leavingParams.getContainerName();
-			String otherPersonsActivity = contactParams == qhParams ? "home" : contactParams.getContainerName();
+	/**
+	 * Calculate the infection probabilities of all collected contacts and infect persons accordingly.
+	 */
+	private void evaluateBatch(EpisimContainer<?> container, double now) {
 
-			StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
+		if (batch.size() == 0)
+			return;
 
-			double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
-			double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
-			double jointTimeInContainer = calculateJointTimeInContainer(now, leavingParams, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
+		infectionModel.calcInfectionProbabilities(batch, getRestrictions());
 
-			//forbid certain cross-activity interactions, keep track of contacts
-			if (container instanceof InfectionEventHandler.EpisimFacility) {
-				//home can only interact with home, leisure or work
-				if (infectionType.indexOf("home") >= 0 && infectionType.indexOf("leis") == -1 && infectionType.indexOf("work") == -1
-						&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home"))) {
-					// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
-					continue;
-				} else if (infectionType.indexOf("edu") >= 0 && infectionType.indexOf("work") == -1 && !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu"))) {
-					//edu can only interact with work or edu
-					// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
-					continue;
-				}
-				if (trackingEnabled) {
-					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, infectionType);
-				}
+		for (int i = 0; i < batch.size(); i++) {
+			infect(batch, i, draws[i], container, now);
+		}
+	}
 
-				// Only a subset of contacts are reported at the moment
-				// tracking has to be enabled to report more contacts
-				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer);
+	/**
+	 * Report the potential infection of a contact with calculated probability and infect the target if the drawn number is below.
+	 */
+	private void infect(ContactBatch batch, int i, double draw, EpisimContainer<?> container, double now) {
+		EpisimPerson target = batch.getTarget(i);
+
+		// target may have been infected by an earlier contact of this batch
+		if (target.getDiseaseStatus() != DiseaseStatus.susceptible)
+			return;
+
+		EpisimPerson infector = batch.getInfector(i);
+		double prob = batch.getProbability(i);
+
+		potentialInfection(target, infector, now, batch.getInfectionType(i), prob, container, batch.getUnVacProbability(i), draw);
+
+		if (draw < prob)
+			infectPerson(target, infector, now, batch.getInfectionType(i), prob, container);
+	}
+
+	/**
+	 * Whether the exposure in this container is integrated, instead of evaluating each pair of persons.
+	 */
+	private boolean useExposure(EpisimContainer<?> container) {
+		int threshold = episimConfig.getExposureContainerThreshold();
+		return threshold >= 0 && iteration > 0 && iteration < trackingAfterDay
+				&& container.getMaxGroupSize() >= threshold && infectionModel.supportsExposure();
+	}
+
+	/**
+	 * Get the exposure of a container, which is updated with the current occupants at the first access of each iteration.
+	 */
+	private ContainerExposure getExposure(EpisimContainer<?> container, double now) {
+		ContainerExposure exposure = exposures.computeIfAbsent(container, k -> new ContainerExposure());
+
+		if (exposure.getIteration() != iteration) {
+
+			double minTime = now;
+			for (EpisimPerson person : container.getPersons()) {
+				minTime = Math.min(minTime, container.getContainerEnteringTime(person.getPersonId()));
 			}
 
-			if (!AbstractContactModel.personsCanInfectEachOther(personLeavingContainer, contactPerson)) {
-				continue;
+			exposure.startIteration(iteration, now, minTime);
+			exposure.retainTargets(container.getPersons());
+
+			// disease status and infectivity might have changed over night
+			for (EpisimPerson person : container.getPersons()) {
+				enterExposure(exposure, container, person, now);
 			}
+		}
+
+		return exposure;
+	}
+
+	/**
+	 * Whether a person can infect others.
+	 */
+	private boolean canInfect(EpisimPerson person) {
+		DiseaseStatus status = person.getDiseaseStatus();
+		if (status != DiseaseStatus.contagious && status != DiseaseStatus.showingSymptoms)
+			return false;
+
+		if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.full)
+			return false;
+
+		// person can only infect others x days after being contagious
+		return !(person.hadDiseaseStatus(DiseaseStatus.contagious) && person.daysSince(DiseaseStatus.contagious, iteration) > episimConfig.getDaysInfectious());
+	}
+
+	/**
+	 * Add a person to the exposure integral, either as potential target or infector.
+	 */
+	private void enterExposure(ContainerExposure exposure, EpisimContainer<?> container, EpisimPerson person, double now) {
+		exposure.advance(now);
+
+		if (person.getDiseaseStatus() == DiseaseStatus.susceptible)
+			exposure.addTarget(person);
+		else
+			exposure.removeTarget(person);
+
+		if (!canInfect(person))
+			return;
 
-			// person can only infect others x days after being contagious
-			if ((personLeavingContainer.hadDiseaseStatus(DiseaseStatus.contagious) &&
-					personLeavingContainer.daysSince(DiseaseStatus.contagious, iteration) > episimConfig.getDaysInfectious())
-					|| (contactPerson.hadDiseaseStatus(DiseaseStatus.contagious) &&
-					contactPerson.daysSince(DiseaseStatus.contagious, iteration) > episimConfig.getDaysInfectious()))
+		// presence and masks of the infector do not depend on the order in which persons enter
+		SplittableRandom personRnd = personRandom(person, now);
+
+		if (checkPersonInContainer(now, person, container, getRestrictions(), personRnd)) {
+			EpisimConfigGroup.InfectionParams params = getInfectionParams(container, person);
+			exposure.addInfector(person, params,
+					infectionModel.getInfectorFactor(person, params, container.getActivityIndex(person.getPersonId()), getRestrictions(), personRnd), now);
+		}
+	}
+
+	/**
+	 * Remove a person from the exposure integral and evaluate its accumulated exposure if it is susceptible.
+	 */
+	private void leaveExposure(EpisimPerson personLeavingContainer, EpisimContainer<?> container, double now) {
+
+		ContainerExposure exposure = getExposure(container, now);
+		exposure.advance(now);
+		exposure.removeInfector(personLeavingContainer, now);
+
+		double[] snapshot = exposure.removeTarget(personLeavingContainer);
+		if (snapshot == null || personLeavingContainer.getDiseaseStatus() != DiseaseStatus.susceptible)
+			return;
+
+		// all draws of the leaving person, including presence, masks and seasonality, are taken from its own generator
+		// and do not depend on the order in which persons leave
+		SplittableRandom personRnd = personRandom(personLeavingContainer, now);
+
+		if (!personRelevantForTrackingOrInfectionDynamics(now, personLeavingContainer, container, getRestrictions(), personRnd))
+			return;
+
+		EpisimConfigGroup.InfectionParams params = getInfectionParams(container, personLeavingContainer);
+		int activity = container.getActivityIndex(personLeavingContainer.getPersonId());
+
+		int maxPersonsInContainer = getMaxPersonsInContainer(container);
+		double nSpacesPerFacility = container.getNumSpaces();
+		double targetIntensity = params.getContactIntensity() / (maxPersonsInContainer / params.getSpacesPerFacility());
+
+		if (bucketRates.length < exposure.getBuckets())
+			bucketRates = new double[exposure.getBuckets()];
+
+		double total = 0;
+		for (int i = 0; i < exposure.getBuckets(); i++) {
+			bucketRates[i] = 0;
+
+			double dose = exposure.getExposure(i, snapshot);
+			if (dose <= 0)
 				continue;
 
-			// persons leaving their first-ever activity have no starting time for that activity.  Need to hedge against that.  Since all persons
-			// start healthy (the first seeds are set at enterVehicle), we can make some assumptions.
-			if (containerEnterTimeOfPersonLeaving < 0 && containerEnterTimeOfOtherPerson < 0) {
-				throw new IllegalStateException("should not happen");
-				// should only happen at first activity.  However, at first activity all persons are susceptible.  So the only way we
-				// can get here is if an infected person entered the container and is now leaving again, while the other person has been in the
-				// container from the beginning.  ????  kai, mar'20
-			}
+			EpisimConfigGroup.InfectionParams infectorParams = exposure.getParams(i);
+			double contactIntensity = Math.min(targetIntensity, infectorParams.getContactIntensity() / (maxPersonsInContainer / nSpacesPerFacility));
 
-			if (jointTimeInContainer < 0 || jointTimeInContainer > 86400 * 18) {
-				log.warn(containerEnterTimeOfPersonLeaving);
-				log.warn(containerEnterTimeOfOtherPerson);
-				log.warn(now);
-				throw new IllegalStateException("joint time in container is not plausible for personLeavingContainer=" + personLeavingContainer.getPersonId() + " and contactPerson=" + contactPerson.getPersonId() + ". Joint time is=" + jointTimeInContainer);
-			}
+			// persons only have contact if they are in the same space, which is used as expected value here
+			double prob = infectionModel.calcExposureProbability(personLeavingContainer, exposure.getStrain(i), getRestrictions(),
+					params, activity, infectorParams, contactIntensity * dose / nSpacesPerFacility, personRnd);
+
+			bucketRates[i] = -Math.log1p(-Math.min(prob, MAX_PROB));
+			total += bucketRates[i];
+		}
+
+		if (total <= 0)
+			return;
+
+		double prob = 1 - Math.exp(-total);
+		if (personRnd.nextDouble() >= prob)
+			return;
 
-			// (same computation as above; could just memorize)
-			// this is currently 1 / (sqmPerPerson * airExchangeRate).  Need to multiply sqmPerPerson with maxPersonsInSpace to obtain room size:
-			double contactIntensity = Math.min(
-					leavingParams.getContactIntensity() / (maxPersonsInContainer / leavingParams.getSpacesPerFacility()),
-					contactParams.getContactIntensity() / (maxPersonsInContainer / nSpacesPerFacility)
-			);
+		// bucket and infector are sampled proportional to their share of the exposure
+		double r = personRnd.nextDouble() * total;
+		int bucket = 0;
+		while (bucket < exposure.getBuckets() - 1 && (r -= bucketRates[bucket]) >= 0)
+			bucket++;
 
-			// need to differentiate which person might be the infector
-			if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
+		EpisimPerson infector = exposure.sampleInfector(bucket, container.getContainerEnteringTime(personLeavingContainer.getPersonId()),
+				now, personRnd, this::canInfect);
 
-				double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
-						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
+		if (infector != null) {
+			String infectionType = getInfectionType(container, getActivityIndex(params), getActivityIndex(exposure.getParams(bucket)));
+			infectPerson(personLeavingContainer, infector, now, infectionType, prob, container);
+		}
+	}
 
-				double probUnVac = infectionModel.calcUnVacInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
-						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
+	/**
+	 * Maximum number of persons in a container, which determines the contact intensity.
+	 */
+	private int getMaxPersonsInContainer(EpisimContainer<?> container) {
+		int maxPersonsInContainer = (int) (container.getMaxGroupSize() * episimConfig.getSampleSize());
+		// typical size is undefined if no vehicle file is used
+		if (container instanceof InfectionEventHandler.EpisimVehicle && container.getTypicalCapacity() > -1) {
+			maxPersonsInContainer = (int) (container.getTypicalCapacity() * episimConfig.getSampleSize());
+//			if ( container.getMaxGroupSize() > container.getTypicalCapacity() ) {
+//				log.warn("yyyyyy: vehicleId={}: maxGroupSize={} is larger than typicalCapacity={}; need to find organized answer to this.",
+//						container.getContainerId(), container.getMaxGroupSize(), container.getTypicalCapacity() );
+//			}
+//			log.warn("containerId={}; typical capacity={}; maxPersonsInContainer={}" , container.getContainerId(), container.getTypicalCapacity(), maxPersonsInContainer );
+		}
 
-				double dbl = rnd.nextDouble();
+		return maxPersonsInContainer;
+	}
 
-				potentialInfection(personLeavingContainer, contactPerson, now, infectionType, prob, container, probUnVac, dbl);
+	/**
+	 * Random number generator for a single person leaving a container, which does not depend on the order of evaluation.
+	 */
+	private SplittableRandom personRandom(EpisimPerson person, double now) {
+		long key = HashCommon.mix(seed + iteration);
+		key = HashCommon.mix(key + person.getPersonId().index());
+		key = HashCommon.mix(key + Double.hashCode(now));
+		return new SplittableRandom(key);
+	}
 
-				if (dbl < prob)
-					infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
+	/**
+	 * Random number generator for a pair of persons, which does not depend on the order in which pairs are evaluated.
+	 */
+	private SplittableRandom pairRandom(EpisimPerson personLeavingContainer, EpisimPerson contactPerson, double now) {
+		long key = HashCommon.mix(seed + iteration);
+		key = HashCommon.mix(key + personLeavingContainer.getPersonId().index());
+		key = HashCommon.mix(key + contactPerson.getPersonId().index());
+		key = HashCommon.mix(key + Double.hashCode(now));
+		return new SplittableRandom(key);
+	}
 
-			} else {
-				double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
-						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
+	/**
+	 * Evaluate the contact between the leaving person and one other person in the container.
+	 *
+	 * @param out batch the contact is added to
+	 * @return whether a contact was added to the batch
+	 */
+	private boolean interact(EpisimPerson personLeavingContainer, EpisimPerson contactPerson, EpisimContainer<?> container, double now,
+							 boolean trackingEnabled, SplittableRandom rnd, ContactBatch out) {
 
-				double probUnVac = infectionModel.calcUnVacInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
-						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
+		int maxPersonsInContainer = getMaxPersonsInContainer(container);
 
-				double dbl = rnd.nextDouble();
+		// it may happen that persons enter and leave an container at the same time
+		// effectively they have a joint time of 0 and will not count towards maximum group size
+		// still the size of the list of persons in the container may be larger than max group size
+		if (maxPersonsInContainer <= 1) {
+			log.debug("maxPersonsInContainer is={} even though there are {} persons in container={}", maxPersonsInContainer, container.getPersons().size(), container.getContainerId());
+			// maxPersonsInContainer = container.getPersons().size();
+		}
 
-				potentialInfection(contactPerson, personLeavingContainer, now, infectionType, prob, container, probUnVac, dbl);
+		/*
+		if (ReplayEventsTask.getThreadRnd(rnd).nextDouble() >= episimConfig.getMaxContacts()/(maxPersonsInContainer-1) ) {
+			return;
+		}
+		// since every pair of persons interacts only once, there is now a constant interaction probability per pair
+		// if we want superspreading events, then maxInteractions needs to be much larger than 3 or 10.
+
+		*/
 
-				if (dbl < prob)
-					infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
+		double nSpacesPerFacility = container.getNumSpaces();
+		if (rnd.nextDouble() > 1. / nSpacesPerFacility) { // i.e. other person is in other space
+			return false;
+		}
+
+		if (!personRelevantForTrackingOrInfectionDynamics(now, contactPerson, container, getRestrictions(), rnd)) {
+			return false;
+		}
+
+		// we have thrown the random numbers, so we can bail out in some cases if we are not tracking:
+		if (!trackingEnabled) {
+			if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
+				return false;
 			}
+			if (contactPerson.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
+				return false;
+			}
+			if (personLeavingContainer.getDiseaseStatus() == contactPerson.getDiseaseStatus()) {
+				return false;
+			}
+		} else if (!traceSusceptible && personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible
+				&& contactPerson.getDiseaseStatus() == DiseaseStatus.susceptible)
+			return false;
+
+		// activity params of the contact person and leaving person
+		EpisimConfigGroup.InfectionParams leavingParams = getInfectionParams(container, personLeavingContainer);
+		EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson);
+
+		int leavingPersonsActivity = getActivityIndex(leavingParams);
+		int otherPersonsActivity = getActivityIndex(contactParams);
+
+		String infectionType = getInfectionType(container, leavingPersonsActivity, otherPersonsActivity);
+
+		double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
+		double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
+		double jointTimeInContainer = calculateJointTimeInContainer(now, leavingParams, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson, rnd);
+
+		//forbid certain cross-activity interactions, keep track of contacts
+		if (container instanceof InfectionEventHandler.EpisimFacility) {
+			// home can only interact with home, leisure or work; edu only with work or edu
+			if (!canInteract(leavingPersonsActivity, otherPersonsActivity)) {
+				return false;
+			}
+			if (trackingEnabled) {
+				trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, leavingPersonsActivity, otherPersonsActivity);
+			}
+
+			// Only a subset of contacts are reported at the moment
+			// tracking has to be enabled to report more contacts
+			// (reporting is synchronized, so it is only called when events are written)
+			if (writesContacts())
+				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer);
+		}
+
+		if (!AbstractContactModel.personsCanInfectEachOther(personLeavingContainer, contactPerson)) {
+			return false;
+		}
+
+		// person can only infect others x days after being contagious
+		if ((personLeavingContainer.hadDiseaseStatus(DiseaseStatus.contagious) &&
+				personLeavingContainer.daysSince(DiseaseStatus.contagious, iteration) > episimConfig.getDaysInfectious())
+				|| (contactPerson.hadDiseaseStatus(DiseaseStatus.contagious) &&
+				contactPerson.daysSince(DiseaseStatus.contagious, iteration) > episimConfig.getDaysInfectious()))
+			return false;
+
+		// persons leaving their first-ever activity have no starting time for that activity.  Need to hedge against that.  Since all persons
+		// start healthy (the first seeds are set at enterVehicle), we can make some assumptions.
+		if (containerEnterTimeOfPersonLeaving < 0 && containerEnterTimeOfOtherPerson < 0) {
+			throw new IllegalStateException("should not happen");
+			// should only happen at first activity.  However, at first activity all persons are susceptible.  So the only way we
+			// can get here is if an infected person entered the container and is now leaving again, while the other person has been in the
+			// container from the beginning.  ????  kai, mar'20
+		}
+
+		if (jointTimeInContainer < 0 || jointTimeInContainer > 86400 * 18) {
+			log.warn(containerEnterTimeOfPersonLeaving);
+			log.warn(containerEnterTimeOfOtherPerson);
+			log.warn(now);
+			throw new IllegalStateException("joint time in container is not plausible for personLeavingContainer=" + personLeavingContainer.getPersonId() + " and contactPerson=" + contactPerson.getPersonId() + ". Joint time is=" + jointTimeInContainer);
+		}
+
+		// (same computation as above; could just memorize)
+		// this is currently 1 / (sqmPerPerson * airExchangeRate).  Need to multiply sqmPerPerson with maxPersonsInSpace to obtain room size:
+		double contactIntensity = Math.min(
+				leavingParams.getContactIntensity() / (maxPersonsInContainer / leavingParams.getSpacesPerFacility()),
+				contactParams.getContactIntensity() / (maxPersonsInContainer / nSpacesPerFacility)
+		);
+
+		out.add(contactPerson, contactParams, container.getActivityIndex(contactPerson.getPersonId()), infectionType, contactIntensity, jointTimeInContainer);
+		return true;
+	}
+
+	/**
+	 * Contacts of one chunk of partners, with the random number drawn for each contact.
+	 */
+	private static final class Chunk {
+
+		private final ContactBatch batch = new ContactBatch();
+		private double[] draws = new double[8];
+
+		/**
+		 * Contacts of the batch that may result in an infection.
+		 */
+		private final IntArrayList candidates = new IntArrayList();
+
+		private void addDraw(SplittableRandom pairRnd) {
+			int idx = batch.size() - 1;
+			if (idx == draws.length)
+				draws = Arrays.copyOf(draws, idx * 2);
+
+			draws[idx] = pairRnd.nextDouble();
+			batch.setRandom(idx, pairRnd);
 		}
 	}
 
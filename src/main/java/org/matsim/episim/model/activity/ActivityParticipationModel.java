@@ -20,6 +20,7 @@ public interface ActivityParticipationModel {
 	/**
 	 * Method that needs to update the activity participation of a certain day by setting the bit flags in {@code trajectory}.
 	 * The person given to this method is just informational. All updates need to be performed in {@code trajectory}.
+	 * This method is called concurrently for different persons and must not depend on the order of persons.
 	 * The trajectory might be for multiple days, the starting point of the current day is given by {@code offset}.
 	 * {@code activities} contains only the subset of activities for the current day, thus updates in {@code trajectory} needs
 	 * to be set at offset + index.
@@ -44,8 +45,7 @@ public interface ActivityParticipationModel {
 		} else if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome) {
 
 			for (int i = 0; i < activities.size(); i++) {
-				EpisimPerson.PerformedActivity act = activities.get(i);
-				if (!act.actType().startsWith("home"))
+				if (!person.getActivityParams(offset + i).getContainerName().startsWith("home"))
 					trajectory.set(offset + i, false);
 			}
 		}
@@ -2,10 +2,13 @@ package org.matsim.episim.model.activity;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
+import it.unimi.dsi.fastutil.HashCommon;
+import org.matsim.core.config.Config;
 import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.VaccinationConfigGroup;
 import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.RestrictionTable;
 
 import java.util.BitSet;
 import java.util.List;
@@ -16,15 +19,20 @@ import java.util.SplittableRandom;
  */
 public class DefaultParticipationModel implements ActivityParticipationModel {
 
-	private final SplittableRandom rnd;
+	private final long seed;
 	private final EpisimConfigGroup episimConfig;
 	private final VaccinationConfigGroup vaccinationConfig;
-	private ImmutableMap<String, Restriction> im;
+	private RestrictionTable table;
 	private int iteration;
 
+	/**
+	 * Seed for the random draws of the current iteration, derived from the global seed.
+	 */
+	private long key;
+
 	@Inject
-	public DefaultParticipationModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, VaccinationConfigGroup vaccinationConfig) {
-		this.rnd = rnd;
+	public DefaultParticipationModel(Config config, EpisimConfigGroup episimConfig, VaccinationConfigGroup vaccinationConfig) {
+		this.seed = config.global().getRandomSeed();
 		this.episimConfig = episimConfig;
 		this.vaccinationConfig = vaccinationConfig;
 
@@ -34,35 +42,47 @@ public class DefaultParticipationModel implements ActivityParticipationModel {
 
 	@Override
 	public void setRestrictionsForIteration(int iteration, ImmutableMap<String, Restriction> im) {
-		this.im = im;
+		this.table = RestrictionTable.of(episimConfig, im);
 		this.iteration = iteration;
+		this.key = HashCommon.mix(seed + iteration);
 	}
 
 	@Override
 	public void updateParticipation(EpisimPerson person, BitSet trajectory, int offset, List<EpisimPerson.PerformedActivity> activities) {
+
+		// each person draws from its own random generator, because persons are updated in parallel
+		// it only depends on the seed, the iteration and the person, but not on the order of updates
+		SplittableRandom rnd = null;
+
 		for (int i = 0; i < activities.size(); i++) {
-			Restriction context = im.get(activities.get(i).params.getContainerName());
-			double r = context.getRemainingFraction();
+			EpisimConfigGroup.InfectionParams params = person.getActivityParams(offset + i);
+			double r = table.getRemainingFraction(params);
 
 			// reduce fraction for persons that are not vaccinated
-			if (context.getSusceptibleRf() != null && context.getSusceptibleRf() != 1d) {
+			double susceptibleRf = table.getSusceptibleRf(params);
+			if (susceptibleRf != 1d) {
 				if (!(person.isRecentlyRecovered(iteration) || (person.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes &&
 						person.daysSince(EpisimPerson.VaccinationStatus.yes, iteration) > vaccinationConfig.getParams(person.getVaccinationType()).getDaysBeforeFullEffect())))
-					r *= context.getSusceptibleRf();
+					r *= susceptibleRf;
 			}
 
-			if (context.getVaccinatedRf() != null && context.getVaccinatedRf() != 1d) {
+			double vaccinatedRf = table.getVaccinatedRf(params);
+			if (vaccinatedRf != 1d) {
 				if (person.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes &&
 						person.daysSince(EpisimPerson.VaccinationStatus.yes, iteration) > vaccinationConfig.getParams(person.getVaccinationType()).getDaysBeforeFullEffect())
-					r *= context.getVaccinatedRf();
+					r *= vaccinatedRf;
 			}
 
 			if (r == 1.0)
 				trajectory.set(offset + i, true);
 			else if (r == 0.0)
 				trajectory.set(offset + i, false);
-			else
+			else {
+				if (rnd == null)
+					rnd = new SplittableRandom(HashCommon.mix(key + person.getPersonId().index()));
+
 				trajectory.set(offset + i, rnd.nextDouble() < r);
+			}
 
 
 		}
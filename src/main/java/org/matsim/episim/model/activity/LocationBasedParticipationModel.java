@@ -2,8 +2,10 @@ package org.matsim.episim.model.activity;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
+import it.unimi.dsi.fastutil.HashCommon;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
 import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.policy.Restriction;
@@ -17,18 +19,23 @@ import java.util.*;
  */
 public class LocationBasedParticipationModel implements ActivityParticipationModel {
 
-	private final SplittableRandom rnd;
+	private final long seed;
 	private final EpisimConfigGroup episimConfig;
 	private ImmutableMap<String, Restriction> im;
 
+	/**
+	 * Seed for the random draws of the current iteration, derived from the global seed.
+	 */
+	private long key;
+
 	/**
 	 * Map of each ActivityFacility with the corresponding subdistrict
 	 */
 	private final Map<String, String> subdistrictFacilities;
 
 	@Inject
-	public LocationBasedParticipationModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, Scenario scenario) {
-		this.rnd = rnd;
+	public LocationBasedParticipationModel(Config config, EpisimConfigGroup episimConfig, Scenario scenario) {
+		this.seed = config.global().getRandomSeed();
 		this.episimConfig = episimConfig;
 
 		if (episimConfig.getActivityHandling() == EpisimConfigGroup.ActivityHandling.duringContact)
@@ -53,13 +60,19 @@ public class LocationBasedParticipationModel implements ActivityParticipationMod
 	@Override
 	public void setRestrictionsForIteration(int iteration, ImmutableMap<String, Restriction> im) {
 		this.im = im;
+		this.key = HashCommon.mix(seed + iteration);
 	}
 
 	@Override
 	public void updateParticipation(EpisimPerson person, BitSet trajectory, int offset, List<EpisimPerson.PerformedActivity> activities) {
+
+		// each person draws from its own random generator, because persons are updated in parallel
+		// it only depends on the seed, the iteration and the person, but not on the order of updates
+		SplittableRandom rnd = null;
+
 		for (int i = 0; i < activities.size(); i++) {
-			String context = activities.get(i).params.getContainerName();
-			Id<ActivityFacility> facilityId = activities.get(i).getFacilityId();
+			String context = person.getActivityParams(offset + i).getContainerName();
+			Id<ActivityFacility> facilityId = person.getActivityFacility(offset + i);
 
 			Restriction restriction = im.get(context);
 			double remainingFraction = restriction.getRemainingFraction();
@@ -78,8 +91,12 @@ public class LocationBasedParticipationModel implements ActivityParticipationMod
 				trajectory.set(offset + i, true);
 			else if (remainingFraction == 0.0)
 				trajectory.set(offset + i, false);
-			else
+			else {
+				if (rnd == null)
+					rnd = new SplittableRandom(HashCommon.mix(key + person.getPersonId().index()));
+
 				trajectory.set(offset + i, rnd.nextDouble() < remainingFraction);
+			}
 
 		}
 	}
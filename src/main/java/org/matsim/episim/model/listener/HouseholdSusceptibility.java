@@ -1,10 +1,10 @@
 package org.matsim.episim.model.listener;
 
 import com.google.inject.Inject;
-import it.unimi.dsi.fastutil.objects.Object2BooleanMap;
-import it.unimi.dsi.fastutil.objects.Object2BooleanOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
-import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2BooleanMap;
+import it.unimi.dsi.fastutil.ints.Int2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -29,12 +29,12 @@ public class HouseholdSusceptibility implements SimulationListener {
 	/**
 	 * Susceptibility for each household.
 	 */
-	private final Object2DoubleMap<String> houseHoldSusceptibility = new Object2DoubleOpenHashMap<>();
+	private final Int2DoubleMap houseHoldSusceptibility = new Int2DoubleOpenHashMap();
 
 	/**
 	 * Compliant status of households.
 	 */
-	private final Object2BooleanMap<String> nonCompliant = new Object2BooleanOpenHashMap<>();
+	private final Int2BooleanMap nonCompliant = new Int2BooleanOpenHashMap();
 
 	private final Config config;
 
@@ -78,13 +78,20 @@ public class HouseholdSusceptibility implements SimulationListener {
 
 			}
 
-			String homeId = getHomeId(p);
+			int homeId = p.getHouseholdIndex();
 
-			if (config.pHouseholds > 0)
-				p.setSusceptibility(houseHoldSusceptibility.computeIfAbsent(homeId, (k) -> sample(rnd)));
+			if (config.pHouseholds > 0) {
+				if (!houseHoldSusceptibility.containsKey(homeId))
+					houseHoldSusceptibility.put(homeId, sample(rnd));
+
+				p.setSusceptibility(houseHoldSusceptibility.get(homeId));
+			}
 
 			if (config.pNonVaccinable > 0) {
-				if (nonCompliant.computeIfAbsent(homeId, (k) -> rnd.nextDouble() < config.pNonVaccinable)) {
+				if (!nonCompliant.containsKey(homeId))
+					nonCompliant.put(homeId, rnd.nextDouble() < config.pNonVaccinable);
+
+				if (nonCompliant.get(homeId)) {
 					p.setVaccinable(false);
 				}
 			}
@@ -105,12 +112,6 @@ public class HouseholdSusceptibility implements SimulationListener {
 		return 1.0;
 	}
 
-	private String getHomeId(EpisimPerson person) {
-		String home = (String) person.getAttributes().getAttribute("homeId");
-		// fallback to person id if there is no home
-		return home != null ? home : person.getPersonId().toString();
-	}
-
 	@Override
 	public String toString() {
 		return "HouseholdSusceptibility{p=" + config.pHouseholds + ", susp=" + config.susceptibility + "}";
@@ -96,22 +96,30 @@ public final class DataBasedTestingModel extends DefaultTestingModel {
 	}
 
 	@Override
-	public void performTesting(EpisimPerson person, int day) {
+	public boolean isTestCandidate(EpisimPerson person, int day) {
 
 		// no capacities until first valid value
 		if (forDay == null)
-			return;
+			return false;
 
 		TestingConfigGroup.TestingParams params = testingConfig.getParams(TestType.RAPID_TEST);
 
 		// check if testing is disabled
 		if (params.getTestingRate() == 0d || testingConfig.getStrategy() == TestingConfigGroup.Strategy.NONE)
-			return;
+			return false;
 
 		// person with recent test is not tested again
-		if (person.daysSinceTest(day) <= 2)
+		return person.daysSinceTest(day) > 2;
+	}
+
+	@Override
+	public void performTesting(EpisimPerson person, int day) {
+
+		if (!isTestCandidate(person, day))
 			return;
 
+		TestingConfigGroup.TestingParams params = testingConfig.getParams(TestType.RAPID_TEST);
+
 		// all capacity used up
 		if (forDay.values().stream().allMatch(i -> i <= 0))
 			return;
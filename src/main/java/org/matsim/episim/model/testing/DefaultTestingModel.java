@@ -35,9 +35,9 @@ public class DefaultTestingModel implements TestingModel {
 	private final Map<TestType, Object2DoubleMap<String>> testingRateForActivitiesVaccinated = new EnumMap<>(TestType.class);
 
 	/**
-	 * Ids of households that are not compliant.
+	 * Indices of households that are not compliant, see {@link EpisimPerson#getHouseholdIndex()}.
 	 */
-	private final Set<String> nonCompliantHouseholds = new HashSet<>();
+	private final BitSet nonCompliantHouseholds = new BitSet();
 
 	/**
 	 * Whether to test all persons on this day.
@@ -92,49 +92,55 @@ public class DefaultTestingModel implements TestingModel {
 		SplittableRandom rnd = new SplittableRandom(config.global().getRandomSeed());
 
 		// don't draw one household multiple times
-		Set<String> checked = new HashSet<>();
+		BitSet checked = new BitSet();
 
 		for (EpisimPerson p : personMap.values()) {
-			String home = getHomeId(p);
+			int home = p.getHouseholdIndex();
 
-			if (!checked.contains(home)) {
+			if (!checked.get(home)) {
 				if (rnd.nextDouble() > testingConfig.getHouseholdCompliance())
-					nonCompliantHouseholds.add(home);
+					nonCompliantHouseholds.set(home);
 
-				checked.add(home);
+				checked.set(home);
 			}
 		}
 	}
 
-	private String getHomeId(EpisimPerson person) {
-		String home = (String) person.getAttributes().getAttribute("homeId");
-		// fallback to person id if there is no home
-		return home != null ? home : person.getPersonId().toString();
-	}
-
 	/**
-	 * Perform the testing procedure.
+	 * Checks the conditions that do not depend on the testing capacity.
 	 */
-	public void performTesting(EpisimPerson person, int day) {
+	@Override
+	public boolean isTestCandidate(EpisimPerson person, int day) {
 
 		if (testingConfig.getStrategy() == TestingConfigGroup.Strategy.NONE)
-			return;
+			return false;
 
 		// person with positive test is not tested twice
 		// test status will be set when released from quarantine
 		if (person.getTestStatus() == EpisimPerson.TestStatus.positive)
-			return;
+			return false;
 
 		// vaccinated and recovered persons are not tested
-		boolean fullyVaccinated = (person.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes && person.daysSince(EpisimPerson.VaccinationStatus.yes, day) > vaccinationConfig.getParams(person.getVaccinationType()).getDaysBeforeFullEffect()) ||
-				(person.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.yes);
-
-		if (!testAllPersons && (person.isRecentlyRecovered(day) || fullyVaccinated))
-			return;
+		if (!testAllPersons && (person.isRecentlyRecovered(day) || isFullyVaccinated(person, day)))
+			return false;
 
 		if (withOutBooster && person.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.yes)
+			return false;
+
+		// non compliant households are never tested
+		return !nonCompliantHouseholds.get(person.getHouseholdIndex());
+	}
+
+	/**
+	 * Perform the testing procedure.
+	 */
+	public void performTesting(EpisimPerson person, int day) {
+
+		if (!isTestCandidate(person, day))
 			return;
 
+		boolean fullyVaccinated = isFullyVaccinated(person, day);
+
 		for (TestingConfigGroup.TestingParams params : testingConfig.getTestingParams()) {
 
 			TestType type = params.getType();
@@ -168,6 +174,11 @@ public class DefaultTestingModel implements TestingModel {
 
 	}
 
+	private boolean isFullyVaccinated(EpisimPerson person, int day) {
+		return (person.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes && person.daysSince(EpisimPerson.VaccinationStatus.yes, day) > vaccinationConfig.getParams(person.getVaccinationType()).getDaysBeforeFullEffect()) ||
+				(person.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.yes);
+	}
+
 	/**
 	 * Perform testing and quarantine person.
 	 *
@@ -178,7 +189,7 @@ public class DefaultTestingModel implements TestingModel {
 		if (testingRate == 0)
 			return false;
 
-		if (nonCompliantHouseholds.contains(getHomeId(person)))
+		if (nonCompliantHouseholds.get(person.getHouseholdIndex()))
 			return false;
 
 		if (testingRate != 1d && rnd.nextDouble() >= testingRate)
@@ -17,8 +17,17 @@ public interface TestingModel {
 	 */
 	default void setIteration(int day) {}
 
+	/**
+	 * Whether the person may be tested on this day. Persons not passing this check are not given to {@link #performTesting(EpisimPerson, int)}.
+	 * This method is called concurrently for different persons and must not draw random numbers or change any state.
+	 */
+	default boolean isTestCandidate(EpisimPerson person, int day) {
+		return true;
+	}
+
 	/**
 	 * Perform testing on the person and update state if necessary.
+	 * Called sequentially for all {@link #isTestCandidate(EpisimPerson, int) candidates}, in the order of the person map.
 	 */
 	void performTesting(EpisimPerson person, int day);
 
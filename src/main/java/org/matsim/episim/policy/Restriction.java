@@ -628,8 +628,11 @@ public final class Restriction {
 		return reducedGroupSize;
 	}
 
-	Map<FaceMask, Double> getMaskUsage() {
-		return maskUsage;
+	/**
+	 * Cumulative probabilities of mask usage, ordered by mask type.
+	 */
+	public Map<FaceMask, Double> getMaskUsage() {
+		return Collections.unmodifiableMap(maskUsage);
 	}
 
 	@Nullable
@@ -0,0 +1,192 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2021 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.policy;
+
+import org.matsim.episim.EpisimConfigGroup;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable view of the restrictions of one iteration, indexed by {@link EpisimConfigGroup.InfectionParams#getIndex()}.
+ * All nullable attributes of {@link Restriction} are resolved to primitives when the table is created.
+ * A missing remaining fraction is an error, a missing ci correction fails when it is accessed.
+ * <p>
+ * Params that were added to the config after creation of the table are looked up in the source map.
+ */
+public final class RestrictionTable {
+
+	private final Map<String, Restriction> source;
+
+	private final Restriction[] restrictions;
+	private final double[] remainingFraction;
+	private final double[] ciCorrection;
+	private final double[] susceptibleRf;
+	private final double[] vaccinatedRf;
+	private final int[] maxGroupSize;
+	private final int[] reducedGroupSize;
+	private final boolean[] closingHours;
+
+	private RestrictionTable(Map<String, Restriction> source, int size) {
+		this.source = source;
+		this.restrictions = new Restriction[size];
+		this.remainingFraction = new double[size];
+		this.ciCorrection = new double[size];
+		this.susceptibleRf = new double[size];
+		this.vaccinatedRf = new double[size];
+		this.maxGroupSize = new int[size];
+		this.reducedGroupSize = new int[size];
+		this.closingHours = new boolean[size];
+	}
+
+	/**
+	 * Resolve the restrictions of all activities in the config.
+	 *
+	 * @param config       config with all infection params
+	 * @param restrictions restrictions by container name
+	 */
+	public static RestrictionTable of(EpisimConfigGroup config, Map<String, Restriction> restrictions) {
+
+		int size = 0;
+		for (EpisimConfigGroup.InfectionParams params : config.getInfectionParams()) {
+			size = Math.max(size, params.getIndex() + 1);
+		}
+
+		RestrictionTable table = new RestrictionTable(restrictions, size);
+
+		for (EpisimConfigGroup.InfectionParams params : config.getInfectionParams()) {
+			int i = params.getIndex();
+			Restriction r = restrictions.get(params.getContainerName());
+			if (i < 0 || r == null)
+				continue;
+
+			table.restrictions[i] = r;
+			table.remainingFraction[i] = Objects.requireNonNull(r.getRemainingFraction(),
+					() -> "Remaining fraction of " + params.getContainerName() + " is not set");
+			table.ciCorrection[i] = r.getCiCorrection() != null ? r.getCiCorrection() : Double.NaN;
+			table.susceptibleRf[i] = r.getSusceptibleRf() != null ? r.getSusceptibleRf() : 1;
+			table.vaccinatedRf[i] = r.getVaccinatedRf() != null ? r.getVaccinatedRf() : 1;
+			table.maxGroupSize[i] = maxGroupSize(r);
+			table.reducedGroupSize[i] = reducedGroupSize(r);
+			table.closingHours[i] = r.hasClosingHours();
+		}
+
+		return table;
+	}
+
+	/**
+	 * Maximum group size, or -1 if not restricted.
+	 */
+	private static int maxGroupSize(Restriction r) {
+		Integer v = r.getMaxGroupSize();
+		return v != null && v > -1 ? v : -1;
+	}
+
+	/**
+	 * Reduced group size, or -1 if not restricted.
+	 */
+	private static int reducedGroupSize(Restriction r) {
+		Integer v = r.getReducedGroupSize();
+		return v != null && v > -1 && v != Integer.MAX_VALUE ? v : -1;
+	}
+
+	/**
+	 * Whether this table was created from the given map.
+	 */
+	public boolean isCreatedFrom(Map<String, Restriction> restrictions) {
+		return source == restrictions;
+	}
+
+	/**
+	 * Index into the arrays, or -1 if the params are not contained.
+	 */
+	private int index(EpisimConfigGroup.InfectionParams params) {
+		int i = params.getIndex();
+		return i >= 0 && i < restrictions.length && restrictions[i] != null ? i : -1;
+	}
+
+	@Nullable
+	public Restriction get(EpisimConfigGroup.InfectionParams params) {
+		int i = index(params);
+		return i >= 0 ? restrictions[i] : source.get(params.getContainerName());
+	}
+
+	public double getRemainingFraction(EpisimConfigGroup.InfectionParams params) {
+		int i = index(params);
+		return i >= 0 ? remainingFraction[i] : get(params).getRemainingFraction();
+	}
+
+	public double getCiCorrection(EpisimConfigGroup.InfectionParams params) {
+		int i = index(params);
+		if (i >= 0 && !Double.isNaN(ciCorrection[i]))
+			return ciCorrection[i];
+
+		// an unset ci correction is only an error if it is used
+		return Objects.requireNonNull(get(params).getCiCorrection(),
+				() -> "Ci correction of " + params.getContainerName() + " is not set");
+	}
+
+	/**
+	 * Remaining fraction for susceptible persons, 1 if not set.
+	 */
+	public double getSusceptibleRf(EpisimConfigGroup.InfectionParams params) {
+		int i = index(params);
+		if (i >= 0)
+			return susceptibleRf[i];
+
+		Double v = get(params).getSusceptibleRf();
+		return v != null ? v : 1;
+	}
+
+	/**
+	 * Remaining fraction for vaccinated persons, 1 if not set.
+	 */
+	public double getVaccinatedRf(EpisimConfigGroup.InfectionParams params) {
+		int i = index(params);
+		if (i >= 0)
+			return vaccinatedRf[i];
+
+		Double v = get(params).getVaccinatedRf();
+		return v != null ? v : 1;
+	}
+
+	/**
+	 * Maximum group size, or -1 if not restricted.
+	 */
+	public int getMaxGroupSize(EpisimConfigGroup.InfectionParams params) {
+		int i = index(params);
+		return i >= 0 ? maxGroupSize[i] : maxGroupSize(get(params));
+	}
+
+	/**
+	 * Reduced group size, or -1 if not restricted.
+	 */
+	public int getReducedGroupSize(EpisimConfigGroup.InfectionParams params) {
+		int i = index(params);
+		return i >= 0 ? reducedGroupSize[i] : reducedGroupSize(get(params));
+	}
+
+	public boolean hasClosingHours(EpisimConfigGroup.InfectionParams params) {
+		int i = index(params);
+		return i >= 0 ? closingHours[i] : get(params).hasClosingHours();
+	}
+}
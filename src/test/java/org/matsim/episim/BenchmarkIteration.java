@@ -6,6 +6,7 @@ import com.google.inject.util.Modules;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.run.modules.SnzBerlinProductionScenario;
 import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
@@ -32,6 +33,8 @@ public class BenchmarkIteration {
 				.warmupIterations(12).warmupTime(TimeValue.seconds(1))
 				.measurementIterations(30).measurementTime(TimeValue.seconds(1))
 				.forks(1)
+				// reports allocated bytes per iteration (gc.alloc.rate.norm)
+				.addProfiler(GCProfiler.class)
 				.build();
 
 		new Runner(opt).run();
@@ -56,7 +59,7 @@ public class BenchmarkIteration {
 		// benchmark with event writing
 		// injector.getInstance(EventsManager.class).addHandler(reporting);
 
-		handler.init(replay.getEvents());
+		handler.init(replay.getEventStores());
 	}
 
 	@Benchmark
@@ -0,0 +1,87 @@
+package org.matsim.episim;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the disease status history of persons, as it is updated and queried by the progression model each day.
+ * In contrast to {@link BenchmarkIteration} this does not need any scenario input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BenchmarkPersonStatus {
+
+	private static final int PERSONS = 100_000;
+	private static final EpisimPerson.DiseaseStatus[] STATUS = EpisimPerson.DiseaseStatus.values();
+
+	private PersonStore store;
+	private EpisimPerson[] persons;
+	private int day = 1;
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options opt = new OptionsBuilder()
+				.include(BenchmarkPersonStatus.class.getSimpleName())
+				.warmupIterations(5).warmupTime(TimeValue.seconds(1))
+				.measurementIterations(10).measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				// reports allocated bytes per operation (gc.alloc.rate.norm)
+				.addProfiler(GCProfiler.class)
+				.build();
+
+		new Runner(opt).run();
+	}
+
+	@Setup
+	public void setup() {
+
+		store = new PersonStore(PERSONS);
+		persons = new EpisimPerson[PERSONS];
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		for (int i = 0; i < PERSONS; i++) {
+			persons[i] = new EpisimPerson(Id.createPersonId(i), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+
+			// some persons already went through parts of the disease
+			int n = rnd.nextInt(STATUS.length);
+			for (int j = 0; j < n; j++) {
+				store.setStatusChange(persons[i].getPersonId().index(), STATUS[j], rnd.nextInt(10) * EpisimUtils.DAY);
+			}
+		}
+	}
+
+	/**
+	 * One day of status lookups and changes for all persons.
+	 */
+	@Benchmark
+	public int statusHistory() {
+
+		int sum = 0;
+		for (int i = 0; i < PERSONS; i++) {
+			EpisimPerson p = persons[i];
+
+			for (EpisimPerson.DiseaseStatus status : STATUS) {
+				if (p.hadDiseaseStatus(status))
+					sum += p.daysSince(status, day);
+				else if ((i + day) % 16 == 0) {
+					store.setStatusChange(p.getPersonId().index(), status, day * EpisimUtils.DAY);
+					break;
+				}
+			}
+		}
+
+		day++;
+		return sum;
+	}
+}
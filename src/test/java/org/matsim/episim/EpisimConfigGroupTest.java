@@ -51,6 +51,23 @@ public class EpisimConfigGroupTest {
 
 	}
 
+	@Test
+	public void indices() {
+
+		EpisimConfigGroup config = new EpisimConfigGroup();
+
+		EpisimConfigGroup.InfectionParams work = config.getOrAddContainerParams("work");
+		EpisimConfigGroup.InfectionParams home = config.getOrAddContainerParams("home");
+
+		assertThat(work.getIndex()).isEqualTo(0);
+		assertThat(home.getIndex()).isEqualTo(1);
+
+		assertThat(config.getOrAddContainerParams("leisure").getIndex()).isEqualTo(2);
+
+		// params outside of the config have no index
+		assertThat(new EpisimConfigGroup.InfectionParams("edu").getIndex()).isEqualTo(-1);
+	}
+
 	@Test
 	public void samePrefix() {
 
@@ -0,0 +1,95 @@
+package org.matsim.episim;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EpisimContainerTest {
+
+	@Test
+	public void swapRemove() {
+
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility(5, "work", p -> {
+		});
+
+		List<EpisimPerson> persons = new ArrayList<>(container.getPersons());
+		EpisimPerson removed = persons.get(1);
+
+		container.removePerson(removed);
+
+		assertThat(container.getPersons())
+				.hasSize(4)
+				.doesNotContain(removed)
+				.containsExactlyInAnyOrder(persons.get(0), persons.get(2), persons.get(3), persons.get(4));
+
+		// last person was moved into the free slot
+		assertThat(container.getPersons().get(1)).isSameAs(persons.get(4));
+		assertThat(container.getContainerEnteringTime(removed.getPersonId())).isEqualTo(Double.NEGATIVE_INFINITY);
+		assertThat(container.getPerformedActivity(removed.getPersonId())).isNull();
+
+		for (EpisimPerson p : container.getPersons()) {
+			assertThat(container.getContainerEnteringTime(p.getPersonId())).isEqualTo(0);
+			assertThat(container.getPerformedActivity(p.getPersonId())).isNotNull();
+		}
+	}
+
+	@Test
+	public void iteratorRemove() {
+
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility(6, "work", p -> {
+		});
+
+		List<EpisimPerson> visited = new ArrayList<>();
+
+		Iterator<EpisimPerson> it = container.getPersons().iterator();
+		int i = 0;
+		while (it.hasNext()) {
+			EpisimPerson p = it.next();
+			visited.add(p);
+			if (i++ % 2 == 0)
+				container.removePerson(p, it);
+		}
+
+		// all persons are visited exactly once
+		assertThat(visited).hasSize(6).doesNotHaveDuplicates();
+		assertThat(container.getPersons()).hasSize(3);
+
+		for (EpisimPerson p : container.getPersons()) {
+			assertThat(container.containsPerson(p)).isTrue();
+		}
+	}
+
+	@Test
+	public void groups() {
+
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility(3, "work", EpisimTestUtils.CONTAGIOUS);
+		EpisimTestUtils.addPersons(container, 4, "work", p -> {
+		});
+
+		assertThat(container.getContagiousPersons()).hasSize(3);
+		assertThat(container.getSusceptiblePersons()).hasSize(4);
+
+		List<EpisimPerson> contagious = new ArrayList<>(container.getContagiousPersons());
+		List<EpisimPerson> susceptible = new ArrayList<>(container.getSusceptiblePersons());
+
+		container.removePerson(contagious.get(0));
+		container.removePerson(susceptible.get(1));
+
+		assertThat(container.getContagiousPersons())
+				.containsExactlyInAnyOrder(contagious.get(1), contagious.get(2));
+		assertThat(container.getSusceptiblePersons())
+				.containsExactlyInAnyOrder(susceptible.get(0), susceptible.get(2), susceptible.get(3));
+
+		EpisimPerson p = susceptible.get(0);
+		p.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.recovered);
+		container.updateGroup(p);
+
+		assertThat(container.getSusceptiblePersons()).hasSize(2).doesNotContain(p);
+		assertThat(container.getContagiousPersons()).hasSize(2).doesNotContain(p);
+		assertThat(container.getPersons()).hasSize(5).contains(p);
+	}
+}
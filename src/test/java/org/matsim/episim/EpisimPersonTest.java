@@ -1,13 +1,18 @@
 package org.matsim.episim;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.attributable.Attributes;
 
 import java.io.*;
 import java.time.DayOfWeek;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -40,16 +45,39 @@ public class EpisimPersonTest {
 	}
 
 
+	@Test
+	public void statusHistory() {
+
+		EpisimPerson p = EpisimTestUtils.createPerson("work", null);
+
+		assertThat(p.hadDiseaseStatus(EpisimPerson.DiseaseStatus.contagious)).isFalse();
+
+		p.setDiseaseStatus(EpisimUtils.getCorrectedTime(0, 0, 2), EpisimPerson.DiseaseStatus.contagious);
+		p.setDiseaseStatus(EpisimUtils.getCorrectedTime(0, 0, 4), EpisimPerson.DiseaseStatus.contagious);
+		p.setDiseaseStatus(EpisimUtils.getCorrectedTime(0, 0, 6), EpisimPerson.DiseaseStatus.recovered);
+
+		// first change is kept
+		assertThat(p.daysSince(EpisimPerson.DiseaseStatus.contagious, 10)).isEqualTo(8);
+
+		p.setDiseaseStatus(EpisimUtils.getCorrectedTime(0, 0, 8), EpisimPerson.DiseaseStatus.susceptible);
+
+		assertThat(p.hadDiseaseStatus(EpisimPerson.DiseaseStatus.contagious)).isFalse();
+		assertThat(p.hadDiseaseStatus(EpisimPerson.DiseaseStatus.recovered)).isTrue();
+		assertThat(p.daysSince(EpisimPerson.DiseaseStatus.susceptible, 10)).isEqualTo(2);
+	}
+
 	@Test
 	public void isTraceable() {
 
-		EpisimPerson p1 = EpisimTestUtils.createPerson("work", null);
-		EpisimPerson p2 = EpisimTestUtils.createPerson("work", null);
+		PersonStore store = new PersonStore(1);
+
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("traceable1"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("traceable2"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
 
 		p1.addTraceableContactPerson(p2, 0);
 		assertThat(p1.getTraceableContactPersons(0)).containsExactly(p2);
 
-		p1.clearTraceableContractPersons(Integer.MAX_VALUE);
+		store.clearContacts(Integer.MAX_VALUE);
 
 		p1.setTraceable(true);
 		p2.setTraceable(false);
@@ -100,6 +128,53 @@ public class EpisimPersonTest {
 				.isNull();
 	}
 
+	@Test
+	public void findActivityMultipleDays() {
+
+		EpisimPerson p = EpisimTestUtils.createPerson();
+
+		for (DayOfWeek day : List.of(DayOfWeek.MONDAY, DayOfWeek.TUESDAY)) {
+			p.setStartOfDay(day);
+			p.addToTrajectory(0, new EpisimConfigGroup.InfectionParams("home"), null);
+			p.addToTrajectory(1000, new EpisimConfigGroup.InfectionParams("work"), Id.create("f1", ActivityFacility.class));
+			p.addToTrajectory(1000, new EpisimConfigGroup.InfectionParams("edu"), null);
+			p.addToTrajectory(3000, new EpisimConfigGroup.InfectionParams("leisure"), null);
+			p.setEndOfDay(day);
+		}
+
+		p.trimTrajectory();
+
+		assertThat(p.getTrajectory()).hasSize(8);
+		assertThat(p.getActivities(DayOfWeek.TUESDAY)).hasSize(4);
+
+		assertThat(p.getActivity(DayOfWeek.TUESDAY, 500).actType()).isEqualTo("home");
+		// last activity starting at that time
+		assertThat(p.getActivity(DayOfWeek.TUESDAY, 1000).actType()).isEqualTo("edu");
+		assertThat(p.getActivity(DayOfWeek.TUESDAY, 5000).actType()).isEqualTo("leisure");
+		assertThat(p.getNextActivity(DayOfWeek.TUESDAY, 5000)).isNull();
+
+		assertThat(p.getFirstActivity(DayOfWeek.TUESDAY).actType()).isEqualTo("home");
+		assertThat(p.getLastActivity(DayOfWeek.MONDAY).actType()).isEqualTo("leisure");
+		assertThat(p.getTrajectory().get(5).getFacilityId()).isEqualTo(Id.create("f1", ActivityFacility.class));
+
+		assertThat(p.getActivityIndex(DayOfWeek.TUESDAY, 1000)).isEqualTo(6);
+		assertThat(p.getNextActivityIndex(DayOfWeek.TUESDAY, 1000)).isEqualTo(7);
+		assertThat(p.getNextActivityIndex(DayOfWeek.TUESDAY, 5000)).isEqualTo(-1);
+		assertThat(p.getActivityTime(7)).isEqualTo(3000);
+		assertThat(p.getActivityParams(5).getContainerName()).isEqualTo("work");
+		assertThat(p.getActivityFacility(5)).isEqualTo(Id.create("f1", ActivityFacility.class));
+		assertThat(p.getActivityFacility(4)).isNull();
+
+		p.initParticipation();
+		p.getActivityParticipation().set(4, false);
+		p.getActivityParticipation().set(5, false);
+
+		assertThat(p.checkFirstActivity(DayOfWeek.TUESDAY, 1000)).isFalse();
+		assertThat(p.checkActivity(DayOfWeek.TUESDAY, 999)).isFalse();
+		assertThat(p.checkActivity(DayOfWeek.TUESDAY, 3500)).isTrue();
+		assertThat(p.checkActivity(DayOfWeek.MONDAY, 100)).isTrue();
+	}
+
 	@Test
 	public void participation() {
 
@@ -156,4 +231,133 @@ public class EpisimPersonTest {
 				.isEqualTo(EpisimPerson.DiseaseStatus.showingSymptoms);
 
 	}
+
+	@Test
+	public void sharedStore() {
+
+		PersonStore store = new PersonStore(1);
+
+		Attributes attrs = new Attributes();
+		attrs.putAttribute("microm:modeled:age", 42);
+
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("store1"), attrs, true, null, store);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("store2"), new Attributes(), false, null, store);
+
+		p1.setQuarantineStatus(EpisimPerson.QuarantineStatus.atHome, 3);
+		p2.setSusceptibility(0.5);
+
+		int slot = p1.getPersonId().index();
+
+		assertThat(store.capacity()).isGreaterThan(p2.getPersonId().index());
+		assertThat(store.getQuarantineStatus(slot)).isEqualTo(EpisimPerson.QuarantineStatus.atHome);
+		assertThat(store.getAge(slot)).isEqualTo(42);
+		assertThat(store.isTraceable(slot)).isTrue();
+
+		assertThat(p1.getAge()).isEqualTo(42);
+		assertThat(p1.daysSinceQuarantine(5)).isEqualTo(2);
+		assertThat(p1.getSusceptibility()).isEqualTo(1);
+
+		assertThat(p2.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.no);
+		assertThat(p2.getSusceptibility()).isEqualTo(0.5);
+		assertThat(p2.getAgeOrDefault(-1)).isEqualTo(-1);
+		assertThat(p2.isTraceable()).isFalse();
+		assertThat(p2.isVaccinable()).isTrue();
+	}
+
+	@Test
+	public void changedPersons() {
+
+		PersonStore store = new PersonStore(1);
+
+		int[] slots = new int[1000];
+		for (int i = 0; i < slots.length; i++) {
+			EpisimPerson p = new EpisimPerson(Id.createPersonId("changed" + i), new Attributes(), true, null, store);
+			slots[i] = p.getPersonId().index();
+		}
+
+		// persons are changed concurrently and more than once
+		IntStream.range(0, slots.length * 4).parallel()
+				.forEach(i -> store.markChanged(slots[i % slots.length]));
+
+		assertThat(store.drainChanged()).containsExactlyInAnyOrderElementsOf(IntArrayList.wrap(slots));
+		assertThat(store.drainChanged()).isEmpty();
+
+		store.markChanged(slots[1]);
+		assertThat(store.drainChanged()).containsExactly(slots[1]);
+	}
+
+	@Test
+	public void sharedContactLog() {
+
+		PersonStore store = new PersonStore(1);
+
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("contacts1"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("contacts2"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+		EpisimPerson p3 = new EpisimPerson(Id.createPersonId("contacts3"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+
+		double day = 24 * 3600;
+
+		p1.addTraceableContactPerson(p3, 0.5 * day);
+		p1.addTraceableContactPerson(p2, 1.5 * day);
+		p1.addTraceableContactPerson(p2, 2.5 * day);
+		p2.addTraceableContactPerson(p1, 2.5 * day);
+
+		assertThat(p1.getTraceableContactPersons(0)).containsExactly(p2, p3);
+		assertThat(p1.getTraceableContactPersons(day)).containsExactly(p2);
+		assertThat(p2.getTraceableContactPersons(0)).containsExactly(p1);
+		assertThat(p3.getTraceableContactPersons(0)).isEmpty();
+
+		// repeated contacts of one day keep the latest time
+		p2.addTraceableContactPerson(p1, 2.7 * day);
+		p2.addTraceableContactPerson(p1, 2.6 * day);
+		assertThat(store.getContactLog().getContactTimes(p2, 0).getDouble(p1)).isEqualTo(2.7 * day);
+		assertThat(p2.getTraceableContactPersons(2.65 * day)).containsExactly(p1);
+		assertThat(p2.getTraceableContactPersons(2.75 * day)).isEmpty();
+
+		// clearing applies to all persons of the store
+		store.clearContacts(2 * day);
+
+		assertThat(p1.getTraceableContactPersons(0)).containsExactly(p2);
+		assertThat(p2.getTraceableContactPersons(0)).containsExactly(p1);
+
+		p1.addTraceableContactPerson(p3, 2.6 * day);
+		assertThat(p1.getTraceableContactPersons(2.55 * day)).containsExactly(p3);
+
+		store.clearContacts(2.65 * day);
+		assertThat(p1.getTraceableContactPersons(0)).isEmpty();
+		assertThat(p2.getTraceableContactPersons(0)).containsExactly(p1);
+
+		store.clearContacts(3 * day);
+		assertThat(p2.getTraceableContactPersons(0)).isEmpty();
+	}
+
+	@Test
+	public void householdIndex() {
+
+		// indices are only comparable within one store
+		PersonStore store = new PersonStore(1);
+
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("household1"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("household2"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+		EpisimPerson p3 = new EpisimPerson(Id.createPersonId("household3"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+		EpisimPerson p4 = new EpisimPerson(Id.createPersonId("household4"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+
+		p1.getAttributes().putAttribute("homeId", "hh1");
+		p1.getAttributes().putAttribute("district", "Berlin");
+		p2.getAttributes().putAttribute("homeId", "hh1");
+
+		assertThat(p1.getHouseholdIndex()).isEqualTo(p2.getHouseholdIndex());
+		assertThat(p1.getHomeId()).isEqualTo("hh1");
+		assertThat(p1.getDistrict()).isEqualTo("Berlin");
+		assertThat(p2.getDistrict()).isNull();
+		assertThat(p2.getDistrictIndex()).isEqualTo(-1);
+
+		assertThat(p3.hasHomeId()).isFalse();
+		assertThat(p3.getHomeId()).isNull();
+		assertThat(p3.getHouseholdIndex()).isNotEqualTo(p1.getHouseholdIndex());
+
+		// persons without home have distinct households
+		assertThat(p4.hasHomeId()).isFalse();
+		assertThat(p4.getHouseholdIndex()).isNotEqualTo(p3.getHouseholdIndex()).isNotEqualTo(p1.getHouseholdIndex());
+	}
 }
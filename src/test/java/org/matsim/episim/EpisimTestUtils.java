@@ -125,7 +125,7 @@ public class EpisimTestUtils {
 		EpisimPerson p = new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), reporting);
 
 		Arrays.stream(DayOfWeek.values()).forEach(p::setStartOfDay);
-		EpisimPerson.PerformedActivity act = p.addToTrajectory(0, TEST_CONFIG.selectInfectionParams(currentAct),null);
+		int act = p.addToTrajectory(0, TEST_CONFIG.selectInfectionParams(currentAct),null);
 		Arrays.stream(DayOfWeek.values()).forEach(p::setEndOfDay);
 
 		if (container != null) {
@@ -193,6 +193,7 @@ public class EpisimTestUtils {
 		for (int i = 0; i < n; i++) {
 			EpisimPerson p = createPerson(act, container);
 			init.accept(p);
+			container.updateGroup(p);
 		}
 
 		return container;
@@ -0,0 +1,179 @@
+package org.matsim.episim;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.facilities.ActivityFacility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.DayOfWeek;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventStoreTest {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private static List<Event> createEvents() {
+		return List.of(
+				new ActivityEndEvent(0, Id.createPersonId("p1"), Id.create("l1", Link.class), Id.create("f1", ActivityFacility.class), "home"),
+				new PersonEntersVehicleEvent(10, Id.createPersonId("p1"), Id.createVehicleId("v1")),
+				new PersonLeavesVehicleEvent(20, Id.createPersonId("p1"), Id.createVehicleId("v1")),
+				new ActivityStartEvent(30, Id.createPersonId("p1"), Id.create("l2", Link.class), Id.create("f2", ActivityFacility.class), "work", new Coord(1, 2)),
+				new ActivityStartEvent(40, Id.createPersonId("p2"), null, Id.create("f2", ActivityFacility.class), "work", null)
+		);
+	}
+
+	@Test
+	public void roundTrip() {
+
+		List<Event> events = createEvents();
+		EventStore store = EventStore.of(events);
+
+		assertThat(store.size()).isEqualTo(events.size());
+		assertThat(store.getActTypes()).containsExactly("home", "work");
+
+		assertThat(store.getKind(0)).isEqualTo(EventStore.ACTIVITY_END);
+		assertThat(store.getKind(1)).isEqualTo(EventStore.ENTERS_VEHICLE);
+		assertThat(store.getKind(2)).isEqualTo(EventStore.LEAVES_VEHICLE);
+		assertThat(store.getKind(3)).isEqualTo(EventStore.ACTIVITY_START);
+
+		assertThat(store.getPersonId(3)).isEqualTo(Id.createPersonId("p1"));
+		assertThat(store.getFacilityId(3)).isEqualTo(Id.create("f2", ActivityFacility.class));
+		assertThat(store.getVehicleId(1)).isEqualTo(Id.createVehicleId("v1"));
+		assertThat(store.getActTypeIndex(1)).isNegative();
+
+		// last event has no link and can not be compared by its attributes
+		for (int i = 0; i < events.size() - 1; i++) {
+			assertThat(store.getEvent(i).toString())
+					.isEqualTo(events.get(i).toString());
+		}
+
+		ActivityStartEvent start = (ActivityStartEvent) store.getEvent(3);
+		assertThat(start.getCoord()).isEqualTo(new Coord(1, 2));
+		assertThat(((ActivityStartEvent) store.getEvent(4)).getCoord()).isNull();
+	}
+
+	@Test
+	public void sameDays() {
+
+		List<Event> events = createEvents();
+		Map<DayOfWeek, EventStore> stores = EventStore.of(Map.of(DayOfWeek.MONDAY, events, DayOfWeek.TUESDAY, events));
+
+		assertThat(stores.get(DayOfWeek.MONDAY)).isSameAs(stores.get(DayOfWeek.TUESDAY));
+
+		Map<DayOfWeek, List<Event>> lists = EventStore.asLists(stores);
+		assertThat(lists.get(DayOfWeek.MONDAY)).isSameAs(lists.get(DayOfWeek.TUESDAY));
+		assertThat(lists.get(DayOfWeek.MONDAY)).hasSize(events.size());
+	}
+
+	@Test
+	public void cache() throws IOException {
+
+		EventStore store = EventStore.of(createEvents());
+
+		Path path = tmp.getRoot().toPath().resolve("events.cache");
+		EventStoreCache.write(store, path);
+
+		EventStore read = EventStoreCache.read(path);
+
+		assertThat(read.size()).isEqualTo(store.size());
+		assertThat(read.getActTypes()).isEqualTo(store.getActTypes());
+
+		for (int i = 0; i < store.size(); i++) {
+			assertThat(read.getKind(i)).isEqualTo(store.getKind(i));
+			assertThat(read.getTime(i)).isEqualTo(store.getTime(i));
+			assertThat(read.getPersonIndex(i)).isEqualTo(store.getPersonIndex(i));
+			assertThat(read.getContainerIndex(i)).isEqualTo(store.getContainerIndex(i));
+			assertThat(read.getActTypeIndex(i)).isEqualTo(store.getActTypeIndex(i));
+			assertThat(read.getLinkIndex(i)).isEqualTo(store.getLinkIndex(i));
+			assertThat(read.getX(i)).isEqualTo(store.getX(i));
+		}
+	}
+
+	@Test
+	public void cacheKey() throws IOException {
+
+		EpisimConfigGroup config = new EpisimConfigGroup();
+
+		Path events = tmp.getRoot().toPath().resolve("events.xml");
+		Files.writeString(events, "<events/>");
+
+		Path cache = EventStoreCache.getCachePath(events.toString(), config, false, null);
+		assertThat(cache).isNotNull();
+
+		// modification time is not part of the key
+		Files.setLastModifiedTime(events, FileTime.fromMillis(0));
+		assertThat(EventStoreCache.getCachePath(events.toString(), config, false, null)).isEqualTo(cache);
+
+		// content of same size is
+		Files.writeString(events, "<EVENTS/>");
+		assertThat(EventStoreCache.getCachePath(events.toString(), config, false, null)).isNotEqualTo(cache);
+	}
+
+	@Test
+	public void chunkedRead() throws IOException {
+
+		// last event without link can not be read by the events reader
+		List<Event> events = createEvents().subList(0, 4);
+
+		// custom event type, which needs to be mapped
+		Event custom = new Event(50) {
+			@Override
+			public String getEventType() {
+				return "customEnters";
+			}
+
+			@Override
+			public Map<String, String> getAttributes() {
+				Map<String, String> attr = super.getAttributes();
+				attr.put("person", "p3");
+				attr.put("vehicle", "v2");
+				return attr;
+			}
+		};
+
+		String path = tmp.newFile("events.xml.gz").toString();
+		EventWriterXML writer = new EventWriterXML(path);
+		events.forEach(writer::handleEvent);
+		writer.handleEvent(custom);
+		writer.closeFile();
+
+		Map<String, MatsimEventsReader.CustomEventMapper> mappers = Map.of("customEnters", e -> new PersonEntersVehicleEvent(e.getTime(),
+				Id.createPersonId(e.getAttributes().get("person")), Id.createVehicleId(e.getAttributes().get("vehicle"))));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		EventStore store;
+		try {
+			store = new ChunkedEventsReader(executor, 2, s -> s::add, 2, mappers).read(path);
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(store.size()).isEqualTo(events.size() + 1);
+		assertThat(store.getActTypes()).containsExactly("home", "work");
+
+		for (int i = 0; i < events.size(); i++) {
+			assertThat(store.getEvent(i).toString())
+					.isEqualTo(events.get(i).toString());
+		}
+
+		assertThat(store.getKind(events.size())).isEqualTo(EventStore.ENTERS_VEHICLE);
+		assertThat(store.getPersonId(events.size())).isEqualTo(Id.createPersonId("p3"));
+		assertThat(store.getVehicleId(events.size())).isEqualTo(Id.createVehicleId("v2"));
+	}
+}
@@ -138,4 +138,38 @@ public class VaccinationConfigGroupTest {
 				.isEqualTo(0.35);
 
 	}
+
+	@Test
+	public void table() {
+
+		VaccinationConfigGroup group = new VaccinationConfigGroup();
+
+		VaccinationConfigGroup.Parameter effectiveness = VaccinationConfigGroup.forStrain(VirusStrain.SARS_CoV_2)
+				.atDay(10, 0.5)
+				.atFullEffect(0.9);
+
+		VaccinationConfigGroup.VaccinationParams params = group.getOrAddParams(VaccinationType.generic)
+				.setDaysBeforeFullEffect(20)
+				.setEffectiveness(effectiveness);
+
+		assertThat(params.getEffectiveness(VirusStrain.SARS_CoV_2, -5)).isEqualTo(0.5);
+		assertThat(params.getEffectiveness(VirusStrain.SARS_CoV_2, 15)).isCloseTo(0.7, Offset.offset(1e-9));
+		assertThat(params.getEffectiveness(VirusStrain.SARS_CoV_2, 20)).isEqualTo(0.9);
+
+		// saturated after the last entry
+		assertThat(params.getEffectiveness(VirusStrain.SARS_CoV_2, 5000)).isEqualTo(0.9);
+		assertThat(params.getEffectiveness(VirusStrain.SARS_CoV_2, Integer.MAX_VALUE)).isEqualTo(0.9);
+
+		// other strains use the base strain
+		assertThat(params.getEffectiveness(VirusStrain.B117, 20)).isEqualTo(0.9);
+		assertThat(params.getBoostEffectiveness(VirusStrain.B117, 20)).isEqualTo(0.9);
+
+		// tables are updated on changes
+		effectiveness.atDay(100, 0.1);
+		assertThat(params.getEffectiveness(VirusStrain.SARS_CoV_2, 60)).isCloseTo(0.5, Offset.offset(1e-9));
+		assertThat(params.getEffectiveness(VirusStrain.SARS_CoV_2, 5000)).isEqualTo(0.1);
+
+		params.setBoostEffectiveness(VaccinationConfigGroup.forStrain(VirusStrain.B117).atDay(0, 0.3));
+		assertThat(params.getBoostEffectiveness(VirusStrain.B117, 20)).isEqualTo(0.3);
+	}
 }
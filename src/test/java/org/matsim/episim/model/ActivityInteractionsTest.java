@@ -0,0 +1,58 @@
+package org.matsim.episim.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.EpisimTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ActivityInteractionsTest {
+
+	private EpisimConfigGroup config;
+	private ActivityInteractions interactions;
+
+	@Before
+	public void setup() {
+		config = ConfigUtils.addOrGetModule(EpisimTestUtils.createTestConfig(), EpisimConfigGroup.class);
+		config.getOrAddContainerParams("shop");
+		interactions = new ActivityInteractions(config, config.getInfectionParam(AbstractContactModel.QUARANTINE_HOME));
+	}
+
+	private int idx(String act) {
+		return config.getInfectionParam(act).getIndex();
+	}
+
+	@Test
+	public void rules() {
+
+		assertThat(interactions.size()).isEqualTo(config.getInfectionParams().size());
+
+		assertThat(interactions.canInteract(idx("home"), idx("home"))).isTrue();
+		assertThat(interactions.canInteract(idx("home"), idx("leis"))).isTrue();
+		assertThat(interactions.canInteract(idx("work"), idx("home"))).isTrue();
+		assertThat(interactions.canInteract(idx("home"), idx("edu"))).isFalse();
+		assertThat(interactions.canInteract(idx("home"), idx("c1.0"))).isFalse();
+
+		assertThat(interactions.canInteract(idx("edu"), idx("edu"))).isTrue();
+		assertThat(interactions.canInteract(idx("edu"), idx("work"))).isTrue();
+		assertThat(interactions.canInteract(idx("edu"), idx("leis"))).isFalse();
+
+		// home quarantine is treated as home
+		assertThat(interactions.canInteract(idx(AbstractContactModel.QUARANTINE_HOME), idx("home"))).isTrue();
+		assertThat(interactions.getLabel(idx(AbstractContactModel.QUARANTINE_HOME), idx("leis"))).isEqualTo("home_leis");
+
+		assertThat(interactions.isTrackable(idx("work"), idx("leis"))).isTrue();
+		assertThat(interactions.isTrackable(idx("work"), idx("shop"))).isFalse();
+	}
+
+	@Test
+	public void labels() {
+
+		String label = interactions.getLabel(idx("work"), idx("leis"));
+
+		assertThat(label).isEqualTo("work_leis");
+		assertThat(interactions.getLabel(idx("work"), idx("leis"))).isSameAs(label);
+	}
+}
@@ -2,17 +2,26 @@ package org.matsim.episim.model;
 
 import com.google.common.primitives.Doubles;
 import com.typesafe.config.Config;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
 import org.assertj.core.data.Percentage;
 import org.junit.Before;
 import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.*;
 import org.matsim.episim.EpisimPerson.DiseaseStatus;
+import org.matsim.episim.events.EpisimInfectionEvent;
 import org.matsim.episim.model.progression.DefaultDiseaseStatusTransitionModel;
+import org.matsim.facilities.ActivityFacility;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SplittableRandom;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.matsim.episim.model.Transition.to;
@@ -83,14 +92,49 @@ public class ConfigurableProgressionModelTest {
 		p.setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
 		for (int day = 0; day <= 5; day++) {
 			model.updateState(p, day);
+			model.afterStateUpdates(Map.of(), day);
 		}
 
 		p.addTraceableContactPerson(EpisimTestUtils.createPerson(reporting), 5 * 24 * 3600);
 
 		model.updateState(p, 6);
+		model.afterStateUpdates(Map.of(), 6);
 		assertThat(p.getTraceableContactPersons(0)).allMatch(t -> t.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome);
 	}
 
+	@Test
+	public void tracingDepth() {
+
+		tracingConfig.setTracingProbability(1);
+		tracingConfig.setPutTraceablePersonsInQuarantineAfterDay(0);
+		tracingConfig.setTracingDelay_days(0);
+		tracingConfig.setTracingDepth(2);
+
+		model.setIteration(1);
+
+		EpisimPerson p = EpisimTestUtils.createPerson(reporting);
+		p.setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
+		for (int day = 0; day <= 5; day++) {
+			model.updateState(p, day);
+			model.afterStateUpdates(Map.of(), day);
+		}
+
+		EpisimPerson contact = EpisimTestUtils.createPerson(reporting);
+		EpisimPerson secondContact = EpisimTestUtils.createPerson(reporting);
+		EpisimPerson thirdContact = EpisimTestUtils.createPerson(reporting);
+
+		p.addTraceableContactPerson(contact, 5 * 24 * 3600);
+		contact.addTraceableContactPerson(secondContact, 5 * 24 * 3600);
+		secondContact.addTraceableContactPerson(thirdContact, 5 * 24 * 3600);
+
+		model.updateState(p, 6);
+		model.afterStateUpdates(Map.of(), 6);
+
+		assertThat(contact.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.atHome);
+		assertThat(secondContact.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.atHome);
+		assertThat(thirdContact.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.no);
+	}
+
 	@Test
 	public void tracingCapacity() {
 
@@ -116,6 +160,7 @@ public class ConfigurableProgressionModelTest {
 			int thisDay = day;
 			model.setIteration(day);
 			persons.forEach(p -> model.updateState(p, thisDay));
+			model.afterStateUpdates(Map.of(), thisDay);
 		}
 
 		persons.forEach(p -> p.addTraceableContactPerson(EpisimTestUtils.createPerson("work", null), 5 * 24 * 3600));
@@ -123,6 +168,7 @@ public class ConfigurableProgressionModelTest {
 		model.setIteration(6);
 
 		persons.forEach(p -> model.updateState(p, 6));
+		model.afterStateUpdates(Map.of(), 6);
 
 		// Tests depends on random seed
 		// because only 80% are showing symptoms, on average the first 625 persons can be traced
@@ -153,19 +199,23 @@ public class ConfigurableProgressionModelTest {
 		for (int day = 0; day <= 5; day++) {
 			model.setIteration(day);
 			model.updateState(p, day);
+			model.afterStateUpdates(Map.of(), day);
 		}
 
 		p.addTraceableContactPerson(EpisimTestUtils.createPerson(reporting), 5 * 24 * 3600);
 
 		model.updateState(p, 6);
+		model.afterStateUpdates(Map.of(), 6);
 		assertThat(p.getTraceableContactPersons(0)).allMatch(t -> t.getQuarantineStatus() == EpisimPerson.QuarantineStatus.no);
 
 
 		model.updateState(p, 7);
+		model.afterStateUpdates(Map.of(), 7);
 		assertThat(p.getTraceableContactPersons(0)).allMatch(t -> t.getQuarantineStatus() == EpisimPerson.QuarantineStatus.no);
 
 
 		model.updateState(p, 8);
+		model.afterStateUpdates(Map.of(), 8);
 		assertThat(p.getTraceableContactPersons(0)).allMatch(t -> t.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome);
 
 	}
@@ -181,6 +231,7 @@ public class ConfigurableProgressionModelTest {
 		p.setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
 		for (int day = 0; day <= 5; day++) {
 			model.updateState(p, day);
+			model.afterStateUpdates(Map.of(), day);
 		}
 
 		EpisimPerson first = EpisimTestUtils.createPerson(reporting);
@@ -190,8 +241,11 @@ public class ConfigurableProgressionModelTest {
 		p.addTraceableContactPerson(last, 5 * 24 * 3600);
 
 		model.updateState(p, 6);
+		model.afterStateUpdates(Map.of(), 6);
 		model.updateState(p, 7);
+		model.afterStateUpdates(Map.of(), 7);
 		model.updateState(p, 8);
+		model.afterStateUpdates(Map.of(), 8);
 
 
 		assertThat(first.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.no);
@@ -215,6 +269,7 @@ public class ConfigurableProgressionModelTest {
 		for (int day = 0; day <= 5; day++) {
 			model.setIteration(day);
 			model.updateState(p, day);
+			model.afterStateUpdates(Map.of(), day);
 		}
 
 		p.getAttributes().putAttribute("homeId", "1");
@@ -225,6 +280,7 @@ public class ConfigurableProgressionModelTest {
 		p.addTraceableContactPerson(contact, 5 * 24 * 3600);
 
 		model.updateState(p, 6);
+		model.afterStateUpdates(Map.of(), 6);
 		assertThat(p.getTraceableContactPersons(0)).allMatch(t -> t.getQuarantineStatus() == EpisimPerson.QuarantineStatus.no);
 
 		// person is not traced one day later when activated, as person is only traced one time
@@ -234,6 +290,7 @@ public class ConfigurableProgressionModelTest {
 
 		model.setIteration(7);
 		model.updateState(p, 7);
+		model.afterStateUpdates(Map.of(), 7);
 		assertThat(p.getTraceableContactPersons(0)).allMatch(t -> t.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome);
 
 
@@ -352,4 +409,96 @@ public class ConfigurableProgressionModelTest {
 	}
 
 
+	@Test
+	public void scheduledUpdates() {
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		ProgressionModel scheduled = new ConfigurableProgressionModel(rnd, episimConfig, tracingConfig, new DefaultDiseaseStatusTransitionModel(rnd, vaccinationConfig, strainConfig));
+
+		Map<Id<Person>, EpisimPerson> all = new LinkedHashMap<>();
+		Map<Id<Person>, EpisimPerson> persons = new LinkedHashMap<>();
+
+		for (int i = 0; i < 1000; i++) {
+			EpisimPerson p = EpisimTestUtils.createPerson(reporting);
+			EpisimPerson other = EpisimTestUtils.createPerson(reporting);
+			if (i % 3 == 0) {
+				p.setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
+				other.setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
+			}
+
+			all.put(p.getPersonId(), p);
+			persons.put(other.getPersonId(), other);
+		}
+
+		int updated = 0;
+		for (int day = 1; day <= 60; day++) {
+			model.setIteration(day);
+			scheduled.setIteration(day);
+
+			for (EpisimPerson p : all.values())
+				model.updateState(p, day);
+
+			Collection<EpisimPerson> toUpdate = scheduled.getPersonsToUpdate(persons, new IntArrayList(), day);
+			for (EpisimPerson p : toUpdate)
+				scheduled.updateState(p, day);
+
+			if (day > 1)
+				updated += toUpdate.size();
+
+			assertThat(persons.values())
+					.extracting(EpisimPerson::getDiseaseStatus)
+					.containsExactlyElementsOf(all.values().stream().map(EpisimPerson::getDiseaseStatus).collect(Collectors.toList()));
+		}
+
+		assertThat(updated).isLessThan(persons.size() * 59 / 10);
+	}
+
+	@Test
+	public void locationTracing() {
+
+		tracingConfig.setStrategy(TracingConfigGroup.Strategy.LOCATION);
+		tracingConfig.setLocationThreshold(1);
+		tracingConfig.setTracingDelay_days(0);
+
+		Id<ActivityFacility> facility = Id.create("locationTracing", ActivityFacility.class);
+		Map<Id<Person>, EpisimPerson> persons = new LinkedHashMap<>();
+		List<EpisimPerson> infected = new ArrayList<>();
+
+		for (int i = 0; i < 6; i++) {
+			EpisimPerson p = EpisimTestUtils.createPerson(reporting);
+			persons.put(p.getPersonId(), p);
+
+			if (i < 5) {
+				p.possibleInfection(new EpisimInfectionEvent(0, p.getPersonId(), null, facility, "work_work", 2, VirusStrain.SARS_CoV_2, 1));
+				p.checkInfection();
+				infected.add(p);
+			}
+		}
+
+		for (int day = 0; day <= 6; day++) {
+			model.setIteration(day);
+			model.onPersonsChanged(persons, new IntArrayList(), day);
+			for (EpisimPerson p : persons.values())
+				model.updateState(p, day);
+		}
+
+		// infected on the last day and only known from the changed persons
+		EpisimPerson late = EpisimTestUtils.createPerson(reporting);
+		persons.put(late.getPersonId(), late);
+		late.possibleInfection(new EpisimInfectionEvent(6 * 86400 + 3600, late.getPersonId(), null, facility, "work_work", 2, VirusStrain.SARS_CoV_2, 1));
+		late.checkInfection();
+		infected.add(late);
+
+		model.setIteration(7);
+		model.onPersonsChanged(persons, IntArrayList.wrap(new int[]{late.getPersonId().index()}), 7);
+		model.beforeStateUpdates(persons, 7, null);
+
+		assertThat(infected)
+				.allMatch(p -> p.getQuarantineStatus() != EpisimPerson.QuarantineStatus.no);
+
+		assertThat(persons.values())
+				.filteredOn(p -> !infected.contains(p))
+				.allMatch(p -> p.getQuarantineStatus() == EpisimPerson.QuarantineStatus.no);
+	}
+
 }
@@ -0,0 +1,80 @@
+package org.matsim.episim.model;
+
+import org.junit.Test;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimTestUtils;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class ContainerExposureTest {
+
+	@Test
+	public void integral() {
+
+		EpisimConfigGroup.InfectionParams params = EpisimTestUtils.TEST_CONFIG.selectInfectionParams("work");
+
+		EpisimPerson target = EpisimTestUtils.createPerson();
+		EpisimPerson i1 = EpisimTestUtils.createPerson();
+		EpisimPerson i2 = EpisimTestUtils.createPerson();
+
+		ContainerExposure exposure = new ContainerExposure();
+
+		exposure.advance(0);
+		exposure.addInfector(i1, params, 1, 0);
+
+		exposure.advance(100);
+		exposure.addTarget(target);
+		exposure.addInfector(i2, params, 2, 100);
+
+		exposure.advance(200);
+		exposure.removeInfector(i1, 200);
+
+		exposure.advance(300);
+
+		double[] snapshot = exposure.removeTarget(target);
+
+		assertThat(snapshot).isNotNull();
+		assertThat(exposure.getBuckets()).isEqualTo(1);
+
+		// i1 for 100s and i2 for 200s with factor 2
+		assertThat(exposure.getExposure(0, snapshot)).isCloseTo(500, within(1e-9));
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		int first = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (exposure.sampleInfector(0, 100, 300, rnd, p -> true) == i1)
+				first++;
+		}
+
+		// i1 contributed one fifth of the exposure
+		assertThat(first).isBetween(150, 250);
+		assertThat(exposure.sampleInfector(0, 100, 300, rnd, p -> p != i2)).isSameAs(i1);
+		assertThat(exposure.sampleInfector(0, 100, 300, rnd, p -> false)).isNull();
+	}
+
+	@Test
+	public void newIteration() {
+
+		EpisimConfigGroup.InfectionParams params = EpisimTestUtils.TEST_CONFIG.selectInfectionParams("work");
+
+		EpisimPerson target = EpisimTestUtils.createPerson();
+		EpisimPerson infector = EpisimTestUtils.createPerson();
+
+		ContainerExposure exposure = new ContainerExposure();
+
+		exposure.advance(0);
+		exposure.addTarget(target);
+		exposure.addInfector(infector, params, 1, 0);
+
+		exposure.startIteration(1, 100, 0);
+
+		// open contributions are closed at the start of an iteration
+		exposure.advance(200);
+		assertThat(exposure.getExposure(0, exposure.removeTarget(target))).isCloseTo(100, within(1e-9));
+		assertThat(exposure.getIteration()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,127 @@
+package org.matsim.episim.model;
+
+import org.assertj.core.data.Percentage;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimTestUtils;
+import org.matsim.episim.EpisimUtils;
+import org.matsim.episim.policy.Restriction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DailyFaceMaskModelTest {
+
+	private EpisimConfigGroup config;
+	private FaceMaskAssignment assignment;
+	private FaceMaskModel model;
+	private Map<String, Restriction> restrictions;
+
+	@Before
+	public void setUp() throws Exception {
+		Config c = ConfigUtils.createConfig();
+		c.addModule(EpisimTestUtils.TEST_CONFIG);
+
+		config = EpisimTestUtils.TEST_CONFIG;
+		assignment = new FaceMaskAssignment(c);
+		model = new DailyFaceMaskModel(new SplittableRandom(1), assignment);
+		restrictions = config.createInitialRestrictions();
+	}
+
+	@Test
+	public void sameMaskDuringDay() {
+
+		restrictions.put("work", Restriction.ofMask(FaceMask.CLOTH, 0.5));
+		restrictions.put("tr", Restriction.ofMask(Map.of(FaceMask.CLOTH, 0.2, FaceMask.N95, 0.5)));
+
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 30_000; i++) {
+			persons.add(EpisimTestUtils.createPerson("home", "work"));
+		}
+
+		assignment.update(persons, 1, restrictions);
+
+		EpisimConfigGroup.InfectionParams work = config.selectInfectionParams("work");
+		EpisimConfigGroup.InfectionParams tr = config.selectInfectionParams("tr");
+		EpisimConfigGroup.InfectionParams home = config.selectInfectionParams("home");
+
+		double cloth = 0;
+		double n95 = 0;
+		for (EpisimPerson p : persons) {
+
+			FaceMask mask = model.getWornMask(p, work, 1, restrictions.get("work"));
+			assertThat(model.getWornMask(p, work, 1, restrictions.get("work"))).isSameAs(mask);
+			assertThat(model.getWornMask(p, home, 0, restrictions.get("home"))).isSameAs(FaceMask.NONE);
+
+			if (mask == FaceMask.CLOTH) cloth++;
+			if (model.getWornMask(p, tr, restrictions.get("tr")) == FaceMask.N95) n95++;
+		}
+
+		Percentage pc = Percentage.withPercentage(2);
+		assertThat(cloth / persons.size()).isCloseTo(0.5, pc);
+		assertThat(n95 / persons.size()).isCloseTo(0.5, pc);
+	}
+
+	@Test
+	public void fallback() {
+
+		EpisimPerson p = EpisimTestUtils.createPerson("home", "work");
+		Restriction r = Restriction.ofMask(FaceMask.N95, 1.0);
+
+		// no assignment has been done yet
+		assertThat(model.getWornMask(p, config.selectInfectionParams("work"), 1, r)).isSameAs(FaceMask.N95);
+
+		assignment.update(List.of(p), 1, restrictions);
+
+		assertThat(model.getWornMask(p, config.selectInfectionParams("work"), 1, r)).isSameAs(FaceMask.NONE);
+		assertThat(model.getWornMask(p, config.selectInfectionParams("work"), EpisimPerson.UNSPECIFIC_ACTIVITY, r)).isSameAs(FaceMask.N95);
+
+		// home quarantine is evaluated with other params than the home activity
+		assertThat(model.getWornMask(p, config.selectInfectionParams("quarantine_home"), 0, r)).isSameAs(FaceMask.N95);
+	}
+
+	@Test
+	public void sameActivityTwice() {
+
+		restrictions.put("work", Restriction.ofMask(FaceMask.CLOTH, 0.5));
+
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			persons.add(EpisimTestUtils.createPerson("work", "home", "work"));
+		}
+
+		assignment.update(persons, 1, restrictions);
+
+		EpisimConfigGroup.InfectionParams work = config.selectInfectionParams("work");
+		Restriction r = restrictions.get("work");
+
+		// masks of both work activities are drawn independently and looked up by their position
+		int differ = 0;
+		for (EpisimPerson p : persons) {
+			FaceMask first = model.getWornMask(p, work, 0, r);
+			FaceMask second = model.getWornMask(p, work, 2, r);
+
+			assertThat(first).isSameAs(p.getFaceMask(0) != null ? p.getFaceMask(0) : FaceMask.NONE);
+			assertThat(second).isSameAs(p.getFaceMask(2) != null ? p.getFaceMask(2) : FaceMask.NONE);
+
+			if (first != second) differ++;
+		}
+
+		assertThat(differ).isGreaterThan(0);
+
+		EpisimPerson p = persons.get(0);
+		p.setFaceMask(EpisimUtils.getDayOfWeek(EpisimTestUtils.TEST_CONFIG, 1), 0, FaceMask.CLOTH);
+		p.setFaceMask(EpisimUtils.getDayOfWeek(EpisimTestUtils.TEST_CONFIG, 1), 2, FaceMask.N95);
+
+		assertThat(model.getWornMask(p, work, 0, r)).isSameAs(FaceMask.CLOTH);
+		assertThat(model.getWornMask(p, work, 2, r)).isSameAs(FaceMask.N95);
+	}
+}
@@ -111,6 +111,71 @@ public class DefaultContactModelTest {
 	}
 
 
+	/**
+	 * Partners of the leaving person, in the order they are passed to the infection model.
+	 */
+	private List<EpisimPerson> drawPartners(long seed, EpisimPerson leaving, InfectionEventHandler.EpisimFacility container) {
+
+		List<EpisimPerson> partners = new ArrayList<>();
+		InfectionModel capture = mock(InfectionModel.class);
+		Mockito.doAnswer(inv -> {
+			ContactBatch batch = inv.getArgument(0);
+			for (int i = 0; i < batch.size(); i++) {
+				partners.add(batch.getPartner(i));
+				batch.setProbability(i, 0, 0);
+			}
+			return null;
+		}).when(capture).calcInfectionProbabilities(Mockito.any(), Mockito.any());
+
+		DefaultContactModel m = new DefaultContactModel(new SplittableRandom(seed), config, reporting, capture);
+		m.setRestrictionsForIteration(1, restrictions);
+		m.infectionDynamicsFacility(leaving, container, Duration.ofHours(1).getSeconds());
+
+		return partners;
+	}
+
+	@Test
+	public void drawnPartners() {
+
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility();
+		List<EpisimPerson> susceptible = new ArrayList<>();
+		List<EpisimPerson> contagious = new ArrayList<>();
+
+		// susceptible persons at the first, a middle and the last position of the container
+		for (int i = 0; i < 21; i++) {
+			EpisimPerson p = EpisimTestUtils.createPerson("c10", container);
+			if (i % 10 == 0)
+				susceptible.add(p);
+			else {
+				EpisimTestUtils.CONTAGIOUS.accept(p);
+				contagious.add(p);
+			}
+		}
+
+		for (EpisimPerson leaving : susceptible) {
+			List<EpisimPerson> partners = drawPartners(1, leaving, container);
+
+			// at most 10 contacts are drawn, contacts with the other two susceptible persons are not evaluated
+			assertThat(partners)
+					.hasSizeGreaterThanOrEqualTo(8)
+					.hasSizeLessThanOrEqualTo(10)
+					.doesNotHaveDuplicates()
+					.doesNotContain(leaving)
+					.isSubsetOf(contagious);
+
+			// same seed results in the same partners and order
+			assertThat(drawPartners(1, leaving, container)).containsExactlyElementsOf(partners);
+		}
+
+		// all other persons are drawn exactly once, if the container has fewer persons than the maximum contacts
+		ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class).setMaxContacts(100);
+
+		for (EpisimPerson leaving : susceptible) {
+			assertThat(drawPartners(2, leaving, container))
+					.containsExactlyInAnyOrderElementsOf(contagious);
+		}
+	}
+
 	@Test
 	public void highContactRate() {
 		double rate = sampleInfectionRate(Duration.ofMinutes(15), "c10",
@@ -175,6 +240,7 @@ public class DefaultContactModelTest {
 
 		// no infections without contact intensity
 		restrictions.put("c10", Restriction.of(1.0, 0.0));
+		model.setRestrictionsForIteration(1, restrictions);
 		rate = sampleInfectionRate(Duration.ofHours(2), "c10",
 				() -> EpisimTestUtils.createFacility(1, "c10", EpisimTestUtils.CONTAGIOUS),
 				(f) -> EpisimTestUtils.createPerson("c10", f)
@@ -285,6 +351,7 @@ public class DefaultContactModelTest {
 	public void groupSizes() {
 
 		restrictions.put("c10", RestrictionTest.update(restrictions.get("c10"), Restriction.ofGroupSize(20)));
+		model.setRestrictionsForIteration(1, restrictions);
 		double rate = sampleInfectionRate(Duration.ofMinutes(30), "c10",
 				() -> EpisimTestUtils.createFacility(10, "c10", 21, EpisimTestUtils.CONTAGIOUS),
 				f -> EpisimTestUtils.createPerson("c10", f)
@@ -298,6 +365,7 @@ public class DefaultContactModelTest {
 
 		// closed from 0 - 5 o'clock
 		restrictions.put("c10", RestrictionTest.update(restrictions.get("c10"), Restriction.ofClosingHours(0, 5)));
+		model.setRestrictionsForIteration(1, restrictions);
 		double rate = sampleInfectionRate(Duration.ofHours(5), "c10",
 				() -> EpisimTestUtils.createFacility(10, "c10", 21, EpisimTestUtils.CONTAGIOUS),
 				f -> EpisimTestUtils.createPerson("c10", f)
@@ -316,6 +384,7 @@ public class DefaultContactModelTest {
 	@Test
 	public void closedAllDay() {
 		restrictions.put("c10", RestrictionTest.update(restrictions.get("c10"), Restriction.ofClosingHours(0, 24)));
+		model.setRestrictionsForIteration(1, restrictions);
 		double rate = sampleInfectionRate(Duration.ofHours(6), "c10",
 				() -> EpisimTestUtils.createFacility(10, "c10", 21, EpisimTestUtils.CONTAGIOUS),
 				f -> EpisimTestUtils.createPerson("c10", f)
@@ -327,12 +396,14 @@ public class DefaultContactModelTest {
 	@Test
 	public void reducedGroupSize() {
 		restrictions.put("c0.5", RestrictionTest.update(restrictions.get("c0.5"), Restriction.ofReducedGroupSize(10)));
+		model.setRestrictionsForIteration(1, restrictions);
 		double baseRate = sampleInfectionRate(Duration.ofMinutes(10), "c0.5",
 				() -> EpisimTestUtils.createFacility(9, "c0.5", 10, EpisimTestUtils.CONTAGIOUS),
 				f -> EpisimTestUtils.createPerson("c0.5", f)
 		);
 
 		restrictions.put("c0.5", RestrictionTest.update(restrictions.get("c0.5"), Restriction.ofReducedGroupSize(5)));
+		model.setRestrictionsForIteration(1, restrictions);
 		double rate = sampleInfectionRate(Duration.ofMinutes(10), "c0.5",
 				() -> EpisimTestUtils.createFacility(9, "c0.5", 10, EpisimTestUtils.CONTAGIOUS),
 				f -> EpisimTestUtils.createPerson("c0.5", f)
@@ -444,6 +515,7 @@ public class DefaultContactModelTest {
 		);
 
 		restrictions.put(type, Restriction.of(0.5, 1.0));
+		model.setRestrictionsForIteration(1, restrictions);
 
 		double rateRestricted = sampleTotalInfectionRate(20_000, Duration.ofMinutes(30), type,
 				() -> EpisimTestUtils.addPersons(EpisimTestUtils.createFacility(5, type, EpisimTestUtils.CONTAGIOUS), 15, type, p -> {
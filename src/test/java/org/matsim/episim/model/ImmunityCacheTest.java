@@ -0,0 +1,72 @@
+package org.matsim.episim.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimTestUtils;
+import org.matsim.episim.VaccinationConfigGroup;
+import org.matsim.episim.VirusStrainConfigGroup;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ImmunityCacheTest {
+
+	private VaccinationConfigGroup vacConfig;
+	private VirusStrainConfigGroup.StrainParams cov2;
+	private ImmunityCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		Config config = EpisimTestUtils.createTestConfig();
+
+		vacConfig = ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class);
+		vacConfig.getParams(VaccinationType.generic)
+				.setDaysBeforeFullEffect(10)
+				.setEffectiveness(VaccinationConfigGroup.forStrain(VirusStrain.SARS_CoV_2)
+						.atDay(1, 0)
+						.atFullEffect(0.9))
+				.setInfectivity(VaccinationConfigGroup.forStrain(VirusStrain.SARS_CoV_2)
+						.atDay(1, 1)
+						.atFullEffect(0.5));
+
+		cov2 = ConfigUtils.addOrGetModule(config, VirusStrainConfigGroup.class).getParams(VirusStrain.SARS_CoV_2);
+		cache = new ImmunityCache(config);
+	}
+
+	@Test
+	public void values() {
+
+		EpisimPerson p = EpisimTestUtils.createPerson(true, -1);
+		EpisimPerson vaccinated = EpisimTestUtils.createPerson(true, -1);
+		vaccinated.setVaccinationStatus(EpisimPerson.VaccinationStatus.yes, VaccinationType.generic, 0);
+
+		cache.update(List.of(p, vaccinated), 5);
+
+		assertThat(cache.getSusceptibility(p, cov2, 5)).isEqualTo(1);
+		assertThat(cache.getInfectivity(p, cov2, 5)).isEqualTo(1);
+
+		assertThat(cache.getSusceptibility(vaccinated, cov2, 5))
+				.isEqualTo(DefaultInfectionModel.getVaccinationEffectiveness(cov2, vaccinated, vacConfig, 5))
+				.isLessThan(1);
+
+		assertThat(cache.getVaccinationInfectivity(vaccinated, cov2, 5))
+				.isEqualTo(DefaultInfectionModel.getVaccinationInfectivity(vaccinated, cov2, vacConfig, 5))
+				.isLessThan(1);
+
+		// other days are not cached
+		assertThat(cache.getSusceptibility(vaccinated, cov2, 20))
+				.isEqualTo(DefaultInfectionModel.getVaccinationEffectiveness(cov2, vaccinated, vacConfig, 20));
+
+		// changes during the day are not missed
+		p.setVaccinationStatus(EpisimPerson.VaccinationStatus.yes, VaccinationType.generic, 0);
+
+		assertThat(p.isImmunityChanged()).isTrue();
+		assertThat(cache.getSusceptibility(p, cov2, 5))
+				.isEqualTo(DefaultInfectionModel.getVaccinationEffectiveness(cov2, p, vacConfig, 5))
+				.isLessThan(1);
+	}
+}
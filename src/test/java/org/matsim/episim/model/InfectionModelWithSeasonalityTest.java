@@ -1,5 +1,6 @@
 package org.matsim.episim.model;
 
+import org.assertj.core.data.Offset;
 import org.junit.Before;
 import org.junit.Test;
 import org.matsim.core.config.Config;
@@ -71,4 +72,101 @@ public class InfectionModelWithSeasonalityTest {
 
 
 	}
+
+	@Test
+	public void batch() {
+
+		EpisimPerson infector = EpisimTestUtils.createPerson(reporting);
+		infector.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.contagious);
+
+		EpisimPerson target = EpisimTestUtils.createPerson(reporting);
+		EpisimPerson vaccinated = EpisimTestUtils.createPerson(reporting);
+		vaccinated.setVaccinationStatus(EpisimPerson.VaccinationStatus.yes, VaccinationType.generic, 0);
+
+		model.setIteration(10);
+
+		double time = Duration.ofHours(1).getSeconds();
+		double prob = model.calcInfectionProbability(target, infector, restrictions, act, act, act.getContactIntensity(), time);
+		double probVac = model.calcInfectionProbability(vaccinated, infector, restrictions, act, act, act.getContactIntensity(), time);
+
+		ContactBatch batch = new ContactBatch();
+
+		// infector leaves the container
+		batch.reset(infector, act, EpisimPerson.UNSPECIFIC_ACTIVITY, false);
+		batch.add(target, act, EpisimPerson.UNSPECIFIC_ACTIVITY, "c10_c10", act.getContactIntensity(), time);
+		batch.add(vaccinated, act, EpisimPerson.UNSPECIFIC_ACTIVITY, "c10_c10", act.getContactIntensity(), time);
+		model.calcInfectionProbabilities(batch, restrictions);
+
+		assertThat(batch.getProbability(0)).isCloseTo(prob, Offset.offset(1e-12));
+		assertThat(batch.getProbability(1)).isCloseTo(probVac, Offset.offset(1e-12));
+		assertThat(batch.getTarget(1)).isSameAs(vaccinated);
+
+		// target leaves the container
+		batch.reset(vaccinated, act, EpisimPerson.UNSPECIFIC_ACTIVITY, true);
+		batch.add(infector, act, EpisimPerson.UNSPECIFIC_ACTIVITY, "c10_c10", act.getContactIntensity(), time);
+		model.calcInfectionProbabilities(batch, restrictions);
+
+		assertThat(batch.size()).isEqualTo(1);
+		assertThat(batch.getProbability(0)).isCloseTo(probVac, Offset.offset(1e-12));
+		assertThat(batch.getInfector(0)).isSameAs(infector);
+	}
+
+	@Test
+	public void batchDraws() {
+
+		Config config = EpisimTestUtils.createTestConfig();
+		restrictions.put(act.getContainerName(), Restriction.ofMask(FaceMask.N95, 0.5));
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		SplittableRandom rndBatch = new SplittableRandom(1);
+		InfectionModel pairwise = new InfectionModelWithSeasonality(new DefaultFaceMaskModel(rnd), rnd, config, reporting);
+		InfectionModel batched = new InfectionModelWithSeasonality(new DefaultFaceMaskModel(rndBatch), rndBatch, config, reporting);
+		pairwise.setIteration(10);
+		batched.setIteration(10);
+
+		EpisimPerson infector = EpisimTestUtils.createPerson(reporting);
+		infector.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.contagious);
+
+		double time = Duration.ofHours(1).getSeconds();
+		ContactBatch batch = new ContactBatch();
+		batch.reset(infector, act, EpisimPerson.UNSPECIFIC_ACTIVITY, false);
+
+		for (int i = 0; i < 20; i++) {
+			batch.add(EpisimTestUtils.createPerson(reporting), act, EpisimPerson.UNSPECIFIC_ACTIVITY, "c10_c10", act.getContactIntensity(), time);
+		}
+
+		batched.calcInfectionProbabilities(batch, restrictions);
+
+		// masks are drawn per contact in the same order as the pairwise evaluation
+		for (int i = 0; i < batch.size(); i++) {
+			double prob = pairwise.calcInfectionProbability(batch.getTarget(i), infector, restrictions, act, act, act.getContactIntensity(), time);
+			double probUnVac = pairwise.calcUnVacInfectionProbability(batch.getTarget(i), infector, restrictions, act, act, act.getContactIntensity(), time);
+
+			assertThat(batch.getProbability(i)).isCloseTo(prob, Offset.offset(1e-12));
+			assertThat(batch.getUnVacProbability(i)).isCloseTo(probUnVac, Offset.offset(1e-12));
+		}
+
+		assertThat(rndBatch.nextLong()).isEqualTo(rnd.nextLong());
+	}
+
+	@Test
+	public void exposure() {
+
+		EpisimPerson infector = EpisimTestUtils.createPerson(reporting);
+		infector.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.contagious);
+
+		EpisimPerson target = EpisimTestUtils.createPerson(reporting);
+
+		model.setIteration(10);
+
+		double time = Duration.ofHours(1).getSeconds();
+		double prob = model.calcInfectionProbability(target, infector, restrictions, act, act, act.getContactIntensity(), time);
+
+		// exposure of a single infector is the same as the pairwise contact
+		double exposure = model.getInfectorFactor(infector, act, EpisimPerson.UNSPECIFIC_ACTIVITY, restrictions, null) * act.getContactIntensity() * time;
+
+		assertThat(model.supportsExposure()).isTrue();
+		assertThat(model.calcExposureProbability(target, infector.getVirusStrain(), restrictions, act, EpisimPerson.UNSPECIFIC_ACTIVITY, act, exposure, null))
+				.isCloseTo(prob, Offset.offset(1e-12));
+	}
 }
@@ -0,0 +1,100 @@
+package org.matsim.episim.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.*;
+import org.matsim.episim.policy.FaceMask;
+import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.RestrictionTest;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SymmetricContactModelTest {
+
+	private Config config;
+	private EpisimConfigGroup episimConfig;
+	private Map<String, Restriction> restrictions;
+	private EpisimReporting reporting;
+
+	@Before
+	public void setup() {
+		reporting = Mockito.mock(EpisimReporting.class, Mockito.withSettings().stubOnly());
+
+		config = EpisimTestUtils.createTestConfig();
+		episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		episimConfig.setContagiousOptimization(EpisimConfigGroup.ContagiousOptimization.pairs);
+
+		restrictions = episimConfig.createInitialRestrictions();
+		restrictions.put("c0.1", RestrictionTest.update(restrictions.get("c0.1"), Restriction.ofMask(FaceMask.N95, 0.5)));
+	}
+
+	/**
+	 * Let one contagious person leave a container with many susceptible persons.
+	 *
+	 * @return ids of the infected persons
+	 */
+	private List<String> infect(int chunkSize, Function<SplittableRandom, FaceMaskModel> maskModel) {
+
+		episimConfig.setContainerChunkSize(chunkSize);
+
+		// same ids and therefore same random numbers per pair in each run
+		EpisimTestUtils.resetIds();
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility(300, "c0.1", p -> {});
+		EpisimTestUtils.addPersons(container, 1, "c0.1", EpisimTestUtils.CONTAGIOUS);
+
+		List<EpisimPerson> persons = List.copyOf(container.getPersons());
+		EpisimPerson leaving = persons.get(persons.size() - 1);
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		SymmetricContactModel model = new SymmetricContactModel(rnd, config, new TracingConfigGroup(), reporting,
+				new DefaultInfectionModel(maskModel.apply(rnd), config), null);
+		model.setRestrictionsForIteration(1, restrictions);
+		model.infectionDynamicsFacility(leaving, container, Duration.ofHours(1).getSeconds());
+
+		return persons.stream()
+				.filter(p -> p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.infectedButNotContagious)
+				.map(p -> p.getPersonId().toString())
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void chunksAreEquivalent() {
+
+		List<String> sequential = infect(-1, DefaultFaceMaskModel::new);
+
+		assertThat(sequential).isNotEmpty();
+
+		for (int chunkSize : new int[]{1, 7, 64}) {
+			assertThat(infect(chunkSize, DefaultFaceMaskModel::new))
+					.as("Chunk size %d", chunkSize)
+					.containsExactlyElementsOf(sequential);
+		}
+	}
+
+	@Test
+	public void maskModelWithoutContactRandom() {
+
+		// masks are drawn from the generator of the model, contacts are then evaluated sequentially
+		Function<SplittableRandom, FaceMaskModel> maskModel = rnd -> (person, act, restriction) -> restriction.determineMask(rnd);
+
+		List<String> sequential = infect(-1, maskModel);
+
+		assertThat(sequential).isNotEmpty();
+
+		for (int chunkSize : new int[]{1, 64}) {
+			assertThat(infect(chunkSize, maskModel))
+					.as("Chunk size %d", chunkSize)
+					.containsExactlyElementsOf(sequential);
+		}
+	}
+}
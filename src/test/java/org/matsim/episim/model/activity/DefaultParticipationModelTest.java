@@ -14,25 +14,29 @@ import org.matsim.episim.policy.Restriction;
 import org.matsim.episim.policy.RestrictionTest;
 
 import java.time.DayOfWeek;
-import java.util.SplittableRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 
 public class DefaultParticipationModelTest {
 
+	private Config config;
 	private DefaultParticipationModel model;
 	private ImmutableMap<String, Restriction> r;
 
 	@Before
 	public void setUp() {
 
-		Config config = EpisimTestUtils.createTestConfig();
+		config = EpisimTestUtils.createTestConfig();
 		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 
 		episimConfig.setActivityHandling(EpisimConfigGroup.ActivityHandling.startOfDay);
 
-		model = new DefaultParticipationModel(new SplittableRandom(0), episimConfig, ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class));
+		model = createModel();
 		r = ImmutableMap.of(
 				"home", Restriction.none(),
 				"work", Restriction.none(),
@@ -42,6 +46,61 @@ public class DefaultParticipationModelTest {
 		model.setRestrictionsForIteration(0, r);
 	}
 
+	private DefaultParticipationModel createModel() {
+		return new DefaultParticipationModel(config, ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class),
+				ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class));
+	}
+
+	/**
+	 * Update the participation of all persons on a pool with given number of threads.
+	 */
+	private List<Boolean> participation(DefaultParticipationModel model, List<EpisimPerson> persons, int threads) throws Exception {
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.submit(() -> persons.parallelStream().forEach(
+					p -> model.updateParticipation(p, p.getActivityParticipation(), 0, p.getActivities(DayOfWeek.MONDAY))
+			)).get();
+		} finally {
+			pool.shutdown();
+		}
+
+		return persons.stream().map(p -> p.getActivityParticipation().get(1)).collect(Collectors.toList());
+	}
+
+	@Test
+	public void independentOfThreads() throws Exception {
+
+		RestrictionTest.update(r.get("work"), Restriction.of(0.5));
+
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			persons.add(EpisimTestUtils.createPerson("home", "work", "home"));
+		}
+
+		model.setRestrictionsForIteration(5, r);
+		List<Boolean> sequential = participation(model, persons, 1);
+
+		assertThat(sequential).contains(true, false);
+
+		// other models of the same iteration, e.g. on other threads, draw the same numbers
+		for (int threads : new int[]{2, 4, 8}) {
+			DefaultParticipationModel other = createModel();
+			other.setRestrictionsForIteration(5, r);
+
+			assertThat(participation(other, persons, threads))
+					.as("%d threads", threads)
+					.containsExactlyElementsOf(sequential);
+		}
+
+		// the same model draws again the same numbers
+		model.setRestrictionsForIteration(5, r);
+		assertThat(participation(model, persons, 4)).containsExactlyElementsOf(sequential);
+
+		model.setRestrictionsForIteration(6, r);
+		assertThat(participation(model, persons, 4)).isNotEqualTo(sequential);
+	}
+
 	@Test
 	public void susceptible() {
 
@@ -25,7 +25,6 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class LocationBasedParticipationModelTest {
 
 	private Config config;
-	private SplittableRandom rnd;
 	private EpisimConfigGroup episimConfig;
 
 	private final double POPULATION_SIZE = 10000.;
@@ -35,8 +34,6 @@ public class LocationBasedParticipationModelTest {
 	@Before
 	public void setup() {
 
-		rnd = new SplittableRandom(1);
-
 		config = EpisimTestUtils.createTestConfig();
 		episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 		episimConfig.setDistrictLevelRestrictions(EpisimConfigGroup.DistrictLevelRestrictions.yes);
@@ -88,7 +85,7 @@ public class LocationBasedParticipationModelTest {
 
 
 		// Create LocationBasedParticipationModel
-		LocationBasedParticipationModel activityParticipationModel = new LocationBasedParticipationModel(rnd, episimConfig, scenario);
+		LocationBasedParticipationModel activityParticipationModel = new LocationBasedParticipationModel(config, episimConfig, scenario);
 
 		ImmutableMap<String, Restriction> restrictionsImmutable = ImmutableMap.copyOf(restrictions);
 
@@ -1,6 +1,8 @@
 package org.matsim.episim.policy;
 
 import org.junit.Test;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.EpisimTestUtils;
 import org.matsim.episim.model.FaceMask;
 
 import java.util.HashMap;
@@ -261,6 +263,40 @@ public class RestrictionTest {
 		return d * 86400;
 	}
 
+	@Test
+	public void table() {
+
+		EpisimConfigGroup config = EpisimTestUtils.TEST_CONFIG;
+		Map<String, Restriction> restrictions = config.createInitialRestrictions();
+
+		update(restrictions.get("c0.5"), Restriction.of(0.4));
+		update(restrictions.get("c0.5"), Restriction.ofReducedGroupSize(5));
+		update(restrictions.get("c1.0"), Restriction.ofGroupSize(20));
+		update(restrictions.get("c1.0"), Restriction.ofCiCorrection(0.5));
+
+		RestrictionTable table = RestrictionTable.of(config, restrictions);
+
+		assertThat(table.isCreatedFrom(restrictions)).isTrue();
+		assertThat(table.isCreatedFrom(new HashMap<>(restrictions))).isFalse();
+
+		for (EpisimConfigGroup.InfectionParams params : config.getInfectionParams()) {
+			Restriction r = restrictions.get(params.getContainerName());
+			assertThat(table.get(params)).isSameAs(r);
+			assertThat(table.getRemainingFraction(params)).isEqualTo(r.getRemainingFraction());
+			assertThat(table.getCiCorrection(params)).isEqualTo(r.getCiCorrection());
+			assertThat(table.getSusceptibleRf(params)).isEqualTo(1);
+		}
+
+		EpisimConfigGroup.InfectionParams c05 = config.selectInfectionParams("c0.5");
+		EpisimConfigGroup.InfectionParams c1 = config.selectInfectionParams("c1.0");
+
+		assertThat(table.getRemainingFraction(c05)).isEqualTo(0.4);
+		assertThat(table.getReducedGroupSize(c05)).isEqualTo(5);
+		assertThat(table.getMaxGroupSize(c05)).isEqualTo(-1);
+		assertThat(table.getMaxGroupSize(c1)).isEqualTo(20);
+		assertThat(table.getCiCorrection(c1)).isEqualTo(0.5);
+	}
+
 	private int hours(int h) {
 		return h * 3600;
 	}